@@ -36,6 +36,7 @@ import com.netflix.exhibitor.core.config.JQueryStyle;
 import com.netflix.exhibitor.core.controlpanel.ControlPanelValues;
 import com.netflix.exhibitor.core.controlpanel.FileBasedPreferences;
 import com.netflix.exhibitor.core.index.IndexCache;
+import com.netflix.exhibitor.core.index.LiveIndexer;
 import com.netflix.exhibitor.core.processes.ProcessMonitor;
 import com.netflix.exhibitor.core.processes.ProcessOperations;
 import com.netflix.exhibitor.core.processes.StandardProcessOperations;
@@ -71,6 +72,7 @@ public class Exhibitor implements Closeable
     private final CleanupManager                cleanupManager;
     private final AtomicReference<State>        state = new AtomicReference<State>(State.LATENT);
     private final IndexCache                    indexCache;
+    private final LiveIndexer                   liveIndexer;
     private final ControlPanelValues            controlPanelValues;
     private final BackupManager                 backupManager;
     private final ConfigManager                 configManager;
@@ -131,7 +133,8 @@ public class Exhibitor implements Closeable
         this.processOperations = new StandardProcessOperations(this);
         monitorRunningInstance = new MonitorRunningInstance(this);
         cleanupManager = new CleanupManager(this);
-        indexCache = new IndexCache(log);
+        indexCache = new IndexCache(log, arguments.indexDirectoryType, forkJoinPool);
+        liveIndexer = new LiveIndexer(this);
         processMonitor = new ProcessMonitor(this);
         autoInstanceManagement = new RepeatingActivityImpl(log, activityQueue, QueueGroups.MAIN, new AutomaticInstanceManagement(this), getAutoInstanceManagementPeriod());
 
@@ -181,6 +184,7 @@ public class Exhibitor implements Closeable
         monitorRunningInstance.start();
         cleanupManager.start();
         backupManager.start();
+        liveIndexer.start();
         autoInstanceManagement.start();
         if ( servoMonitoring != null )
         {
@@ -225,6 +229,7 @@ public class Exhibitor implements Closeable
         CloseableUtils.closeQuietly(servoMonitoring);
         CloseableUtils.closeQuietly(autoInstanceManagement);
         CloseableUtils.closeQuietly(processMonitor);
+        CloseableUtils.closeQuietly(liveIndexer);
         CloseableUtils.closeQuietly(indexCache);
         CloseableUtils.closeQuietly(backupManager);
         CloseableUtils.closeQuietly(cleanupManager);
@@ -0,0 +1,451 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.backup;
+
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import org.apache.curator.utils.CloseableUtils;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A read-through cache of downloaded backups on local disk. Stored backups never change (the
+ * modified date is part of their identity) so entries are only removed when the backup is deleted,
+ * to stay within the byte budget (least recently used first) or when they fail their integrity
+ * check. Each file's name ends with the MD5 of its contents. A download is checked against the
+ * stored object's MD5 when it's known. Files that were already in the cache directory are checked
+ * against their name the first time they're used. Hashes are never computed while holding the lock.
+ */
+class BackupCache
+{
+    private final File                  directory;
+    private final Map<String, Entry>    entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);  // access order, i.e. LRU first
+    private long                        totalBytes = 0;
+    private long                        maxBytes;
+
+    private static final char           SEPARATOR = '@';
+    private static final String         TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Loads a backup that isn't cached
+     */
+    interface Loader
+    {
+        /**
+         * @param out destination for the backup's bytes
+         * @return false if the backup doesn't exist
+         * @throws Exception errors
+         */
+        boolean     load(OutputStream out) throws Exception;
+    }
+
+    private static class Entry
+    {
+        private final File      file;
+        private final String    hash;
+        private boolean         isVerified;
+
+        private Entry(File file, boolean isVerified)
+        {
+            this.file = file;
+            this.isVerified = isVerified;
+            String      name = file.getName();
+            hash = name.substring(name.lastIndexOf(SEPARATOR) + 1);
+        }
+    }
+
+    /**
+     * @param directory the cache directory. Files already in it are kept, most recently used last.
+     * @param maxBytes byte budget
+     * @throws IOException errors
+     */
+    BackupCache(File directory, long maxBytes) throws IOException
+    {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+
+        if ( !directory.isDirectory() && !directory.mkdirs() )
+        {
+            throw new IOException("Could not create backup cache directory: " + directory);
+        }
+
+        File[]      files = directory.listFiles();
+        if ( files != null )
+        {
+            Arrays.sort(files, new Comparator<File>()
+            {
+                @Override
+                public int compare(File f1, File f2)
+                {
+                    long    diff = f1.lastModified() - f2.lastModified();
+                    return (diff < 0) ? -1 : ((diff > 0) ? 1 : 0);
+                }
+            });
+            for ( File f : files )
+            {
+                String      prefix = getPrefix(f);
+                if ( prefix != null )
+                {
+                    entries.put(prefix, new Entry(f, false));
+                    totalBytes += f.length();
+                }
+                else
+                {
+                    //noinspection ResultOfMethodCallIgnored
+                    f.delete();     // left over from an interrupted load
+                }
+            }
+        }
+        evict();
+    }
+
+    /**
+     * Change the byte budget, evicting entries if needed
+     *
+     * @param maxBytes new budget
+     */
+    synchronized void   setMaxBytes(long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    /**
+     * Return a stream for the backup from the cache, loading it first if it isn't cached or fails
+     * its integrity check. A backup bigger than the whole budget is streamed from a temp file that's
+     * deleted when the stream is closed.
+     *
+     * @param backup the backup
+     * @param expectedHash hex MD5 of the stored object or null/empty if not known
+     * @param loader loads the backup on a miss
+     * @return the stream or null if the backup doesn't exist
+     * @throws Exception errors
+     */
+    InputStream         open(BackupMetaData backup, String expectedHash, Loader loader) throws Exception
+    {
+        String          prefix = toPrefix(backup);
+        InputStream     in = openCached(prefix, expectedHash);
+        return (in != null) ? in : load(prefix, expectedHash, loader, null);
+    }
+
+    /**
+     * Copy the backup to the given stream. On a miss the backup is copied as it's loaded rather
+     * than after it has been cached.
+     *
+     * @param backup the backup
+     * @param expectedHash hex MD5 of the stored object or null/empty if not known
+     * @param loader loads the backup on a miss
+     * @param out destination - it isn't closed
+     * @return false if the backup doesn't exist
+     * @throws Exception errors. If the download doesn't match the expected hash, the bytes have already been copied.
+     */
+    boolean             copy(BackupMetaData backup, String expectedHash, Loader loader, OutputStream out) throws Exception
+    {
+        String          prefix = toPrefix(backup);
+        InputStream     in = openCached(prefix, expectedHash);
+        if ( in != null )
+        {
+            try
+            {
+                ByteStreams.copy(in, out);
+            }
+            finally
+            {
+                CloseableUtils.closeQuietly(in);
+            }
+            return true;
+        }
+
+        in = load(prefix, expectedHash, loader, out);
+        CloseableUtils.closeQuietly(in);    // already copied
+        return (in != null);
+    }
+
+    /**
+     * Remove any cached copies of the given backups
+     *
+     * @param backups the backups
+     */
+    synchronized void   remove(Collection<BackupMetaData> backups)
+    {
+        for ( BackupMetaData backup : backups )
+        {
+            remove(toPrefix(backup));
+        }
+    }
+
+    synchronized long   getTotalBytes()
+    {
+        return totalBytes;
+    }
+
+    synchronized List<File> getFiles()
+    {
+        List<File>      files = Lists.newArrayList();
+        for ( Entry entry : entries.values() )
+        {
+            files.add(entry.file);
+        }
+        return files;
+    }
+
+    /**
+     * @return a stream for the cached file or null if the backup isn't cached or fails its integrity check
+     */
+    private InputStream openCached(String prefix, String expectedHash) throws IOException
+    {
+        Entry       entry;
+        synchronized(this)
+        {
+            entry = entries.get(prefix);
+            if ( entry == null )
+            {
+                return null;
+            }
+            if ( !isExpectedHash(entry.hash, expectedHash) )
+            {
+                remove(prefix);
+                return null;
+            }
+            if ( entry.isVerified )
+            {
+                return touch(entry);
+            }
+        }
+
+        boolean     isValid;
+        try
+        {
+            isValid = Files.hash(entry.file, Hashing.md5()).toString().equals(entry.hash);
+        }
+        catch ( FileNotFoundException e )
+        {
+            isValid = false;    // removed in the meantime
+        }
+
+        synchronized(this)
+        {
+            if ( entries.get(prefix) != entry )
+            {
+                return null;
+            }
+            if ( !isValid )
+            {
+                remove(prefix);
+                return null;
+            }
+            entry.isVerified = true;
+            return touch(entry);
+        }
+    }
+
+    /**
+     * @param copy if not null, the loaded bytes are also written to this stream
+     * @return a stream for the loaded backup or null if it doesn't exist
+     */
+    private InputStream load(String prefix, String expectedHash, Loader loader, OutputStream copy) throws Exception
+    {
+        File                    tempFile = File.createTempFile("backup", TEMP_SUFFIX, directory);
+        boolean                 keepTempFile = false;
+        try
+        {
+            OutputStream            fileOut = new BufferedOutputStream(new FileOutputStream(tempFile));
+            HashingOutputStream     out = new HashingOutputStream(Hashing.md5(), (copy != null) ? new CopyingOutputStream(fileOut, copy) : fileOut);
+            try
+            {
+                if ( !loader.load(out) )
+                {
+                    return null;
+                }
+            }
+            finally
+            {
+                CloseableUtils.closeQuietly(out);
+            }
+
+            String                  hash = out.hash().toString();
+            if ( !isExpectedHash(hash, expectedHash) )
+            {
+                throw new IOException("Downloaded backup doesn't match its MD5: " + prefix);
+            }
+
+            synchronized(this)
+            {
+                long        size = tempFile.length();
+                if ( size > maxBytes )
+                {
+                    keepTempFile = true;
+                    return new DeleteOnCloseInputStream(tempFile);
+                }
+
+                remove(prefix);     // loaded at the same time by another caller
+
+                File        f = new File(directory, prefix + hash);
+                if ( !tempFile.renameTo(f) )
+                {
+                    throw new IOException("Could not move cached backup into place: " + f);
+                }
+                Entry       entry = new Entry(f, true);
+                entries.put(prefix, entry);
+                totalBytes += size;
+                evict();
+
+                return touch(entry);
+            }
+        }
+        finally
+        {
+            if ( !keepTempFile )
+            {
+                //noinspection ResultOfMethodCallIgnored
+                tempFile.delete();
+            }
+        }
+    }
+
+    private InputStream touch(Entry entry) throws IOException
+    {
+        //noinspection ResultOfMethodCallIgnored
+        entry.file.setLastModified(System.currentTimeMillis());
+        return new FileInputStream(entry.file);
+    }
+
+    private void        remove(String prefix)
+    {
+        Entry       entry = entries.remove(prefix);
+        if ( entry != null )
+        {
+            totalBytes -= entry.file.length();
+            //noinspection ResultOfMethodCallIgnored
+            entry.file.delete();
+        }
+    }
+
+    private void        evict()
+    {
+        Iterator<Entry>     iterator = entries.values().iterator();
+        while ( (totalBytes > maxBytes) && iterator.hasNext() )
+        {
+            File    f = iterator.next().file;
+            totalBytes -= f.length();
+            //noinspection ResultOfMethodCallIgnored
+            f.delete();
+            iterator.remove();
+        }
+    }
+
+    private static boolean isExpectedHash(String hash, String expectedHash)
+    {
+        return (expectedHash == null) || (expectedHash.length() == 0) || expectedHash.equalsIgnoreCase(hash);
+    }
+
+    private static String toPrefix(BackupMetaData backup)
+    {
+        return backup.getName().replaceAll("[^A-Za-z0-9._-]", "_") + SEPARATOR + backup.getModifiedDate() + SEPARATOR;
+    }
+
+    /**
+     * @return the name without the hash or null if it isn't a cache entry
+     */
+    private static String getPrefix(File f)
+    {
+        String      name = f.getName();
+        int         hashIndex = name.lastIndexOf(SEPARATOR);
+        if ( name.endsWith(TEMP_SUFFIX) || (hashIndex <= 0) || (name.lastIndexOf(SEPARATOR, hashIndex - 1) < 0) )
+        {
+            return null;
+        }
+        return name.substring(0, hashIndex + 1);
+    }
+
+    /**
+     * Writes to a second stream as well. Only the first stream is closed.
+     */
+    private static class CopyingOutputStream extends FilterOutputStream
+    {
+        private final OutputStream copy;
+
+        CopyingOutputStream(OutputStream out, OutputStream copy)
+        {
+            super(out);
+            this.copy = copy;
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            out.write(b);
+            copy.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            out.write(b, off, len);
+            copy.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException
+        {
+            out.flush();
+            copy.flush();
+        }
+    }
+
+    private static class DeleteOnCloseInputStream extends FileInputStream
+    {
+        private final File file;
+
+        DeleteOnCloseInputStream(File file) throws IOException
+        {
+            super(file);
+            this.file = file;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            try
+            {
+                super.close();
+            }
+            finally
+            {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+    }
+}
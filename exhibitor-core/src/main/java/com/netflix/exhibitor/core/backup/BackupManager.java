@@ -16,8 +16,13 @@
 
 package com.netflix.exhibitor.core.backup;
 
+import com.google.common.base.Charsets;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
 import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.netflix.exhibitor.core.Exhibitor;
 import com.netflix.exhibitor.core.activity.Activity;
 import com.netflix.exhibitor.core.activity.ActivityLog;
@@ -31,19 +36,32 @@ import com.netflix.exhibitor.core.config.InstanceConfig;
 import com.netflix.exhibitor.core.config.IntConfigs;
 import com.netflix.exhibitor.core.config.StringConfigs;
 import com.netflix.exhibitor.core.controlpanel.ControlPanelTypes;
+import com.netflix.exhibitor.core.index.GzipMembersInputStream;
 import com.netflix.exhibitor.core.index.ZooKeeperLogFiles;
 import org.apache.curator.utils.CloseableUtils;
 import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.zip.GZIPInputStream;
 
 public class BackupManager implements Closeable
 {
@@ -51,6 +69,16 @@ public class BackupManager implements Closeable
     private final Optional<BackupProvider> backupProvider;
     private final RepeatingActivity repeatingActivity;
     private final AtomicLong lastRollCheck = new AtomicLong(0);
+    private final DeltaBackups deltaBackups = new DeltaBackups();
+    private volatile BackupManifest manifest = null;
+    private BackupCache cache = null;
+    private final ExecutorService compressionService = Executors.newFixedThreadPool(COMPRESSION_THREAD_QTY, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("BackupManager-compress-%d").build());
+
+    private static final int        COMPRESSION_THREAD_QTY = Runtime.getRuntime().availableProcessors();
+    private static final long       TRANSFER_SIZE = 1024 * 1024;
+    private static final int        RESTORE_PIPE_SIZE = 1024 * 1024;
+    private static final String     MANIFEST_FILE_NAME = "exhibitor-backups.manifest";
+    private static final String     CACHE_DIRECTORY_NAME = "exhibitor-backup-cache";
 
     /**
      * @param exhibitor main instance
@@ -125,6 +153,7 @@ public class BackupManager implements Closeable
         {
             repeatingActivity.close();
         }
+        compressionService.shutdownNow();
     }
 
     /**
@@ -146,7 +175,7 @@ public class BackupManager implements Closeable
     public List<BackupMetaData> getAvailableBackups() throws Exception
     {
         Map<String, String>       config = getBackupConfig();
-        return backupProvider.get().getAvailableBackups(exhibitor, config);
+        return deltaBackups.fold(backupProvider.get().getAvailableBackups(exhibitor, config));
     }
 
     /**
@@ -158,7 +187,84 @@ public class BackupManager implements Closeable
      */
     public BackupStream getBackupStream(BackupMetaData metaData) throws Exception
     {
-        return backupProvider.get().getBackupStream(exhibitor, metaData, getBackupConfig());
+        final Map<String, String>       config = getBackupConfig();
+        List<BackupMetaData>            pieces = deltaBackups.getPieces(metaData);
+        if ( pieces == null )
+        {
+            return openBackup(metaData, config);
+        }
+
+        // pieces are opened as they're reached
+        final Iterator<BackupMetaData>  iterator = pieces.iterator();
+        final List<BackupStream>        opened = Lists.newArrayList();
+        final InputStream               stream = new SequenceInputStream
+        (
+            new Enumeration<InputStream>()
+            {
+                @Override
+                public boolean hasMoreElements()
+                {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public InputStream nextElement()
+                {
+                    BackupMetaData      piece = iterator.next();
+                    BackupStream        pieceStream;
+                    try
+                    {
+                        pieceStream = openBackup(piece, config);
+                    }
+                    catch ( Exception e )
+                    {
+                        throw new RuntimeException(e);
+                    }
+                    if ( pieceStream == null )
+                    {
+                        throw new RuntimeException("Missing backup piece: " + piece);
+                    }
+                    opened.add(pieceStream);
+                    return pieceStream.getStream();
+                }
+            }
+        );
+        return new BackupStream()
+        {
+            @Override
+            public InputStream getStream()
+            {
+                return stream;
+            }
+
+            @Override
+            public void close() throws IOException
+            {
+                for ( BackupStream pieceStream : opened )
+                {
+                    CloseableUtils.closeQuietly(pieceStream);
+                }
+            }
+        };
+    }
+
+    /**
+     * Move existing backups to where the current backup config stores them (e.g. after the S3 key
+     * layout has changed)
+     *
+     * @return the number of backups moved or -1 if the provider never moves backups
+     * @throws Exception errors
+     */
+    public int migrateBackups() throws Exception
+    {
+        if ( !isActive() || !(backupProvider.get() instanceof MigratingBackupProvider) )
+        {
+            return -1;
+        }
+
+        int     movedQty = ((MigratingBackupProvider)backupProvider.get()).migrateBackups(exhibitor, getBackupConfig());
+        exhibitor.getLog().add(ActivityLog.Type.INFO, "Backups moved: " + movedQty);
+        return movedQty;
     }
 
     /**
@@ -190,28 +296,256 @@ public class BackupManager implements Closeable
      */
     public void restore(BackupMetaData backup, File destinationFile) throws Exception
     {
-        File                    tempFile = File.createTempFile("exhibitor-backup", ".tmp");
-        OutputStream            out = new FileOutputStream(tempFile);
-        InputStream in = null;
+        final Map<String, String>   config = getBackupConfig();
+        List<BackupMetaData>        pieces = deltaBackups.getPieces(backup);
+        restore
+        (
+            (pieces != null) ? pieces : Collections.singletonList(backup),
+            new PieceDownloader()
+            {
+                @Override
+                public void download(BackupMetaData piece, OutputStream out) throws Exception
+                {
+                    downloadBackup(piece, out, config);
+                }
+            },
+            destinationFile,
+            compressionService
+        );
+    }
+
+    /**
+     * Downloads one piece of a backup
+     */
+    interface PieceDownloader
+    {
+        /**
+         * @param piece the piece
+         * @param out destination for the piece's compressed bytes
+         * @throws Exception errors
+         */
+        void        download(BackupMetaData piece, OutputStream out) throws Exception;
+    }
+
+    /**
+     * Download the pieces in order and decompress them into the file as they arrive. Each piece is
+     * one or more gzip members so the decoder must keep reading until the download ends - a member
+     * boundary can be reached while the next piece is still being downloaded.
+     */
+    @VisibleForTesting
+    static void restore(List<BackupMetaData> pieces, PieceDownloader downloader, File destinationFile, ExecutorService service) throws Exception
+    {
+        // the download is decompressed on another thread as it arrives
+        final PipedInputStream      compressed = new PipedInputStream(RESTORE_PIPE_SIZE);
+        OutputStream                out = new PipedOutputStream(compressed);
+        final FileChannel           destination = new FileOutputStream(destinationFile).getChannel();
+        Future<Void>                decompression = service.submit
+        (
+            new Callable<Void>()
+            {
+                @Override
+                public Void call() throws Exception
+                {
+                    try
+                    {
+                        InputStream     in = new GzipMembersInputStream(compressed, RESTORE_PIPE_SIZE);
+                        byte[]          buffer = new byte[RESTORE_PIPE_SIZE];
+                        for ( int count; (count = in.read(buffer)) >= 0; )
+                        {
+                            ByteBuffer  bytes = ByteBuffer.wrap(buffer, 0, count);
+                            while ( bytes.hasRemaining() )
+                            {
+                                destination.write(bytes);
+                            }
+                        }
+                        return null;
+                    }
+                    finally
+                    {
+                        CloseableUtils.closeQuietly(compressed);    // unblocks the download if decompression fails
+                    }
+                }
+            }
+        );
+
         try
         {
-            backupProvider.get().downloadBackup(exhibitor, backup, out, getBackupConfig());
-            CloseableUtils.closeQuietly(out);
+            try
+            {
+                for ( BackupMetaData piece : pieces )
+                {
+                    downloader.download(piece, out);
+                }
+            }
+            catch ( IOException e )
+            {
+                if ( decompression.isDone() )
+                {
+                    getDecompressionResult(decompression);   // report why the pipe was closed
+                }
+                throw e;
+            }
+            out.close();
             out = null;
 
-            out = new FileOutputStream(destinationFile);
-            in = new GZIPInputStream(new FileInputStream(tempFile));
-
-            ByteStreams.copy(in, out);
+            getDecompressionResult(decompression);
         }
         finally
         {
-            CloseableUtils.closeQuietly(in);
             CloseableUtils.closeQuietly(out);
-            if ( !tempFile.delete() )
+            decompression.cancel(true);
+            CloseableUtils.closeQuietly(destination);
+        }
+    }
+
+    private BackupStream openBackup(final BackupMetaData backup, final Map<String, String> config) throws Exception
+    {
+        BackupCache     localCache = getCache();
+        if ( localCache == null )
+        {
+            return backupProvider.get().getBackupStream(exhibitor, backup, config);
+        }
+
+        final InputStream   in = localCache.open
+        (
+            backup,
+            getStoredHash(backup),
+            new BackupCache.Loader()
+            {
+                @Override
+                public boolean load(OutputStream out) throws Exception
+                {
+                    BackupStream    backupStream = backupProvider.get().getBackupStream(exhibitor, backup, config);
+                    if ( backupStream == null )
+                    {
+                        return false;
+                    }
+                    try
+                    {
+                        ByteStreams.copy(backupStream.getStream(), out);
+                    }
+                    finally
+                    {
+                        CloseableUtils.closeQuietly(backupStream);
+                    }
+                    return true;
+                }
+            }
+        );
+        if ( in == null )
+        {
+            return null;
+        }
+
+        return new BackupStream()
+        {
+            @Override
+            public InputStream getStream()
+            {
+                return in;
+            }
+
+            @Override
+            public void close() throws IOException
+            {
+                in.close();
+            }
+        };
+    }
+
+    private void downloadBackup(final BackupMetaData backup, OutputStream out, final Map<String, String> config) throws Exception
+    {
+        BackupCache     localCache = getCache();
+        if ( localCache == null )
+        {
+            backupProvider.get().downloadBackup(exhibitor, backup, out, config);
+            return;
+        }
+
+        // the download is copied to the destination as it's cached
+        localCache.copy
+        (
+            backup,
+            getStoredHash(backup),
+            new BackupCache.Loader()
             {
-                exhibitor.getLog().add(ActivityLog.Type.ERROR, "Could not delete temp file (for restore): " + tempFile);
+                @Override
+                public boolean load(OutputStream cached) throws Exception
+                {
+                    backupProvider.get().downloadBackup(exhibitor, backup, cached, config);
+                    return true;
+                }
+            },
+            out
+        );
+    }
+
+    /**
+     * @return hex MD5 of the stored object as recorded in the manifest or null if not known
+     */
+    private String getStoredHash(BackupMetaData backup)
+    {
+        BackupManifest          localManifest = manifest;
+        BackupManifest.Entry    entry = (localManifest != null) ? localManifest.get(backup) : null;
+        return (entry != null) ? entry.getHash() : null;
+    }
+
+    /**
+     * The cache is kept in the ZooKeeper data directory and is only used while it has a byte budget
+     */
+    private synchronized BackupCache getCache()
+    {
+        InstanceConfig      config = exhibitor.getConfigManager().getConfig();
+        long                maxBytes = config.getInt(IntConfigs.BACKUP_CACHE_MB) * (1024L * 1024);
+        String              dataDirectory = config.getString(StringConfigs.ZOOKEEPER_DATA_DIRECTORY);
+        if ( (maxBytes <= 0) || (dataDirectory == null) || (dataDirectory.trim().length() == 0) )
+        {
+            if ( cache != null )
+            {
+                cache.setMaxBytes(0);   // empties it
+                cache = null;
             }
+            return null;
+        }
+
+        if ( cache == null )
+        {
+            File        cacheDirectory = new File(dataDirectory, CACHE_DIRECTORY_NAME);
+            try
+            {
+                cache = new BackupCache(cacheDirectory, maxBytes);
+            }
+            catch ( IOException e )
+            {
+                exhibitor.getLog().add(ActivityLog.Type.ERROR, "Could not open backup cache: " + cacheDirectory, e);
+                return null;
+            }
+        }
+        else
+        {
+            cache.setMaxBytes(maxBytes);
+        }
+        return cache;
+    }
+
+    private synchronized void uncache(List<BackupMetaData> backups)
+    {
+        if ( cache != null )
+        {
+            cache.remove(backups);
+        }
+    }
+
+    private static void getDecompressionResult(Future<Void> decompression) throws Exception
+    {
+        try
+        {
+            decompression.get();
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable   cause = e.getCause();
+            throw (cause instanceof Exception) ? (Exception)cause : new Exception(cause);
         }
     }
 
@@ -235,47 +569,325 @@ public class BackupManager implements Closeable
         {
             return;
         }
+        updateManifest(provider, config);
 
+        boolean             deltas = (exhibitor.getConfigManager().getConfig().getInt(IntConfigs.BACKUP_DELTAS) != 0);
+        File                activeLog = deltas ? findActiveLog(zooKeeperLogFiles.getPaths()) : null;
         for ( File f : zooKeeperLogFiles.getPaths() )
         {
-            TempCompressedFile      tempCompressedFile = new TempCompressedFile(f);
+            if ( f.equals(activeLog) && backupActiveLog(provider, f, config) )
+            {
+                continue;
+            }
+
+            BackupMetaData              metaData = new BackupMetaData(f.getName(), f.lastModified());
+            BackupProvider.UploadResult result = upload(provider, metaData, f, 0, Long.MAX_VALUE, config);
+            if ( result != BackupProvider.UploadResult.FAILED )
+            {
+                // the log has rolled - the full object replaces its base and segments. If the upload failed
+                // they're kept (along with the state) and it's retried next time.
+                boolean                 hadDeltas = removeLogState(f.getName());
+                if ( hadDeltas || (deltas && (result != BackupProvider.UploadResult.DUPLICATE)) )
+                {
+                    deleteSegments(provider, f.getName(), config);
+                }
+            }
+            switch ( result )
+            {
+                case SUCCEEDED:
+                {
+                    exhibitor.getLog().add(ActivityLog.Type.DEBUG, "Backing up: " + f);
+                    break;
+                }
+
+                case DUPLICATE:
+                {
+                    // ignore
+                    break;
+                }
+
+                case REPLACED_OLD_VERSION:
+                {
+                    exhibitor.getLog().add(ActivityLog.Type.DEBUG, "Updated back up for: " + f);
+                    break;
+                }
+            }
+        }
+
+        doRoll(config);
+    }
+
+    private File findActiveLog(List<File> paths)
+    {
+        File        activeLog = null;
+        for ( File f : paths )
+        {
+            if ( (activeLog == null) || (f.lastModified() > activeLog.lastModified()) )
+            {
+                activeLog = f;
+            }
+        }
+        return activeLog;
+    }
+
+    /**
+     * Upload the transactions appended to the active log since its last backup as a segment. The
+     * first time a log is seen a base holding all of its transactions is uploaded instead.
+     *
+     * @return false if the log couldn't be parsed and should be backed up in full
+     */
+    private boolean backupActiveLog(BackupProvider provider, File f, Map<String, String> config) throws Exception
+    {
+        long                        modifiedDate = f.lastModified();
+        DeltaBackups.LogState       state = deltaBackups.getState(f.getName());
+        if ( state == null )
+        {
+            DeltaBackups.LogState       newState = DeltaBackups.findEnd(f, modifiedDate, 0);
+            if ( newState == null )
+            {
+                return false;
+            }
+
+            deleteSegments(provider, f.getName(), config);  // left over from an earlier base
+            BackupProvider.UploadResult result = upload(provider, new BackupMetaData(f.getName(), modifiedDate), f, 0, newState.getOffset(), config);
+            if ( result != BackupProvider.UploadResult.FAILED )
+            {
+                setLogState(f.getName(), newState);
+                exhibitor.getLog().add(ActivityLog.Type.DEBUG, "Backing up base of: " + f + " through zxid " + Long.toHexString(newState.getZxid()));
+            }
+            return true;
+        }
+
+        if ( modifiedDate == state.getModifiedDate() )
+        {
+            return true;
+        }
+
+        DeltaBackups.LogState       newState = DeltaBackups.findEnd(f, modifiedDate, state.getOffset());
+        if ( newState == null )
+        {
+            return false;
+        }
+        if ( newState.getOffset() > state.getOffset() )
+        {
+            BackupMetaData              metaData = new BackupMetaData(DeltaBackups.getSegmentName(f.getName(), state.getOffset()), modifiedDate);
+            BackupProvider.UploadResult result = upload(provider, metaData, f, state.getOffset(), newState.getOffset(), config);
+            if ( result == BackupProvider.UploadResult.FAILED )
+            {
+                return true;
+            }
+            exhibitor.getLog().add(ActivityLog.Type.DEBUG, "Backing up segment of: " + f + " through zxid " + Long.toHexString(newState.getZxid()));
+        }
+        setLogState(f.getName(), newState);
+        return true;
+    }
+
+    private void setLogState(String logName, DeltaBackups.LogState state) throws IOException
+    {
+        deltaBackups.setState(logName, state);
+        if ( manifest != null )
+        {
+            manifest.setLogState(logName, state);
+        }
+    }
+
+    private boolean removeLogState(String logName) throws IOException
+    {
+        boolean     hadState = (deltaBackups.removeState(logName) != null);
+        if ( manifest != null )
+        {
+            manifest.removeLogState(logName);
+        }
+        return hadState;
+    }
+
+    /**
+     * The manifest is kept in the ZooKeeper data directory. It's reconciled with a listing of the store
+     * when it's first loaded, when the backup config changes and then periodically.
+     */
+    private void updateManifest(BackupProvider provider, Map<String, String> config) throws Exception
+    {
+        if ( manifest == null )
+        {
+            String      dataDirectory = exhibitor.getConfigManager().getConfig().getString(StringConfigs.ZOOKEEPER_DATA_DIRECTORY);
+            if ( (dataDirectory == null) || (dataDirectory.trim().length() == 0) )
+            {
+                return;
+            }
+
+            File        manifestFile = new File(dataDirectory, MANIFEST_FILE_NAME);
             try
             {
-                tempCompressedFile.compress();
+                manifest = new BackupManifest(manifestFile);
+            }
+            catch ( IOException e )
+            {
+                exhibitor.getLog().add(ActivityLog.Type.ERROR, "Could not read backup manifest: " + manifestFile, e);
+                manifest = null;
+                return;
+            }
 
-                BackupMetaData          metaData = new BackupMetaData(f.getName(), f.lastModified());
-                BackupProvider.UploadResult result = provider.uploadBackup(exhibitor, metaData, tempCompressedFile.getTempFile(), config);
-                switch ( result )
+            // delta backups carry on from where they were before a restart
+            for ( Map.Entry<String, DeltaBackups.LogState> entry : manifest.getLogStates().entrySet() )
+            {
+                if ( deltaBackups.getState(entry.getKey()) == null )
                 {
-                    case SUCCEEDED:
-                    {
-                        exhibitor.getLog().add(ActivityLog.Type.DEBUG, "Backing up: " + f);
-                        break;
-                    }
+                    deltaBackups.setState(entry.getKey(), entry.getValue());
+                }
+            }
+        }
 
-                    case DUPLICATE:
-                    {
-                        // ignore
-                        break;
-                    }
+        String      configHash = Hashing.sha1().hashString(config.toString(), Charsets.UTF_8).toString();
+        if ( manifest.needsReconcile(configHash, exhibitor.getConfigManager().getConfig().getInt(IntConfigs.BACKUP_MANIFEST_RECONCILE_MS)) )
+        {
+            exhibitor.getLog().add(ActivityLog.Type.DEBUG, "Reconciling backup manifest");
+            manifest.reconcile(provider.getAvailableBackups(exhibitor, config), configHash);
+        }
+
+        for ( String logName : deltaBackups.getLogNames() )
+        {
+            if ( manifest.getVersions(logName).isEmpty() )
+            {
+                removeLogState(logName);    // the base isn't in the store - the log starts again with a new base
+            }
+        }
+    }
+
+    private List<BackupMetaData> getStoredBackups(BackupProvider provider, Map<String, String> config) throws Exception
+    {
+        return (manifest != null) ? manifest.getBackups() : provider.getAvailableBackups(exhibitor, config);
+    }
+
+    private void deleteBackup(BackupProvider provider, BackupMetaData backup, Map<String, String> config) throws Exception
+    {
+        provider.deleteBackup(exhibitor, backup, config);
+        uncache(Collections.singletonList(backup));
+        if ( manifest != null )
+        {
+            manifest.removed(backup);
+        }
+    }
+
+    /**
+     * Providers that can't bulk delete have the backups deleted one at a time.
+     */
+    private void deleteBackups(BackupProvider provider, List<BackupMetaData> backups, Map<String, String> config) throws Exception
+    {
+        if ( backups.isEmpty() )
+        {
+            return;
+        }
+
+        if ( provider instanceof BulkDeleteBackupProvider )
+        {
+            List<BackupMetaData>    deleted = ((BulkDeleteBackupProvider)provider).deleteBackups(exhibitor, backups, config);
+            uncache(deleted);
+            if ( manifest != null )
+            {
+                manifest.removed(deleted);
+            }
+        }
+        else
+        {
+            for ( BackupMetaData backup : backups )
+            {
+                deleteBackup(provider, backup, config);
+            }
+        }
+    }
+
+    private void deleteSegments(BackupProvider provider, String logName, Map<String, String> config) throws Exception
+    {
+        List<BackupMetaData>    segments = Lists.newArrayList();
+        for ( BackupMetaData backup : getStoredBackups(provider, config) )
+        {
+            if ( DeltaBackups.isSegmentOf(backup, logName) )
+            {
+                segments.add(backup);
+            }
+        }
+        deleteBackups(provider, segments, config);
+    }
+
+    /**
+     * The given range of the log is compressed while it is being uploaded. Backups already in the
+     * manifest with the same size are skipped without asking the provider.
+     */
+    private BackupProvider.UploadResult upload(BackupProvider provider, BackupMetaData metaData, File f, long start, long end, Map<String, String> config) throws Exception
+    {
+        long                        size = Math.min(end, f.length()) - start;
+        BackupManifest.Entry        entry = (manifest != null) ? manifest.get(metaData) : null;
+        if ( (entry != null) && ((entry.getSize() < 0) || (entry.getSize() == size)) )
+        {
+            return BackupProvider.UploadResult.DUPLICATE;
+        }
 
-                    case REPLACED_OLD_VERSION:
+        HashingChannel              compressed = new HashingChannel(new ParallelGzipChannel(f, start, end, compressionService, COMPRESSION_THREAD_QTY));
+        BackupProvider.UploadResult result;
+        try
+        {
+            result = upload(provider, metaData, compressed, config);
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(compressed);
+        }
+
+        if ( (manifest != null) && (result != BackupProvider.UploadResult.FAILED) )
+        {
+            if ( result != BackupProvider.UploadResult.DUPLICATE )
+            {
+                // the provider replaces old versions
+                for ( BackupMetaData version : manifest.getVersions(metaData.getName()) )
+                {
+                    if ( !version.equals(metaData) )
                     {
-                        exhibitor.getLog().add(ActivityLog.Type.DEBUG, "Updated back up for: " + f);
-                        break;
+                        manifest.removed(version);
                     }
                 }
             }
-            finally
+            // a duplicate wasn't uploaded so what was read isn't necessarily the stored object
+            manifest.added(metaData, size, (result != BackupProvider.UploadResult.DUPLICATE) ? compressed.getHash() : null);
+        }
+        return result;
+    }
+
+    /**
+     * Providers that can't stream are given a compressed temp file instead.
+     */
+    private BackupProvider.UploadResult upload(BackupProvider provider, BackupMetaData metaData, ReadableByteChannel compressed, Map<String, String> config) throws Exception
+    {
+        if ( provider instanceof StreamingBackupProvider )
+        {
+            List<BackupMetaData>    availableBackups = (manifest != null) ? manifest.getBackups() : null;
+            return ((StreamingBackupProvider)provider).uploadBackupStream(exhibitor, metaData, compressed, availableBackups, config);
+        }
+
+        File        tempFile = File.createTempFile("exhibitor", ".tmp");
+        try
+        {
+            FileChannel     out = new FileOutputStream(tempFile).getChannel();
+            try
             {
-                if ( !tempCompressedFile.getTempFile().delete() )
+                // the channel never returns 0 bytes before its end
+                for ( long position = 0, count; (count = out.transferFrom(compressed, position, TRANSFER_SIZE)) > 0; position += count )
                 {
-                    exhibitor.getLog().add(ActivityLog.Type.ERROR, "Could not delete temp file: " + tempCompressedFile.getTempFile());
+                    // keep transferring
                 }
             }
+            finally
+            {
+                CloseableUtils.closeQuietly(out);
+            }
+            return provider.uploadBackup(exhibitor, metaData, tempFile, config);
+        }
+        finally
+        {
+            if ( !tempFile.delete() )
+            {
+                exhibitor.getLog().add(ActivityLog.Type.ERROR, "Could not delete temp file: " + tempFile);
+            }
         }
-
-        doRoll(config);
     }
 
     private Map<String, String> getBackupConfig()
@@ -295,16 +907,14 @@ public class BackupManager implements Closeable
 
         exhibitor.getLog().add(ActivityLog.Type.DEBUG, "Checking for elapsed backups");
 
-        List<BackupMetaData>        availableBackups = backupProvider.get().getAvailableBackups(exhibitor, config);
-        for ( BackupMetaData backup : availableBackups )
+        // a base and its segments are expired together so that no segment is left without its base
+        long                        oldestDate = System.currentTimeMillis() - exhibitor.getConfigManager().getConfig().getInt(IntConfigs.BACKUP_MAX_STORE_MS);
+        List<BackupMetaData>        expiredBackups = DeltaBackups.getExpired(getStoredBackups(backupProvider.get(), config), oldestDate);
+        for ( BackupMetaData backup : expiredBackups )
         {
-            long        age = System.currentTimeMillis() - backup.getModifiedDate();
-            if ( age > exhibitor.getConfigManager().getConfig().getInt(IntConfigs.BACKUP_MAX_STORE_MS) )
-            {
-                exhibitor.getLog().add(ActivityLog.Type.DEBUG, "Cleaning backup: " + backup);
-                backupProvider.get().deleteBackup(exhibitor, backup, config);
-            }
+            exhibitor.getLog().add(ActivityLog.Type.DEBUG, "Cleaning backup: " + backup);
         }
+        deleteBackups(backupProvider.get(), expiredBackups, config);
 
         lastRollCheck.set(System.currentTimeMillis());
     }
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.backup;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A local record of the objects in the backup store, so that duplicate checks, replacing old
+ * versions and rolling off old backups don't each need a listing of the store. The file is
+ * append-only: uploads and deletes each append a line. A reconcile replaces the entries with a
+ * listing of the store and rewrites the file. The delta backup state of the active log is kept here
+ * too so that it survives a restart. It's read by restores and index builds while backups update it.
+ */
+class BackupManifest
+{
+    private final File                              file;
+    private final Map<BackupMetaData, Entry>        entries = Maps.newLinkedHashMap();
+    private final Map<String, DeltaBackups.LogState> logStates = Maps.newLinkedHashMap();
+    private long                                    reconciledDate = 0;
+    private String                                  configHash = "";
+    private boolean                                 hasPartialLine = false;
+
+    private static final String     HEADER = "#";
+    private static final String     ADDED = "+";
+    private static final String     REMOVED = "-";
+    private static final String     LOG_STATE = "=";
+    private static final String     LOG_STATE_REMOVED = "~";
+    private static final String     SEPARATOR = "\t";
+    private static final int        VERSION = 1;
+    private static final long       UNKNOWN_SIZE = -1;
+    private static final String     UNKNOWN_HASH = "";
+
+    static class Entry
+    {
+        private final long      size;
+        private final String    hash;
+
+        Entry(long size, String hash)
+        {
+            this.size = size;
+            this.hash = hash;
+        }
+
+        /**
+         * @return size of the backed-up data or -1 if not known (i.e. found by a reconcile)
+         */
+        long getSize()
+        {
+            return size;
+        }
+
+        /**
+         * @return hex MD5 of the stored object or an empty string if not known
+         */
+        String getHash()
+        {
+            return hash;
+        }
+    }
+
+    /**
+     * @param file the manifest file. It's read if it exists.
+     * @throws IOException errors
+     */
+    BackupManifest(File file) throws IOException
+    {
+        this.file = file;
+
+        if ( file.exists() )
+        {
+            List<String>    lines = Lists.newArrayList(Splitter.on('\n').split(Files.toString(file, Charsets.UTF_8)));
+            String          partialLine = lines.remove(lines.size() - 1);
+            for ( String line : lines )
+            {
+                readLine(line);
+            }
+            if ( partialLine.length() > 0 )
+            {
+                hasPartialLine = true;  // the last write didn't complete - the file is rewritten by a reconcile
+            }
+        }
+    }
+
+    /**
+     * Return true if the entries were last reconciled for a different backup config, longer ago than the
+     * given period or the file needs to be rewritten
+     *
+     * @param currentConfigHash hash of the current backup config
+     * @param periodMs reconcile period
+     * @return true/false
+     */
+    synchronized boolean     needsReconcile(String currentConfigHash, long periodMs)
+    {
+        return hasPartialLine || !configHash.equals(currentConfigHash) || ((System.currentTimeMillis() - reconciledDate) >= periodMs);
+    }
+
+    /**
+     * Replace the entries with the given listing of the store. Sizes and hashes are kept for objects
+     * that are already known. Delta backup states are dropped if the config has changed.
+     *
+     * @param backups the store's objects
+     * @param currentConfigHash hash of the backup config the listing is for
+     * @throws IOException errors
+     */
+    synchronized void        reconcile(List<BackupMetaData> backups, String currentConfigHash) throws IOException
+    {
+        boolean                         sameConfig = configHash.equals(currentConfigHash);
+        Map<BackupMetaData, Entry>      newEntries = Maps.newLinkedHashMap();
+        for ( BackupMetaData backup : backups )
+        {
+            Entry       entry = sameConfig ? entries.get(backup) : null;
+            newEntries.put(backup, (entry != null) ? entry : new Entry(UNKNOWN_SIZE, UNKNOWN_HASH));
+        }
+        entries.clear();
+        entries.putAll(newEntries);
+        if ( !sameConfig )
+        {
+            logStates.clear();
+        }
+        reconciledDate = System.currentTimeMillis();
+        configHash = currentConfigHash;
+        hasPartialLine = false;
+
+        StringBuilder   contents = new StringBuilder();
+        contents.append(HEADER).append(SEPARATOR).append(VERSION).append(SEPARATOR).append(reconciledDate).append(SEPARATOR).append(configHash).append('\n');
+        for ( Map.Entry<BackupMetaData, Entry> entry : entries.entrySet() )
+        {
+            contents.append(addedLine(entry.getKey(), entry.getValue()));
+        }
+        for ( Map.Entry<String, DeltaBackups.LogState> entry : logStates.entrySet() )
+        {
+            contents.append(logStateLine(entry.getKey(), entry.getValue()));
+        }
+
+        File        tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        Files.write(contents, tempFile, Charsets.UTF_8);
+        Files.move(tempFile, file);
+    }
+
+    /**
+     * @param backup the backup
+     * @return its entry or null if the backup isn't in the store
+     */
+    synchronized Entry       get(BackupMetaData backup)
+    {
+        return entries.get(backup);
+    }
+
+    /**
+     * @return all objects in the store
+     */
+    synchronized List<BackupMetaData>    getBackups()
+    {
+        return ImmutableList.copyOf(entries.keySet());
+    }
+
+    /**
+     * @param name backup name
+     * @return the stored versions of the given backup
+     */
+    synchronized List<BackupMetaData>    getVersions(String name)
+    {
+        List<BackupMetaData>    versions = Lists.newArrayList();
+        for ( BackupMetaData backup : entries.keySet() )
+        {
+            if ( backup.getName().equals(name) )
+            {
+                versions.add(backup);
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Record an object that was uploaded
+     *
+     * @param backup the backup
+     * @param size size of the backed-up data
+     * @param hash hex MD5 of the stored object or null if not known
+     * @throws IOException errors
+     */
+    synchronized void        added(BackupMetaData backup, long size, String hash) throws IOException
+    {
+        Entry       entry = new Entry(size, (hash != null) ? hash : UNKNOWN_HASH);
+        entries.put(backup, entry);
+        Files.append(addedLine(backup, entry), file, Charsets.UTF_8);
+    }
+
+    /**
+     * Record an object that was deleted
+     *
+     * @param backup the backup
+     * @throws IOException errors
+     */
+    synchronized void        removed(BackupMetaData backup) throws IOException
+    {
+        removed(Collections.singletonList(backup));
+    }
+
+    /**
+     * Record objects that were deleted
+     *
+     * @param backups the backups
+     * @throws IOException errors
+     */
+    synchronized void        removed(Collection<BackupMetaData> backups) throws IOException
+    {
+        StringBuilder   lines = new StringBuilder();
+        for ( BackupMetaData backup : backups )
+        {
+            if ( entries.remove(backup) != null )
+            {
+                lines.append(REMOVED).append(SEPARATOR).append(backup.getModifiedDate()).append(SEPARATOR).append(backup.getName()).append('\n');
+            }
+        }
+        if ( lines.length() > 0 )
+        {
+            Files.append(lines, file, Charsets.UTF_8);
+        }
+    }
+
+    /**
+     * @return the delta backup state of each log
+     */
+    synchronized Map<String, DeltaBackups.LogState>  getLogStates()
+    {
+        return ImmutableMap.copyOf(logStates);
+    }
+
+    /**
+     * Record the delta backup state of a log
+     *
+     * @param logName the log
+     * @param state its state
+     * @throws IOException errors
+     */
+    synchronized void        setLogState(String logName, DeltaBackups.LogState state) throws IOException
+    {
+        logStates.put(logName, state);
+        Files.append(logStateLine(logName, state), file, Charsets.UTF_8);
+    }
+
+    /**
+     * Record that a log no longer has a delta backup state
+     *
+     * @param logName the log
+     * @throws IOException errors
+     */
+    synchronized void        removeLogState(String logName) throws IOException
+    {
+        if ( logStates.remove(logName) != null )
+        {
+            Files.append(LOG_STATE_REMOVED + SEPARATOR + logName + '\n', file, Charsets.UTF_8);
+        }
+    }
+
+    private static String logStateLine(String logName, DeltaBackups.LogState state)
+    {
+        return LOG_STATE + SEPARATOR + state.getModifiedDate() + SEPARATOR + state.getOffset() + SEPARATOR + state.getZxid() + SEPARATOR + logName + '\n';
+    }
+
+    private static String addedLine(BackupMetaData backup, Entry entry)
+    {
+        return ADDED + SEPARATOR + backup.getModifiedDate() + SEPARATOR + entry.getSize() + SEPARATOR + entry.getHash() + SEPARATOR + backup.getName() + '\n';
+    }
+
+    private void readLine(String line)
+    {
+        List<String>    parts = Lists.newArrayList(Splitter.on(SEPARATOR).split(line));
+        try
+        {
+            if ( parts.get(0).equals(HEADER) && (parts.size() == 4) && (Integer.parseInt(parts.get(1)) == VERSION) )
+            {
+                reconciledDate = Long.parseLong(parts.get(2));
+                configHash = parts.get(3);
+            }
+            else if ( parts.get(0).equals(ADDED) && (parts.size() == 5) )
+            {
+                entries.put(new BackupMetaData(parts.get(4), Long.parseLong(parts.get(1))), new Entry(Long.parseLong(parts.get(2)), parts.get(3)));
+            }
+            else if ( parts.get(0).equals(REMOVED) && (parts.size() == 3) )
+            {
+                entries.remove(new BackupMetaData(parts.get(2), Long.parseLong(parts.get(1))));
+            }
+            else if ( parts.get(0).equals(LOG_STATE) && (parts.size() == 5) )
+            {
+                logStates.put(parts.get(4), new DeltaBackups.LogState(Long.parseLong(parts.get(1)), Long.parseLong(parts.get(2)), Long.parseLong(parts.get(3))));
+            }
+            else if ( parts.get(0).equals(LOG_STATE_REMOVED) && (parts.size() == 2) )
+            {
+                logStates.remove(parts.get(1));
+            }
+        }
+        catch ( NumberFormatException e )
+        {
+            // ignore
+        }
+    }
+}
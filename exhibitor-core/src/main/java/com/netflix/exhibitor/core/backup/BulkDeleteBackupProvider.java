@@ -0,0 +1,40 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.backup;
+
+import com.netflix.exhibitor.core.Exhibitor;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link BackupProvider} that can delete many backups at once. Other providers have their
+ * backups deleted one at a time.
+ */
+public interface BulkDeleteBackupProvider extends BackupProvider
+{
+    /**
+     * Delete the given backups. Unlike {@link #deleteBackup(Exhibitor, BackupMetaData, Map)} a failure
+     * to delete some of them doesn't stop the others being deleted.
+     *
+     * @param exhibitor instance
+     * @param backups backups to delete
+     * @param configValues values for provider-specific config
+     * @return the backups that were deleted
+     * @throws Exception errors
+     */
+    public List<BackupMetaData> deleteBackups(Exhibitor exhibitor, List<BackupMetaData> backups, Map<String, String> configValues) throws Exception;
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.backup;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.netflix.exhibitor.core.index.LogEntryReceiver;
+import com.netflix.exhibitor.core.index.ZooKeeperLogParser;
+import org.apache.jute.Record;
+import org.apache.zookeeper.txn.TxnHeader;
+import java.io.File;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bookkeeping for delta backups of the active transaction log. The first backup of a log is a
+ * base object holding its transactions so far. Later backups are segment objects that hold only the
+ * transactions appended since - named <code>[log].segment-[offset]</code>. Each piece is a
+ * complete gzip stream so a base followed by its segments decompresses to the log's transactions.
+ * Once the log rolls it is uploaded in full again and its segments are deleted.
+ */
+class DeltaBackups
+{
+    private final Map<String, LogState>                     logStates = Maps.newHashMap();
+    private volatile Map<BackupMetaData, List<BackupMetaData>> pieces = ImmutableMap.of();
+
+    private static final String     SEGMENT_SEPARATOR = ".segment-";
+
+    static class LogState
+    {
+        private final long      modifiedDate;
+        private final long      offset;
+        private final long      zxid;
+
+        LogState(long modifiedDate, long offset, long zxid)
+        {
+            this.modifiedDate = modifiedDate;
+            this.offset = offset;
+            this.zxid = zxid;
+        }
+
+        long getModifiedDate()
+        {
+            return modifiedDate;
+        }
+
+        long getOffset()
+        {
+            return offset;
+        }
+
+        long getZxid()
+        {
+            return zxid;
+        }
+    }
+
+    static String       getSegmentName(String logName, long offset)
+    {
+        return logName + SEGMENT_SEPARATOR + offset;
+    }
+
+    static boolean      isSegmentOf(BackupMetaData backup, String logName)
+    {
+        return backup.getName().startsWith(logName + SEGMENT_SEPARATOR);
+    }
+
+    /**
+     * Parse the log from the given offset (which must be the start of a transaction) and return
+     * the state just past its last complete transaction
+     *
+     * @param log the log
+     * @param modifiedDate the log's modified date
+     * @param from offset to start from - 0 for the start of the log
+     * @return the new state or null if the log isn't valid
+     * @throws Exception errors
+     */
+    static LogState     findEnd(File log, long modifiedDate, long from) throws Exception
+    {
+        ZooKeeperLogParser      parser = new ZooKeeperLogParser(log);
+        if ( !parser.isValid() || !parser.skipTo(from) )
+        {
+            return null;
+        }
+
+        final long[]            zxid = new long[]{-1};
+        parser.parse
+        (
+            new LogEntryReceiver()
+            {
+                @Override
+                public void receiveEntry(TxnHeader header, Record record) throws Exception
+                {
+                    zxid[0] = Math.max(zxid[0], header.getZxid());
+                }
+            }
+        );
+        return new LogState(modifiedDate, parser.getPosition(), zxid[0]);
+    }
+
+    LogState    getState(String logName)
+    {
+        return logStates.get(logName);
+    }
+
+    void        setState(String logName, LogState state)
+    {
+        logStates.put(logName, state);
+    }
+
+    LogState    removeState(String logName)
+    {
+        return logStates.remove(logName);
+    }
+
+    Set<String> getLogNames()
+    {
+        return ImmutableSet.copyOf(logStates.keySet());
+    }
+
+    /**
+     * Fold the provider's objects into one logical backup per log. Segments are matched to the latest
+     * base of their log that's older than they are - others are left over from an earlier base and
+     * are skipped. The logical backup is dated with its newest piece.
+     *
+     * @param backups the provider's objects
+     * @return logical backups
+     */
+    List<BackupMetaData>    fold(List<BackupMetaData> backups)
+    {
+        Map<String, List<BackupMetaData>>                           groups = group(backups);
+        ImmutableList.Builder<BackupMetaData>                       logical = ImmutableList.builder();
+        ImmutableMap.Builder<BackupMetaData, List<BackupMetaData>>  newPieces = ImmutableMap.builder();
+        for ( BackupMetaData backup : backups )
+        {
+            if ( backup.getName().contains(SEGMENT_SEPARATOR) )
+            {
+                continue;
+            }
+
+            List<BackupMetaData>    logPieces = groups.get(backup.getName());
+            if ( (logPieces.get(0) != backup) || (logPieces.size() == 1) )
+            {
+                logical.add(backup);    // older versions and bases without segments are listed as-is
+                continue;
+            }
+
+            BackupMetaData      folded = new BackupMetaData(backup.getName(), getNewestDate(logPieces));
+            logical.add(folded);
+            newPieces.put(folded, logPieces);
+        }
+
+        pieces = newPieces.build();
+        return logical.build();
+    }
+
+    /**
+     * Return the provider's objects that are older than the given date. A base and the segments
+     * matched to it are expired together once the newest of them is - a segment can't outlive the
+     * base it applies to and a base isn't removed while it has newer segments.
+     *
+     * @param backups the provider's objects
+     * @param oldestDate objects (or base/segment groups) last modified before this are expired
+     * @return expired objects
+     */
+    static List<BackupMetaData> getExpired(List<BackupMetaData> backups, long oldestDate)
+    {
+        List<BackupMetaData>    expired = Lists.newArrayList();
+        Set<BackupMetaData>     grouped = Sets.newHashSet();
+        for ( List<BackupMetaData> logPieces : group(backups).values() )
+        {
+            grouped.addAll(logPieces);
+            if ( getNewestDate(logPieces) < oldestDate )
+            {
+                expired.addAll(logPieces);
+            }
+        }
+        for ( BackupMetaData backup : backups )
+        {
+            if ( !grouped.contains(backup) && (backup.getModifiedDate() < oldestDate) )
+            {
+                expired.add(backup);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Map each log to the latest version of its base followed by the segments that are newer than
+     * it, in log order. Logs that only have segments are left out.
+     */
+    private static Map<String, List<BackupMetaData>> group(List<BackupMetaData> backups)
+    {
+        Map<String, BackupMetaData>         bases = Maps.newHashMap();
+        Map<String, List<BackupMetaData>>   segments = Maps.newHashMap();
+        for ( BackupMetaData backup : backups )
+        {
+            int         separatorIndex = backup.getName().lastIndexOf(SEGMENT_SEPARATOR);
+            if ( separatorIndex >= 0 )
+            {
+                String                  logName = backup.getName().substring(0, separatorIndex);
+                List<BackupMetaData>    logSegments = segments.get(logName);
+                if ( logSegments == null )
+                {
+                    logSegments = Lists.newArrayList();
+                    segments.put(logName, logSegments);
+                }
+                logSegments.add(backup);
+            }
+            else
+            {
+                BackupMetaData      existing = bases.get(backup.getName());
+                if ( (existing == null) || (existing.getModifiedDate() < backup.getModifiedDate()) )
+                {
+                    bases.put(backup.getName(), backup);
+                }
+            }
+        }
+
+        Map<String, List<BackupMetaData>>   groups = Maps.newHashMap();
+        for ( BackupMetaData base : bases.values() )
+        {
+            List<BackupMetaData>    logPieces = Lists.newArrayList();
+            List<BackupMetaData>    logSegments = segments.get(base.getName());
+            if ( logSegments != null )
+            {
+                for ( BackupMetaData segment : logSegments )
+                {
+                    if ( segment.getModifiedDate() > base.getModifiedDate() )
+                    {
+                        logPieces.add(segment);
+                    }
+                }
+                Collections.sort(logPieces, SEGMENT_ORDER);
+            }
+            logPieces.add(0, base);
+            groups.put(base.getName(), ImmutableList.copyOf(logPieces));
+        }
+        return groups;
+    }
+
+    private static long getNewestDate(List<BackupMetaData> logPieces)
+    {
+        long        newestDate = 0;
+        for ( BackupMetaData piece : logPieces )
+        {
+            newestDate = Math.max(newestDate, piece.getModifiedDate());
+        }
+        return newestDate;
+    }
+
+    /**
+     * Return the objects that make up a logical backup as of the last {@link #fold(List)}
+     *
+     * @param backup the logical backup
+     * @return the pieces in order or null if the backup was not folded from several pieces
+     */
+    List<BackupMetaData>    getPieces(BackupMetaData backup)
+    {
+        return pieces.get(backup);
+    }
+
+    private static long getSegmentOffset(BackupMetaData segment)
+    {
+        String      name = segment.getName();
+        try
+        {
+            return Long.parseLong(name.substring(name.lastIndexOf(SEGMENT_SEPARATOR) + SEGMENT_SEPARATOR.length()));
+        }
+        catch ( NumberFormatException e )
+        {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static final Comparator<BackupMetaData> SEGMENT_ORDER = new Comparator<BackupMetaData>()
+    {
+        @Override
+        public int compare(BackupMetaData o1, BackupMetaData o2)
+        {
+            long diff = getSegmentOffset(o1) - getSegmentOffset(o2);
+            return (diff < 0) ? -1 : ((diff > 0) ? 1 : 0);
+        }
+    };
+}
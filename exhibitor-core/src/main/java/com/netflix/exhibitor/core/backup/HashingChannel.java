@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.backup;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Hashes the bytes that are read through it
+ */
+class HashingChannel implements ReadableByteChannel
+{
+    private final ReadableByteChannel   channel;
+    private final Hasher                hasher = Hashing.md5().newHasher();
+    private String                      hash = null;
+
+    HashingChannel(ReadableByteChannel channel)
+    {
+        this.channel = channel;
+    }
+
+    /**
+     * @return hex MD5 of the bytes read or null if the channel hasn't been read to its end
+     */
+    String  getHash()
+    {
+        return hash;
+    }
+
+    @Override
+    public int read(ByteBuffer destination) throws IOException
+    {
+        int         start = destination.position();
+        int         count = channel.read(destination);
+        if ( count > 0 )
+        {
+            ByteBuffer  read = destination.duplicate();
+            read.flip();
+            read.position(start);
+            byte[]      bytes = new byte[count];
+            read.get(bytes);
+            hasher.putBytes(bytes);
+        }
+        else if ( (count < 0) && (hash == null) )
+        {
+            hash = hasher.hash().toString();
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.backup;
+
+import com.netflix.exhibitor.core.Exhibitor;
+import java.util.Map;
+
+/**
+ * A {@link BackupProvider} whose config decides where backups are stored, so that existing backups
+ * must be moved when it changes. Backups that haven't been moved aren't listed, restored or rolled off.
+ */
+public interface MigratingBackupProvider extends BackupProvider
+{
+    /**
+     * Move every backup that isn't where the given config stores it. It's safe to run again - e.g.
+     * once every instance has the new config, in case one stored a backup with the old config.
+     *
+     * @param exhibitor instance
+     * @param configValues values for provider-specific config
+     * @return the number of backups moved
+     * @throws Exception errors
+     */
+    public int      migrateBackups(Exhibitor exhibitor, Map<String, String> configValues) throws Exception;
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.backup;
+
+import com.google.common.collect.Lists;
+import org.apache.curator.utils.CloseableUtils;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The gzip compressed contents of a file (or a region of it). The file is read in fixed size blocks and each block
+ * is compressed on the given executor as a separate gzip member (as pigz does). Blocks are read ahead of the
+ * consumer so that reading, compressing and consuming (i.e. uploading) overlap. Nothing is read until the first
+ * call to {@link #read(ByteBuffer)}. Concatenated members are a valid gzip stream but {@link java.util.zip.GZIPInputStream}
+ * stops after a member unless its source reports more bytes as available - which downloads and pipes often don't -
+ * so the output must be decoded with {@link com.netflix.exhibitor.core.index.GzipMembersInputStream}.
+ */
+public class ParallelGzipChannel implements ReadableByteChannel
+{
+    private final File                      source;
+    private final long                      end;
+    private final ExecutorService           service;
+    private final int                       blockSize;
+    private final int                       maxBlocksInFlight;
+    private final LinkedList<Future<byte[]>> pending = Lists.newLinkedList();
+
+    private FileChannel     channel;
+    private long            position;
+    private ByteBuffer      current;
+    private int             blockQty = 0;
+    private boolean         sourceIsDone = false;
+    private boolean         isOpen = true;
+
+    private static final int        DEFAULT_BLOCK_SIZE = 1024 * 1024;   // 1 MB
+    private static final int        BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * @param source file to compress
+     * @param service executor for compressing blocks
+     * @param threadQty the number of threads in the executor
+     */
+    public ParallelGzipChannel(File source, ExecutorService service, int threadQty)
+    {
+        this(source, 0, Long.MAX_VALUE, service, threadQty);
+    }
+
+    /**
+     * @param source file to compress
+     * @param start offset of the first byte to compress
+     * @param end offset just past the last byte to compress (or past the end of the file)
+     * @param service executor for compressing blocks
+     * @param threadQty the number of threads in the executor
+     */
+    public ParallelGzipChannel(File source, long start, long end, ExecutorService service, int threadQty)
+    {
+        this(source, start, end, service, DEFAULT_BLOCK_SIZE, 2 * threadQty);
+    }
+
+    ParallelGzipChannel(File source, long start, long end, ExecutorService service, int blockSize, int maxBlocksInFlight)
+    {
+        this.source = source;
+        this.position = start;
+        this.end = end;
+        this.service = service;
+        this.blockSize = blockSize;
+        this.maxBlocksInFlight = Math.max(1, maxBlocksInFlight);
+    }
+
+    @Override
+    public int read(ByteBuffer destination) throws IOException
+    {
+        if ( !isOpen )
+        {
+            throw new ClosedChannelException();
+        }
+        if ( channel == null )
+        {
+            channel = new FileInputStream(source).getChannel();
+        }
+
+        while ( (current == null) || !current.hasRemaining() )
+        {
+            readAhead();
+            Future<byte[]>  next = pending.poll();
+            if ( next == null )
+            {
+                return -1;
+            }
+            current = ByteBuffer.wrap(get(next));
+        }
+
+        int         count = Math.min(destination.remaining(), current.remaining());
+        ByteBuffer  slice = current.duplicate();
+        slice.limit(slice.position() + count);
+        destination.put(slice);
+        current.position(current.position() + count);
+        return count;
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return isOpen;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        isOpen = false;
+        for ( Future<byte[]> future : pending )
+        {
+            future.cancel(true);
+        }
+        pending.clear();
+        CloseableUtils.closeQuietly(channel);
+    }
+
+    private void readAhead() throws IOException
+    {
+        while ( !sourceIsDone && (pending.size() < maxBlocksInFlight) )
+        {
+            ByteBuffer      block = ByteBuffer.allocate((int)Math.min(blockSize, end - position));
+            while ( block.hasRemaining() )
+            {
+                int     count = channel.read(block, position);
+                if ( count < 0 )
+                {
+                    break;
+                }
+                position += count;
+            }
+            if ( block.hasRemaining() || (position >= end) )
+            {
+                sourceIsDone = true;
+                if ( (block.position() == 0) && (blockQty > 0) )
+                {
+                    break;  // an empty file is still written as one (empty) member
+                }
+            }
+
+            final byte[]    bytes = block.array();
+            final int       length = block.position();
+            ++blockQty;
+            pending.add
+            (
+                service.submit
+                (
+                    new Callable<byte[]>()
+                    {
+                        @Override
+                        public byte[] call() throws Exception
+                        {
+                            return compress(bytes, length);
+                        }
+                    }
+                )
+            );
+        }
+    }
+
+    private static byte[] compress(byte[] bytes, int length) throws IOException
+    {
+        ByteArrayOutputStream   out = new ByteArrayOutputStream(length / 2);
+        GZIPOutputStream        gzip = new GZIPOutputStream(out, BUFFER_SIZE);
+        gzip.write(bytes, 0, length);
+        gzip.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] get(Future<byte[]> future) throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable   cause = e.getCause();
+            throw (cause instanceof IOException) ? (IOException)cause : new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.backup;
+
+import com.netflix.exhibitor.core.Exhibitor;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link BackupProvider} that can upload a backup as it is being produced. Backups for other
+ * providers are first written to a temp file.
+ */
+public interface StreamingBackupProvider extends BackupProvider
+{
+    /**
+     * Upload an object into the backup. Unlike {@link #uploadBackup(Exhibitor, BackupMetaData, java.io.File, Map)}
+     * the length of the object isn't known until the source has been read to its end.
+     *
+     * @param exhibitor instance
+     * @param metaData identity of the backup
+     * @param source the object's bytes. The source is not closed. If the backup is a duplicate, the source need not be read at all.
+     * @param availableBackups the stored backups as known to the caller (used to find duplicates and old versions)
+     *                         or null to have the provider list them
+     * @param configValues values for provider-specific config
+     * @return the upload result
+     * @throws Exception any errors
+     */
+    public UploadResult uploadBackupStream(Exhibitor exhibitor, BackupMetaData metaData, ReadableByteChannel source, List<BackupMetaData> availableBackups, Map<String, String> configValues) throws Exception;
+}
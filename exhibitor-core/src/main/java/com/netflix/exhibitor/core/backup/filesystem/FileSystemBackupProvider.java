@@ -16,30 +16,47 @@
 
 package com.netflix.exhibitor.core.backup.filesystem;
 
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
 import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.netflix.exhibitor.core.backup.BackupMetaData;
-import com.netflix.exhibitor.core.backup.BackupProvider;
 import com.netflix.exhibitor.core.Exhibitor;
 import com.netflix.exhibitor.core.activity.ActivityLog;
 import com.netflix.exhibitor.core.backup.BackupConfigSpec;
 import com.netflix.exhibitor.core.backup.BackupStream;
+import com.netflix.exhibitor.core.backup.BulkDeleteBackupProvider;
+import com.netflix.exhibitor.core.backup.StreamingBackupProvider;
+import org.apache.curator.utils.CloseableUtils;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-public class FileSystemBackupProvider implements BackupProvider
+public class FileSystemBackupProvider implements StreamingBackupProvider, BulkDeleteBackupProvider
 {
     private static final BackupConfigSpec CONFIG_DIRECTORY = new BackupConfigSpec("directory", "Destination Path", "The path of the directory where backups are written to", "", BackupConfigSpec.Type.STRING);
 
     private static final List<BackupConfigSpec> BACKUP_CONFIGS = Arrays.asList(CONFIG_DIRECTORY);
 
+    private static final long       TRANSFER_SIZE = 1024 * 1024;
+    private static final int        SWEEP_THREAD_QTY = 4;
+
     @Override
     public List<BackupConfigSpec> getConfigs()
     {
@@ -55,6 +72,20 @@ public class FileSystemBackupProvider implements BackupProvider
 
     @Override
     public UploadResult uploadBackup(Exhibitor exhibitor, BackupMetaData backup, File source, Map<String, String> configValues) throws Exception
+    {
+        FileChannel     in = new FileInputStream(source).getChannel();
+        try
+        {
+            return uploadBackupStream(exhibitor, backup, in, null, configValues);
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(in);
+        }
+    }
+
+    @Override
+    public UploadResult uploadBackupStream(Exhibitor exhibitor, BackupMetaData backup, ReadableByteChannel source, List<BackupMetaData> availableBackups, Map<String, String> configValues) throws Exception
     {
         String      path = configValues.get(CONFIG_DIRECTORY.getKey());
         if ( path == null )
@@ -76,20 +107,54 @@ public class FileSystemBackupProvider implements BackupProvider
             return UploadResult.FAILED;
         }
 
-        List<BackupMetaData>    availableBackups = getAvailableBackups(exhibitor, configValues);
+        if ( availableBackups == null )
+        {
+            availableBackups = getAvailableBackups(exhibitor, configValues);
+        }
 
-        Files.copy(source, destinationFile);
+        // written to the top level directory (which getAvailableBackups() ignores files in) and then moved into place
+        File            tempFile = File.createTempFile("exhibitor", ".tmp", directory);
+        FileChannel     out = new FileOutputStream(tempFile).getChannel();
+        boolean         success = false;
+        try
+        {
+            // the source only returns 0 bytes at its end
+            for ( long position = 0, count; (count = out.transferFrom(source, position, TRANSFER_SIZE)) > 0; position += count )
+            {
+                // keep transferring
+            }
+            CloseableUtils.closeQuietly(out);
+            success = tempFile.renameTo(destinationFile);
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(out);
+            if ( !success )
+            {
+                //noinspection ResultOfMethodCallIgnored
+                tempFile.delete();
+            }
+        }
+        if ( !success )
+        {
+            exhibitor.getLog().add(ActivityLog.Type.ERROR, "Could not move backup into place: " + destinationFile);
+            return UploadResult.FAILED;
+        }
 
-        UploadResult        result = UploadResult.SUCCEEDED;
+        List<BackupMetaData>    oldVersions = Lists.newArrayList();
         for ( BackupMetaData existing : availableBackups )
         {
             if ( existing.getName().equals(backup.getName()) )
             {
-                deleteBackup(exhibitor, existing, configValues);
-                result = UploadResult.REPLACED_OLD_VERSION;
+                oldVersions.add(existing);
             }
         }
-        return result;
+        if ( oldVersions.isEmpty() )
+        {
+            return UploadResult.SUCCEEDED;
+        }
+        deleteBackups(exhibitor, oldVersions, configValues);
+        return UploadResult.REPLACED_OLD_VERSION;
     }
 
     @Override
@@ -140,6 +205,62 @@ public class FileSystemBackupProvider implements BackupProvider
         }
     }
 
+    /**
+     * The backups are grouped by their name directory and the directories are swept in parallel
+     */
+    @Override
+    public List<BackupMetaData> deleteBackups(final Exhibitor exhibitor, List<BackupMetaData> backups, Map<String, String> configValues) throws Exception
+    {
+        final File                                  directory = new File(configValues.get(CONFIG_DIRECTORY.getKey()));
+        Multimap<String, BackupMetaData>            byName = ArrayListMultimap.create();
+        for ( BackupMetaData backup : backups )
+        {
+            byName.put(backup.getName(), backup);
+        }
+
+        ExecutorService                             service = Executors.newFixedThreadPool(Math.max(1, Math.min(SWEEP_THREAD_QTY, byName.keySet().size())), new ThreadFactoryBuilder().setDaemon(true).setNameFormat("FileSystemBackupProvider-sweep-%d").build());
+        try
+        {
+            List<Future<List<BackupMetaData>>>      futures = Lists.newArrayList();
+            for ( final Map.Entry<String, Collection<BackupMetaData>> entry : byName.asMap().entrySet() )
+            {
+                futures.add(service.submit(new Callable<List<BackupMetaData>>()
+                {
+                    @Override
+                    public List<BackupMetaData> call() throws Exception
+                    {
+                        File                    nameDirectory = new File(directory, entry.getKey());
+                        List<BackupMetaData>    deleted = Lists.newArrayList();
+                        for ( BackupMetaData backup : entry.getValue() )
+                        {
+                            File        destinationFile = new File(nameDirectory, Long.toString(backup.getModifiedDate()));
+                            if ( destinationFile.delete() )
+                            {
+                                deleted.add(backup);
+                            }
+                            else
+                            {
+                                exhibitor.getLog().add(ActivityLog.Type.ERROR, "Could not delete old backup: " + destinationFile);
+                            }
+                        }
+                        return deleted;
+                    }
+                }));
+            }
+
+            List<BackupMetaData>                    deleted = Lists.newArrayList();
+            for ( Future<List<BackupMetaData>> future : futures )
+            {
+                deleted.addAll(future.get());
+            }
+            return deleted;
+        }
+        finally
+        {
+            service.shutdownNow();
+        }
+    }
+
     @Override
     public BackupStream getBackupStream(Exhibitor exhibitor, BackupMetaData backup, Map<String, String> configValues) throws Exception
     {
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.backup.s3;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs transfers once their {@link TokenBucket} allows. A deferred transfer waits on a timer rather
+ * than holding a thread.
+ */
+class PacedExecutor
+{
+    private final ExecutorService               service;
+    private final ScheduledExecutorService      timer;
+
+    /**
+     * @param name prefix for thread names
+     */
+    PacedExecutor(String name)
+    {
+        service = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true).setNameFormat(name + "-transfer-%d").build());
+        timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true).setNameFormat(name + "-pacing-%d").build());
+    }
+
+    /**
+     * Submit a task that isn't paced, e.g. a listing
+     *
+     * @param task the task
+     * @return future
+     */
+    <T> Future<T>   submit(Callable<T> task)
+    {
+        return service.submit(task);
+    }
+
+    /**
+     * Submit a transfer. The returned future can't interrupt a deferred transfer that's been
+     * cancelled - the task should check for itself whether it's still needed.
+     *
+     * @param bucket bucket to reserve tokens from
+     * @param bytes size of the transfer
+     * @param task the transfer
+     * @return future
+     */
+    <T> Future<T>   submit(TokenBucket bucket, long bytes, final Callable<T> task)
+    {
+        long        delay = bucket.reserve(bytes);
+        if ( delay <= 0 )
+        {
+            return service.submit(task);
+        }
+
+        final SettableFuture<T>     future = SettableFuture.create();
+        timer.schedule
+        (
+            new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    service.submit
+                    (
+                        new Runnable()
+                        {
+                            @Override
+                            public void run()
+                            {
+                                try
+                                {
+                                    future.set(task.call());
+                                }
+                                catch ( Throwable e )
+                                {
+                                    future.setException(e);
+                                }
+                            }
+                        }
+                    );
+                }
+            },
+            delay,
+            TimeUnit.NANOSECONDS
+        );
+        return future;
+    }
+}
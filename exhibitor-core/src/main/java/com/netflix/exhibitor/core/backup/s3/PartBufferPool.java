@@ -0,0 +1,73 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.backup.s3;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Direct buffers for multipart upload parts. Direct buffers are expensive to allocate and are only
+ * freed by the GC so they are kept between uploads. Buffers of a different size than requested
+ * (i.e. the part size was changed) are dropped.
+ */
+class PartBufferPool
+{
+    private final Queue<ByteBuffer>     buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicInteger         pooledCount = new AtomicInteger(0);
+    private final int                   maxPooled;
+
+    /**
+     * @param maxPooled max number of idle buffers to keep
+     */
+    PartBufferPool(int maxPooled)
+    {
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * @param size buffer capacity
+     * @return a cleared buffer with the given capacity
+     */
+    ByteBuffer      acquire(int size)
+    {
+        ByteBuffer      buffer;
+        while ( (buffer = buffers.poll()) != null )
+        {
+            pooledCount.decrementAndGet();
+            if ( buffer.capacity() == size )
+            {
+                buffer.clear();
+                return buffer;
+            }
+        }
+        return ByteBuffer.allocateDirect(size);
+    }
+
+    void            release(ByteBuffer buffer)
+    {
+        if ( pooledCount.incrementAndGet() <= maxPooled )
+        {
+            buffers.offer(buffer);
+        }
+        else
+        {
+            pooledCount.decrementAndGet();
+        }
+    }
+}
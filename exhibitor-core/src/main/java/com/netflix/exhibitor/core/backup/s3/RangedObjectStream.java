@@ -0,0 +1,228 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.backup.s3;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.google.common.collect.Lists;
+import com.netflix.exhibitor.core.s3.S3Client;
+import org.apache.curator.RetryLoop;
+import org.apache.curator.RetryPolicy;
+import org.apache.curator.utils.CloseableUtils;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Reads an S3 object as a series of ranges that are fetched in parallel ahead of the reader. A
+ * range that fails part way through is retried from where it stopped rather than from its start.
+ * Each range reserves its bytes from a {@link TokenBucket} before it's fetched.
+ */
+class RangedObjectStream extends InputStream
+{
+    private final S3Client                      s3Client;
+    private final String                        bucket;
+    private final String                        key;
+    private final long                          length;
+    private final int                           rangeSize;
+    private final int                           maxRangesInFlight;
+    private final PacedExecutor                 transfers;
+    private final TokenBucket                   tokenBucket;
+    private final RetryPolicy                   retryPolicy;
+    private final LinkedList<Future<byte[]>>    pending = Lists.newLinkedList();
+
+    private volatile boolean    isOpen = true;
+
+    private long        nextStart = 0;
+    private byte[]      current = null;
+    private int         currentIndex = 0;
+
+    /**
+     * @param s3Client client
+     * @param bucket bucket
+     * @param key object key
+     * @param length the object's length
+     * @param rangeSize size of each range
+     * @param maxRangesInFlight maximum number of ranges fetched ahead of the reader
+     * @param transfers executor for fetching ranges
+     * @param tokenBucket bucket the ranges are paced by
+     * @param retryPolicy policy for each range
+     */
+    RangedObjectStream(S3Client s3Client, String bucket, String key, long length, int rangeSize, int maxRangesInFlight, PacedExecutor transfers, TokenBucket tokenBucket, RetryPolicy retryPolicy)
+    {
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+        this.key = key;
+        this.length = length;
+        this.rangeSize = rangeSize;
+        this.maxRangesInFlight = Math.max(1, maxRangesInFlight);
+        this.transfers = transfers;
+        this.tokenBucket = tokenBucket;
+        this.retryPolicy = retryPolicy;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        byte[]      b = new byte[1];
+        return (read(b, 0, 1) < 0) ? -1 : (b[0] & 0xff);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if ( len == 0 )
+        {
+            return 0;
+        }
+
+        while ( (current == null) || (currentIndex >= current.length) )
+        {
+            fetchAhead();
+            Future<byte[]>  next = pending.poll();
+            if ( next == null )
+            {
+                return -1;
+            }
+            current = get(next);
+            currentIndex = 0;
+        }
+
+        int     count = Math.min(len, current.length - currentIndex);
+        System.arraycopy(current, currentIndex, b, off, count);
+        currentIndex += count;
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        isOpen = false;
+        for ( Future<byte[]> future : pending )
+        {
+            future.cancel(true);
+        }
+        pending.clear();
+        nextStart = length;
+        current = null;
+    }
+
+    private void fetchAhead()
+    {
+        while ( (pending.size() < maxRangesInFlight) && (nextStart < length) )
+        {
+            final long      start = nextStart;
+            final int       size = (int)Math.min(rangeSize, length - start);
+            nextStart += size;
+            pending.add
+            (
+                transfers.submit
+                (
+                    tokenBucket,
+                    size,
+                    new Callable<byte[]>()
+                    {
+                        @Override
+                        public byte[] call() throws Exception
+                        {
+                            return fetchRange(start, size);
+                        }
+                    }
+                )
+            );
+        }
+    }
+
+    private byte[] fetchRange(long start, int size) throws Exception
+    {
+        byte[]      bytes = new byte[size];
+        int         received = 0;
+        long        startMs = System.currentTimeMillis();
+        int         retryCount = 0;
+        while ( received < size )
+        {
+            if ( !isOpen )
+            {
+                throw new IOException("Stream closed");    // a deferred range that's no longer needed
+            }
+
+            InputStream     in = null;
+            try
+            {
+                GetObjectRequest    request = new GetObjectRequest(bucket, key);
+                request.setRange(start + received, start + size - 1);
+                S3Object            object = s3Client.getObject(request);
+                if ( object == null )
+                {
+                    throw new IOException("Object not found: " + key);
+                }
+                in = object.getObjectContent();
+
+                while ( received < size )
+                {
+                    int     bytesRead = in.read(bytes, received, size - received);
+                    if ( bytesRead < 0 )
+                    {
+                        throw new EOFException("Range ended early: " + key);
+                    }
+                    received += bytesRead;
+                }
+            }
+            catch ( Exception e )
+            {
+                if ( (e instanceof AmazonS3Exception) && (((AmazonS3Exception)e).getErrorType() == AmazonServiceException.ErrorType.Client) )
+                {
+                    throw e;
+                }
+                // the retry starts from the first byte not yet received
+                if ( !retryPolicy.allowRetry(retryCount++, System.currentTimeMillis() - startMs, RetryLoop.getDefaultRetrySleeper()) )
+                {
+                    throw e;
+                }
+            }
+            finally
+            {
+                CloseableUtils.closeQuietly(in);
+            }
+        }
+        return bytes;
+    }
+
+    private static byte[] get(Future<byte[]> future) throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable   cause = e.getCause();
+            throw (cause instanceof IOException) ? (IOException)cause : new IOException(cause);
+        }
+    }
+}
@@ -16,20 +16,25 @@
 
 package com.netflix.exhibitor.core.backup.s3;
 
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.s3.model.*;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
 import com.google.common.base.Function;
-import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
-import com.google.common.io.Files;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
 import com.netflix.exhibitor.core.Exhibitor;
 import com.netflix.exhibitor.core.activity.ActivityLog;
 import com.netflix.exhibitor.core.backup.BackupConfigSpec;
 import com.netflix.exhibitor.core.backup.BackupMetaData;
-import com.netflix.exhibitor.core.backup.BackupProvider;
 import com.netflix.exhibitor.core.backup.BackupStream;
+import com.netflix.exhibitor.core.backup.BulkDeleteBackupProvider;
+import com.netflix.exhibitor.core.backup.MigratingBackupProvider;
+import com.netflix.exhibitor.core.backup.StreamingBackupProvider;
 import com.netflix.exhibitor.core.s3.S3Client;
 import com.netflix.exhibitor.core.s3.S3ClientConfig;
 import com.netflix.exhibitor.core.s3.S3ClientFactory;
@@ -40,31 +45,61 @@ import org.apache.curator.RetryLoop;
 import org.apache.curator.RetryPolicy;
 import org.apache.curator.retry.ExponentialBackoffRetry;
 import org.apache.curator.utils.CloseableUtils;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.netflix.exhibitor.core.config.DefaultProperties.asInt;
 
-public class S3BackupProvider implements BackupProvider
+public class S3BackupProvider implements StreamingBackupProvider, BulkDeleteBackupProvider, MigratingBackupProvider
 {
     private final S3Client s3Client;
-
-    private static final BackupConfigSpec CONFIG_THROTTLE = new BackupConfigSpec("throttle", "Throttle (bytes/ms)", "Data throttling. Maximum bytes per millisecond.", Integer.toString(1024 * 1024), BackupConfigSpec.Type.INTEGER);
+    private final PacedExecutor transfers = new PacedExecutor("S3BackupProvider");
+    private final TokenBucket egressBucket = new TokenBucket(null);
+    private final TokenBucket ingressBucket = new TokenBucket(null);
+    private final TokenBucket backupBucket = new TokenBucket(egressBucket);
+    private final TokenBucket restoreBucket = new TokenBucket(ingressBucket);
+    private final TokenBucket indexBucket = new TokenBucket(ingressBucket);
+    private final PartBufferPool partBufferPool = new PartBufferPool(MAX_POOLED_PART_BUFFERS);
+    private final Object migrationLock = new Object();
+
+    private static final BackupConfigSpec CONFIG_THROTTLE = new BackupConfigSpec("throttle", "Upload Throttle (bytes/ms)", "Maximum bytes per millisecond uploaded by all transfers together. 0 for no limit.", Integer.toString(1024 * 1024), BackupConfigSpec.Type.INTEGER);
+    private static final BackupConfigSpec CONFIG_INGRESS_THROTTLE = new BackupConfigSpec("ingress-throttle", "Download Throttle (bytes/ms)", "Maximum bytes per millisecond downloaded by all transfers together. 0 for no limit.", Integer.toString(1024 * 1024), BackupConfigSpec.Type.INTEGER);
+    private static final BackupConfigSpec CONFIG_BACKUP_THROTTLE = new BackupConfigSpec("backup-throttle", "Backup Throttle (bytes/ms)", "Maximum bytes per millisecond uploaded by backups. 0 for just the upload throttle.", "0", BackupConfigSpec.Type.INTEGER);
+    private static final BackupConfigSpec CONFIG_RESTORE_THROTTLE = new BackupConfigSpec("restore-throttle", "Restore Throttle (bytes/ms)", "Maximum bytes per millisecond downloaded by restores. 0 for just the download throttle.", "0", BackupConfigSpec.Type.INTEGER);
+    private static final BackupConfigSpec CONFIG_INDEX_THROTTLE = new BackupConfigSpec("index-throttle", "Index Throttle (bytes/ms)", "Maximum bytes per millisecond downloaded when indexing backups. 0 for just the download throttle.", "0", BackupConfigSpec.Type.INTEGER);
     private static final BackupConfigSpec CONFIG_BUCKET = new BackupConfigSpec("bucket-name", "S3 Bucket Name", "The S3 bucket to use", "", BackupConfigSpec.Type.STRING);
     private static final BackupConfigSpec CONFIG_KEY_PREFIX = new BackupConfigSpec("key-prefix", "S3 Key Prefix", "The prefix for S3 backup keys", "exhibitor-backup", BackupConfigSpec.Type.STRING);
     private static final BackupConfigSpec CONFIG_MAX_RETRIES = new BackupConfigSpec("max-retries", "Max Retries", "Maximum retries when uploading/downloading S3 data", "3", BackupConfigSpec.Type.INTEGER);
     private static final BackupConfigSpec CONFIG_RETRY_SLEEP_MS = new BackupConfigSpec("retry-sleep-ms", "Retry Sleep (ms)", "Sleep time in milliseconds when retrying", "1000", BackupConfigSpec.Type.INTEGER);
+    private static final BackupConfigSpec CONFIG_PART_SIZE_MB = new BackupConfigSpec("part-size-mb", "Part Size (MB)", "Size in megabytes of each part of a multipart upload and of each range of a download. S3's minimum part size is 5.", "5", BackupConfigSpec.Type.INTEGER);
+    private static final BackupConfigSpec CONFIG_UPLOAD_CONCURRENCY = new BackupConfigSpec("upload-concurrency", "Upload Concurrency", "Maximum number of parts of a multipart upload that are uploaded at the same time", "4", BackupConfigSpec.Type.INTEGER);
+
+    private static final BackupConfigSpec CONFIG_DOWNLOAD_CONCURRENCY = new BackupConfigSpec("download-concurrency", "Download Concurrency", "Maximum number of ranges of a backup that are downloaded at the same time", "4", BackupConfigSpec.Type.INTEGER);
 
-    private static final List<BackupConfigSpec>     CONFIGS = Arrays.asList(CONFIG_THROTTLE, CONFIG_BUCKET, CONFIG_KEY_PREFIX, CONFIG_MAX_RETRIES, CONFIG_RETRY_SLEEP_MS);
+    private static final BackupConfigSpec CONFIG_KEY_SHARDS = new BackupConfigSpec("key-shards", "Key Shards", "Number of hash-partitioned key prefixes that backups are spread across and listed in parallel (max 256). 0 for a single prefix. After changing this, move the existing backups with the migrate-backups action once every instance has the new config.", "0", BackupConfigSpec.Type.INTEGER);
+
+    private static final List<BackupConfigSpec>     CONFIGS = Arrays.asList(CONFIG_THROTTLE, CONFIG_INGRESS_THROTTLE, CONFIG_BACKUP_THROTTLE, CONFIG_RESTORE_THROTTLE, CONFIG_INDEX_THROTTLE, CONFIG_BUCKET, CONFIG_KEY_PREFIX, CONFIG_MAX_RETRIES, CONFIG_RETRY_SLEEP_MS, CONFIG_PART_SIZE_MB, CONFIG_UPLOAD_CONCURRENCY, CONFIG_DOWNLOAD_CONCURRENCY, CONFIG_KEY_SHARDS);
     
     private static final int        MIN_S3_PART_SIZE = 5 * (1024 * 1024);
+    private static final int        MAX_PART_SIZE_MB = 1024;
+    private static final int        MAX_POOLED_PART_BUFFERS = 8;
+    private static final int        MAX_KEY_SHARDS = 256;
+    private static final int        MIGRATION_CONCURRENCY = 8;
+    private static final int        MAX_DELETE_BATCH = 1000;    // S3's limit for a multi-object delete
 
     @VisibleForTesting
     static final String       SEPARATOR = "/";
@@ -135,155 +170,211 @@ public class S3BackupProvider implements BackupProvider
     }
 
     @Override
-    public UploadResult uploadBackup(Exhibitor exhibitor, BackupMetaData backup, File source, final Map<String, String> configValues) throws Exception
+    public UploadResult uploadBackup(Exhibitor exhibitor, BackupMetaData backup, File source, Map<String, String> configValues) throws Exception
+    {
+        FileChannel     in = new FileInputStream(source).getChannel();
+        try
+        {
+            return uploadBackupStream(exhibitor, backup, in, null, configValues);
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(in);
+        }
+    }
+
+    @Override
+    public UploadResult uploadBackupStream(Exhibitor exhibitor, BackupMetaData backup, ReadableByteChannel source, List<BackupMetaData> availableBackups, Map<String, String> configValues) throws Exception
     {
-        List<BackupMetaData>    availableBackups = getAvailableBackups(exhibitor, configValues);
+        if ( availableBackups == null )
+        {
+            availableBackups = getAvailableBackups(exhibitor, configValues);
+        }
         if ( availableBackups.contains(backup) )
         {
             return UploadResult.DUPLICATE;
         }
 
         RetryPolicy retryPolicy = makeRetryPolicy(configValues);
-        Throttle    throttle = makeThrottle(configValues);
+        updateThrottles(configValues);
 
         String                          key = toKey(backup, configValues);
+        upload(source, configValues, retryPolicy, key);
 
-        if ( source.length() < MIN_S3_PART_SIZE )
-        {
-            byte[]          bytes = Files.toByteArray(source);
-            S3Utils.simpleUploadFile(s3Client, bytes, configValues.get(CONFIG_BUCKET.getKey()), key);
-        }
-        else
-        {
-            multiPartUpload(source, configValues, retryPolicy, throttle, key);
-        }
-
-        UploadResult        result = UploadResult.SUCCEEDED;
+        List<BackupMetaData>    oldVersions = Lists.newArrayList();
         for ( BackupMetaData existing : availableBackups )
         {
             if ( existing.getName().equals(backup.getName()) )
             {
-                deleteBackup(exhibitor, existing, configValues);
-                result = UploadResult.REPLACED_OLD_VERSION;
+                oldVersions.add(existing);
             }
         }
-        return result;
+        if ( oldVersions.isEmpty() )
+        {
+            return UploadResult.SUCCEEDED;
+        }
+        deleteBackups(exhibitor, oldVersions, configValues);
+        return UploadResult.REPLACED_OLD_VERSION;
     }
 
-    private void multiPartUpload(File source, Map<String, String> configValues, RetryPolicy retryPolicy, Throttle throttle, String key) throws Exception
+    /**
+     * The source is read a part at a time. If it ends within the first part it is uploaded with a
+     * single put. Otherwise, parts are uploaded on {@link #transfers} as they are read, paced by
+     * {@link #backupBucket}. At most {@link #CONFIG_UPLOAD_CONCURRENCY} parts (and so part buffers)
+     * are in flight at a time, including parts that are waiting for tokens.
+     */
+    private void upload(ReadableByteChannel source, final Map<String, String> configValues, final RetryPolicy retryPolicy, final String key) throws Exception
     {
-        InitiateMultipartUploadRequest initRequest = new InitiateMultipartUploadRequest(configValues.get(CONFIG_BUCKET.getKey()), key);
-        InitiateMultipartUploadResult initResponse = s3Client.initiateMultipartUpload(initRequest);
-
-        byte[]      buffer = new byte[MIN_S3_PART_SIZE];
-        InputStream in = null;
+        int                                 partSize = Math.max(MIN_S3_PART_SIZE, Math.min(getInt(configValues, CONFIG_PART_SIZE_MB), MAX_PART_SIZE_MB) * (1024 * 1024));
+        final Semaphore                     inFlight = new Semaphore(Math.max(1, getInt(configValues, CONFIG_UPLOAD_CONCURRENCY)));
+        final AtomicReference<Exception>    failure = new AtomicReference<Exception>();
+        List<Future<PartETag>>              futures = Lists.newArrayList();
+        InitiateMultipartUploadResult       initResponse = null;
         try
         {
-            List<PartETag>      eTags = Lists.newArrayList();
-            int                 index = 1;
-
-            in = new FileInputStream(source);
-            for(;;)
+            for ( int index = 1; ; ++index )
             {
-                int     bytesRead = in.read(buffer);
-                if ( bytesRead < 0 )
+                inFlight.acquire();
+                if ( failure.get() != null )
                 {
-                    break;
+                    inFlight.release();
+                    throw failure.get();
                 }
-                throttle.throttle(bytesRead);
 
-                PartETag eTag = uploadChunkWithRetry(buffer, bytesRead, initResponse, index++, retryPolicy);
-                eTags.add(eTag);
-            }
+                ByteBuffer      buffer = partBufferPool.acquire(partSize);
+                boolean         submitted = false;
+                try
+                {
+                    while ( buffer.hasRemaining() && (source.read(buffer) >= 0) )
+                    {
+                        // keep filling
+                    }
+                    boolean     isFull = !buffer.hasRemaining();
+                    buffer.flip();
+                    if ( (index > 1) && !buffer.hasRemaining() )
+                    {
+                        break;
+                    }
 
-            completeUpload(initResponse, eTags);
-        }
-        catch ( Exception e )
-        {
-            abortUpload(initResponse);
-            throw e;
-        }
-        finally
-        {
-            CloseableUtils.closeQuietly(in);
-        }
-    }
+                    if ( (index == 1) && !isFull )
+                    {
+                        final byte[]    bytes = new byte[buffer.remaining()];
+                        buffer.get(bytes);
+                        Future<Void>    future = transfers.submit
+                        (
+                            backupBucket,
+                            bytes.length,
+                            new Callable<Void>()
+                            {
+                                @Override
+                                public Void call() throws Exception
+                                {
+                                    S3Utils.simpleUploadFile(s3Client, bytes, configValues.get(CONFIG_BUCKET.getKey()), key);
+                                    return null;
+                                }
+                            }
+                        );
+                        getResult(future);
+                        return;
+                    }
 
-    @Override
-    public BackupStream getBackupStream(Exhibitor exhibitor, BackupMetaData backup, Map<String, String> configValues) throws Exception
-    {
-        long            startMs = System.currentTimeMillis();
-        RetryPolicy     retryPolicy = makeRetryPolicy(configValues);
-        S3Object        object = null;
-        int             retryCount = 0;
-        while ( object == null )
-        {
-            try
-            {
-                object = s3Client.getObject(configValues.get(CONFIG_BUCKET.getKey()), toKey(backup, configValues));
-            }
-            catch ( AmazonS3Exception e)
-            {
-                if ( e.getErrorType() == AmazonServiceException.ErrorType.Client )
-                {
-                    exhibitor.getLog().add(ActivityLog.Type.ERROR, "Amazon client error: " + ActivityLog.getExceptionMessage(e));
-                    return null;
+                    if ( initResponse == null )
+                    {
+                        InitiateMultipartUploadRequest initRequest = new InitiateMultipartUploadRequest(configValues.get(CONFIG_BUCKET.getKey()), key);
+                        initResponse = s3Client.initiateMultipartUpload(initRequest);
+                    }
+                    futures.add(transfers.submit(backupBucket, buffer.remaining(), makePartUpload(buffer, initResponse, index, retryPolicy, inFlight, failure)));
+                    submitted = true;
                 }
-
-                if ( !retryPolicy.allowRetry(retryCount++, System.currentTimeMillis() - startMs, RetryLoop.getDefaultRetrySleeper()) )
+                finally
                 {
-                    exhibitor.getLog().add(ActivityLog.Type.ERROR, "Retries exhausted: " + ActivityLog.getExceptionMessage(e));
-                    return null;
+                    if ( !submitted )
+                    {
+                        partBufferPool.release(buffer);
+                        inFlight.release();
+                    }
                 }
             }
-        }
 
-        final Throttle      throttle = makeThrottle(configValues);
-        final InputStream   in = object.getObjectContent();
-        final InputStream   wrappedstream = new InputStream()
-        {
-            @Override
-            public void close() throws IOException
+            List<PartETag>      eTags = Lists.newArrayList();
+            for ( Future<PartETag> future : futures )
             {
-                in.close();
+                eTags.add(getResult(future));
             }
 
-            @Override
-            public int read() throws IOException
+            completeUpload(initResponse, eTags);
+        }
+        catch ( Exception e )
+        {
+            for ( Future<PartETag> future : futures )
             {
-                throttle.throttle(1);
-                return in.read();
+                future.cancel(true);
             }
-
-            @Override
-            public int read(byte[] b) throws IOException
+            if ( initResponse != null )
             {
-                int bytesRead = in.read(b);
-                if ( bytesRead > 0 )
-                {
-                    throttle.throttle(bytesRead);
-                }
-                return bytesRead;
+                abortUpload(initResponse);
             }
+            throw e;
+        }
+    }
 
+    private Callable<PartETag> makePartUpload(final ByteBuffer buffer, final InitiateMultipartUploadResult initResponse, final int index, final RetryPolicy retryPolicy, final Semaphore inFlight, final AtomicReference<Exception> failure)
+    {
+        return new Callable<PartETag>()
+        {
             @Override
-            public int read(byte[] b, int off, int len) throws IOException
+            public PartETag call() throws Exception
             {
-                int bytesRead = in.read(b, off, len);
-                if ( bytesRead > 0 )
+                try
+                {
+                    if ( failure.get() != null )
+                    {
+                        throw failure.get();    // a deferred part of an upload that has already failed
+                    }
+                    return uploadChunkWithRetry(buffer, initResponse, index, retryPolicy);
+                }
+                catch ( Exception e )
                 {
-                    throttle.throttle(bytesRead);
+                    failure.compareAndSet(null, e);
+                    throw e;
+                }
+                finally
+                {
+                    partBufferPool.release(buffer);
+                    inFlight.release();
                 }
-                return bytesRead;
             }
         };
+    }
+
+    private static <T> T getResult(Future<T> future) throws Exception
+    {
+        try
+        {
+            return future.get();
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable   cause = e.getCause();
+            throw (cause instanceof Exception) ? (Exception)cause : e;
+        }
+    }
+
+    @Override
+    public BackupStream getBackupStream(Exhibitor exhibitor, BackupMetaData backup, Map<String, String> configValues) throws Exception
+    {
+        final InputStream   in = openBackup(exhibitor, backup, configValues, indexBucket);
+        if ( in == null )
+        {
+            return null;
+        }
 
         return new BackupStream()
         {
             @Override
             public InputStream getStream()
             {
-                return wrappedstream;
+                return in;
             }
 
             @Override
@@ -297,95 +388,198 @@ public class S3BackupProvider implements BackupProvider
     @Override
     public void downloadBackup(Exhibitor exhibitor, BackupMetaData backup, OutputStream destination, Map<String, String> configValues) throws Exception
     {
-        byte[]          buffer = new byte[MIN_S3_PART_SIZE];
+        InputStream     in = openBackup(exhibitor, backup, configValues, restoreBucket);
+        if ( in == null )
+        {
+            throw new IOException("Backup not found: " + backup);
+        }
+        try
+        {
+            ByteStreams.copy(in, destination);
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * The object is fetched as ranges of {@link #CONFIG_PART_SIZE_MB} on {@link #transfers}, paced by the
+     * given token bucket. Up to {@link #CONFIG_DOWNLOAD_CONCURRENCY} ranges are fetched ahead of the reader.
+     *
+     * @return the stream or null if the backup doesn't exist
+     */
+    private InputStream openBackup(Exhibitor exhibitor, BackupMetaData backup, Map<String, String> configValues, TokenBucket tokenBucket) throws Exception
+    {
+        updateThrottles(configValues);
 
+        String          bucket = configValues.get(CONFIG_BUCKET.getKey());
+        String          key = toKey(backup, configValues);
         long            startMs = System.currentTimeMillis();
         RetryPolicy     retryPolicy = makeRetryPolicy(configValues);
+        ObjectMetadata  metadata = null;
         int             retryCount = 0;
-        boolean         done = false;
-
-        while ( !done )
+        while ( metadata == null )
         {
-            Throttle            throttle = makeThrottle(configValues);
-            InputStream         in = null;
             try
             {
-                S3Object            object = s3Client.getObject(configValues.get(CONFIG_BUCKET.getKey()), toKey(backup, configValues));
-                in = object.getObjectContent();
-
-                for(;;)
+                metadata = s3Client.getObjectMetadata(bucket, key);
+                if ( metadata == null )
                 {
-                    int     bytesRead = in.read(buffer);
-                    if ( bytesRead < 0 )
-                    {
-                        break;
-                    }
-
-                    throttle.throttle(bytesRead);
-                    destination.write(buffer, 0, bytesRead);
+                    return null;
                 }
-
-                done = true;
             }
-            catch ( Exception e )
+            catch ( AmazonS3Exception e)
             {
+                if ( e.getErrorType() == AmazonServiceException.ErrorType.Client )
+                {
+                    exhibitor.getLog().add(ActivityLog.Type.ERROR, "Amazon client error: " + ActivityLog.getExceptionMessage(e));
+                    return null;
+                }
+
                 if ( !retryPolicy.allowRetry(retryCount++, System.currentTimeMillis() - startMs, RetryLoop.getDefaultRetrySleeper()) )
                 {
-                    done = true;
+                    exhibitor.getLog().add(ActivityLog.Type.ERROR, "Retries exhausted: " + ActivityLog.getExceptionMessage(e));
+                    return null;
                 }
             }
-            finally
-            {
-                CloseableUtils.closeQuietly(in);
-            }
         }
+
+        int             rangeSize = Math.max(1, Math.min(getInt(configValues, CONFIG_PART_SIZE_MB), MAX_PART_SIZE_MB)) * (1024 * 1024);
+        return new RangedObjectStream(s3Client, bucket, key, metadata.getContentLength(), rangeSize, getInt(configValues, CONFIG_DOWNLOAD_CONCURRENCY), transfers, tokenBucket, retryPolicy);
     }
 
+    /**
+     * With {@link #CONFIG_KEY_SHARDS} set, each shard's prefix is listed concurrently and the
+     * results merged, so the number of serial round trips stays the same as retention grows.
+     */
     @Override
     public List<BackupMetaData> getAvailableBackups(Exhibitor exhibitor, Map<String, String> configValues) throws Exception
     {
-        String            keyPrefix = getKeyPrefix(configValues);
 
-        ListObjectsRequest      request = new ListObjectsRequest();
-        request.setBucketName(configValues.get(CONFIG_BUCKET.getKey()));
-        request.setPrefix(keyPrefix);
+        final String            bucket = configValues.get(CONFIG_BUCKET.getKey());
+        String                  keyPrefix = getKeyPrefix(configValues);
+        int                     shards = getKeyShards(configValues);
+        if ( shards == 0 )
+        {
+            return Lists.newArrayList(Iterables.transform(listKeys(bucket, keyPrefix), KEY_TO_BACKUP));
+        }
+
+        List<Future<List<String>>>  futures = Lists.newArrayList();
+        for ( int i = 0; i < shards; ++i )
+        {
+            final String    shardPrefix = keyPrefix + SEPARATOR + toShardName(i) + SEPARATOR;
+            futures.add(transfers.submit(new Callable<List<String>>()
+            {
+                @Override
+                public List<String> call() throws Exception
+                {
+                    return listKeys(bucket, shardPrefix);
+                }
+            }));
+        }
 
         List<BackupMetaData>    completeList = Lists.newArrayList();
+        for ( Future<List<String>> future : futures )
+        {
+            completeList.addAll(Lists.newArrayList(Iterables.transform(getResult(future), KEY_TO_BACKUP)));
+        }
+        return completeList;
+    }
+
+    private static final Function<String, BackupMetaData> KEY_TO_BACKUP = new Function<String, BackupMetaData>()
+    {
+        @Override
+        public BackupMetaData apply(String key)
+        {
+            return fromKey(key);
+        }
+    };
+
+    /**
+     * @return all backup keys under the given prefix
+     */
+    private List<String> listKeys(String bucket, String prefix) throws Exception
+    {
+        ListObjectsRequest      request = new ListObjectsRequest();
+        request.setBucketName(bucket);
+        request.setPrefix(prefix);
+
+        List<String>            keys = Lists.newArrayList();
 
         ObjectListing           listing = null;
         do
         {
             listing = (listing == null) ? s3Client.listObjects(request) : s3Client.listNextBatchOfObjects(listing);
 
-            Iterable<S3ObjectSummary> filtered = Iterables.filter
-            (
-                listing.getObjectSummaries(),
-                new Predicate<S3ObjectSummary>()
+            for ( S3ObjectSummary summary : listing.getObjectSummaries() )
+            {
+                if ( fromKey(summary.getKey()) != null )
                 {
-                    @Override
-                    public boolean apply(S3ObjectSummary summary)
-                    {
-                        return fromKey(summary.getKey()) != null;
-                    }
+                    keys.add(summary.getKey());
                 }
-            );
+            }
+        } while ( listing.isTruncated() );
+        return keys;
+    }
+
+    /**
+     * Backups are moved under the key prefix from any layout (flat or with any number of shards) to
+     * their key in the configured layout. Only one migration runs at a time. Other operations aren't
+     * blocked - until a backup has been moved it just isn't found.
+     */
+    @Override
+    public int migrateBackups(Exhibitor exhibitor, Map<String, String> configValues) throws Exception
+    {
+        synchronized(migrationLock)
+        {
+            return migrateKeys(configValues.get(CONFIG_BUCKET.getKey()), getKeyPrefix(configValues), getKeyShards(configValues));
+        }
+    }
+
+    /**
+     * Move (copy then delete) every backup under the prefix whose key isn't its key in the given layout
+     *
+     * @return number of backups moved
+     */
+    @VisibleForTesting
+    int migrateKeys(final String bucket, String keyPrefix, int shards) throws Exception
+    {
+        final Semaphore             inFlight = new Semaphore(MIGRATION_CONCURRENCY);
+        List<Future<Void>>          futures = Lists.newArrayList();
+        for ( final String key : listKeys(bucket, keyPrefix + SEPARATOR) )
+        {
+            final String    newKey = toKey(fromKey(key), keyPrefix, shards);
+            if ( key.equals(newKey) )
+            {
+                continue;
+            }
 
-            Iterable<BackupMetaData> transformed = Iterables.transform
-            (
-                filtered,
-                new Function<S3ObjectSummary, BackupMetaData>()
+            inFlight.acquire();
+            futures.add(transfers.submit(new Callable<Void>()
+            {
+                @Override
+                public Void call() throws Exception
                 {
-                    @Override
-                    public BackupMetaData apply(S3ObjectSummary summary)
+                    try
+                    {
+                        s3Client.copyObject(new CopyObjectRequest(bucket, key, bucket, newKey));
+                        s3Client.deleteObject(bucket, key);
+                        return null;
+                    }
+                    finally
                     {
-                        return fromKey(summary.getKey());
+                        inFlight.release();
                     }
                 }
-            );
+            }));
+        }
 
-            completeList.addAll(Lists.newArrayList(transformed));
-        } while ( listing.isTruncated() );
-        return completeList;
+        for ( Future<Void> future : futures )
+        {
+            getResult(future);
+        }
+        return futures.size();
     }
 
     @Override
@@ -394,15 +588,86 @@ public class S3BackupProvider implements BackupProvider
         s3Client.deleteObject(configValues.get(CONFIG_BUCKET.getKey()), toKey(backup, configValues));
     }
 
-    private Throttle makeThrottle(final Map<String, String> configValues)
+    /**
+     * The backups are deleted with multi-object deletes of up to {@link #MAX_DELETE_BATCH} keys, issued
+     * concurrently on {@link #transfers}. Keys that S3 fails to delete are logged and left out of the result.
+     */
+    @Override
+    public List<BackupMetaData> deleteBackups(final Exhibitor exhibitor, List<BackupMetaData> backups, Map<String, String> configValues) throws Exception
     {
-        return new Throttle(this.getClass().getCanonicalName(), new Throttle.ThroughputFunction()
+
+        final String                        bucket = configValues.get(CONFIG_BUCKET.getKey());
+        final Map<String, BackupMetaData>   keys = Maps.newHashMap();
+        for ( BackupMetaData backup : backups )
+        {
+            keys.put(toKey(backup, configValues), backup);
+        }
+
+        List<Future<List<DeleteObjectsResult.DeletedObject>>>   futures = Lists.newArrayList();
+        for ( List<String> batch : Iterables.partition(keys.keySet(), MAX_DELETE_BATCH) )
+        {
+            final DeleteObjectsRequest      request = new DeleteObjectsRequest(bucket).withKeys(batch.toArray(new String[batch.size()]));
+            futures.add(transfers.submit(new Callable<List<DeleteObjectsResult.DeletedObject>>()
+            {
+                @Override
+                public List<DeleteObjectsResult.DeletedObject> call() throws Exception
+                {
+                    try
+                    {
+                        return s3Client.deleteObjects(request).getDeletedObjects();
+                    }
+                    catch ( MultiObjectDeleteException e )
+                    {
+                        for ( MultiObjectDeleteException.DeleteError error : e.getErrors() )
+                        {
+                            exhibitor.getLog().add(ActivityLog.Type.ERROR, "Could not delete old backup: " + error.getKey() + " (" + error.getCode() + ": " + error.getMessage() + ")");
+                        }
+                        return e.getDeletedObjects();
+                    }
+                }
+            }));
+        }
+
+        List<BackupMetaData>        deleted = Lists.newArrayList();
+        for ( Future<List<DeleteObjectsResult.DeletedObject>> future : futures )
         {
-            public int targetThroughput()
+            try
+            {
+                for ( DeleteObjectsResult.DeletedObject deletedObject : getResult(future) )
+                {
+                    BackupMetaData      backup = keys.get(deletedObject.getKey());
+                    if ( backup != null )
+                    {
+                        deleted.add(backup);
+                    }
+                }
+            }
+            catch ( AmazonClientException e )
             {
-                return Math.max(asInt(configValues.get(CONFIG_THROTTLE.getKey())), Integer.MAX_VALUE);
+                exhibitor.getLog().add(ActivityLog.Type.ERROR, "Could not delete old backups", e);
             }
-        });
+        }
+        return deleted;
+    }
+
+    /**
+     * The buckets are shared by all of this provider's transfers. Uploads reserve from the backup
+     * bucket and the egress bucket above it. Downloads reserve from the restore or index bucket and
+     * the ingress bucket above them.
+     */
+    private void updateThrottles(Map<String, String> configValues)
+    {
+        egressBucket.setRate(getInt(configValues, CONFIG_THROTTLE));
+        ingressBucket.setRate(getInt(configValues, CONFIG_INGRESS_THROTTLE));
+        backupBucket.setRate(getInt(configValues, CONFIG_BACKUP_THROTTLE));
+        restoreBucket.setRate(getInt(configValues, CONFIG_RESTORE_THROTTLE));
+        indexBucket.setRate(getInt(configValues, CONFIG_INDEX_THROTTLE));
+    }
+
+    private static int getInt(Map<String, String> configValues, BackupConfigSpec spec)
+    {
+        String      value = configValues.get(spec.getKey());
+        return asInt((value != null) ? value : spec.getDefaultValue());
     }
 
     private ExponentialBackoffRetry makeRetryPolicy(Map<String, String> configValues)
@@ -411,15 +676,16 @@ public class S3BackupProvider implements BackupProvider
     }
 
 
-    private PartETag uploadChunkWithRetry(byte[] buffer, int bytesRead, InitiateMultipartUploadResult initResponse, int index, RetryPolicy retryPolicy) throws Exception
+    private PartETag uploadChunkWithRetry(ByteBuffer buffer, InitiateMultipartUploadResult initResponse, int index, RetryPolicy retryPolicy) throws Exception
     {
+        byte[]          md5 = S3Utils.md5(buffer);  // once per part - the bytes don't change between retries
         long            startMs = System.currentTimeMillis();
         int             retries = 0;
         for(;;)
         {
             try
             {
-                return uploadChunk(buffer, bytesRead, initResponse, index);
+                return uploadChunk(buffer, md5, initResponse, index);
             }
             catch ( Exception e )
             {
@@ -431,18 +697,16 @@ public class S3BackupProvider implements BackupProvider
         }
     }
 
-    private PartETag uploadChunk(byte[] buffer, int bytesRead, InitiateMultipartUploadResult initResponse, int index) throws Exception
+    private PartETag uploadChunk(ByteBuffer buffer, byte[] md5, InitiateMultipartUploadResult initResponse, int index) throws Exception
     {
-        byte[]          md5 = S3Utils.md5(buffer, bytesRead);
-
         UploadPartRequest   request = new UploadPartRequest();
         request.setBucketName(initResponse.getBucketName());
         request.setKey(initResponse.getKey());
         request.setUploadId(initResponse.getUploadId());
         request.setPartNumber(index);
-        request.setPartSize(bytesRead);
+        request.setPartSize(buffer.remaining());
         request.setMd5Digest(S3Utils.toBase64(md5));
-        request.setInputStream(new ByteArrayInputStream(buffer, 0, bytesRead));
+        request.setInputStream(new ByteBufferInputStream(buffer));
 
         UploadPartResult    response = s3Client.uploadPart(request);
         PartETag            partETag = response.getPartETag();
@@ -467,13 +731,33 @@ public class S3BackupProvider implements BackupProvider
     }
 
     private String toKey(BackupMetaData backup, Map<String, String> configValues)
+    {
+        return toKey(backup, getKeyPrefix(configValues), getKeyShards(configValues));
+    }
+
+    private static String toKey(BackupMetaData backup, String prefix, int shards)
     {
         String  name = backup.getName().replace(SEPARATOR, SEPARATOR_REPLACEMENT);
-        String  prefix = getKeyPrefix(configValues);
+        if ( shards > 0 )
+        {
+            // all versions of a backup share a shard
+            int     shard = (Hashing.murmur3_32().hashString(name, Charsets.UTF_8).asInt() & Integer.MAX_VALUE) % shards;
+            prefix = prefix + SEPARATOR + toShardName(shard);
+        }
 
         return prefix + SEPARATOR + name + SEPARATOR + backup.getModifiedDate();
     }
 
+    private static String toShardName(int shard)
+    {
+        return String.format("%02x", shard);
+    }
+
+    private static int getKeyShards(Map<String, String> configValues)
+    {
+        return Math.max(0, Math.min(getInt(configValues, CONFIG_KEY_SHARDS), MAX_KEY_SHARDS));
+    }
+
     private String getKeyPrefix(Map<String, String> configValues)
     {
         String  prefix = configValues.get(CONFIG_KEY_PREFIX.getKey());
@@ -491,11 +775,19 @@ public class S3BackupProvider implements BackupProvider
 
     private static BackupMetaData fromKey(String key)
     {
+        // prefix/name/date or, when sharded, prefix/shard/name/date
         String[]        parts = key.split("\\" + SEPARATOR);
-        if ( parts.length != 3 )
+        if ( (parts.length != 3) && (parts.length != 4) )
+        {
+            return null;
+        }
+        try
+        {
+            return new BackupMetaData(parts[parts.length - 2], Long.parseLong(parts[parts.length - 1]));
+        }
+        catch ( NumberFormatException e )
         {
             return null;
         }
-        return new BackupMetaData(parts[1], Long.parseLong(parts[2]));
     }
 }
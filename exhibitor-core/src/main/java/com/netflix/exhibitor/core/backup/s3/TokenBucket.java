@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.backup.s3;
+
+import com.google.common.base.Ticker;
+
+/**
+ * Paces transfers to a rate in bytes per millisecond. Tokens are reserved rather than waited for:
+ * {@link #reserve(long)} takes the tokens, going into debt if there aren't enough, and returns how
+ * long the caller should defer the transfer. The bucket holds at most {@link #BURST_MS} worth of
+ * tokens. A bucket with a parent reserves from the parent as well and the longer delay applies.
+ */
+class TokenBucket
+{
+    private final TokenBucket   parent;
+    private final Ticker        ticker;
+    private int                 bytesPerMs = 0;
+    private long                tokens = 0;     // bytes scaled by NANOS_PER_MS so that a nanosecond refills bytesPerMs
+    private long                lastNanos;
+
+    static final long           BURST_MS = 100;
+
+    private static final long   NANOS_PER_MS = 1000000;
+
+    /**
+     * @param parent parent bucket or null
+     */
+    TokenBucket(TokenBucket parent)
+    {
+        this(parent, Ticker.systemTicker());
+    }
+
+    TokenBucket(TokenBucket parent, Ticker ticker)
+    {
+        this.parent = parent;
+        this.ticker = ticker;
+        lastNanos = ticker.read();
+    }
+
+    /**
+     * Change the rate. The bucket starts full at the new rate.
+     *
+     * @param newBytesPerMs bytes per millisecond - 0 or less for no limit
+     */
+    synchronized void   setRate(int newBytesPerMs)
+    {
+        if ( newBytesPerMs != bytesPerMs )
+        {
+            bytesPerMs = newBytesPerMs;
+            tokens = getCapacity();
+            lastNanos = ticker.read();
+        }
+    }
+
+    /**
+     * Reserve tokens for the given number of bytes
+     *
+     * @param bytes bytes about to be transferred
+     * @return nanoseconds to defer the transfer by - 0 to start it now
+     */
+    long    reserve(long bytes)
+    {
+        long        delay = reserveTokens(bytes);
+        return (parent != null) ? Math.max(delay, parent.reserve(bytes)) : delay;
+    }
+
+    private synchronized long reserveTokens(long bytes)
+    {
+        if ( bytesPerMs <= 0 )
+        {
+            return 0;
+        }
+
+        long        now = ticker.read();
+        long        capacity = getCapacity();
+        long        elapsed = Math.min(now - lastNanos, ((capacity - tokens) / bytesPerMs) + 1);   // bounded so the refill can't overflow
+        tokens = Math.min(capacity, tokens + (elapsed * bytesPerMs));
+        lastNanos = now;
+
+        tokens -= bytes * NANOS_PER_MS;
+        return (tokens < 0) ? (-tokens / bytesPerMs) : 0;
+    }
+
+    private long getCapacity()
+    {
+        return bytesPerMs * BURST_MS * NANOS_PER_MS;
+    }
+}
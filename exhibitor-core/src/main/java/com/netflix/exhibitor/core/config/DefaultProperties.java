@@ -159,6 +159,16 @@ public class DefaultProperties
                         return 1;
                     }
 
+                    case INDEX_PATH_FILTER_DEPTH:
+                    {
+                        return 3;
+                    }
+
+                    case BACKUP_MANIFEST_RECONCILE_MS:
+                    {
+                        return (int)TimeUnit.MILLISECONDS.convert(1, TimeUnit.DAYS);
+                    }
+
                 }
                 return 0;
             }
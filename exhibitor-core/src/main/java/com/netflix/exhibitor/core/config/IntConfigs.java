@@ -170,6 +170,69 @@ public enum IntConfigs
      * of via rolling change).
      */
     AUTO_MANAGE_INSTANCES_APPLY_ALL_AT_ONCE()
+    {
+        @Override
+        public boolean isRestartSignificant()
+        {
+            return false;
+        }
+    },
+
+    /**
+     * The number of milliseconds between updates of the live index from the active ZooKeeper
+     * transaction logs. 0 disables the live index.
+     */
+    LIVE_INDEX_PERIOD_MS()
+    {
+        @Override
+        public boolean isRestartSignificant()
+        {
+            return false;
+        }
+    },
+
+    /**
+     * Indexes record each path and its ancestors down to this many path components in a Bloom filter
+     * so that indexes can be ruled out for path searches without being opened
+     */
+    INDEX_PATH_FILTER_DEPTH()
+    {
+        @Override
+        public boolean isRestartSignificant()
+        {
+            return false;
+        }
+    },
+
+    /**
+     * boolean - if true (non zero) only the transactions appended to the active ZooKeeper log since the
+     * last backup are uploaded (as a segment). The segments are replaced by a full backup when the log rolls.
+     */
+    BACKUP_DELTAS()
+    {
+        @Override
+        public boolean isRestartSignificant()
+        {
+            return false;
+        }
+    },
+
+    /**
+     * Period in ms between full listings of the backup store that reconcile the local backup manifest
+     */
+    BACKUP_MANIFEST_RECONCILE_MS()
+    {
+        @Override
+        public boolean isRestartSignificant()
+        {
+            return false;
+        }
+    },
+
+    /**
+     * Size in megabytes of the local cache of downloaded backups. 0 disables the cache.
+     */
+    BACKUP_CACHE_MB()
     {
         @Override
         public boolean isRestartSignificant()
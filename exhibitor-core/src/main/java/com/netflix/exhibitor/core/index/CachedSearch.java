@@ -16,26 +16,74 @@
 
 package com.netflix.exhibitor.core.index;
 
-import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.Query;
 
+/**
+ * A search handle. Only the query and the position of the last page that was read are held -
+ * not the hits - so the size is the same no matter how many documents match.
+ */
 public class CachedSearch
 {
-    private final TopDocs docs;
-    private final int totalDocs;
+    private final Query query;
+    private final int maxDoc;
+    private final int totalHits;
+
+    // protected by synchronizing on this instance. See LogSearch.getPage()
+    private int nextStart = 0;
+    private long lastDate;
+    private int lastDoc = -1;
 
-    CachedSearch(TopDocs docs, int totalDocs)
+    /**
+     * @param query the query or null for all documents
+     * @param maxDoc the search only covers documents that existed when it was made
+     * @param totalHits number of hits
+     */
+    CachedSearch(Query query, int maxDoc, int totalHits)
     {
-        this.docs = docs;
-        this.totalDocs = totalDocs;
+        this.query = query;
+        this.maxDoc = maxDoc;
+        this.totalHits = totalHits;
     }
 
     public int  getTotalHits()
     {
-        return (docs != null) ? docs.totalHits : totalDocs;
+        return totalHits;
+    }
+
+    Query getQuery()
+    {
+        return query;
+    }
+
+    int getMaxDoc()
+    {
+        return maxDoc;
+    }
+
+    int getNextStart()
+    {
+        return nextStart;
     }
-    
-    public int  getNthDocId(int n)
+
+    boolean hasLast()
+    {
+        return lastDoc >= 0;
+    }
+
+    long getLastDate()
+    {
+        return lastDate;
+    }
+
+    int getLastDoc()
+    {
+        return lastDoc;
+    }
+
+    void setLast(int nextStart, long lastDate, int lastDoc)
     {
-        return (docs != null) ? docs.scoreDocs[n].doc : n;
+        this.nextStart = nextStart;
+        this.lastDate = lastDate;
+        this.lastDoc = lastDoc;
     }
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.NumericRangeFilter;
+import java.io.IOException;
+
+/**
+ * Matches entries in a date range. Segments outside of the range are skipped and segments entirely
+ * within it match without consulting the numeric trie - only segments that straddle a range
+ * boundary are actually searched.
+ */
+class DateRangeFilter extends Filter
+{
+    private final long startDate;
+    private final long endDate;
+    private final Filter numericFilter;
+
+    /**
+     * @param startDate start (inclusive)
+     * @param endDate end (exclusive)
+     */
+    DateRangeFilter(long startDate, long endDate)
+    {
+        this.startDate = startDate;
+        this.endDate = endDate;
+        numericFilter = NumericRangeFilter.newLongRange(FieldNames.DATE, startDate, endDate, true, false);
+    }
+
+    @Override
+    public DocIdSet getDocIdSet(IndexReader reader) throws IOException
+    {
+        long[]      range = SegmentDateRanges.get(reader);
+        if ( (range == null) || (range[1] < startDate) || (range[0] >= endDate) )
+        {
+            return DocIdSet.EMPTY_DOCIDSET;
+        }
+
+        if ( (range[0] >= startDate) && (range[1] < endDate) && !reader.hasDeletions() )
+        {
+            return new RangeDocIdSet(reader.maxDoc());
+        }
+
+        return numericFilter.getDocIdSet(reader);
+    }
+
+    @Override
+    public String toString()
+    {
+        return FieldNames.DATE + ":[" + startDate + " TO " + endDate + "}";
+    }
+}
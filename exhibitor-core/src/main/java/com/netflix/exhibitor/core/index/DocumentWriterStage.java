@@ -0,0 +1,283 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The writing half of the indexing pipeline. Each log being parsed adds its documents to its own
+ * bounded {@link Lane}. Lanes are moved, one at a time and in the order they were opened, onto a
+ * shared queue that a small set of threads drain in batches into the (thread-safe) IndexWriter.
+ * Logs are parsed concurrently but written one after the other, so each index segment covers
+ * a narrow slice of time (see {@link SegmentDateRanges}).
+ */
+class DocumentWriterStage
+{
+    private final IndexWriter                   writer;
+    private final BlockingQueue<Document>       queue = new ArrayBlockingQueue<Document>(QUEUE_CAPACITY);
+    private final BlockingQueue<Lane>           lanes = new LinkedBlockingQueue<Lane>();
+    private final ExecutorService               service;
+    private final Future<Void>                  sequencer;
+    private final List<Future<Void>>            futures = Lists.newArrayList();
+    private final AtomicBoolean                 isDone = new AtomicBoolean(false);
+    private final AtomicBoolean                 isSequenced = new AtomicBoolean(false);
+    private final AtomicBoolean                 isAborted = new AtomicBoolean(false);
+    private final AtomicReference<Exception>    error = new AtomicReference<Exception>(null);
+
+    private static final int        QUEUE_CAPACITY = 10000;
+    private static final int        LANE_CAPACITY = 10000;
+    private static final int        BATCH_SIZE = 500;
+    private static final int        POLL_MS = 100;
+
+    /**
+     * The documents of one log. Documents are added from a single thread and the lane must be
+     * closed once the log has been parsed (or has failed).
+     */
+    class Lane
+    {
+        private final BlockingQueue<Document>   documents = new ArrayBlockingQueue<Document>(LANE_CAPACITY);
+        private volatile boolean                isClosed = false;
+
+        void        add(Document document) throws Exception
+        {
+            while ( !documents.offer(document, POLL_MS, TimeUnit.MILLISECONDS) )
+            {
+                checkError();
+                if ( isAborted.get() )
+                {
+                    throw new InterruptedIOException("Writing was aborted");
+                }
+            }
+            checkError();
+        }
+
+        void        close()
+        {
+            isClosed = true;
+        }
+    }
+
+    DocumentWriterStage(IndexWriter writer, int threadQty)
+    {
+        this.writer = writer;
+        service = Executors.newFixedThreadPool(threadQty + 1, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("DocumentWriterStage-%d").build());
+        sequencer = service.submit(new Callable<Void>()
+        {
+            @Override
+            public Void call() throws Exception
+            {
+                sequence();
+                return null;
+            }
+        });
+        for ( int i = 0; i < threadQty; ++i )
+        {
+            futures.add(service.submit(new Callable<Void>()
+            {
+                @Override
+                public Void call() throws Exception
+                {
+                    drain();
+                    return null;
+                }
+            }));
+        }
+    }
+
+    /**
+     * Open a lane for the next log. Its documents are written after those of all previously opened lanes.
+     *
+     * @return the lane
+     */
+    Lane        openLane()
+    {
+        Lane        lane = new Lane();
+        lanes.add(lane);
+        return lane;
+    }
+
+    /**
+     * Wait for all queued documents to be written. All lanes must have been closed.
+     *
+     * @throws Exception the first error from any writer thread
+     */
+    void        finish() throws Exception
+    {
+        if ( isDone.compareAndSet(false, true) )
+        {
+            try
+            {
+                sequencer.get();
+                for ( Future<Void> future : futures )
+                {
+                    future.get();
+                }
+            }
+            finally
+            {
+                service.shutdownNow();
+            }
+        }
+        checkError();
+    }
+
+    /**
+     * Stop writing, discarding anything still queued
+     */
+    void        abort()
+    {
+        isAborted.set(true);
+        isDone.set(true);
+        lanes.clear();
+        queue.clear();
+        List<Future<Void>>      all = Lists.newArrayList(futures);
+        all.add(sequencer);
+        for ( Future<Void> future : all )
+        {
+            try
+            {
+                future.get();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            catch ( Exception ignore )
+            {
+                // already recorded
+            }
+        }
+        service.shutdownNow();
+    }
+
+    private void sequence() throws Exception
+    {
+        List<Document>      batch = Lists.newArrayListWithCapacity(BATCH_SIZE);
+        try
+        {
+            while ( !isAborted.get() )
+            {
+                Lane        lane = lanes.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if ( lane == null )
+                {
+                    if ( isDone.get() )
+                    {
+                        break;
+                    }
+                    continue;
+                }
+
+                while ( !isAborted.get() )
+                {
+                    boolean     wasClosed = lane.isClosed;  // read before polling - everything added before closing is then seen
+                    Document    document = lane.documents.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                    if ( document == null )
+                    {
+                        if ( wasClosed )
+                        {
+                            break;
+                        }
+                        continue;
+                    }
+
+                    batch.add(document);
+                    lane.documents.drainTo(batch, BATCH_SIZE - 1);
+                    for ( Document d : batch )
+                    {
+                        while ( !queue.offer(d, POLL_MS, TimeUnit.MILLISECONDS) )
+                        {
+                            checkError();
+                        }
+                    }
+                    batch.clear();
+                }
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch ( Exception e )
+        {
+            error.compareAndSet(null, e);
+            throw e;
+        }
+        finally
+        {
+            isSequenced.set(true);
+        }
+    }
+
+    private void drain() throws Exception
+    {
+        List<Document>      batch = Lists.newArrayListWithCapacity(BATCH_SIZE);
+        try
+        {
+            for(;;)
+            {
+                Document        document = queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if ( document == null )
+                {
+                    if ( isSequenced.get() && queue.isEmpty() )
+                    {
+                        break;
+                    }
+                    continue;
+                }
+
+                batch.add(document);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                writer.addDocuments(batch);
+                batch.clear();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch ( Exception e )
+        {
+            error.compareAndSet(null, e);
+            throw e;
+        }
+    }
+
+    private void checkError() throws Exception
+    {
+        Exception       e = error.get();
+        if ( e != null )
+        {
+            throw e;
+        }
+    }
+}
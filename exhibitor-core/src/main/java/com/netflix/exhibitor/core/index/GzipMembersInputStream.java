@@ -0,0 +1,269 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses a gzip stream made of any number of concatenated members. Unlike
+ * {@link java.util.zip.GZIPInputStream}, which only looks for another member when the source reports
+ * bytes as {@link InputStream#available()}, every member is read until the source actually ends. Data
+ * that follows a member and isn't another member is an error rather than being ignored.
+ */
+public class GzipMembersInputStream extends InputStream
+{
+    private final InputStream   in;
+    private final Inflater      inflater = new Inflater(true);
+    private final CRC32         crc = new CRC32();
+    private final byte[]        buffer;
+    private final byte[]        single = new byte[1];
+
+    private int                 bufferPosition = 0;
+    private int                 bufferLength = 0;
+    private int                 memberQty = 0;
+    private boolean             inMember = false;
+    private boolean             atEnd = false;
+    private boolean             isClosed = false;
+
+    private static final int    DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final int    FHCRC = 2;
+    private static final int    FEXTRA = 4;
+    private static final int    FNAME = 8;
+    private static final int    FCOMMENT = 16;
+
+    /**
+     * @param in the compressed stream
+     */
+    public GzipMembersInputStream(InputStream in)
+    {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param in the compressed stream
+     * @param bufferSize size of the buffer for compressed bytes
+     */
+    public GzipMembersInputStream(InputStream in, int bufferSize)
+    {
+        this.in = in;
+        buffer = new byte[bufferSize];
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        return (read(single, 0, 1) < 0) ? -1 : (single[0] & 0xff);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if ( isClosed )
+        {
+            throw new IOException("Stream closed");
+        }
+        if ( len == 0 )
+        {
+            return 0;
+        }
+
+        while ( !atEnd )
+        {
+            if ( !inMember )
+            {
+                if ( !readHeader() )
+                {
+                    atEnd = true;
+                    break;
+                }
+                inMember = true;
+                inflater.setInput(buffer, bufferPosition, bufferLength - bufferPosition);
+            }
+
+            int     count;
+            try
+            {
+                count = inflater.inflate(b, off, len);
+            }
+            catch ( DataFormatException e )
+            {
+                throw new ZipException((e.getMessage() != null) ? e.getMessage() : "Invalid gzip data");
+            }
+            if ( count > 0 )
+            {
+                crc.update(b, off, count);
+                return count;
+            }
+
+            if ( inflater.finished() )
+            {
+                bufferPosition = bufferLength - inflater.getRemaining();
+                readTrailer();
+                inMember = false;
+            }
+            else if ( inflater.needsDictionary() )
+            {
+                throw new ZipException("Unexpected preset dictionary");
+            }
+            else if ( inflater.needsInput() )
+            {
+                bufferPosition = bufferLength;
+                if ( !fill() )
+                {
+                    throw new EOFException("Unexpected end of gzip stream");
+                }
+                inflater.setInput(buffer, bufferPosition, bufferLength - bufferPosition);
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if ( !isClosed )
+        {
+            isClosed = true;
+            inflater.end();
+            in.close();
+        }
+    }
+
+    /**
+     * @return false if the source ended cleanly before another member
+     */
+    private boolean readHeader() throws IOException
+    {
+        if ( (bufferPosition == bufferLength) && !fill() )
+        {
+            if ( memberQty == 0 )
+            {
+                throw new EOFException("Empty gzip stream");
+            }
+            return false;
+        }
+
+        crc.reset();
+        if ( (readHeaderByte() != 0x1f) || (readHeaderByte() != 0x8b) )
+        {
+            throw new ZipException((memberQty == 0) ? "Not in gzip format" : "Unexpected data after gzip member " + memberQty);
+        }
+        if ( readHeaderByte() != 8 )
+        {
+            throw new ZipException("Unsupported gzip compression method");
+        }
+        int     flags = readHeaderByte();
+        for ( int i = 0; i < 6; ++i )   // MTIME, XFL and OS
+        {
+            readHeaderByte();
+        }
+        if ( (flags & FEXTRA) != 0 )
+        {
+            int     length = readHeaderByte() | (readHeaderByte() << 8);
+            for ( int i = 0; i < length; ++i )
+            {
+                readHeaderByte();
+            }
+        }
+        if ( (flags & FNAME) != 0 )
+        {
+            while ( readHeaderByte() != 0 )
+            {
+                // skip
+            }
+        }
+        if ( (flags & FCOMMENT) != 0 )
+        {
+            while ( readHeaderByte() != 0 )
+            {
+                // skip
+            }
+        }
+        if ( (flags & FHCRC) != 0 )
+        {
+            int     expected = (int)crc.getValue() & 0xffff;
+            if ( (readByte() | (readByte() << 8)) != expected )
+            {
+                throw new ZipException("Corrupt gzip header");
+            }
+        }
+
+        ++memberQty;
+        crc.reset();
+        inflater.reset();
+        return true;
+    }
+
+    private void readTrailer() throws IOException
+    {
+        long    expectedCrc = readInt();
+        long    expectedSize = readInt();
+        if ( expectedCrc != crc.getValue() )
+        {
+            throw new ZipException("Corrupt gzip member " + memberQty + ": CRC mismatch");
+        }
+        if ( expectedSize != (inflater.getTotalOut() & 0xffffffffL) )   // ISIZE is modulo 2^32
+        {
+            throw new ZipException("Corrupt gzip member " + memberQty + ": size mismatch");
+        }
+    }
+
+    private long readInt() throws IOException
+    {
+        return (readByte() | (readByte() << 8) | (readByte() << 16) | ((long)readByte() << 24));
+    }
+
+    private int readHeaderByte() throws IOException
+    {
+        int     b = readByte();
+        crc.update(b);
+        return b;
+    }
+
+    private int readByte() throws IOException
+    {
+        if ( (bufferPosition == bufferLength) && !fill() )
+        {
+            throw new EOFException("Unexpected end of gzip stream");
+        }
+        return buffer[bufferPosition++] & 0xff;
+    }
+
+    private boolean fill() throws IOException
+    {
+        int     count;
+        do
+        {
+            count = in.read(buffer, 0, buffer.length);
+        } while ( count == 0 );
+
+        if ( count < 0 )
+        {
+            return false;
+        }
+        bufferPosition = 0;
+        bufferLength = count;
+        return true;
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import org.apache.curator.utils.CloseableUtils;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.store.Directory;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copies a complete index (Lucene files, meta data and columns) as a single stream so
+ * that an index built on one instance can be installed on another without re-reading the backups. The path
+ * filter isn't copied - it's rebuilt from the installed index rather than trusted from the archive. File contents
+ * are moved with {@link FileChannel#transferTo(long, long, WritableByteChannel)} and
+ * {@link FileChannel#transferFrom(ReadableByteChannel, long, long)}.
+ *
+ * Format: magic, version then for each file: name length (unsigned short, at most 255), name (UTF-8), length (long), contents.
+ * A zero name length ends the archive.
+ */
+public class IndexArchive
+{
+    private static final int        MAGIC = 0x45584941;  // EXIA
+    private static final int        VERSION = 1;
+
+    private static final String     META_DATA_ENTRY = "@meta-data";
+    private static final String     COLUMNS_ENTRY = "@columns";
+    private static final String     PATHS_ENTRY = "@paths";    // written by older versions - skipped
+
+    private static final int        MAX_NAME_LENGTH = 255;
+
+    /**
+     * Write the index to the given channel. The files of the index's latest commit are all opened
+     * before anything is written so that an update of the index during the export can't remove them.
+     *
+     * @param indexDirectory the index
+     * @param out destination
+     * @throws IOException errors
+     */
+    public static void      write(File indexDirectory, WritableByteChannel out) throws IOException
+    {
+        File                        metaDataFile = IndexMetaData.getMetaDataFile(indexDirectory);
+        if ( !metaDataFile.exists() )
+        {
+            throw new IOException("Index has no meta data: " + indexDirectory);
+        }
+
+        Map<String, FileChannel>    files = Maps.newLinkedHashMap();
+        try
+        {
+            // meta data first - the commit that is read next is at least as new as its log positions
+            files.put(META_DATA_ENTRY, new FileInputStream(metaDataFile).getChannel());
+            File                    columnsFile = IndexColumns.getColumnsFile(indexDirectory);
+            if ( columnsFile.exists() )
+            {
+                files.put(COLUMNS_ENTRY, new FileInputStream(columnsFile).getChannel());
+            }
+            for ( String name : getCommitFileNames(indexDirectory) )
+            {
+                files.put(name, new FileInputStream(new File(indexDirectory, name)).getChannel());
+            }
+
+            writeFully(out, (ByteBuffer)ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION).flip());
+            for ( Map.Entry<String, FileChannel> entry : files.entrySet() )
+            {
+                byte[]          name = entry.getKey().getBytes(Charsets.UTF_8);
+                if ( name.length > MAX_NAME_LENGTH )
+                {
+                    throw new IOException("File name is too long: " + entry.getKey());
+                }
+                FileChannel     channel = entry.getValue();
+                long            size = channel.size();
+                writeFully(out, (ByteBuffer)ByteBuffer.allocate(2 + name.length + 8).putShort((short)name.length).put(name).putLong(size).flip());
+                for ( long position = 0; position < size; )
+                {
+                    position += channel.transferTo(position, size - position, out);
+                }
+            }
+            writeFully(out, (ByteBuffer)ByteBuffer.allocate(2).putShort((short)0).flip());
+        }
+        finally
+        {
+            for ( FileChannel channel : files.values() )
+            {
+                CloseableUtils.closeQuietly(channel);
+            }
+        }
+    }
+
+    /**
+     * Install an index written by {@link #write(File, WritableByteChannel)}. The index only becomes
+     * visible (see {@link IndexList}) once it has been completely read.
+     *
+     * @param in source
+     * @param indexDirectory the new index. Must not already exist.
+     * @param pathFilterDepth if not negative, an {@link IndexPathFilter} with this depth is built for the index
+     * @throws Exception errors - nothing is installed in this case
+     */
+    public static void      read(ReadableByteChannel in, File indexDirectory, int pathFilterDepth) throws Exception
+    {
+        File            metaDataFile = IndexMetaData.getMetaDataFile(indexDirectory);
+        if ( indexDirectory.exists() || metaDataFile.exists() )
+        {
+            throw new IOException("Index already exists: " + indexDirectory);
+        }
+
+        File            tempDirectory = new File(indexDirectory.getPath() + ".importing");
+        if ( !tempDirectory.mkdirs() )
+        {
+            throw new IOException("Could not make: " + tempDirectory);
+        }
+
+        boolean         success = false;
+        try
+        {
+            ByteBuffer  header = readFully(in, 8);
+            if ( (header.getInt() != MAGIC) || (header.getInt() != VERSION) )
+            {
+                throw new IOException("Not an index archive");
+            }
+
+            for(;;)
+            {
+                int     nameLength = readFully(in, 2).getShort() & 0xffff;
+                if ( nameLength == 0 )
+                {
+                    break;
+                }
+                if ( nameLength > MAX_NAME_LENGTH )
+                {
+                    throw new IOException("Not an index archive - bad file name length: " + nameLength);
+                }
+                String  name = new String(readFully(in, nameLength).array(), Charsets.UTF_8);
+                if ( !IndexList.isPlainName(name) )
+                {
+                    throw new IOException("Bad file name in archive: " + name);
+                }
+                long    size = readFully(in, 8).getLong();
+                if ( size < 0 )
+                {
+                    throw new IOException("Not an index archive - bad file length: " + size);
+                }
+
+                FileChannel     channel = new FileOutputStream(new File(tempDirectory, name)).getChannel();
+                try
+                {
+                    for ( long position = 0; position < size; )
+                    {
+                        long    count = channel.transferFrom(in, position, size - position);
+                        if ( count <= 0 )
+                        {
+                            throw new IOException("Archive is truncated");
+                        }
+                        position += count;
+                    }
+                }
+                finally
+                {
+                    CloseableUtils.closeQuietly(channel);
+                }
+            }
+
+            File        tempMetaDataFile = new File(tempDirectory, META_DATA_ENTRY);
+            IndexMetaData.read(tempMetaDataFile);  // validate
+            File        tempColumnsFile = new File(tempDirectory, COLUMNS_ENTRY);
+            if ( tempColumnsFile.exists() )
+            {
+                rename(tempColumnsFile, IndexColumns.getColumnsFile(indexDirectory));
+            }
+            File        tempPathFilterFile = new File(tempDirectory, PATHS_ENTRY);
+            if ( tempPathFilterFile.exists() && !tempPathFilterFile.delete() )
+            {
+                throw new IOException("Could not delete: " + tempPathFilterFile);
+            }
+            if ( pathFilterDepth >= 0 )
+            {
+                writePathFilter(tempDirectory, pathFilterDepth, IndexPathFilter.getPathFilterFile(indexDirectory));
+            }
+            File        stagedMetaDataFile = new File(tempDirectory.getPath() + ".properties");
+            rename(tempMetaDataFile, stagedMetaDataFile);
+            rename(tempDirectory, indexDirectory);
+            rename(stagedMetaDataFile, metaDataFile);   // last - makes the index visible
+            success = true;
+        }
+        finally
+        {
+            if ( !success )
+            {
+                deleteDirectory(tempDirectory);
+                //noinspection ResultOfMethodCallIgnored
+                new File(tempDirectory.getPath() + ".properties").delete();
+                //noinspection ResultOfMethodCallIgnored
+                IndexColumns.getColumnsFile(indexDirectory).delete();
+                //noinspection ResultOfMethodCallIgnored
+                IndexPathFilter.getPathFilterFile(indexDirectory).delete();
+            }
+        }
+    }
+
+    private static void writePathFilter(File indexDirectory, int pathFilterDepth, File pathFilterFile) throws IOException
+    {
+        Directory       directory = IndexDirectoryType.NIO.open(indexDirectory);
+        try
+        {
+            IndexReader reader = IndexReader.open(directory);
+            try
+            {
+                IndexPathFilter.write(reader, pathFilterDepth, pathFilterFile);
+            }
+            finally
+            {
+                CloseableUtils.closeQuietly(reader);
+            }
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(directory);
+        }
+    }
+
+    private static Collection<String> getCommitFileNames(File indexDirectory) throws IOException
+    {
+        Directory       directory = IndexDirectoryType.NIO.open(indexDirectory);
+        try
+        {
+            List<IndexCommit>   commits = (List<IndexCommit>)IndexReader.listCommits(directory);
+            return commits.get(commits.size() - 1).getFileNames();
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(directory);
+        }
+    }
+
+    private static void writeFully(WritableByteChannel out, ByteBuffer buffer) throws IOException
+    {
+        while ( buffer.hasRemaining() )
+        {
+            out.write(buffer);
+        }
+    }
+
+    private static ByteBuffer readFully(ReadableByteChannel in, int length) throws IOException
+    {
+        ByteBuffer      buffer = ByteBuffer.allocate(length);
+        while ( buffer.hasRemaining() )
+        {
+            if ( in.read(buffer) < 0 )
+            {
+                throw new IOException("Archive is truncated");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void rename(File from, File to) throws IOException
+    {
+        if ( !from.renameTo(to) )
+        {
+            throw new IOException("Could not rename " + from + " to " + to);
+        }
+    }
+
+    private static void deleteDirectory(File directory)
+    {
+        File[]      files = directory.listFiles();
+        if ( files != null )
+        {
+            for ( File f : files )
+            {
+                //noinspection ResultOfMethodCallIgnored
+                f.delete();
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        directory.delete();
+    }
+
+    private IndexArchive()
+    {
+    }
+}
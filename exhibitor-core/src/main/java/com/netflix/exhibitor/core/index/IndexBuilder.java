@@ -16,14 +16,17 @@
 
 package com.netflix.exhibitor.core.index;
 
+import com.google.common.collect.Maps;
 import org.apache.curator.utils.CloseableUtils;
 import org.apache.jute.Record;
 import org.apache.lucene.analysis.KeywordAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.NumericField;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LogByteSizeMergePolicy;
 import org.apache.lucene.store.NIOFSDirectory;
 import org.apache.lucene.store.SingleInstanceLockFactory;
 import org.apache.lucene.util.Version;
@@ -36,22 +39,55 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class IndexBuilder implements Closeable
 {
     private final File              directory;
+    private final boolean           append;
+    private final int               pathFilterDepth;
     private final AtomicInteger     count = new AtomicInteger(0);
     private final AtomicLong        from = new AtomicLong(Long.MAX_VALUE);
     private final AtomicLong        to = new AtomicLong(Long.MIN_VALUE);
+    private final Map<String, LogPosition> logPositions = Maps.newConcurrentMap();
+    private final Map<String, DocumentWriterStage.Lane> reservedLanes = Maps.newConcurrentMap();
 
     private NIOFSDirectory niofsDirectory;
     private IndexWriter writer;
+    private DocumentWriterStage documentWriter;
+
+    private static final int        WRITER_THREAD_QTY = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
 
     public IndexBuilder(File directory)
+    {
+        this(directory, false);
+    }
+
+    /**
+     * @param directory index directory
+     * @param append if true, an existing index in the directory is added to instead of being re-created.
+     *               Logs are only indexed from the point at which the previous build left off.
+     */
+    public IndexBuilder(File directory, boolean append)
+    {
+        this(directory, append, -1);
+    }
+
+    /**
+     * @param directory index directory
+     * @param append if true, an existing index in the directory is added to instead of being re-created.
+     *               Logs are only indexed from the point at which the previous build left off.
+     * @param pathFilterDepth if not negative, an {@link IndexPathFilter} with this depth is written with the
+     *                        meta data
+     */
+    public IndexBuilder(File directory, boolean append, int pathFilterDepth)
     {
         this.directory = directory;
+        this.append = append;
+        this.pathFilterDepth = pathFilterDepth;
     }
 
     public void open() throws Exception
@@ -61,42 +97,271 @@ public class IndexBuilder implements Closeable
             throw new IOException("Could not make: " + directory);
         }
 
-        IndexWriterConfig conf = new IndexWriterConfig(Version.LUCENE_35, new KeywordAnalyzer()).setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+        IndexWriterConfig.OpenMode  openMode = IndexWriterConfig.OpenMode.CREATE;
+        File                        metaDataFile = IndexMetaData.getMetaDataFile(directory);
+        if ( append && metaDataFile.exists() )
+        {
+            IndexMetaData       metaData = IndexMetaData.read(metaDataFile);
+            count.set(metaData.getEntryCount());
+            from.set(metaData.getFrom().getTime());
+            to.set(metaData.getTo().getTime());
+            logPositions.putAll(metaData.getLogPositions());
+            openMode = IndexWriterConfig.OpenMode.CREATE_OR_APPEND;
+        }
+        else
+        {
+            // columns of a previous index in the directory would otherwise be extended as if they were this one's
+            File    columnsFile = IndexColumns.getColumnsFile(directory);
+            if ( columnsFile.exists() && !columnsFile.delete() )
+            {
+                throw new IOException("Could not delete: " + columnsFile);
+            }
+        }
+
+        // merge only adjacent segments so that doc IDs (which are cached in search handles) survive appends
+        IndexWriterConfig conf = new IndexWriterConfig(Version.LUCENE_35, new KeywordAnalyzer()).setOpenMode(openMode).setMergePolicy(new LogByteSizeMergePolicy());
 
         niofsDirectory = new NIOFSDirectory(directory, new SingleInstanceLockFactory());
         writer = new IndexWriter(niofsDirectory, conf);
+        documentWriter = new DocumentWriterStage(writer, WRITER_THREAD_QTY);
+    }
+
+    /**
+     * Fix the order in which the entries of logs that are about to be added concurrently are written
+     * (oldest first) so that index segments don't mix entries from far apart in time. Adding a reserved
+     * log blocks once enough of its entries are waiting for the logs ahead of it. Each reserved log must
+     * be released with {@link #releaseLog(String)} - which must happen before any commit. Logs that aren't
+     * reserved are written in the order they're added.
+     *
+     * @param logNames names of the logs in the order they should be written
+     */
+    public void reserveLogs(List<String> logNames)
+    {
+        for ( String logName : logNames )
+        {
+            reservedLanes.put(logName, documentWriter.openLane());
+        }
+    }
+
+    /**
+     * Call once all sources for a log passed to {@link #reserveLogs(List)} have been added (or have failed)
+     *
+     * @param logName name of the log
+     */
+    public void releaseLog(String logName)
+    {
+        DocumentWriterStage.Lane    lane = reservedLanes.remove(logName);
+        if ( lane != null )
+        {
+            lane.close();
+        }
+    }
+
+    /**
+     * Index the given transaction log. Only transactions beyond the point previously recorded for the
+     * log's name are added. Different logs can be added concurrently from separate threads but a given
+     * log name must only be added from one thread at a time.
+     *
+     * @param logName name of the log (the file name of the ZooKeeper log)
+     * @param modifiedDate modified date of the log/backup
+     * @param stream the log
+     * @throws Exception errors
+     */
+    public void add(String logName, long modifiedDate, InputStream stream) throws Exception
+    {
+        if ( !isUnchanged(logName, modifiedDate) )
+        {
+            add(logName, modifiedDate, new ZooKeeperLogParser(stream));
+        }
+    }
+
+    /**
+     * Same as {@link #add(String, long, InputStream)} but the log file is memory-mapped rather than streamed
+     *
+     * @param logName name of the log (the file name of the ZooKeeper log)
+     * @param modifiedDate modified date of the log
+     * @param log the log file
+     * @throws Exception errors
+     */
+    public void add(String logName, long modifiedDate, File log) throws Exception
+    {
+        if ( !isUnchanged(logName, modifiedDate) )
+        {
+            add(logName, modifiedDate, new ZooKeeperLogParser(log));
+        }
+    }
+
+    /**
+     * Index whatever has been appended to the given log file since it was last indexed. Unlike
+     * {@link #add(String, long, File)} the log is always checked - modified dates are too coarse
+     * to detect appends made in quick succession.
+     *
+     * @param logName name of the log (the file name of the ZooKeeper log)
+     * @param log the log file
+     * @throws Exception errors
+     */
+    public void addAppended(String logName, File log) throws Exception
+    {
+        add(logName, log.lastModified(), new ZooKeeperLogParser(log));
     }
 
-    public void add(InputStream stream) throws Exception
+    private boolean isUnchanged(String logName, long modifiedDate)
     {
-        ZooKeeperLogParser  logParser = new ZooKeeperLogParser(stream);
+        LogPosition         position = logPositions.get(logName);
+        return (position != null) && (position.getModifiedDate() == modifiedDate);
+    }
+
+    private void add(String logName, long modifiedDate, ZooKeeperLogParser logParser) throws Exception
+    {
+        LogPosition         position = logPositions.get(logName);
         if ( logParser.isValid() )
         {
-            logParser.parse
-            (
-                new LogEntryReceiver()
+            DocumentWriterStage.Lane    reservedLane = reservedLanes.get(logName);
+            final DocumentWriterStage.Lane  lane = (reservedLane != null) ? reservedLane : documentWriter.openLane();
+            try
+            {
+                parse(logName, modifiedDate, logParser, position, lane);
+            }
+            finally
+            {
+                if ( reservedLane == null )
+                {
+                    lane.close();
+                }
+            }
+        }
+    }
+
+    private void parse(String logName, long modifiedDate, ZooKeeperLogParser logParser, LogPosition position, final DocumentWriterStage.Lane lane) throws Exception
+    {
+        final long          lastIndexedZxid = (position != null) ? position.getZxid() : Long.MIN_VALUE;
+        final AtomicLong    maxZxid = new AtomicLong(lastIndexedZxid);
+        if ( (position != null) && !logParser.skipTo(position.getOffset()) )
+        {
+            return; // an older copy of a log that has already been indexed
+        }
+
+        logParser.parse
+        (
+            new LogEntryReceiver()
+            {
+                @Override
+                public void receiveEntry(TxnHeader header, Record record) throws Exception
                 {
-                    @Override
-                    public void receiveEntry(TxnHeader header, Record record) throws Exception
+                    if ( header.getZxid() > lastIndexedZxid )
                     {
-                        indexRecord(header, record, count, from, to);
+                        indexRecord(header, record, lane);
+                        maxZxid.set(Math.max(maxZxid.get(), header.getZxid()));
                     }
                 }
-            );
-        }
+            }
+        );
+
+        long        newModifiedDate = (position != null) ? Math.max(position.getModifiedDate(), modifiedDate) : modifiedDate;
+        logPositions.put(logName, new LogPosition(maxZxid.get(), logParser.getPosition(), newModifiedDate));
     }
 
+    /**
+     * Wait for all added entries to be written and then write the meta data file
+     *
+     * @throws Exception errors
+     */
     public void writeMetaData() throws Exception
     {
-        IndexMetaData       metaData = new IndexMetaData(new Date(from.get()), new Date(to.get()), count.get());
+        documentWriter.finish();
+        writePathFilter();
+
+        IndexMetaData       metaData = new IndexMetaData(new Date(from.get()), new Date(to.get()), count.get(), logPositions);
+        IndexMetaData.write(metaData, IndexMetaData.getMetaDataFile(directory));
+    }
+
+    /**
+     * Make all entries added so far durable and visible to newly opened/refreshed searchers and then
+     * write the meta data file. Unlike {@link #close()}, the index stays open and more entries can be added.
+     *
+     * @throws Exception errors
+     */
+    public void commit() throws Exception
+    {
+        documentWriter.finish();
+        documentWriter = new DocumentWriterStage(writer, WRITER_THREAD_QTY);
+        writePathFilter();
+        writer.commit();
+
+        // the meta data is written after the commit so that recorded log positions never get ahead of the index
+        IndexMetaData       metaData = new IndexMetaData(new Date(from.get()), new Date(to.get()), count.get(), logPositions);
         IndexMetaData.write(metaData, IndexMetaData.getMetaDataFile(directory));
     }
 
+    /**
+     * Discard everything added since the index was opened
+     *
+     * @throws IOException errors
+     */
+    public void abort() throws IOException
+    {
+        if ( documentWriter != null )
+        {
+            documentWriter.abort();
+            documentWriter = null;
+        }
+        if ( writer != null )
+        {
+            writer.rollback();
+            writer = null;
+        }
+    }
+
     @Override
     public void close() throws IOException
     {
-        CloseableUtils.closeQuietly(writer);
-        CloseableUtils.closeQuietly(niofsDirectory);
+        try
+        {
+            if ( documentWriter != null )
+            {
+                documentWriter.finish();
+            }
+        }
+        catch ( IOException e )
+        {
+            throw e;
+        }
+        catch ( Exception e )
+        {
+            throw new IOException(e);
+        }
+        finally
+        {
+            documentWriter = null;
+            CloseableUtils.closeQuietly(writer);
+            CloseableUtils.closeQuietly(niofsDirectory);
+        }
+    }
+
+    /**
+     * The filter is written before the entries are committed so that it never lacks a committed path
+     */
+    private void writePathFilter() throws IOException
+    {
+        File        pathFilterFile = IndexPathFilter.getPathFilterFile(directory);
+        if ( pathFilterDepth < 0 )
+        {
+            if ( pathFilterFile.exists() && !pathFilterFile.delete() )  // would be stale
+            {
+                throw new IOException("Could not delete: " + pathFilterFile);
+            }
+            return;
+        }
+
+        IndexReader reader = IndexReader.open(writer, false);
+        try
+        {
+            IndexPathFilter.write(reader, pathFilterDepth, pathFilterFile);
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(reader);
+        }
     }
 
     public int  getCurrentCount()
@@ -104,7 +369,7 @@ public class IndexBuilder implements Closeable
         return count.get();
     }
 
-    private void indexRecord(TxnHeader header, Record record, AtomicInteger count, AtomicLong from, AtomicLong to) throws IOException
+    private void indexRecord(TxnHeader header, Record record, DocumentWriterStage.Lane lane) throws Exception
     {
         if ( record instanceof CreateTxn )
         {
@@ -114,7 +379,7 @@ public class IndexBuilder implements Closeable
             Document document = makeDocument(header, type, count, from, to);
             addPath(document, createTxn.getPath());
             addData(document, createTxn.getData());
-            writer.addDocument(document);
+            lane.add(document);
         }
         else if ( record instanceof DeleteTxn )
         {
@@ -122,7 +387,7 @@ public class IndexBuilder implements Closeable
 
             Document document = makeDocument(header, EntryTypes.DELETE, count, from, to);
             addPath(document, deleteTxn.getPath());
-            writer.addDocument(document);
+            lane.add(document);
         }
         else if ( record instanceof SetDataTxn )
         {
@@ -135,7 +400,7 @@ public class IndexBuilder implements Closeable
             addPath(document, setDataTxn.getPath());
             addData(document, setDataTxn.getData());
             document.add(versionField);
-            writer.addDocument(document);
+            lane.add(document);
         }
     }
 
@@ -156,13 +421,13 @@ public class IndexBuilder implements Closeable
     private Document makeDocument(TxnHeader header, EntryTypes type, AtomicInteger count, AtomicLong from, AtomicLong to)
     {
         count.incrementAndGet();
-        if ( header.getTime() < from.get() )
+        for ( long current = from.get(); (header.getTime() < current) && !from.compareAndSet(current, header.getTime()); current = from.get() )
         {
-            from.set(header.getTime());
+            // retry - another log is being indexed concurrently
         }
-        if ( header.getTime() > to.get() )
+        for ( long current = to.get(); (header.getTime() > current) && !to.compareAndSet(current, header.getTime()); current = to.get() )
         {
-            to.set(header.getTime());
+            // retry - another log is being indexed concurrently
         }
 
         NumericField dateField = new NumericField(FieldNames.DATE, Field.Store.YES, true);
@@ -16,22 +16,27 @@
 
 package com.netflix.exhibitor.core.index;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.netflix.exhibitor.core.activity.ActivityLog;
+import org.apache.lucene.search.Query;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
-@SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
 public class IndexCache implements Closeable
 {
     private final LoadingCache<File, IndexMetaData> metaDataCache = CacheBuilder
@@ -49,30 +54,127 @@ public class IndexCache implements Closeable
             }
         );
 
+    private final LoadingCache<File, Optional<IndexPathFilter>> pathFilterCache = CacheBuilder
+        .newBuilder()
+        .expireAfterAccess(MAX_CACHE_MS, TimeUnit.MILLISECONDS)
+        .build
+        (
+            new CacheLoader<File, Optional<IndexPathFilter>>()
+            {
+                @Override
+                public Optional<IndexPathFilter> load(File indexDirectory) throws Exception
+                {
+                    return Optional.fromNullable(IndexPathFilter.read(indexDirectory));
+                }
+            }
+        );
+
     private final ConcurrentMap<File, LogSearchHolder>  indexCache = Maps.newConcurrentMap();
     private final AtomicBoolean                         isOpen = new AtomicBoolean(true);
+    private final ScheduledExecutorService              cleanService = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("IndexCache-%d").build());
     private final ActivityLog                           log;
+    private final IndexDirectoryType                    directoryType;
+    private final ExecutorService                       searchService;
+    private final SearchResultCache                     resultCache = new SearchResultCache();
 
     private static class LogSearchHolder
     {
-        // all protected by synchronization
-        private LogSearch               logSearch;
-        private int                     useCount = 0;
-        private long                    lastUse = System.currentTimeMillis();
-        private boolean                 markedForDeletion = false;
+        private final LogSearch         logSearch;
+        private final AtomicInteger     useCount = new AtomicInteger(0);   // CLOSED once the LogSearch has been closed
+        private volatile long           lastUse = System.currentTimeMillis();
+        private volatile boolean        markedForDeletion = false;
+
+        private LogSearchHolder(LogSearch logSearch)
+        {
+            this.logSearch = logSearch;
+        }
+
+        /**
+         * @return true if a reference was taken. false if the holder has been closed
+         */
+        private boolean acquire()
+        {
+            for(;;)
+            {
+                int     count = useCount.get();
+                if ( count == CLOSED )
+                {
+                    return false;
+                }
+                if ( useCount.compareAndSet(count, count + 1) )
+                {
+                    lastUse = System.currentTimeMillis();
+                    return true;
+                }
+            }
+        }
+
+        private void release()
+        {
+            lastUse = System.currentTimeMillis();
+            int     count = useCount.decrementAndGet();
+            Preconditions.checkState(count >= 0, "non positive use count in release: " + (count + 1));
+        }
+
+        /**
+         * @return true if the holder was unused and has now been closed
+         */
+        private boolean closeIfUnused()
+        {
+            if ( useCount.compareAndSet(0, CLOSED) )
+            {
+                logSearch.close();
+                return true;
+            }
+            return false;
+        }
     }
 
+    private static final int        CLOSED = -1;
     private static final int        MAX_CACHE_MS = (int)TimeUnit.MILLISECONDS.convert(5, TimeUnit.MINUTES);
+    private static final int        CLEAN_PERIOD_MS = (int)TimeUnit.MILLISECONDS.convert(1, TimeUnit.MINUTES);
 
     public IndexCache(ActivityLog log)
+    {
+        this(log, IndexDirectoryType.NIO);
+    }
+
+    public IndexCache(ActivityLog log, IndexDirectoryType directoryType)
+    {
+        this(log, directoryType, null);
+    }
+
+    /**
+     * @param log the log
+     * @param directoryType how to access indexes when searching
+     * @param searchService if not null, index segments are searched in parallel with this executor
+     */
+    public IndexCache(ActivityLog log, IndexDirectoryType directoryType, ExecutorService searchService)
     {
         this.log = log;
+        this.directoryType = directoryType;
+        this.searchService = searchService;
+        cleanService.scheduleWithFixedDelay
+        (
+            new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    clean();
+                }
+            },
+            CLEAN_PERIOD_MS,
+            CLEAN_PERIOD_MS,
+            TimeUnit.MILLISECONDS
+        );
     }
 
     @Override
     public void close() throws IOException
     {
         Preconditions.checkArgument(isOpen.compareAndSet(true, false), "Cache is closed");
+        cleanService.shutdownNow();
         clean();
     }
 
@@ -83,69 +185,151 @@ public class IndexCache implements Closeable
         return metaDataCache.get(indexDirectory);
     }
 
-    public void     markForDeletion(File indexDirectory)
+    /**
+     * Check the index's path filter (if it has one). The index itself is not opened.
+     *
+     * @param indexDirectory the index
+     * @param query the query or null for all documents
+     * @return false if the query definitely has no matches in the index
+     * @throws Exception errors
+     */
+    public boolean  mightMatch(File indexDirectory, Query query) throws Exception
     {
         Preconditions.checkArgument(isOpen.get(), "Cache is closed");
 
-        LogSearchHolder     holder = getHolder(indexDirectory);
-        synchronized(holder)
+        if ( query == null )
         {
-            holder.markedForDeletion = true;
+            return true;
         }
-        clean();
+        Optional<IndexPathFilter>   pathFilter = pathFilterCache.get(indexDirectory);
+        return !pathFilter.isPresent() || pathFilter.get().mightMatch(query);
     }
 
-    public LogSearch        getLogSearch(File indexDirectory) throws Exception
+    /**
+     * @return the cache of search hits shared by all open indexes
+     */
+    public SearchResultCache getSearchResultCache()
     {
-        Preconditions.checkArgument(isOpen.get(), "Cache is closed");
+        return resultCache;
+    }
 
-        clean();
+    /**
+     * Called after an existing index has been appended to so that stale state is not used
+     *
+     * @param indexDirectory the index
+     */
+    public void     indexUpdated(File indexDirectory)
+    {
+        Preconditions.checkArgument(isOpen.get(), "Cache is closed");
 
-        final LogSearchHolder     holder = getHolder(indexDirectory);
+        metaDataCache.invalidate(indexDirectory);
+        pathFilterCache.invalidate(indexDirectory);
 
-        LogSearch                 logSearch;
-        synchronized(holder)
+        LogSearchHolder     holder = indexCache.get(indexDirectory);
+        if ( (holder != null) && holder.acquire() )
         {
-            if ( holder.logSearch == null )
+            try
             {
-                Preconditions.checkArgument(holder.useCount == 0, "use count is non zero but instance is null: " + holder.useCount);
-                holder.logSearch = new LogSearch(indexDirectory);
+                holder.logSearch.refresh();
+            }
+            catch ( IOException e )
+            {
+                log.add(ActivityLog.Type.ERROR, "Refreshing index: " + indexDirectory, e);
+            }
+            finally
+            {
+                holder.release();
             }
-
-            ++holder.useCount;
-            Preconditions.checkArgument(holder.useCount > 0, "use count has rolled over: " + holder.useCount);
-
-            holder.lastUse = System.currentTimeMillis();
-
-            logSearch = holder.logSearch;
         }
+    }
 
-        return logSearch;
+    /**
+     * Open a freshly built index and warm its searcher (sort caches, OS pages) so that the first
+     * search against it is fast. The index stays open until it is evicted for being idle.
+     *
+     * @param indexDirectory the index
+     * @throws Exception errors
+     */
+    public void     warm(File indexDirectory) throws Exception
+    {
+        getLogSearch(indexDirectory);
+        releaseLogSearch(indexDirectory);
     }
 
-    public void             releaseLogSearch(File indexDirectory)
+    public void     markForDeletion(File indexDirectory)
     {
         Preconditions.checkArgument(isOpen.get(), "Cache is closed");
 
         LogSearchHolder     holder = indexCache.get(indexDirectory);
-        holder = Preconditions.checkNotNull(holder, "No entry found for index being released: " + indexDirectory);
+        if ( holder != null )
+        {
+            holder.markedForDeletion = true;
+            clean();
+        }
+        else
+        {
+            delete(indexDirectory);
+        }
+    }
 
-        synchronized(holder)
+    /**
+     * Return the shared LogSearch for the given index. Every call must be balanced with a call to
+     * {@link #releaseLogSearch(File)}
+     *
+     * @param indexDirectory the index
+     * @return LogSearch
+     * @throws Exception errors
+     */
+    public LogSearch        getLogSearch(File indexDirectory) throws Exception
+    {
+        Preconditions.checkArgument(isOpen.get(), "Cache is closed");
+
+        for(;;)
         {
-            Preconditions.checkArgument(holder.useCount > 0, "non positive use count in release: " + holder.useCount);
-            --holder.useCount;
+            LogSearchHolder     holder = indexCache.get(indexDirectory);
+            if ( holder == null )
+            {
+                LogSearchHolder     newHolder = new LogSearchHolder(new LogSearch(indexDirectory, directoryType, searchService, resultCache));
+                holder = indexCache.putIfAbsent(indexDirectory, newHolder);
+                if ( holder != null )
+                {
+                    newHolder.logSearch.close();    // lost the race
+                }
+                else
+                {
+                    holder = newHolder;
+                }
+            }
+
+            if ( holder.markedForDeletion )
+            {
+                throw new IllegalStateException("Index is being deleted: " + indexDirectory);
+            }
+            if ( holder.acquire() )
+            {
+                return holder.logSearch;
+            }
+            indexCache.remove(indexDirectory, holder);  // was closed - try again
         }
     }
 
-    private LogSearchHolder getHolder(File indexDirectory)
+    public void             releaseLogSearch(File indexDirectory)
     {
-        LogSearchHolder newHolder = new LogSearchHolder();
-        LogSearchHolder oldHolder = indexCache.putIfAbsent(indexDirectory, newHolder);
-        return (oldHolder != null) ? oldHolder : newHolder;
+        LogSearchHolder     holder = indexCache.get(indexDirectory);
+        holder = Preconditions.checkNotNull(holder, "No entry found for index being released: " + indexDirectory);
+        holder.release();
+
+        if ( holder.markedForDeletion )
+        {
+            closeAndRemove(indexDirectory, holder);
+        }
     }
 
     public void delete(File indexDirectory)
     {
+        resultCache.invalidate(indexDirectory);
+        metaDataCache.invalidate(indexDirectory);
+        pathFilterCache.invalidate(indexDirectory);
         File[] files = indexDirectory.listFiles();
         if ( files != null )
         {
@@ -166,36 +350,41 @@ public class IndexCache implements Closeable
         {
             log.add(ActivityLog.Type.ERROR, "Could not delete: " + metaDataFile);
         }
+        File    columnsFile = IndexColumns.getColumnsFile(indexDirectory);
+        if ( columnsFile.exists() && !columnsFile.delete() )
+        {
+            log.add(ActivityLog.Type.ERROR, "Could not delete: " + columnsFile);
+        }
+        File    pathFilterFile = IndexPathFilter.getPathFilterFile(indexDirectory);
+        if ( pathFilterFile.exists() && !pathFilterFile.delete() )
+        {
+            log.add(ActivityLog.Type.ERROR, "Could not delete: " + pathFilterFile);
+        }
 
         log.add(ActivityLog.Type.INFO, "Index deleted: " + indexDirectory.getName());
     }
 
     private void        clean()
     {
-        Iterator<Map.Entry<File, LogSearchHolder>> iterator = indexCache.entrySet().iterator();
-        while ( iterator.hasNext() )
+        for ( Map.Entry<File, LogSearchHolder> entry : indexCache.entrySet() )
         {
-            final Map.Entry<File, LogSearchHolder> entry = iterator.next();
-            final LogSearchHolder     holder = entry.getValue();
-            synchronized(holder)
+            LogSearchHolder     holder = entry.getValue();
+            boolean             shouldClose = !isOpen.get() || holder.markedForDeletion || ((System.currentTimeMillis() - holder.lastUse) > MAX_CACHE_MS);
+            if ( shouldClose )
             {
-                if ( holder.useCount == 0 )
-                {
-                    if ( !isOpen.get() || holder.markedForDeletion || ((System.currentTimeMillis() - holder.lastUse) > MAX_CACHE_MS) )
-                    {
-                        if ( holder.logSearch != null )
-                        {
-                            holder.logSearch.close();
-                            holder.logSearch = null;
-                        }
-                        iterator.remove();
-
-                        if ( holder.markedForDeletion )
-                        {
-                            delete(entry.getKey());
-                        }
-                    }
-                }
+                closeAndRemove(entry.getKey(), holder);
+            }
+        }
+    }
+
+    private void        closeAndRemove(File indexDirectory, LogSearchHolder holder)
+    {
+        if ( holder.closeIfUnused() )
+        {
+            indexCache.remove(indexDirectory, holder);
+            if ( holder.markedForDeletion )
+            {
+                delete(indexDirectory);
             }
         }
     }
@@ -0,0 +1,768 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.curator.utils.CloseableUtils;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.ReaderUtil;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A memory-mapped, column-per-field copy of the small fields of every document in an index
+ * (date, type, version and path). Listing results reads from here instead of loading stored
+ * documents (and their data blobs). Paths are stored once in a sorted dictionary and each document
+ * refers to its path by ordinal. Each path also has a posting list of its documents. As the
+ * dictionary is sorted, all paths with a given prefix have adjacent ordinals and their postings
+ * are adjacent as well.
+ */
+public class IndexColumns
+{
+    private final int           docCount;
+    private final int           pathCount;
+    private final LongBuffer    dates;
+    private final ByteBuffer    types;
+    private final IntBuffer     versions;
+    private final IntBuffer     pathOrdinals;
+    private final IntBuffer     pathOffsets;
+    private final ByteBuffer    pathBytes;
+    private final IntBuffer     postingOffsets;
+    private final IntBuffer     postingDocs;
+
+    private static final String     COLUMNS_FILE_EXTENSION = ".columns";
+
+    private static final int        MAGIC = 0x45584331;  // EXC1
+    private static final int        VERSION = 2;
+    private static final int        HEADER_SIZE = 20;
+
+    private static final int        MIN_UNCOVERED_DOCS = 10000;
+    private static final int        UNCOVERED_DOCS_DIVISOR = 8;
+
+    public static File getColumnsFile(File indexDirectory)
+    {
+        return new File(indexDirectory.getPath() + COLUMNS_FILE_EXTENSION);
+    }
+
+    /**
+     * Write the columns for the index in the given directory. Existing columns for the index are extended.
+     *
+     * @param indexDirectory index
+     * @throws IOException errors
+     */
+    public static void  build(File indexDirectory) throws IOException
+    {
+        IndexReader     reader = IndexReader.open(IndexDirectoryType.NIO.open(indexDirectory));
+        try
+        {
+            File            columnsFile = getColumnsFile(indexDirectory);
+            IndexColumns    previous = openIfValid(columnsFile);
+            if ( (previous != null) && (previous.getDocCount() <= reader.maxDoc()) )
+            {
+                extend(reader, previous, columnsFile);
+            }
+            else
+            {
+                write(reader, columnsFile);
+            }
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(reader);
+            CloseableUtils.closeQuietly(reader.directory());
+        }
+    }
+
+    /**
+     * Write the columns for all documents in the given (top level) reader
+     *
+     * @param reader the reader
+     * @param file file to write to
+     * @throws IOException errors
+     */
+    public static void  write(IndexReader reader, File file) throws IOException
+    {
+        int                     docCount = reader.maxDoc();
+        long[]                  dates = new long[docCount];
+        byte[]                  types = new byte[docCount];
+        int[]                   versions = new int[docCount];
+        int[]                   pathOrdinals = new int[docCount];
+        int[]                   postingDocs = new int[docCount];
+        int                     postingCount = 0;
+        Arrays.fill(versions, -1);
+
+        List<IndexReader>       subReaders = Lists.newArrayList();
+        ReaderUtil.gatherSubReaders(subReaders, reader);
+        int                     docBase = 0;
+        for ( IndexReader subReader : subReaders )
+        {
+            int         maxDoc = subReader.maxDoc();
+            long[]      segmentDates = FieldCache.DEFAULT.getLongs(subReader, FieldNames.DATE);
+            System.arraycopy(segmentDates, 0, dates, docBase, maxDoc);
+
+            Bits        hasVersion = FieldCache.DEFAULT.getDocsWithField(subReader, FieldNames.VERSION);
+            int[]       segmentVersions = FieldCache.DEFAULT.getInts(subReader, FieldNames.VERSION, FieldCache.NUMERIC_UTILS_INT_PARSER);
+            for ( int i = 0; i < maxDoc; ++i )
+            {
+                if ( hasVersion.get(i) )
+                {
+                    versions[docBase + i] = segmentVersions[i];
+                }
+            }
+
+            docBase += maxDoc;
+        }
+
+        TermDocs                termDocs = reader.termDocs();
+        try
+        {
+            TermEnum            typeTerms = reader.terms(new Term(FieldNames.TYPE, ""));
+            try
+            {
+                for ( Term term = typeTerms.term(); (term != null) && term.field().equals(FieldNames.TYPE); term = typeTerms.next() ? typeTerms.term() : null )
+                {
+                    byte        type = Byte.parseByte(term.text());
+                    termDocs.seek(term);
+                    while ( termDocs.next() )
+                    {
+                        types[termDocs.doc()] = type;
+                    }
+                }
+            }
+            finally
+            {
+                typeTerms.close();
+            }
+
+            // terms are enumerated in sorted order so the dictionary is sorted
+            ByteArrayOutputStream   pathBytes = new ByteArrayOutputStream();
+            List<Integer>           pathOffsets = Lists.newArrayList();
+            List<Integer>           postingOffsets = Lists.newArrayList();
+            TermEnum                pathTerms = reader.terms(new Term(FieldNames.PATH, ""));
+            try
+            {
+                for ( Term term = pathTerms.term(); (term != null) && term.field().equals(FieldNames.PATH); term = pathTerms.next() ? pathTerms.term() : null )
+                {
+                    int     ordinal = pathOffsets.size();
+                    pathOffsets.add(pathBytes.size());
+                    pathBytes.write(term.text().getBytes(Charsets.UTF_8));
+                    postingOffsets.add(postingCount);
+
+                    termDocs.seek(term);
+                    while ( termDocs.next() )
+                    {
+                        pathOrdinals[termDocs.doc()] = ordinal;
+                        postingDocs[postingCount++] = termDocs.doc();
+                    }
+                }
+            }
+            finally
+            {
+                pathTerms.close();
+            }
+            pathOffsets.add(pathBytes.size());
+            postingOffsets.add(postingCount);
+
+            writeFile(file, dates, types, versions, pathOrdinals, pathOffsets, pathBytes.toByteArray(), postingOffsets, Arrays.copyOf(postingDocs, postingCount));
+        }
+        finally
+        {
+            termDocs.close();
+        }
+    }
+
+    /**
+     * Write the columns for all documents in the given (top level) reader, reusing the given columns for the
+     * documents they cover. Doc IDs survive appends, so only the documents added since the given columns were
+     * written are read from the index - from the segments that hold them - and the path dictionary is merged.
+     *
+     * @param reader the reader
+     * @param previous columns previously written for the same index
+     * @param file file to write to
+     * @throws IOException errors
+     */
+    public static void  extend(IndexReader reader, IndexColumns previous, File file) throws IOException
+    {
+        int                     docCount = reader.maxDoc();
+        int                     previousCount = previous.getDocCount();
+        if ( previousCount > docCount )
+        {
+            throw new IOException("The columns cover more documents than the index has");
+        }
+
+        long[]                  dates = new long[docCount];
+        byte[]                  types = new byte[docCount];
+        int[]                   versions = new int[docCount];
+        int[]                   pathOrdinals = new int[docCount];
+        previous.dates.duplicate().get(dates, 0, previousCount);
+        previous.types.duplicate().get(types, 0, previousCount);
+        previous.versions.duplicate().get(versions, 0, previousCount);
+        previous.pathOrdinals.duplicate().get(pathOrdinals, 0, previousCount);
+        Arrays.fill(versions, previousCount, docCount, -1);
+
+        Map<String, List<Integer>>  newPaths = Maps.newTreeMap();   // sorted for merging into the dictionary
+        List<IndexReader>           subReaders = Lists.newArrayList();
+        ReaderUtil.gatherSubReaders(subReaders, reader);
+        int                         docBase = 0;
+        for ( IndexReader subReader : subReaders )
+        {
+            int         start = Math.max(previousCount - docBase, 0);
+            if ( start < subReader.maxDoc() )
+            {
+                readNewDocs(subReader, docBase, start, dates, types, versions, newPaths);
+            }
+            docBase += subReader.maxDoc();
+        }
+
+        // merge the new paths into the dictionary
+        ByteArrayOutputStream   pathBytes = new ByteArrayOutputStream();
+        List<Integer>           pathOffsets = Lists.newArrayList();
+        int[]                   ordinalMap = new int[previous.getPathCount()];
+        boolean                 ordinalsMoved = false;
+        Iterator<Map.Entry<String, List<Integer>>>  newIterator = newPaths.entrySet().iterator();
+        Map.Entry<String, List<Integer>>            newPath = newIterator.hasNext() ? newIterator.next() : null;
+        int                     previousOrdinal = 0;
+        while ( (previousOrdinal < ordinalMap.length) || (newPath != null) )
+        {
+            String      previousPath = (previousOrdinal < ordinalMap.length) ? previous.getPathForOrdinal(previousOrdinal) : null;
+            int         comparison = (previousPath == null) ? 1 : ((newPath == null) ? -1 : previousPath.compareTo(newPath.getKey()));
+            int         ordinal = pathOffsets.size();
+            pathOffsets.add(pathBytes.size());
+            if ( comparison <= 0 )
+            {
+                pathBytes.write(previousPath.getBytes(Charsets.UTF_8));
+                ordinalsMoved |= (ordinal != previousOrdinal);
+                ordinalMap[previousOrdinal++] = ordinal;
+            }
+            else
+            {
+                pathBytes.write(newPath.getKey().getBytes(Charsets.UTF_8));
+            }
+            if ( comparison >= 0 )
+            {
+                for ( int docId : newPath.getValue() )
+                {
+                    pathOrdinals[docId] = ordinal;
+                }
+                newPath = newIterator.hasNext() ? newIterator.next() : null;
+            }
+        }
+        pathOffsets.add(pathBytes.size());
+        if ( ordinalsMoved )
+        {
+            for ( int docId = 0; docId < previousCount; ++docId )
+            {
+                pathOrdinals[docId] = ordinalMap[pathOrdinals[docId]];
+            }
+        }
+
+        // every document has a path so the posting lists are a counting sort of the ordinals
+        int                     pathCount = pathOffsets.size() - 1;
+        int[]                   postingStarts = new int[pathCount + 1];
+        for ( int ordinal : pathOrdinals )
+        {
+            ++postingStarts[ordinal + 1];
+        }
+        List<Integer>           postingOffsets = Lists.newArrayListWithCapacity(pathCount + 1);
+        postingOffsets.add(0);
+        for ( int ordinal = 0; ordinal < pathCount; ++ordinal )
+        {
+            postingStarts[ordinal + 1] += postingStarts[ordinal];
+            postingOffsets.add(postingStarts[ordinal + 1]);
+        }
+        int[]                   postingDocs = new int[docCount];
+        for ( int docId = 0; docId < docCount; ++docId )
+        {
+            postingDocs[postingStarts[pathOrdinals[docId]]++] = docId;
+        }
+
+        writeFile(file, dates, types, versions, pathOrdinals, pathOffsets, pathBytes.toByteArray(), postingOffsets, postingDocs);
+    }
+
+    /**
+     * Documents that the columns don't cover are read from the index instead. Once there are enough of them
+     * (relative to the number the columns cover) the columns should be extended. Extending in proportion to
+     * the size of the index keeps the cost of maintaining the columns of a growing index to a small
+     * constant per added document.
+     *
+     * @param columns current columns
+     * @param maxDoc the index's current max doc
+     * @return true if the columns should be extended (or, if they cover more than the index, rewritten)
+     */
+    static boolean  isStale(IndexColumns columns, int maxDoc)
+    {
+        int     uncovered = maxDoc - columns.getDocCount();
+        return (uncovered < 0) || (uncovered > Math.max(MIN_UNCOVERED_DOCS, columns.getDocCount() / UNCOVERED_DOCS_DIVISOR));
+    }
+
+    /**
+     * Add the entries of documents that the columns don't cover to counts returned by {@link #getSubtreeCounts(String)}
+     *
+     * @param reader the (top level) reader
+     * @param fromDocId the first doc ID to count - i.e. the columns' doc count
+     * @param path parent path
+     * @param counts counts to add to
+     * @throws IOException errors
+     */
+    static void     addSubtreeCounts(IndexReader reader, int fromDocId, String path, Map<String, Integer> counts) throws IOException
+    {
+        String      prefix = getSubtreePrefix(path);
+        TermDocs    termDocs = reader.termDocs();
+        TermEnum    pathTerms = reader.terms(new Term(FieldNames.PATH, prefix));
+        try
+        {
+            for ( Term term = pathTerms.term(); (term != null) && term.field().equals(FieldNames.PATH) && term.text().startsWith(prefix); term = pathTerms.next() ? pathTerms.term() : null )
+            {
+                int     qty = 0;
+                termDocs.seek(term);
+                if ( termDocs.skipTo(fromDocId) )
+                {
+                    do
+                    {
+                        ++qty;
+                    } while ( termDocs.next() );
+                }
+                if ( qty > 0 )
+                {
+                    addCount(counts, getChildPath(prefix, term.text()), qty);
+                }
+            }
+        }
+        finally
+        {
+            pathTerms.close();
+            termDocs.close();
+        }
+    }
+
+    /**
+     * Map the columns file
+     *
+     * @param file the file
+     * @return columns
+     * @throws IOException errors or if the file is not a valid columns file
+     */
+    public static IndexColumns  open(File file) throws IOException
+    {
+        RandomAccessFile    randomAccessFile = new RandomAccessFile(file, "r");
+        try
+        {
+            FileChannel     channel = randomAccessFile.getChannel();
+            return new IndexColumns(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(randomAccessFile);
+        }
+    }
+
+    private IndexColumns(ByteBuffer buffer) throws IOException
+    {
+        if ( (buffer.limit() < HEADER_SIZE) || (buffer.getInt(0) != MAGIC) || (buffer.getInt(4) != VERSION) )
+        {
+            throw new IOException("Not a valid columns file");
+        }
+        docCount = buffer.getInt(8);
+        pathCount = buffer.getInt(12);
+        int     postingCount = buffer.getInt(16);
+
+        int     offset = HEADER_SIZE;
+        dates = slice(buffer, offset, docCount * 8).asLongBuffer();
+        offset += docCount * 8;
+        types = slice(buffer, offset, docCount);
+        offset += docCount;
+        versions = slice(buffer, offset, docCount * 4).asIntBuffer();
+        offset += docCount * 4;
+        pathOrdinals = slice(buffer, offset, docCount * 4).asIntBuffer();
+        offset += docCount * 4;
+        pathOffsets = slice(buffer, offset, (pathCount + 1) * 4).asIntBuffer();
+        offset += (pathCount + 1) * 4;
+        postingOffsets = slice(buffer, offset, (pathCount + 1) * 4).asIntBuffer();
+        offset += (pathCount + 1) * 4;
+        postingDocs = slice(buffer, offset, postingCount * 4).asIntBuffer();
+        offset += postingCount * 4;
+        pathBytes = slice(buffer, offset, buffer.limit() - offset);
+    }
+
+    /**
+     * @return number of documents covered. Documents with IDs at or above this were added after the columns were written
+     */
+    public int      getDocCount()
+    {
+        return docCount;
+    }
+
+    public long     getDate(int docId)
+    {
+        return dates.get(docId);
+    }
+
+    public int      getType(int docId)
+    {
+        return types.get(docId);
+    }
+
+    /**
+     * @param docId document
+     * @return version or -1 if the entry has no version
+     */
+    public int      getVersion(int docId)
+    {
+        return versions.get(docId);
+    }
+
+    public int      getPathOrdinal(int docId)
+    {
+        return pathOrdinals.get(docId);
+    }
+
+    public String   getPath(int docId)
+    {
+        return getPathForOrdinal(getPathOrdinal(docId));
+    }
+
+    /**
+     * @return number of distinct paths
+     */
+    public int      getPathCount()
+    {
+        return pathCount;
+    }
+
+    /**
+     * @param ordinal path ordinal. Ordinals are in the sort order of the paths
+     * @return the path
+     */
+    public String   getPathForOrdinal(int ordinal)
+    {
+        int         start = pathOffsets.get(ordinal);
+        int         end = pathOffsets.get(ordinal + 1);
+        byte[]      bytes = new byte[end - start];
+        ByteBuffer  duplicate = pathBytes.duplicate();
+        duplicate.position(start);
+        duplicate.get(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+
+    /**
+     * @param path path to find
+     * @return the path's ordinal or -1 if no entry has the path
+     */
+    public int      findPathOrdinal(String path)
+    {
+        int     ordinal = lowerBound(path);
+        return ((ordinal < pathCount) && getPathForOrdinal(ordinal).equals(path)) ? ordinal : -1;
+    }
+
+    /**
+     * Return the range of ordinals of the paths that start with the given prefix
+     *
+     * @param prefix the prefix
+     * @return <code>{from, to}</code> - from is inclusive, to is exclusive
+     */
+    public int[]    getPrefixOrdinalRange(String prefix)
+    {
+        int     from = lowerBound(prefix);
+        int     low = from;
+        int     high = pathCount;
+        while ( low < high )
+        {
+            int     middle = (low + high) >>> 1;
+            if ( getPathForOrdinal(middle).startsWith(prefix) )
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        return new int[]{from, low};
+    }
+
+    /**
+     * Return the documents of the paths in the given ordinal range
+     *
+     * @param fromOrdinal first ordinal (inclusive)
+     * @param toOrdinal last ordinal (exclusive)
+     * @return sorted doc IDs
+     */
+    public int[]    getDocIds(int fromOrdinal, int toOrdinal)
+    {
+        if ( fromOrdinal >= toOrdinal )
+        {
+            return new int[0];
+        }
+
+        int         start = postingOffsets.get(fromOrdinal);
+        int[]       docIds = new int[postingOffsets.get(toOrdinal) - start];
+        IntBuffer   duplicate = postingDocs.duplicate();
+        duplicate.position(start);
+        duplicate.get(docIds);
+        if ( (toOrdinal - fromOrdinal) > 1 )
+        {
+            Arrays.sort(docIds);
+        }
+        return docIds;
+    }
+
+    /**
+     * @param ordinal path ordinal
+     * @return number of entries for the path
+     */
+    public int      getEntryCount(int ordinal)
+    {
+        return postingOffsets.get(ordinal + 1) - postingOffsets.get(ordinal);
+    }
+
+    /**
+     * Return the number of entries under each child of the given path. The count for a child includes
+     * the entries for the child itself and for all of its descendants.
+     *
+     * @param path parent path
+     * @return child path to entry count, sorted by child path
+     */
+    public Map<String, Integer> getSubtreeCounts(String path)
+    {
+        String                  prefix = getSubtreePrefix(path);
+        int[]                   range = getPrefixOrdinalRange(prefix);
+        Map<String, Integer>    counts = Maps.newTreeMap();
+        for ( int ordinal = range[0]; ordinal < range[1]; ++ordinal )
+        {
+            addCount(counts, getChildPath(prefix, getPathForOrdinal(ordinal)), getEntryCount(ordinal));
+        }
+        return counts;
+    }
+
+    public SearchItem   toResult(int docId)
+    {
+        return new SearchItem(docId, getType(docId), getPath(docId), getVersion(docId), new Date(getDate(docId)));
+    }
+
+    private int lowerBound(String path)
+    {
+        // paths are in term order which is String order
+        int     low = 0;
+        int     high = pathCount;
+        while ( low < high )
+        {
+            int     middle = (low + high) >>> 1;
+            if ( getPathForOrdinal(middle).compareTo(path) < 0 )
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static String getSubtreePrefix(String path)
+    {
+        return path.endsWith(ZKPaths.PATH_SEPARATOR) ? path : (path + ZKPaths.PATH_SEPARATOR);
+    }
+
+    private static String getChildPath(String prefix, String path)
+    {
+        int         separatorIndex = path.indexOf(ZKPaths.PATH_SEPARATOR, prefix.length());
+        return (separatorIndex >= 0) ? path.substring(0, separatorIndex) : path;
+    }
+
+    private static void addCount(Map<String, Integer> counts, String path, int qty)
+    {
+        Integer     count = counts.get(path);
+        counts.put(path, ((count != null) ? count : 0) + qty);
+    }
+
+    private static IndexColumns openIfValid(File file)
+    {
+        if ( file.exists() )
+        {
+            try
+            {
+                return open(file);
+            }
+            catch ( IOException ignore )
+            {
+                // invalid file - rewritten
+            }
+        }
+        return null;
+    }
+
+    private static void readNewDocs(IndexReader subReader, int docBase, int start, long[] dates, byte[] types, int[] versions, Map<String, List<Integer>> newPaths) throws IOException
+    {
+        int         maxDoc = subReader.maxDoc();
+        long[]      segmentDates = FieldCache.DEFAULT.getLongs(subReader, FieldNames.DATE);
+        System.arraycopy(segmentDates, start, dates, docBase + start, maxDoc - start);
+
+        Bits        hasVersion = FieldCache.DEFAULT.getDocsWithField(subReader, FieldNames.VERSION);
+        int[]       segmentVersions = FieldCache.DEFAULT.getInts(subReader, FieldNames.VERSION, FieldCache.NUMERIC_UTILS_INT_PARSER);
+        for ( int i = start; i < maxDoc; ++i )
+        {
+            if ( hasVersion.get(i) )
+            {
+                versions[docBase + i] = segmentVersions[i];
+            }
+        }
+
+        TermDocs    termDocs = subReader.termDocs();
+        try
+        {
+            TermEnum    typeTerms = subReader.terms(new Term(FieldNames.TYPE, ""));
+            try
+            {
+                for ( Term term = typeTerms.term(); (term != null) && term.field().equals(FieldNames.TYPE); term = typeTerms.next() ? typeTerms.term() : null )
+                {
+                    byte        type = Byte.parseByte(term.text());
+                    termDocs.seek(term);
+                    if ( termDocs.skipTo(start) )
+                    {
+                        do
+                        {
+                            types[docBase + termDocs.doc()] = type;
+                        } while ( termDocs.next() );
+                    }
+                }
+            }
+            finally
+            {
+                typeTerms.close();
+            }
+
+            TermEnum    pathTerms = subReader.terms(new Term(FieldNames.PATH, ""));
+            try
+            {
+                for ( Term term = pathTerms.term(); (term != null) && term.field().equals(FieldNames.PATH); term = pathTerms.next() ? pathTerms.term() : null )
+                {
+                    termDocs.seek(term);
+                    if ( termDocs.skipTo(start) )
+                    {
+                        List<Integer>   docIds = newPaths.get(term.text());
+                        if ( docIds == null )
+                        {
+                            docIds = Lists.newArrayList();
+                            newPaths.put(term.text(), docIds);
+                        }
+                        do
+                        {
+                            docIds.add(docBase + termDocs.doc());
+                        } while ( termDocs.next() );
+                    }
+                }
+            }
+            finally
+            {
+                pathTerms.close();
+            }
+        }
+        finally
+        {
+            termDocs.close();
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length)
+    {
+        ByteBuffer      duplicate = buffer.duplicate();
+        duplicate.position(offset);
+        duplicate.limit(offset + length);
+        return duplicate.slice();
+    }
+
+    private static void writeFile(File file, long[] dates, byte[] types, int[] versions, int[] pathOrdinals, List<Integer> pathOffsets, byte[] pathBytes, List<Integer> postingOffsets, int[] postingDocs) throws IOException
+    {
+        // concurrent writers (e.g. two searches of a newly updated index) each get their own temp file
+        File                tempFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        boolean             success = false;
+        DataOutputStream    out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 64 * 1024));
+        try
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(dates.length);
+            out.writeInt(pathOffsets.size() - 1);
+            out.writeInt(postingDocs.length);
+            for ( long date : dates )
+            {
+                out.writeLong(date);
+            }
+            out.write(types);
+            for ( int version : versions )
+            {
+                out.writeInt(version);
+            }
+            for ( int ordinal : pathOrdinals )
+            {
+                out.writeInt(ordinal);
+            }
+            for ( int pathOffset : pathOffsets )
+            {
+                out.writeInt(pathOffset);
+            }
+            for ( int postingOffset : postingOffsets )
+            {
+                out.writeInt(postingOffset);
+            }
+            for ( int docId : postingDocs )
+            {
+                out.writeInt(docId);
+            }
+            out.write(pathBytes);
+            out.close();
+
+            // replacing an existing file by renaming over it isn't supported everywhere
+            success = tempFile.renameTo(file) || ((!file.exists() || file.delete()) && tempFile.renameTo(file));
+            if ( !success )
+            {
+                throw new IOException("Could not rename " + tempFile + " to " + file);
+            }
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(out);
+            if ( !success && tempFile.exists() && !tempFile.delete() )
+            {
+                tempFile.deleteOnExit();
+            }
+        }
+    }
+}
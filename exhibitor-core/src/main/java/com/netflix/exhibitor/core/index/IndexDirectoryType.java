@@ -0,0 +1,150 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.apache.curator.utils.CloseableUtils;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.store.NativeFSLockFactory;
+import org.apache.lucene.store.RAMDirectory;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The Lucene directory implementation used to search indexes
+ */
+public enum IndexDirectoryType
+{
+    /**
+     * Positional reads via NIO (the default)
+     */
+    NIO()
+    {
+        @Override
+        public Directory open(File file) throws IOException
+        {
+            return new NIOFSDirectory(file, new NativeFSLockFactory());
+        }
+    },
+
+    /**
+     * Memory-mapped files. Index pages are shared with the OS page cache. Recommended for 64-bit JVMs.
+     */
+    MMAP()
+    {
+        @Override
+        public Directory open(File file) throws IOException
+        {
+            return new MMapDirectory(file, new NativeFSLockFactory());
+        }
+    },
+
+    /**
+     * The entire index is copied into the heap. Only suitable for small indexes.
+     */
+    RAM()
+    {
+        @Override
+        public Directory open(File file) throws IOException
+        {
+            Directory       disk = NIO.open(file);
+            try
+            {
+                return new RAMDirectory(disk);
+            }
+            finally
+            {
+                CloseableUtils.closeQuietly(disk);
+            }
+        }
+
+        @Override
+        public void sync(File file, Directory directory) throws IOException
+        {
+            Directory       disk = NIO.open(file);
+            try
+            {
+                // index files are write-once. Copy new files first and the segments files last so that the new
+                // commit is only visible once all of its files are present
+                Set<String>     diskFiles = Sets.newHashSet(disk.listAll());
+                List<String>    segmentsFiles = Lists.newArrayList();
+                for ( String name : diskFiles )
+                {
+                    if ( name.startsWith(IndexFileNames.SEGMENTS) )
+                    {
+                        segmentsFiles.add(name);
+                    }
+                    else if ( !directory.fileExists(name) )
+                    {
+                        disk.copy(directory, name, name);
+                    }
+                }
+                for ( String name : segmentsFiles )
+                {
+                    if ( !name.equals(IndexFileNames.SEGMENTS_GEN) && !directory.fileExists(name) )
+                    {
+                        disk.copy(directory, name, name);
+                    }
+                }
+                if ( diskFiles.contains(IndexFileNames.SEGMENTS_GEN) )
+                {
+                    disk.copy(directory, IndexFileNames.SEGMENTS_GEN, IndexFileNames.SEGMENTS_GEN);
+                }
+
+                for ( String name : directory.listAll() )
+                {
+                    if ( !diskFiles.contains(name) )
+                    {
+                        directory.deleteFile(name); // open readers keep their own reference to the file's contents
+                    }
+                }
+            }
+            finally
+            {
+                CloseableUtils.closeQuietly(disk);
+            }
+        }
+    }
+    ;
+
+    /**
+     * Open the given index for searching
+     *
+     * @param file index directory
+     * @return Lucene directory
+     * @throws IOException errors
+     */
+    public abstract Directory open(File file) throws IOException;
+
+    /**
+     * Called before re-opening an index that has been appended to. Directories that do not read
+     * straight from disk must pick up the new files here.
+     *
+     * @param file index directory
+     * @param directory the directory previously returned by {@link #open(File)}
+     * @throws IOException errors
+     */
+    public void sync(File file, Directory directory) throws IOException
+    {
+    }
+}
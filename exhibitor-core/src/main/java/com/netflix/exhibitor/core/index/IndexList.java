@@ -19,6 +19,7 @@ package com.netflix.exhibitor.core.index;
 import com.google.common.collect.ImmutableList;
 import java.io.File;
 import java.io.FileFilter;
+import java.io.IOException;
 import java.util.List;
 
 public class IndexList
@@ -53,4 +54,44 @@ public class IndexList
     {
         return indexes;
     }
+
+    /**
+     * Resolve an index from its name (e.g. as given in a request). Only plain names of directories
+     * directly within the given directory are accepted.
+     *
+     * @param directory the directory that holds the indexes
+     * @param indexName name of the index
+     * @return the index directory or null if the name isn't acceptable or isn't a valid index
+     */
+    public static File getIndex(File directory, String indexName)
+    {
+        if ( !isPlainName(indexName) )
+        {
+            return null;
+        }
+
+        File    indexDirectory = new File(directory, indexName);
+        try
+        {
+            File    parent = indexDirectory.getCanonicalFile().getParentFile();
+            if ( (parent == null) || !parent.equals(directory.getCanonicalFile()) )
+            {
+                return null;
+            }
+        }
+        catch ( IOException e )
+        {
+            return null;
+        }
+        return IndexMetaData.isValid(indexDirectory) ? indexDirectory : null;
+    }
+
+    /**
+     * @param name a file name
+     * @return true if the name can't refer to anything other than an entry of the directory it's resolved against
+     */
+    static boolean isPlainName(String name)
+    {
+        return (name != null) && (name.length() > 0) && !name.equals(".") && !name.equals("..") && !name.contains("/") && !name.contains("\\");
+    }
 }
@@ -16,6 +16,8 @@
 
 package com.netflix.exhibitor.core.index;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import org.apache.curator.utils.CloseableUtils;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
@@ -26,6 +28,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.text.DateFormat;
 import java.util.Date;
+import java.util.Map;
 import java.util.Properties;
 
 public class IndexMetaData
@@ -33,16 +36,23 @@ public class IndexMetaData
     private final Date  from;
     private final Date  to;
     private final int   entryCount;
+    private final Map<String, LogPosition> logPositions;
 
     private static final String         META_DATA_FILE_EXTENSION = ".properties";
 
-    private static final int        VERSION = 1;
+    private static final int        VERSION = 2;
+    private static final int        VERSION_WITHOUT_POSITIONS = 1;
     
     private static final String     PROPERTY_FROM = "from";
     private static final String     PROPERTY_TO = "to";
     private static final String     PROPERTY_COUNT = "count";
     private static final String     PROPERTY_VERSION = "version";
 
+    private static final String     PROPERTY_POSITION_PREFIX = "position.";
+    private static final String     PROPERTY_POSITION_ZXID = ".zxid";
+    private static final String     PROPERTY_POSITION_OFFSET = ".offset";
+    private static final String     PROPERTY_POSITION_MODIFIED = ".modified";
+
     public static boolean isValid(File indexDirectory)
     {
         return indexDirectory.exists() && indexDirectory.isDirectory();
@@ -62,7 +72,15 @@ public class IndexMetaData
         properties.setProperty(PROPERTY_TO, format.format(meta.to));
         properties.setProperty(PROPERTY_VERSION, Integer.toString(VERSION));
         properties.setProperty(PROPERTY_COUNT, Integer.toString(meta.entryCount));
-        
+        for ( Map.Entry<String, LogPosition> entry : meta.logPositions.entrySet() )
+        {
+            String      name = PROPERTY_POSITION_PREFIX + entry.getKey();
+            properties.setProperty(name + PROPERTY_POSITION_ZXID, Long.toString(entry.getValue().getZxid()));
+            properties.setProperty(name + PROPERTY_POSITION_OFFSET, Long.toString(entry.getValue().getOffset()));
+            properties.setProperty(name + PROPERTY_POSITION_MODIFIED, Long.toString(entry.getValue().getModifiedDate()));
+        }
+
+
         OutputStream    out = new BufferedOutputStream(new FileOutputStream(to));
         try
         {
@@ -90,24 +108,54 @@ public class IndexMetaData
         }
 
         String version = properties.getProperty(PROPERTY_VERSION, "0");
-        if ( !version.equals(Integer.toString(VERSION)) )
+        if ( !version.equals(Integer.toString(VERSION)) && !version.equals(Integer.toString(VERSION_WITHOUT_POSITIONS)) )
         {
             throw new Exception("Unknown version: " + version);
         }
 
+        Map<String, LogPosition>    logPositions = Maps.newHashMap();
+        for ( String key : properties.stringPropertyNames() )
+        {
+            if ( key.startsWith(PROPERTY_POSITION_PREFIX) && key.endsWith(PROPERTY_POSITION_ZXID) )
+            {
+                String      logName = key.substring(PROPERTY_POSITION_PREFIX.length(), key.length() - PROPERTY_POSITION_ZXID.length());
+                String      name = PROPERTY_POSITION_PREFIX + logName;
+                LogPosition position = new LogPosition
+                (
+                    Long.parseLong(properties.getProperty(name + PROPERTY_POSITION_ZXID)),
+                    Long.parseLong(properties.getProperty(name + PROPERTY_POSITION_OFFSET, "0")),
+                    Long.parseLong(properties.getProperty(name + PROPERTY_POSITION_MODIFIED, "0"))
+                );
+                logPositions.put(logName, position);
+            }
+        }
+
         return new IndexMetaData
         (
             format.parse(properties.getProperty(PROPERTY_FROM)),
             format.parse(properties.getProperty(PROPERTY_TO)),
-            Integer.parseInt(properties.getProperty(PROPERTY_COUNT))
+            Integer.parseInt(properties.getProperty(PROPERTY_COUNT)),
+            logPositions
         );
     }
 
     public IndexMetaData(Date from, Date to, int entryCount)
+    {
+        this(from, to, entryCount, ImmutableMap.<String, LogPosition>of());
+    }
+
+    /**
+     * @param from earliest entry date
+     * @param to latest entry date
+     * @param entryCount number of indexed entries
+     * @param logPositions how far each transaction log (by name) has been indexed
+     */
+    public IndexMetaData(Date from, Date to, int entryCount, Map<String, LogPosition> logPositions)
     {
         this.from = from;
         this.to = to;
         this.entryCount = entryCount;
+        this.logPositions = ImmutableMap.copyOf(logPositions);
     }
 
     public Date getFrom()
@@ -124,4 +172,9 @@ public class IndexMetaData
     {
         return entryCount;
     }
+
+    public Map<String, LogPosition> getLogPositions()
+    {
+        return logPositions;
+    }
 }
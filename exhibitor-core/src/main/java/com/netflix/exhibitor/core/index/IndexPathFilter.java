@@ -0,0 +1,310 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import org.apache.curator.utils.CloseableUtils;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.Set;
+
+/**
+ * A Bloom filter of every path in an index and of the ancestors of those paths down to a
+ * configured depth. It is stored next to the index's meta data so that an index can be ruled out
+ * for a path query without opening it. Answers are either "no" or "maybe". Only the classes of the
+ * filter's serialized form are accepted when it is read.
+ */
+public class IndexPathFilter
+{
+    private final int                       depth;
+    private final BloomFilter<CharSequence> filter;
+
+    private static final String     PATHS_FILE_EXTENSION = ".paths";
+
+    private static final int        VERSION = 1;
+    private static final double     FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    private static final char       PATH_KEY = '=';
+    private static final char       ANCESTOR_KEY = '>';
+
+    private static final Set<String> FILTER_CLASS_NAMES = ImmutableSet.of
+    (
+        "com.google.common.hash.BloomFilter$SerialForm",
+        "com.google.common.hash.BloomFilterStrategies",
+        "com.google.common.hash.Funnels$UnencodedCharsFunnel",
+        "java.lang.Enum",
+        "[J"
+    );
+
+    public static File getPathFilterFile(File indexDirectory)
+    {
+        return new File(indexDirectory.getPath() + PATHS_FILE_EXTENSION);
+    }
+
+    /**
+     * Write the filter for all paths in the given (top level) reader
+     *
+     * @param reader the reader
+     * @param depth ancestors of each path with up to this many path components are added
+     * @param file file to write to
+     * @throws IOException errors
+     */
+    public static void  write(IndexReader reader, int depth, File file) throws IOException
+    {
+        int                         keyCount = addPaths(reader, depth, null);
+        BloomFilter<CharSequence>   filter = BloomFilter.create(Funnels.unencodedCharsFunnel(), Math.max(keyCount, 1), FALSE_POSITIVE_PROBABILITY);
+        addPaths(reader, depth, filter);
+
+        File                        tempFile = new File(file.getPath() + ".tmp");
+        ObjectOutputStream          out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        try
+        {
+            out.writeInt(VERSION);
+            out.writeInt(depth);
+            out.writeObject(filter);
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(out);
+        }
+
+        if ( (file.exists() && !file.delete()) || !tempFile.renameTo(file) )
+        {
+            throw new IOException("Could not write: " + file);
+        }
+    }
+
+    /**
+     * @param indexDirectory index
+     * @return the index's filter or null if it doesn't have one
+     * @throws IOException errors
+     */
+    public static IndexPathFilter   read(File indexDirectory) throws IOException
+    {
+        File                file = getPathFilterFile(indexDirectory);
+        if ( !file.exists() )
+        {
+            return null;
+        }
+
+        ObjectInputStream   in = new FilterInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try
+        {
+            int             version = in.readInt();
+            if ( version != VERSION )
+            {
+                return null;
+            }
+            int             depth = in.readInt();
+            @SuppressWarnings("unchecked")
+            BloomFilter<CharSequence>   filter = (BloomFilter<CharSequence>)in.readObject();
+            return new IndexPathFilter(depth, filter);
+        }
+        catch ( ClassNotFoundException e )
+        {
+            throw new IOException(e);
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * @param query a query
+     * @return false if the query's path clauses mean that it can't match anything in the index
+     */
+    public boolean      mightMatch(Query query)
+    {
+        if ( query instanceof PathQuery )
+        {
+            PathQuery   pathQuery = (PathQuery)query;
+            return pathQuery.isPrefix() ? mightContainPrefix(pathQuery.getPath()) : mightContainPath(pathQuery.getPath());
+        }
+
+        if ( query instanceof BooleanQuery )
+        {
+            boolean     hasRequired = false;
+            boolean     hasOptional = false;
+            boolean     optionalMightMatch = false;
+            for ( BooleanClause clause : ((BooleanQuery)query).getClauses() )
+            {
+                switch ( clause.getOccur() )
+                {
+                    case MUST:
+                    {
+                        hasRequired = true;
+                        if ( !mightMatch(clause.getQuery()) )
+                        {
+                            return false;
+                        }
+                        break;
+                    }
+
+                    case SHOULD:
+                    {
+                        hasOptional = true;
+                        optionalMightMatch = optionalMightMatch || mightMatch(clause.getQuery());
+                        break;
+                    }
+
+                    default:
+                    {
+                        break;  // excluding documents never rules an index out
+                    }
+                }
+            }
+            return hasRequired || !hasOptional || optionalMightMatch;
+        }
+
+        return true;
+    }
+
+    /**
+     * @param path a full path
+     * @return false if the path definitely isn't in the index
+     */
+    public boolean      mightContainPath(String path)
+    {
+        return filter.mightContain(PATH_KEY + path);
+    }
+
+    /**
+     * @param prefix a path prefix (a plain string prefix - it need not end at a path separator)
+     * @return false if definitely no path in the index starts with the prefix
+     */
+    public boolean      mightContainPrefix(String prefix)
+    {
+        // every path that starts with the prefix is a descendant of the prefix's complete parent components
+        int         end = prefix.lastIndexOf('/');
+        String      ancestor = null;
+        int         index = 0;
+        for ( int i = 0; i < depth; ++i )
+        {
+            int     next = prefix.indexOf('/', index + 1);
+            if ( (next < 0) || (next > end) )
+            {
+                break;
+            }
+            ancestor = prefix.substring(0, next);
+            index = next;
+        }
+        return (ancestor == null) || filter.mightContain(ANCESTOR_KEY + ancestor);
+    }
+
+    public int          getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * Adds the keys for all paths to the filter
+     *
+     * @return the number of keys. When filter is null, keys are only counted
+     */
+    private static int  addPaths(IndexReader reader, int depth, BloomFilter<CharSequence> filter) throws IOException
+    {
+        int             keyCount = 0;
+        String[]        lastAncestors = new String[depth];
+        TermEnum        pathTerms = reader.terms(new Term(FieldNames.PATH, ""));
+        try
+        {
+            for ( Term term = pathTerms.term(); (term != null) && term.field().equals(FieldNames.PATH); term = pathTerms.next() ? pathTerms.term() : null )
+            {
+                String  path = term.text();
+                ++keyCount;
+                if ( filter != null )
+                {
+                    filter.put(PATH_KEY + path);
+                }
+
+                // paths are sorted so repeated ancestors are mostly adjacent
+                int     index = 0;
+                for ( int i = 0; i < depth; ++i )
+                {
+                    index = path.indexOf('/', index + 1);
+                    if ( index < 0 )
+                    {
+                        break;
+                    }
+                    String  ancestor = path.substring(0, index);
+                    if ( !ancestor.equals(lastAncestors[i]) )
+                    {
+                        lastAncestors[i] = ancestor;
+                        ++keyCount;
+                        if ( filter != null )
+                        {
+                            filter.put(ANCESTOR_KEY + ancestor);
+                        }
+                    }
+                }
+            }
+        }
+        finally
+        {
+            pathTerms.close();
+        }
+        return keyCount;
+    }
+
+    private static class FilterInputStream extends ObjectInputStream
+    {
+        FilterInputStream(InputStream in) throws IOException
+        {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException
+        {
+            if ( !FILTER_CLASS_NAMES.contains(desc.getName()) )
+            {
+                throw new InvalidClassException(desc.getName(), "Not part of a path filter");
+            }
+            return super.resolveClass(desc);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException
+        {
+            throw new InvalidClassException("Proxies are not part of a path filter");
+        }
+    }
+
+    private IndexPathFilter(int depth, BloomFilter<CharSequence> filter)
+    {
+        this.depth = depth;
+        this.filter = filter;
+    }
+}
@@ -17,19 +17,28 @@
 package com.netflix.exhibitor.core.index;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.netflix.exhibitor.core.Exhibitor;
 import com.netflix.exhibitor.core.activity.ActivityLog;
 import com.netflix.exhibitor.core.backup.BackupMetaData;
 import com.netflix.exhibitor.core.backup.BackupStream;
+import com.netflix.exhibitor.core.config.IntConfigs;
 import org.apache.curator.utils.CloseableUtils;
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class IndexProcessor
 {
@@ -41,6 +50,19 @@ public class IndexProcessor
     }
 
     public void     process(File directory) throws Exception
+    {
+        process(directory, false);
+    }
+
+    /**
+     * Build or update an index
+     *
+     * @param directory the index directory
+     * @param append if true, the existing index in the directory is updated with only the transactions
+     *               that have been added since it was last built/updated
+     * @throws Exception errors
+     */
+    public void     process(File directory, boolean append) throws Exception
     {
         if ( !directory.exists() && !directory.mkdirs() )
         {
@@ -48,12 +70,18 @@ public class IndexProcessor
         }
 
         Exception           exception = null;
-        IndexBuilder        builder = new IndexBuilder(directory);
+        IndexBuilder        builder = new IndexBuilder(directory, append, exhibitor.getConfigManager().getConfig().getInt(IntConfigs.INDEX_PATH_FILTER_DEPTH));
+        int                 startingCount = 0;
+        ExecutorService     streamService = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("IndexProcessor-stream-%d").build());
         try
         {
             builder.open();
-            addBackups(builder);
-            addActive(builder);
+            startingCount = builder.getCurrentCount();
+
+            List<LogSource>     sources = Lists.newArrayList();
+            addBackups(sources, new LogStreamDecoder(streamService));
+            addActive(sources);
+            indexSources(builder, sources);
 
             builder.writeMetaData();
         }
@@ -63,16 +91,33 @@ public class IndexProcessor
         }
         finally
         {
+            streamService.shutdownNow();
+            if ( exception != null )
+            {
+                builder.abort();    // leave any existing index as it was
+            }
             builder.close();
             if ( exception != null )
             {
-                cleanDirectory(directory);
+                if ( !append )
+                {
+                    cleanDirectory(directory);
+                }
                 //noinspection ThrowFromFinallyBlock
                 throw exception;
             }
         }
 
-        if ( builder.getCurrentCount() == 0 )
+        if ( builder.getCurrentCount() > 0 )
+        {
+            IndexColumns.build(directory);
+        }
+
+        if ( append )
+        {
+            exhibitor.getLog().add(ActivityLog.Type.INFO, String.format("Index updated: %s (%d new entries)", directory, builder.getCurrentCount() - startingCount));
+        }
+        else if ( builder.getCurrentCount() == 0 )
         {
             exhibitor.getLog().add(ActivityLog.Type.INFO, "Index is empty and will be deleted: " + directory);
             cleanDirectory(directory);
@@ -83,7 +128,92 @@ public class IndexProcessor
         }
     }
 
-    private void addActive(IndexBuilder builder) throws Exception
+    private interface LogSource
+    {
+        public String   getName();
+
+        public void     addTo(IndexBuilder builder) throws Exception;
+    }
+
+    /**
+     * Logs with different names are parsed in parallel. All sources for the same log name (backups of it
+     * followed by the active copy) are parsed in order on one thread so that previously indexed transactions
+     * are skipped. The logs are written to the index oldest first (see {@link IndexBuilder#reserveLogs(List)}).
+     */
+    private void indexSources(final IndexBuilder builder, List<LogSource> sources) throws Exception
+    {
+        final Map<String, List<LogSource>>  groups = Maps.newLinkedHashMap();
+        for ( LogSource source : sources )
+        {
+            List<LogSource>     group = groups.get(source.getName());
+            if ( group == null )
+            {
+                group = Lists.newArrayList();
+                groups.put(source.getName(), group);
+            }
+            group.add(source);
+        }
+        if ( groups.size() == 0 )
+        {
+            return;
+        }
+
+        builder.reserveLogs(Lists.newArrayList(groups.keySet()));
+
+        final int               total = sources.size();
+        final AtomicInteger     index = new AtomicInteger(0);
+        int                     threadQty = Math.min(groups.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService         service = Executors.newFixedThreadPool(threadQty, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("IndexProcessor-%d").build());
+        try
+        {
+            CompletionService<Void>     completionService = new ExecutorCompletionService<Void>(service);
+            for ( final Map.Entry<String, List<LogSource>> group : groups.entrySet() )
+            {
+                completionService.submit
+                (
+                    new Callable<Void>()
+                    {
+                        @Override
+                        public Void call() throws Exception
+                        {
+                            try
+                            {
+                                for ( LogSource source : group.getValue() )
+                                {
+                                    exhibitor.getLog().add(ActivityLog.Type.INFO, String.format("Index Build: indexing log %d of %d", index.incrementAndGet(), total));
+                                    source.addTo(builder);
+                                }
+                            }
+                            finally
+                            {
+                                builder.releaseLog(group.getKey());
+                            }
+                            return null;
+                        }
+                    }
+                );
+            }
+
+            for ( int i = 0; i < groups.size(); ++i )
+            {
+                try
+                {
+                    completionService.take().get();
+                }
+                catch ( ExecutionException e )
+                {
+                    Throwable   cause = e.getCause();
+                    throw (cause instanceof Exception) ? (Exception)cause : e;
+                }
+            }
+        }
+        finally
+        {
+            service.shutdownNow();
+        }
+    }
+
+    private void addActive(List<LogSource> sources) throws Exception
     {
         ZooKeeperLogFiles       zooKeeperLogFiles = new ZooKeeperLogFiles(exhibitor);
         List<File>              paths = zooKeeperLogFiles.getPaths();
@@ -101,27 +231,32 @@ public class IndexProcessor
             }
         );
 
-        int     index = 0;
-        for ( File f : paths )
+        for ( final File f : paths )
         {
-            exhibitor.getLog().add(ActivityLog.Type.INFO, String.format("Indexing active log %d of %d", ++index, paths.size()));
-
-            if ( f.exists() )
-            {
-                InputStream         in = new BufferedInputStream(new FileInputStream(f));
-                try
-                {
-                    builder.add(in);
-                }
-                finally
+            sources.add
+            (
+                new LogSource()
                 {
-                    CloseableUtils.closeQuietly(in);
+                    @Override
+                    public String getName()
+                    {
+                        return f.getName();
+                    }
+
+                    @Override
+                    public void addTo(IndexBuilder builder) throws Exception
+                    {
+                        if ( f.exists() )
+                        {
+                            builder.add(f.getName(), f.lastModified(), f);
+                        }
+                    }
                 }
-            }
+            );
         }
     }
 
-    private void addBackups(IndexBuilder builder) throws Exception
+    private void addBackups(List<LogSource> sources, final LogStreamDecoder decoder) throws Exception
     {
         exhibitor.getLog().add(ActivityLog.Type.ERROR, "Index Build: Getting available backups");
         List<BackupMetaData> availableBackups = Lists.newArrayList(exhibitor.getBackupManager().getAvailableBackups());
@@ -140,26 +275,41 @@ public class IndexProcessor
         );
         exhibitor.getLog().add(ActivityLog.Type.ERROR, "Index Build: there are " + availableBackups.size() + " available backups");
 
-        int     index = 0;
-        for ( BackupMetaData metaData : availableBackups )
+        for ( final BackupMetaData metaData : availableBackups )
         {
-            exhibitor.getLog().add(ActivityLog.Type.INFO, String.format("Index Build: indexing backup log %d of %d", ++index, availableBackups.size()));
-
-            BackupStream backupStream = exhibitor.getBackupManager().getBackupStream(metaData);
-            if ( backupStream != null )
-            {
-                try
-                {
-                    builder.add(backupStream.getStream());
-                }
-                finally
+            sources.add
+            (
+                new LogSource()
                 {
-                    CloseableUtils.closeQuietly(backupStream);
+                    @Override
+                    public String getName()
+                    {
+                        return metaData.getName();
+                    }
+
+                    @Override
+                    public void addTo(IndexBuilder builder) throws Exception
+                    {
+                        BackupStream backupStream = exhibitor.getBackupManager().getBackupStream(metaData);
+                        if ( backupStream != null )
+                        {
+                            InputStream     in = null;
+                            try
+                            {
+                                in = decoder.decode(backupStream.getStream());
+                                builder.add(metaData.getName(), metaData.getModifiedDate(), in);
+                            }
+                            finally
+                            {
+                                CloseableUtils.closeQuietly(in);
+                                CloseableUtils.closeQuietly(backupStream);
+                            }
+                        }
+                    }
                 }
-            }
+            );
         }
     }
-
     private void cleanDirectory(File directory)
     {
         File[] files = directory.listFiles();
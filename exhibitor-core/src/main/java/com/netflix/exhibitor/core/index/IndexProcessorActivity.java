@@ -25,10 +25,21 @@ import java.io.File;
 public class IndexProcessorActivity implements Activity
 {
     private Exhibitor exhibitor;
+    private final File existingIndexDirectory;
 
     public IndexProcessorActivity(Exhibitor exhibitor)
+    {
+        this(exhibitor, null);
+    }
+
+    /**
+     * @param exhibitor main instance
+     * @param existingIndexDirectory if not null, this index is updated with new transactions instead of building a new index
+     */
+    public IndexProcessorActivity(Exhibitor exhibitor, File existingIndexDirectory)
     {
         this.exhibitor = exhibitor;
+        this.existingIndexDirectory = existingIndexDirectory;
     }
 
     @Override
@@ -41,7 +52,25 @@ public class IndexProcessorActivity implements Activity
     {
         String path = exhibitor.getConfigManager().getConfig().getString(StringConfigs.LOG_INDEX_DIRECTORY);
 
-        if ( path == null )
+        if ( (existingIndexDirectory != null) && LiveIndexer.isLiveIndex(existingIndexDirectory) )
+        {
+            exhibitor.getLog().add(ActivityLog.Type.INFO, "The live index is updated automatically: " + existingIndexDirectory.getName());
+        }
+        else if ( existingIndexDirectory != null )
+        {
+            exhibitor.getLog().add(ActivityLog.Type.INFO, "Starting index update: " + existingIndexDirectory.getName());
+            try
+            {
+                IndexProcessor  processor = new IndexProcessor(exhibitor);
+                processor.process(existingIndexDirectory, true);
+                exhibitor.getIndexCache().indexUpdated(existingIndexDirectory);
+            }
+            catch ( Exception e )
+            {
+                exhibitor.getLog().add(ActivityLog.Type.ERROR, "Updating Index", e);
+            }
+        }
+        else if ( path == null )
         {
             exhibitor.getLog().add(ActivityLog.Type.ERROR, "No index directory set in config");
         }
@@ -53,6 +82,10 @@ public class IndexProcessorActivity implements Activity
                 File            indexDirectory = new File(path, "exhibitor-" + System.currentTimeMillis());
                 IndexProcessor  processor = new IndexProcessor(exhibitor);
                 processor.process(indexDirectory);
+                if ( IndexMetaData.isValid(indexDirectory) )   // empty indexes are deleted
+                {
+                    exhibitor.getIndexCache().warm(indexDirectory);
+                }
             }
             catch ( Exception e )
             {
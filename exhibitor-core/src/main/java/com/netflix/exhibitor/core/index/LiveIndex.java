@@ -0,0 +1,131 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import org.apache.curator.utils.CloseableUtils;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * An index that follows the active ZooKeeper transaction logs. The index writer stays open between
+ * updates. Each update parses only what has been appended to each log since the previous update
+ * (logs are read from the file position recorded for them) and commits any new entries.
+ */
+public class LiveIndex implements Closeable
+{
+    private final File directory;
+    private IndexBuilder builder;
+    private int committedCount;
+
+    /**
+     * @param directory the index directory. It is created if needed and appended to if it already exists.
+     */
+    public LiveIndex(File directory)
+    {
+        this.directory = directory;
+    }
+
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * Index any new transactions in the given logs and commit them
+     *
+     * @param logs the active transaction logs
+     * @return number of entries added
+     * @throws Exception errors
+     */
+    public synchronized int update(Collection<File> logs) throws Exception
+    {
+        if ( (builder != null) && !directory.exists() )
+        {
+            // the index was deleted out from under us - start over
+            abort();
+        }
+
+        if ( builder == null )
+        {
+            IndexBuilder    newBuilder = new IndexBuilder(directory, true);
+            try
+            {
+                newBuilder.open();
+            }
+            catch ( Exception e )
+            {
+                CloseableUtils.closeQuietly(newBuilder);
+                throw e;
+            }
+            builder = newBuilder;
+            committedCount = builder.getCurrentCount();
+        }
+
+        try
+        {
+            for ( File log : logs )
+            {
+                builder.addAppended(log.getName(), log);
+            }
+
+            int     added = builder.getCurrentCount() - committedCount;
+            if ( added > 0 )
+            {
+                builder.commit();
+                committedCount = builder.getCurrentCount();
+            }
+            return added;
+        }
+        catch ( Exception e )
+        {
+            abort();    // uncommitted entries are discarded and re-read on the next update
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if ( builder != null )
+        {
+            try
+            {
+                builder.close();
+            }
+            finally
+            {
+                builder = null;
+            }
+        }
+    }
+
+    private void abort()
+    {
+        try
+        {
+            builder.abort();
+        }
+        catch ( IOException ignore )
+        {
+            // the writer is discarded regardless
+        }
+        CloseableUtils.closeQuietly(builder);
+        builder = null;
+    }
+}
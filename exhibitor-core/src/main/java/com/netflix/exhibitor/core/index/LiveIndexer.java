@@ -0,0 +1,156 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import com.netflix.exhibitor.core.Exhibitor;
+import com.netflix.exhibitor.core.activity.Activity;
+import com.netflix.exhibitor.core.activity.ActivityLog;
+import com.netflix.exhibitor.core.activity.OnOffRepeatingActivity;
+import com.netflix.exhibitor.core.activity.QueueGroups;
+import com.netflix.exhibitor.core.activity.RepeatingActivity;
+import com.netflix.exhibitor.core.activity.RepeatingActivityImpl;
+import com.netflix.exhibitor.core.config.ConfigListener;
+import com.netflix.exhibitor.core.config.IntConfigs;
+import com.netflix.exhibitor.core.config.StringConfigs;
+import org.apache.curator.utils.CloseableUtils;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Periodically tails the active ZooKeeper transaction logs into the {@link #LIVE_INDEX_NAME} index
+ * (see {@link LiveIndex}) so that log search reflects recent writes. Enabled by setting
+ * {@link IntConfigs#LIVE_INDEX_PERIOD_MS} to a non-zero value.
+ *
+ * Java 6 has no file watch service so the logs are polled. Polling an unchanged log costs a file
+ * mapping and a read of one transaction header.
+ */
+public class LiveIndexer implements Closeable
+{
+    private final Exhibitor exhibitor;
+    private final RepeatingActivity repeatingActivity;
+    private LiveIndex liveIndex;
+
+    public static final String      LIVE_INDEX_NAME = "exhibitor-live";
+
+    public LiveIndexer(final Exhibitor exhibitor)
+    {
+        this.exhibitor = exhibitor;
+        final Activity activity = new Activity()
+        {
+            @Override
+            public void completed(boolean wasSuccessful)
+            {
+                // NOP
+            }
+
+            @Override
+            public Boolean call() throws Exception
+            {
+                try
+                {
+                    update();
+                }
+                catch ( Exception e )
+                {
+                    exhibitor.getLog().add(ActivityLog.Type.ERROR, "Updating live index", e);
+                }
+                return true;
+            }
+        };
+        repeatingActivity = new OnOffRepeatingActivity
+        (
+            new OnOffRepeatingActivity.Factory()
+            {
+                @Override
+                public RepeatingActivity newRepeatingActivity(long timePeriodMs)
+                {
+                    return new RepeatingActivityImpl(exhibitor.getLog(), exhibitor.getActivityQueue(), QueueGroups.IO, activity, timePeriodMs);
+                }
+            },
+            exhibitor.getConfigManager().getConfig().getInt(IntConfigs.LIVE_INDEX_PERIOD_MS)
+        );
+    }
+
+    public void start()
+    {
+        repeatingActivity.start();
+        exhibitor.getConfigManager().addConfigListener
+        (
+            new ConfigListener()
+            {
+                @Override
+                public void configUpdated()
+                {
+                    int     periodMs = exhibitor.getConfigManager().getConfig().getInt(IntConfigs.LIVE_INDEX_PERIOD_MS);
+                    repeatingActivity.setTimePeriodMs(periodMs);
+                    if ( periodMs == 0 )
+                    {
+                        closeLiveIndex();   // don't hold the index writer open while disabled
+                    }
+                }
+            }
+        );
+    }
+
+    /**
+     * @param indexDirectory an index directory
+     * @return true if the index is the one maintained by this class
+     */
+    public static boolean isLiveIndex(File indexDirectory)
+    {
+        return indexDirectory.getName().equals(LIVE_INDEX_NAME);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        repeatingActivity.close();
+        closeLiveIndex();
+    }
+
+    private synchronized void update() throws Exception
+    {
+        String          path = exhibitor.getConfigManager().getConfig().getString(StringConfigs.LOG_INDEX_DIRECTORY);
+        if ( (path == null) || (path.trim().length() == 0) )
+        {
+            return;
+        }
+
+        File                indexDirectory = new File(path, LIVE_INDEX_NAME);
+        if ( (liveIndex != null) && !liveIndex.getDirectory().equals(indexDirectory) )
+        {
+            closeLiveIndex();   // the index directory config has changed
+        }
+        if ( liveIndex == null )
+        {
+            liveIndex = new LiveIndex(indexDirectory);
+        }
+
+        ZooKeeperLogFiles   logFiles = new ZooKeeperLogFiles(exhibitor);
+        if ( logFiles.isValid() && (liveIndex.update(logFiles.getPaths()) > 0) )
+        {
+            exhibitor.getIndexCache().indexUpdated(indexDirectory);
+        }
+    }
+
+    private synchronized void closeLiveIndex()
+    {
+        CloseableUtils.closeQuietly(liveIndex);
+        liveIndex = null;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Map;
+
+/**
+ * Counts for the entries matched by a search - see {@link LogSearch#aggregate(CachedSearch, int, long)}
+ */
+public class LogAggregation
+{
+    private final int totalHits;
+    private final int[] typeCounts;
+    private final Map<String, Integer> pathCounts;
+    private final long histogramStart;
+    private final long histogramIntervalMs;
+    private final int[] histogramCounts;
+
+    LogAggregation(int totalHits, int[] typeCounts, Map<String, Integer> pathCounts, long histogramStart, long histogramIntervalMs, int[] histogramCounts)
+    {
+        this.totalHits = totalHits;
+        this.typeCounts = typeCounts;
+        this.pathCounts = ImmutableMap.copyOf(pathCounts);
+        this.histogramStart = histogramStart;
+        this.histogramIntervalMs = histogramIntervalMs;
+        this.histogramCounts = histogramCounts;
+    }
+
+    public int getTotalHits()
+    {
+        return totalHits;
+    }
+
+    public int getTypeCount(EntryTypes type)
+    {
+        return (type.getId() < typeCounts.length) ? typeCounts[type.getId()] : 0;
+    }
+
+    /**
+     * @return path prefix (at the requested depth) to entry count
+     */
+    public Map<String, Integer> getPathCounts()
+    {
+        return pathCounts;
+    }
+
+    /**
+     * @return start time of the first histogram bucket
+     */
+    public long getHistogramStart()
+    {
+        return histogramStart;
+    }
+
+    public long getHistogramIntervalMs()
+    {
+        return histogramIntervalMs;
+    }
+
+    /**
+     * @return entry count per histogram bucket. Bucket <code>n</code> starts at <code>getHistogramStart() + (n * getHistogramIntervalMs())</code>
+     */
+    public int[] getHistogramCounts()
+    {
+        return histogramCounts.clone();
+    }
+
+    /**
+     * @param path a path
+     * @param depth number of path components to keep
+     * @return the path truncated to the given depth
+     */
+    static String getPathPrefix(String path, int depth)
+    {
+        int     index = 0;
+        for ( int i = 0; i < depth; ++i )
+        {
+            index = path.indexOf('/', index + 1);
+            if ( index < 0 )
+            {
+                return path;
+            }
+        }
+        return (index > 0) ? path.substring(0, index) : path;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+/**
+ * How far a single ZooKeeper transaction log has been ingested into an index
+ */
+public class LogPosition
+{
+    private final long      zxid;
+    private final long      offset;
+    private final long      modifiedDate;
+
+    /**
+     * @param zxid highest zxid that has been indexed
+     * @param offset file offset just past the last complete transaction that was indexed
+     * @param modifiedDate modified date of the source at the time it was indexed
+     */
+    public LogPosition(long zxid, long offset, long modifiedDate)
+    {
+        this.zxid = zxid;
+        this.offset = offset;
+        this.modifiedDate = modifiedDate;
+    }
+
+    public long getZxid()
+    {
+        return zxid;
+    }
+
+    public long getOffset()
+    {
+        return offset;
+    }
+
+    public long getModifiedDate()
+    {
+        return modifiedDate;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "LogPosition{" +
+            "zxid=" + zxid +
+            ", offset=" + offset +
+            ", modifiedDate=" + modifiedDate +
+            '}';
+    }
+}
@@ -16,46 +16,126 @@
 
 package com.netflix.exhibitor.core.index;
 
+import com.google.common.base.Preconditions;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.apache.curator.utils.CloseableUtils;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
 import org.apache.lucene.document.Fieldable;
 import org.apache.lucene.document.NumericField;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHitCountCollector;
 import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.NIOFSDirectory;
-import org.apache.lucene.store.NativeFSLockFactory;
+import org.apache.lucene.util.ReaderUtil;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
 public class LogSearch implements Closeable
 {
     private final Directory directory;
-    private final IndexReader reader;
-    private final IndexSearcher searcher;
+    private final SearcherManager searcherManager;
     private final File file;
-    private final Cache<String, TopDocs> cache = CacheBuilder.newBuilder()
+    private final IndexDirectoryType directoryType;
+    private final SearchResultCache resultCache;
+    private volatile IndexColumns columns;
+    private final Cache<String, CachedSearch> cache = CacheBuilder.newBuilder()
         .expireAfterAccess(5, TimeUnit.MINUTES) // does this need to be configurable?
+        .maximumSize(MAX_SEARCH_HANDLES)
         .build();
 
-    private static final int            MAX_RESULTS = 5000; // does this need to be configurable?
+    private static final FieldSelector  resultFieldSelector = new MapFieldSelector(FieldNames.TYPE, FieldNames.DATE, FieldNames.PATH, FieldNames.VERSION);
+    private static final int            MAX_HISTOGRAM_BUCKETS = 1000000;
+    private static final int            MAX_SEARCH_HANDLES = 10000;
+    private static final Sort           DATE_SORT = new Sort(new SortField(FieldNames.DATE, SortField.LONG, true));
 
     public LogSearch(File file) throws Exception
+    {
+        this(file, IndexDirectoryType.NIO);
+    }
+
+    public LogSearch(File file, IndexDirectoryType directoryType) throws Exception
+    {
+        this(file, directoryType, null);
+    }
+
+    public LogSearch(File file, IndexDirectoryType directoryType, ExecutorService searchService) throws Exception
+    {
+        this(file, directoryType, searchService, new SearchResultCache());
+    }
+
+    /**
+     * @param file index directory
+     * @param directoryType how to access the index
+     * @param searchService if not null, segments are searched in parallel using this executor and the sorted hits merged
+     * @param resultCache cache for the hits of searches - can be shared between instances
+     * @throws Exception errors
+     */
+    public LogSearch(File file, IndexDirectoryType directoryType, final ExecutorService searchService, SearchResultCache resultCache) throws Exception
     {
         this.file = file;
-        directory = new NIOFSDirectory(file, new NativeFSLockFactory());
-        reader = IndexReader.open(directory);
-        searcher = new IndexSearcher(reader);
+        this.directoryType = directoryType;
+        this.resultCache = resultCache;
+        directory = directoryType.open(file);
+        searcherManager = new SearcherManager(directory, new SearcherFactory()
+        {
+            @Override
+            public IndexSearcher newSearcher(IndexReader reader) throws IOException
+            {
+                // loads the (per segment) date field cache used for sorting and the segment date ranges used
+                // for pruning so that the first real search doesn't pay for them
+                IndexSearcher       searcher = (searchService != null) ? new IndexSearcher(reader, searchService) : new IndexSearcher(reader);
+                searcher.search(new MatchAllDocsQuery(), 1, DATE_SORT);
+
+                List<IndexReader>   subReaders = Lists.newArrayList();
+                ReaderUtil.gatherSubReaders(subReaders, reader);
+                for ( IndexReader subReader : subReaders )
+                {
+                    SegmentDateRanges.get(subReader);
+                }
+                return searcher;
+            }
+        });
+        loadColumns();
+    }
+
+    /**
+     * Pick up entries that have been appended to the index since it was opened. Only new segments
+     * are opened - existing segments (and doc IDs) are shared with the current reader.
+     *
+     * @throws IOException errors
+     */
+    public void     refresh() throws IOException
+    {
+        directoryType.sync(file, directory);
+        searcherManager.maybeRefresh();
+        loadColumns();
     }
 
     public File getFile()
@@ -63,9 +143,17 @@ public class LogSearch implements Closeable
         return file;
     }
 
-    public int      getDocQty()
+    public int      getDocQty() throws IOException
     {
-        return reader.numDocs();
+        IndexSearcher   searcher = searcherManager.acquire();
+        try
+        {
+            return searcher.getIndexReader().numDocs();
+        }
+        finally
+        {
+            searcherManager.release(searcher);
+        }
     }
 
     public void     releaseCache(String id)
@@ -73,62 +161,513 @@ public class LogSearch implements Closeable
         cache.invalidate(id);
     }
 
+    /**
+     * Start a search. Hits are not materialized - pages are read on demand via {@link #getPage(CachedSearch, int, int)}
+     *
+     * @param query the query or null for all documents
+     * @param reuseId existing handle to replace or null
+     * @param maxResults maximum hits or 0 for all hits
+     * @return search handle
+     * @throws IOException errors
+     */
     public String    cacheSearch(Query query, String reuseId, int maxResults) throws IOException
     {
-        if ( (maxResults <= 0) || (maxResults > MAX_RESULTS) )
+        String          id = ((reuseId != null) && (reuseId.length() > 0)) ? reuseId : UUID.randomUUID().toString();
+        IndexSearcher   searcher = searcherManager.acquire();
+        try
         {
-            maxResults = MAX_RESULTS;
+            int                     maxDoc = searcher.maxDoc();
+            TotalHitCountCollector  collector = new TotalHitCountCollector();
+            searcher.search(resolveQuery(searcher, query), new SearchAfterFilter(searcher.getIndexReader(), maxDoc), collector);
+
+            int                     totalHits = (maxResults > 0) ? Math.min(maxResults, collector.getTotalHits()) : collector.getTotalHits();
+            cache.put(id, new CachedSearch(query, maxDoc, totalHits));
         }
-        
-        String      id = ((reuseId != null) && (reuseId.length() > 0)) ? reuseId : UUID.randomUUID().toString();
-        if ( query != null )    // otherwise it's an All Docs search which is the default
+        finally
         {
-            TopDocs docs = search(query, maxResults);
-            docs.totalHits = Math.min(maxResults, docs.totalHits);
-            cache.put(id, docs);
+            searcherManager.release(searcher);
         }
         return id;
     }
-    
-    public CachedSearch getCachedSearch(String id)
+
+    /**
+     * Return the search for the given handle. If the handle has expired, a search of all documents is returned.
+     *
+     * @param id search handle
+     * @return search
+     * @throws IOException errors
+     */
+    public CachedSearch getCachedSearch(String id) throws IOException
     {
-        return new CachedSearch(cache.getIfPresent(id), getDocQty());
+        CachedSearch        cachedSearch = cache.getIfPresent(id);
+        if ( cachedSearch == null )
+        {
+            IndexSearcher   searcher = searcherManager.acquire();
+            try
+            {
+                cachedSearch = new CachedSearch(null, searcher.maxDoc(), searcher.getIndexReader().numDocs());
+            }
+            finally
+            {
+                searcherManager.release(searcher);
+            }
+        }
+        return cachedSearch;
+    }
+
+    /**
+     * Return a page of results sorted by date (newest first). The hits of searches that fit in the result
+     * cache are collected once and then shared by all searches with the same query. For larger searches,
+     * reading the page that follows the previously read page only collects <code>length</code> hits. Other
+     * pages are collected from the start of the results.
+     *
+     * @param cachedSearch the search
+     * @param start index of the first hit to return
+     * @param length max number of hits to return
+     * @return the hits
+     * @throws IOException errors
+     */
+    public List<SearchItem> getPage(CachedSearch cachedSearch, int start, int length) throws IOException
+    {
+        int                 end = Math.min(start + length, cachedSearch.getTotalHits());
+        if ( (start < 0) || (start >= end) )
+        {
+            return Lists.newArrayList();
+        }
+
+        final IndexSearcher searcher = searcherManager.acquire();
+        try
+        {
+            if ( resultCache.canHold(cachedSearch.getTotalHits()) )
+            {
+                final CachedSearch  search = cachedSearch;
+                int[]               allDocIds;
+                try
+                {
+                    allDocIds = resultCache.get(file, cachedSearch, new Callable<int[]>()
+                    {
+                        @Override
+                        public int[] call() throws Exception
+                        {
+                            return collectAll(searcher, search);
+                        }
+                    });
+                }
+                catch ( IOException e )
+                {
+                    throw e;
+                }
+                catch ( Exception e )
+                {
+                    throw new IOException(e);
+                }
+                return toPage(searcher, Arrays.copyOfRange(allDocIds, start, Math.min(end, allDocIds.length)));
+            }
+
+            ScoreDoc[]      hits;
+            int             skip;
+            synchronized(cachedSearch)
+            {
+                SearchAfterFilter   filter;
+                if ( cachedSearch.hasLast() && (start >= cachedSearch.getNextStart()) )
+                {
+                    skip = start - cachedSearch.getNextStart();
+                    filter = new SearchAfterFilter(searcher.getIndexReader(), cachedSearch.getMaxDoc(), cachedSearch.getLastDate(), cachedSearch.getLastDoc());
+                }
+                else
+                {
+                    skip = start;
+                    filter = new SearchAfterFilter(searcher.getIndexReader(), cachedSearch.getMaxDoc());
+                }
+
+                hits = searcher.search(resolveQuery(searcher, cachedSearch.getQuery()), filter, skip + (end - start), DATE_SORT).scoreDocs;
+                if ( hits.length > skip )
+                {
+                    FieldDoc    last = (FieldDoc)hits[hits.length - 1];
+                    cachedSearch.setLast(start + (hits.length - skip), (Long)last.fields[0], last.doc);
+                }
+            }
+
+            int[]           docIds = new int[Math.max(hits.length - skip, 0)];
+            for ( int i = 0; i < docIds.length; ++i )
+            {
+                docIds[i] = hits[skip + i].doc;
+            }
+            return toPage(searcher, docIds);
+        }
+        finally
+        {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Count the entries matched by a search in a single pass - by type, by path prefix and by time. Only
+     * primitive counters are kept per hit and the values come from the index's columns. All entries that
+     * match the search's query are counted - the search's max results limit is not applied.
+     *
+     * @param cachedSearch the search
+     * @param pathDepth number of path components to group path counts by (1 or more)
+     * @param histogramIntervalMs width of the date histogram buckets
+     * @return the counts
+     * @throws IOException errors
+     */
+    public LogAggregation aggregate(CachedSearch cachedSearch, int pathDepth, long histogramIntervalMs) throws IOException
+    {
+        Preconditions.checkArgument(pathDepth > 0, "pathDepth must be at least 1");
+        Preconditions.checkArgument(histogramIntervalMs > 0, "histogramIntervalMs must be greater than 0");
+
+        IndexSearcher   searcher = searcherManager.acquire();
+        try
+        {
+            IndexColumns        localColumns = columns;
+            List<IndexReader>   subReaders = Lists.newArrayList();
+            ReaderUtil.gatherSubReaders(subReaders, searcher.getIndexReader());
+            long                minDate = Long.MAX_VALUE;
+            long                maxDate = Long.MIN_VALUE;
+            for ( IndexReader subReader : subReaders )
+            {
+                long[]      range = SegmentDateRanges.get(subReader);
+                if ( range != null )
+                {
+                    minDate = Math.min(minDate, range[0]);
+                    maxDate = Math.max(maxDate, range[1]);
+                }
+            }
+            long                firstBucket = (minDate <= maxDate) ? (minDate / histogramIntervalMs) : 0;
+            long                bucketQty = (minDate <= maxDate) ? ((maxDate / histogramIntervalMs) - firstBucket + 1) : 0;
+            Preconditions.checkArgument(bucketQty <= MAX_HISTOGRAM_BUCKETS, "The histogram interval is too small for the index's time range");
+
+            AggregatingCollector    collector = new AggregatingCollector(searcher, localColumns, firstBucket, histogramIntervalMs, (int)bucketQty);
+            searcher.search(resolveQuery(searcher, cachedSearch.getQuery()), new SearchAfterFilter(searcher.getIndexReader(), cachedSearch.getMaxDoc()), collector);
+            return collector.toAggregation(pathDepth);
+        }
+        finally
+        {
+            searcherManager.release(searcher);
+        }
     }
 
     public TopDocs   search(Query query, int maxResults) throws IOException
     {
-        Sort sort = new Sort(new SortField(FieldNames.DATE, SortField.LONG, true));
-        return searcher.search(query, maxResults, sort);
+        IndexSearcher   searcher = searcherManager.acquire();
+        try
+        {
+            return searcher.search(resolveQuery(searcher, query), maxResults, DATE_SORT);
+        }
+        finally
+        {
+            searcherManager.release(searcher);
+        }
     }
 
     public SearchItem toResult(int documentId) throws IOException
     {
-        Document        document = searcher.doc(documentId);
+        IndexSearcher   searcher = searcherManager.acquire();
+        try
+        {
+            return toResult(searcher, columns, documentId);
+        }
+        finally
+        {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Return the data for an entry. This is the only call that loads a stored document.
+     *
+     * @param documentId entry
+     * @return data
+     * @throws IOException errors
+     */
+    public byte[]           toData(int documentId) throws IOException
+    {
+        IndexSearcher   searcher = searcherManager.acquire();
+        try
+        {
+            Document    document = searcher.doc(documentId);
+            return document.getBinaryValue(FieldNames.DATA);
+        }
+        finally
+        {
+            searcherManager.release(searcher);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        CloseableUtils.closeQuietly(searcherManager);
+        CloseableUtils.closeQuietly(directory);
+    }
+
+    /**
+     * Map the index's columns. They are written if missing and extended once enough entries have been added
+     * to the index since they were written (see {@link IndexColumns#isStale(IndexColumns, int)}). Until then
+     * the newer entries are read from the index.
+     */
+    private synchronized void loadColumns() throws IOException
+    {
+        IndexSearcher   searcher = searcherManager.acquire();
+        try
+        {
+            int         maxDoc = searcher.maxDoc();
+            if ( (columns != null) && !IndexColumns.isStale(columns, maxDoc) )
+            {
+                return;
+            }
+
+            File            columnsFile = IndexColumns.getColumnsFile(file);
+            IndexColumns    newColumns = null;
+            if ( columnsFile.exists() )
+            {
+                try
+                {
+                    newColumns = IndexColumns.open(columnsFile);
+                }
+                catch ( IOException ignore )
+                {
+                    // invalid file - rewritten below
+                }
+            }
+            if ( (newColumns == null) || (newColumns.getDocCount() > maxDoc) )
+            {
+                IndexColumns.write(searcher.getIndexReader(), columnsFile);
+                newColumns = IndexColumns.open(columnsFile);
+            }
+            else if ( IndexColumns.isStale(newColumns, maxDoc) )
+            {
+                IndexColumns.extend(searcher.getIndexReader(), newColumns, columnsFile);
+                newColumns = IndexColumns.open(columnsFile);
+            }
+            columns = newColumns;
+        }
+        finally
+        {
+            searcherManager.release(searcher);
+        }
+    }
+
+    private static class AggregatingCollector extends Collector
+    {
+        private final IndexSearcher searcher;
+        private final IndexColumns columns;
+        private final long firstBucket;
+        private final long intervalMs;
+        private final int[] typeCounts = new int[EntryTypes.values().length];
+        private final int[] pathOrdinalCounts;
+        private final Map<String, Integer> newPathCounts = Maps.newHashMap();    // documents that aren't in the columns yet
+        private final int[] bucketCounts;
+        private int docBase;
+        private int hits;
+
+        AggregatingCollector(IndexSearcher searcher, IndexColumns columns, long firstBucket, long intervalMs, int bucketQty)
+        {
+            this.searcher = searcher;
+            this.columns = columns;
+            this.firstBucket = firstBucket;
+            this.intervalMs = intervalMs;
+            pathOrdinalCounts = new int[columns.getPathCount()];
+            bucketCounts = new int[bucketQty];
+        }
+
+        @Override
+        public void setScorer(Scorer scorer)
+        {
+        }
+
+        @Override
+        public void collect(int doc) throws IOException
+        {
+            ++hits;
+
+            int         docId = docBase + doc;
+            int         type;
+            long        date;
+            if ( docId < columns.getDocCount() )
+            {
+                type = columns.getType(docId);
+                date = columns.getDate(docId);
+                ++pathOrdinalCounts[columns.getPathOrdinal(docId)];
+            }
+            else
+            {
+                SearchItem  item = toResult(docId, searcher.doc(docId, resultFieldSelector));
+                type = item.getType();
+                date = item.getDate().getTime();
+                Integer     count = newPathCounts.get(item.getPath());
+                newPathCounts.put(item.getPath(), (count != null) ? (count + 1) : 1);
+            }
+
+            if ( (type >= 0) && (type < typeCounts.length) )
+            {
+                ++typeCounts[type];
+            }
+            long        bucket = (date / intervalMs) - firstBucket;
+            if ( (bucket >= 0) && (bucket < bucketCounts.length) )
+            {
+                ++bucketCounts[(int)bucket];
+            }
+        }
+
+        @Override
+        public void setNextReader(IndexReader reader, int docBase)
+        {
+            this.docBase = docBase;
+        }
+
+        @Override
+        public boolean acceptsDocsOutOfOrder()
+        {
+            return true;
+        }
+
+        LogAggregation toAggregation(int pathDepth)
+        {
+            // roll the per-path counts up to the requested depth - proportional to the number of distinct paths, not hits
+            Map<String, Integer>    pathCounts = Maps.newTreeMap();
+            for ( int ordinal = 0; ordinal < pathOrdinalCounts.length; ++ordinal )
+            {
+                if ( pathOrdinalCounts[ordinal] > 0 )
+                {
+                    addPathCount(pathCounts, LogAggregation.getPathPrefix(columns.getPathForOrdinal(ordinal), pathDepth), pathOrdinalCounts[ordinal]);
+                }
+            }
+            for ( Map.Entry<String, Integer> entry : newPathCounts.entrySet() )
+            {
+                addPathCount(pathCounts, LogAggregation.getPathPrefix(entry.getKey(), pathDepth), entry.getValue());
+            }
+
+            int     first = 0;
+            int     last = bucketCounts.length;
+            while ( (first < last) && (bucketCounts[first] == 0) )
+            {
+                ++first;
+            }
+            while ( (last > first) && (bucketCounts[last - 1] == 0) )
+            {
+                --last;
+            }
+            return new LogAggregation(hits, typeCounts, pathCounts, (firstBucket + first) * intervalMs, intervalMs, Arrays.copyOfRange(bucketCounts, first, last));
+        }
+
+        private static void addPathCount(Map<String, Integer> pathCounts, String path, int count)
+        {
+            Integer     current = pathCounts.get(path);
+            pathCounts.put(path, (current != null) ? (current + count) : count);
+        }
+    }
+
+    private int[] collectAll(IndexSearcher searcher, CachedSearch cachedSearch) throws IOException
+    {
+        ScoreDoc[]      hits = searcher.search(resolveQuery(searcher, cachedSearch.getQuery()), new SearchAfterFilter(searcher.getIndexReader(), cachedSearch.getMaxDoc()), Math.max(cachedSearch.getTotalHits(), 1), DATE_SORT).scoreDocs;
+        int[]           docIds = new int[Math.min(hits.length, cachedSearch.getTotalHits())];
+        for ( int i = 0; i < docIds.length; ++i )
+        {
+            docIds[i] = hits[i].doc;
+        }
+        return docIds;
+    }
 
+    private List<SearchItem> toPage(IndexSearcher searcher, int[] docIds) throws IOException
+    {
+        // rows come from the columns. Stored fields are only read for documents added since the columns
+        // were written - in doc ID order so that the reads move forward through the index files
+        IndexColumns                localColumns = columns;
+        int[]                       sortedDocIds = docIds.clone();
+        Arrays.sort(sortedDocIds);
+        Map<Integer, SearchItem>    items = Maps.newHashMap();
+        for ( int docId : sortedDocIds )
+        {
+            items.put(docId, toResult(searcher, localColumns, docId));
+        }
+
+        List<SearchItem>    page = Lists.newArrayListWithCapacity(docIds.length);
+        for ( int docId : docIds )
+        {
+            page.add(items.get(docId));
+        }
+        return page;
+    }
+
+    private static SearchItem toResult(IndexSearcher searcher, IndexColumns columns, int documentId) throws IOException
+    {
+        if ( (columns != null) && (documentId < columns.getDocCount()) )
+        {
+            return columns.toResult(documentId);
+        }
+        return toResult(documentId, searcher.doc(documentId, resultFieldSelector));
+    }
+
+    /**
+     * Return the number of entries under each child of the given path (the child's own entries plus those
+     * of all its descendants). Resolved from the path dictionary so the cost is proportional to the number
+     * of distinct paths in the subtree.
+     *
+     * @param path parent path
+     * @return child path to entry count, sorted by child path
+     */
+    public Map<String, Integer> getSubtreeCounts(String path) throws IOException
+    {
+        IndexColumns            localColumns = columns;
+        Map<String, Integer>    counts = localColumns.getSubtreeCounts(path);
+        IndexSearcher           searcher = searcherManager.acquire();
+        try
+        {
+            if ( searcher.maxDoc() > localColumns.getDocCount() )
+            {
+                IndexColumns.addSubtreeCounts(searcher.getIndexReader(), localColumns.getDocCount(), path, counts);
+            }
+        }
+        finally
+        {
+            searcherManager.release(searcher);
+        }
+        return counts;
+    }
+
+    private Query resolveQuery(IndexSearcher searcher, Query query)
+    {
+        if ( query == null )
+        {
+            return new MatchAllDocsQuery();
+        }
+
+        if ( query instanceof PathQuery )
+        {
+            return ((PathQuery)query).resolve(searcher.getIndexReader(), columns);
+        }
+
+        if ( query instanceof BooleanQuery )
+        {
+            BooleanQuery    booleanQuery = (BooleanQuery)query;
+            BooleanQuery    resolved = new BooleanQuery(booleanQuery.isCoordDisabled());
+            resolved.setMinimumNumberShouldMatch(booleanQuery.getMinimumNumberShouldMatch());
+            resolved.setBoost(booleanQuery.getBoost());
+            for ( BooleanClause clause : booleanQuery.getClauses() )
+            {
+                resolved.add(resolveQuery(searcher, clause.getQuery()), clause.getOccur());
+            }
+            return resolved;
+        }
+
+        return query;
+    }
+
+    private static SearchItem toResult(int documentId, Document document)
+    {
         String          type = document.getFieldable(FieldNames.TYPE).stringValue();
         NumericField    date = (NumericField)document.getFieldable(FieldNames.DATE);
         Fieldable       path = document.getFieldable(FieldNames.PATH);
         NumericField    version = (NumericField)document.getFieldable(FieldNames.VERSION);
         return new SearchItem
         (
+            documentId,
             Integer.parseInt(type),
             path.stringValue(),
             (version != null) ? version.getNumericValue().intValue() : -1,
             new Date(date.getNumericValue().longValue())
         );
     }
-
-    public byte[]           toData(int documentId) throws IOException
-    {
-        Document document = searcher.doc(documentId);
-        return document.getBinaryValue(FieldNames.DATA);
-    }
-
-    @Override
-    public void close()
-    {
-        CloseableUtils.closeQuietly(searcher);
-        CloseableUtils.closeQuietly(reader);
-        CloseableUtils.closeQuietly(directory);
-    }
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Turns a stored log (e.g. a backup) into a stream of raw log bytes. The format is detected
+ * from the first bytes of the stream. Reading the source and decompressing each happen on their
+ * own thread so that they overlap with parsing. Compressed logs can be made of several gzip members.
+ */
+public class LogStreamDecoder
+{
+    private final ExecutorService service;
+
+    private static final int        BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * @param service executor for the read-ahead stages. Each decoded stream uses up to two threads.
+     */
+    public LogStreamDecoder(ExecutorService service)
+    {
+        this.service = service;
+    }
+
+    /**
+     * Return a stream of the decoded log. Closing the returned stream does not close <code>stored</code>
+     *
+     * @param stored the stored log - either raw or gzip compressed
+     * @return decoded stream
+     * @throws IOException errors
+     */
+    public InputStream  decode(InputStream stored) throws IOException
+    {
+        BufferedInputStream     in = new BufferedInputStream(new ReadAheadInputStream(stored, service, false), BUFFER_SIZE);
+        if ( isGzip(in) )
+        {
+            return new ReadAheadInputStream(new GzipMembersInputStream(in, BUFFER_SIZE), service, true);
+        }
+        return in;
+    }
+
+    private static boolean isGzip(BufferedInputStream in) throws IOException
+    {
+        in.mark(2);
+        int     b1 = in.read();
+        int     b2 = in.read();
+        in.reset();
+
+        return (b1 == (GZIPInputStream.GZIP_MAGIC & 0xff)) && (b2 == ((GZIPInputStream.GZIP_MAGIC >> 8) & 0xff));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.util.ReaderUtil;
+import org.apache.lucene.util.SortedVIntList;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches the documents of a range of path ordinals using the posting lists in {@link IndexColumns}.
+ * The cost is proportional to the number of matches rather than to the number of unique paths.
+ * Documents added since the columns were written are matched with the given Lucene filter.
+ */
+class PathFilter extends Filter
+{
+    private final Map<IndexReader, Integer> docBases;
+    private final int columnsDocCount;
+    private final int[] docIds;
+    private final Filter newDocsFilter;
+
+    /**
+     * @param topReader the searcher's reader
+     * @param columns the index's columns
+     * @param fromOrdinal first path ordinal (inclusive)
+     * @param toOrdinal last path ordinal (exclusive)
+     * @param newDocsFilter equivalent filter used for documents not in the columns
+     */
+    PathFilter(IndexReader topReader, IndexColumns columns, int fromOrdinal, int toOrdinal, Filter newDocsFilter)
+    {
+        this.newDocsFilter = newDocsFilter;
+        columnsDocCount = columns.getDocCount();
+        docIds = columns.getDocIds(fromOrdinal, toOrdinal);
+
+        List<IndexReader>   subReaders = Lists.newArrayList();
+        ReaderUtil.gatherSubReaders(subReaders, topReader);
+        docBases = new IdentityHashMap<IndexReader, Integer>();
+        int                 base = 0;
+        for ( IndexReader reader : subReaders )
+        {
+            docBases.put(reader, base);
+            base += reader.maxDoc();
+        }
+    }
+
+    @Override
+    public DocIdSet getDocIdSet(IndexReader reader) throws IOException
+    {
+        int         docBase = Preconditions.checkNotNull(docBases.get(reader), "Unknown segment reader");
+        int         columnsEnd = Math.min(reader.maxDoc(), columnsDocCount - docBase);   // segment docs below this are in the columns
+
+        int         from = lowerBound(docBase);
+        int         to = lowerBound(docBase + Math.max(columnsEnd, 0));
+        int[]       segmentDocs = new int[to - from];
+        for ( int i = from; i < to; ++i )
+        {
+            segmentDocs[i - from] = docIds[i] - docBase;
+        }
+
+        if ( columnsEnd < reader.maxDoc() )
+        {
+            int         newDocsStart = Math.max(columnsEnd, 0);
+            DocIdSet    newDocs = newDocsFilter.getDocIdSet(reader);
+            if ( newDocs != null )
+            {
+                DocIdSetIterator    iterator = newDocs.iterator();
+                if ( iterator != null )
+                {
+                    List<Integer>   added = Lists.newArrayList();
+                    for ( int doc = iterator.advance(newDocsStart); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iterator.nextDoc() )
+                    {
+                        added.add(doc);
+                    }
+                    int             length = segmentDocs.length;
+                    segmentDocs = Arrays.copyOf(segmentDocs, length + added.size());
+                    for ( int i = 0; i < added.size(); ++i )
+                    {
+                        segmentDocs[length + i] = added.get(i);
+                    }
+                }
+            }
+        }
+
+        return (segmentDocs.length > 0) ? new SortedVIntList(segmentDocs) : DocIdSet.EMPTY_DOCIDSET;
+    }
+
+    private int lowerBound(int docId)
+    {
+        int     index = Arrays.binarySearch(docIds, docId);
+        return (index >= 0) ? index : -(index + 1);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.PrefixFilter;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryWrapperFilter;
+import org.apache.lucene.search.TermQuery;
+import java.io.IOException;
+
+/**
+ * An exact or prefix path query. {@link LogSearch} resolves these via the index's path dictionary
+ * ({@link IndexColumns}). Elsewhere they rewrite to the equivalent term/prefix query.
+ */
+class PathQuery extends Query
+{
+    private final String path;
+    private final boolean isPrefix;
+
+    PathQuery(String path, boolean isPrefix)
+    {
+        this.path = path;
+        this.isPrefix = isPrefix;
+    }
+
+    /**
+     * @param topReader the searcher's reader
+     * @param columns the index's columns
+     * @return query that reads matches from the columns' posting lists
+     */
+    Query           resolve(IndexReader topReader, IndexColumns columns)
+    {
+        int[]       range;
+        if ( isPrefix )
+        {
+            range = columns.getPrefixOrdinalRange(path);
+        }
+        else
+        {
+            int     ordinal = columns.findPathOrdinal(path);
+            range = (ordinal >= 0) ? new int[]{ordinal, ordinal + 1} : new int[]{0, 0};
+        }
+        Query       query = new ConstantScoreQuery(new PathFilter(topReader, columns, range[0], range[1], getLuceneFilter()));
+        query.setBoost(getBoost());
+        return query;
+    }
+
+    String          getPath()
+    {
+        return path;
+    }
+
+    boolean         isPrefix()
+    {
+        return isPrefix;
+    }
+
+    @Override
+    public Query rewrite(IndexReader reader) throws IOException
+    {
+        Query       query = getLuceneQuery();
+        query.setBoost(getBoost());
+        return query;
+    }
+
+    @Override
+    public String toString(String field)
+    {
+        return FieldNames.PATH + ":" + path + (isPrefix ? "*" : "");
+    }
+
+    @SuppressWarnings("RedundantIfStatement")
+    @Override
+    public boolean equals(Object o)
+    {
+        if ( this == o )
+        {
+            return true;
+        }
+        if ( !super.equals(o) )
+        {
+            return false;
+        }
+
+        PathQuery pathQuery = (PathQuery)o;
+
+        if ( isPrefix != pathQuery.isPrefix )
+        {
+            return false;
+        }
+        if ( !path.equals(pathQuery.path) )
+        {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int result = super.hashCode();
+        result = 31 * result + path.hashCode();
+        result = 31 * result + (isPrefix ? 1 : 0);
+        return result;
+    }
+
+    private Query getLuceneQuery()
+    {
+        Term        term = new Term(FieldNames.PATH, path);
+        return isPrefix ? new PrefixQuery(term) : new TermQuery(term);
+    }
+
+    private Filter getLuceneFilter()
+    {
+        Term        term = new Term(FieldNames.PATH, path);
+        return isPrefix ? new PrefixFilter(term) : new QueryWrapperFilter(new TermQuery(term));
+    }
+}
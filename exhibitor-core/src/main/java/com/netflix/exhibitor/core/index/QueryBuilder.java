@@ -21,8 +21,8 @@ import com.google.common.collect.Lists;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
 import org.apache.lucene.search.NumericRangeQuery;
-import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
 import java.util.Collection;
@@ -63,15 +63,13 @@ public class QueryBuilder
     
     public QueryBuilder pathExact(String path)
     {
-        Term            term = new Term(FieldNames.PATH, path);
-        queries.add(new TermQuery(term));
+        queries.add(new PathQuery(path, false));
         return this;
     }
 
     public QueryBuilder pathPrefix(String pathPrefix)
     {
-        Term            term = new Term(FieldNames.PATH, pathPrefix);
-        queries.add(new PrefixQuery(term));
+        queries.add(new PathQuery(pathPrefix, true));
         return this;
     }
 
@@ -84,8 +82,7 @@ public class QueryBuilder
 
     public QueryBuilder     dateRange(Date startDate, Date endDate)
     {
-        NumericRangeQuery<Long> query = NumericRangeQuery.newLongRange(FieldNames.DATE, startDate.getTime(), endDate.getTime(), true, false);
-        queries.add(query);
+        queries.add(new ConstantScoreQuery(new DateRangeFilter(startDate.getTime(), endDate.getTime())));
         return this;
     }
 
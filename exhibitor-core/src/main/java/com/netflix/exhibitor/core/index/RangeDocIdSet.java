@@ -0,0 +1,67 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+
+/**
+ * All documents below a given ID
+ */
+class RangeDocIdSet extends DocIdSet
+{
+    private final int limit;
+
+    RangeDocIdSet(int limit)
+    {
+        this.limit = limit;
+    }
+
+    @Override
+    public DocIdSetIterator iterator()
+    {
+        return new DocIdSetIterator()
+        {
+            private int doc = -1;
+
+            @Override
+            public int docID()
+            {
+                return doc;
+            }
+
+            @Override
+            public int nextDoc()
+            {
+                return advance(doc + 1);
+            }
+
+            @Override
+            public int advance(int target)
+            {
+                doc = (target < limit) ? target : NO_MORE_DOCS;
+                return doc;
+            }
+        };
+    }
+
+    @Override
+    public boolean isCacheable()
+    {
+        return true;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import com.google.common.io.ByteStreams;
+import org.apache.curator.utils.CloseableUtils;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a source stream ahead of the consumer on a separate thread. A fixed set of large chunks
+ * is recycled between the reading thread and the consumer so that, once started, no further buffers
+ * are allocated.
+ */
+class ReadAheadInputStream extends InputStream
+{
+    private final InputStream           source;
+    private final boolean               closeSource;
+    private final BlockingQueue<Chunk>  free;
+    private final BlockingQueue<Chunk>  filled;
+    private final Future<?>             future;
+
+    private volatile Throwable          error = null;
+    private Chunk                       current = null;
+    private int                         currentPosition = 0;
+    private boolean                     atEnd = false;
+
+    static final int        DEFAULT_CHUNK_SIZE = 256 * 1024;
+    static final int        DEFAULT_CHUNK_QTY = 4;
+
+    private static class Chunk
+    {
+        final byte[]    buffer;
+        int             length;
+
+        Chunk(int size)
+        {
+            buffer = new byte[size];
+        }
+    }
+
+    private static final Chunk      END = new Chunk(0);
+
+    /**
+     * @param source stream to read
+     * @param service executor to read on
+     * @param closeSource if true, the source is closed by the reading thread when it finishes
+     */
+    ReadAheadInputStream(InputStream source, ExecutorService service, boolean closeSource)
+    {
+        this(source, service, closeSource, DEFAULT_CHUNK_SIZE, DEFAULT_CHUNK_QTY);
+    }
+
+    ReadAheadInputStream(InputStream source, ExecutorService service, boolean closeSource, int chunkSize, int chunkQty)
+    {
+        this.source = source;
+        this.closeSource = closeSource;
+        free = new ArrayBlockingQueue<Chunk>(chunkQty);
+        filled = new ArrayBlockingQueue<Chunk>(chunkQty + 1);  // + 1 for END
+        for ( int i = 0; i < chunkQty; ++i )
+        {
+            free.add(new Chunk(chunkSize));
+        }
+
+        future = service.submit
+        (
+            new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    readAhead();
+                }
+            }
+        );
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        if ( !fill() )
+        {
+            return -1;
+        }
+        return current.buffer[currentPosition++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if ( len == 0 )
+        {
+            return 0;
+        }
+        if ( !fill() )
+        {
+            return -1;
+        }
+
+        int     qty = Math.min(len, current.length - currentPosition);
+        System.arraycopy(current.buffer, currentPosition, b, off, qty);
+        currentPosition += qty;
+        return qty;
+    }
+
+    @Override
+    public int available() throws IOException
+    {
+        return (current != null) ? (current.length - currentPosition) : 0;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        atEnd = true;
+        future.cancel(true);
+    }
+
+    private boolean fill() throws IOException
+    {
+        if ( (current != null) && (currentPosition < current.length) )
+        {
+            return true;
+        }
+
+        if ( current != null )
+        {
+            free.offer(current);
+            current = null;
+        }
+        if ( atEnd )
+        {
+            return false;
+        }
+
+        Chunk       chunk;
+        try
+        {
+            chunk = filled.take();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+
+        if ( chunk == END )
+        {
+            atEnd = true;
+            Throwable   localError = error;
+            if ( localError != null )
+            {
+                throw (localError instanceof IOException) ? (IOException)localError : new IOException(localError);
+            }
+            return false;
+        }
+
+        current = chunk;
+        currentPosition = 0;
+        return true;
+    }
+
+    private void readAhead()
+    {
+        try
+        {
+            for(;;)
+            {
+                Chunk   chunk = free.take();
+                chunk.length = ByteStreams.read(source, chunk.buffer, 0, chunk.buffer.length);
+                if ( chunk.length > 0 )
+                {
+                    filled.put(chunk);
+                }
+                if ( chunk.length < chunk.buffer.length )
+                {
+                    break;
+                }
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch ( Throwable e )
+        {
+            error = e;
+        }
+        finally
+        {
+            filled.offer(END);
+            if ( closeSource )
+            {
+                CloseableUtils.closeQuietly(source);
+            }
+        }
+    }
+}
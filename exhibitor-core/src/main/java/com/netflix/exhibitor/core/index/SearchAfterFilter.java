@@ -0,0 +1,119 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.FilteredDocIdSet;
+import org.apache.lucene.search.NumericRangeFilter;
+import org.apache.lucene.util.ReaderUtil;
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Restricts a date-descending search to the documents that sort after a given (date, doc) position
+ * and that existed when the search was started. Lucene's searchAfter() only supports relevance
+ * sorting so this provides the same cursor for the date sort used by {@link LogSearch}.
+ */
+class SearchAfterFilter extends Filter
+{
+    private final Map<IndexReader, Integer> docBases;
+    private final int maxDoc;
+    private final boolean hasAfter;
+    private final long afterDate;
+    private final int afterDoc;
+    private final Filter dateFilter;
+
+    /**
+     * @param topReader the searcher's reader
+     * @param maxDoc only documents below this ID are matched
+     */
+    SearchAfterFilter(IndexReader topReader, int maxDoc)
+    {
+        this(topReader, maxDoc, false, 0, -1);
+    }
+
+    /**
+     * @param topReader the searcher's reader
+     * @param maxDoc only documents below this ID are matched
+     * @param afterDate date of the last document already returned
+     * @param afterDoc ID of the last document already returned
+     */
+    SearchAfterFilter(IndexReader topReader, int maxDoc, long afterDate, int afterDoc)
+    {
+        this(topReader, maxDoc, true, afterDate, afterDoc);
+    }
+
+    private SearchAfterFilter(IndexReader topReader, int maxDoc, boolean hasAfter, long afterDate, int afterDoc)
+    {
+        this.maxDoc = maxDoc;
+        this.hasAfter = hasAfter;
+        this.afterDate = afterDate;
+        this.afterDoc = afterDoc;
+        dateFilter = hasAfter ? NumericRangeFilter.newLongRange(FieldNames.DATE, null, afterDate, true, true) : null;
+
+        List<IndexReader>   subReaders = Lists.newArrayList();
+        ReaderUtil.gatherSubReaders(subReaders, topReader);
+        docBases = new IdentityHashMap<IndexReader, Integer>();
+        int                 base = 0;
+        for ( IndexReader reader : subReaders )
+        {
+            docBases.put(reader, base);
+            base += reader.maxDoc();
+        }
+    }
+
+    @Override
+    public DocIdSet getDocIdSet(IndexReader reader) throws IOException
+    {
+        Integer         base = Preconditions.checkNotNull(docBases.get(reader), "Unknown segment reader");
+        final int       docBase = base;
+        final int       segmentMaxDoc = Math.min(reader.maxDoc(), maxDoc - docBase);
+        if ( segmentMaxDoc <= 0 )
+        {
+            return DocIdSet.EMPTY_DOCIDSET;
+        }
+
+        if ( !hasAfter )
+        {
+            return new RangeDocIdSet(segmentMaxDoc);
+        }
+
+        DocIdSet        candidates = dateFilter.getDocIdSet(reader);  // date <= afterDate
+        if ( candidates == null )
+        {
+            return DocIdSet.EMPTY_DOCIDSET;
+        }
+
+        final long[]    dates = FieldCache.DEFAULT.getLongs(reader, FieldNames.DATE);
+        return new FilteredDocIdSet(candidates)
+        {
+            @Override
+            protected boolean match(int doc)
+            {
+                // sorted by date descending then doc ID ascending
+                return (doc < segmentMaxDoc) && ((dates[doc] < afterDate) || ((docBase + doc) > afterDoc));
+            }
+        };
+    }
+}
@@ -20,6 +20,7 @@ import java.util.Date;
 
 public class SearchItem
 {
+    private final int           docId;
     private final int           type;
     private final String        path;
     private final int           version;
@@ -27,12 +28,23 @@ public class SearchItem
 
     public SearchItem(int type, String path, int version, Date date)
     {
+        this(-1, type, path, version, date);
+    }
+
+    public SearchItem(int docId, int type, String path, int version, Date date)
+    {
+        this.docId = docId;
         this.type = type;
         this.path = path;
         this.version = version;
         this.date = date;
     }
 
+    public int getDocId()
+    {
+        return docId;
+    }
+
     public int getType()
     {
         return type;
@@ -57,7 +69,8 @@ public class SearchItem
     public String toString()
     {
         return "SearchItem{" +
-            "type=" + type +
+            "docId=" + docId +
+            ", type=" + type +
             ", path='" + path + '\'' +
             ", version=" + version +
             ", date=" + date +
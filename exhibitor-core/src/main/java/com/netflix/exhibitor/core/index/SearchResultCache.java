@@ -0,0 +1,286 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Lists;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The sorted hits of searches, shared by all searches (and all users) with the same query on the same
+ * index. Hits are held as packed doc IDs and the cache is bounded by its approximate size in bytes.
+ */
+public class SearchResultCache
+{
+    private final Cache<Key, int[]> cache;
+    private final AtomicLong sizeBytes = new AtomicLong(0);
+    private final long maxBytes;
+
+    public static final long        DEFAULT_MAX_BYTES = 64 * 1024 * 1024;
+
+    private static final int        ENTRY_OVERHEAD_BYTES = 128;
+
+    private static class Key
+    {
+        private final File index;
+        private final String query;
+        private final int maxDoc;
+        private final int totalHits;
+
+        private Key(File index, String query, int maxDoc, int totalHits)
+        {
+            this.index = index;
+            this.query = query;
+            this.maxDoc = maxDoc;
+            this.totalHits = totalHits;
+        }
+
+        @SuppressWarnings("RedundantIfStatement")
+        @Override
+        public boolean equals(Object o)
+        {
+            if ( this == o )
+            {
+                return true;
+            }
+            if ( o == null || getClass() != o.getClass() )
+            {
+                return false;
+            }
+
+            Key key = (Key)o;
+
+            if ( maxDoc != key.maxDoc )
+            {
+                return false;
+            }
+            if ( totalHits != key.totalHits )
+            {
+                return false;
+            }
+            if ( !index.equals(key.index) )
+            {
+                return false;
+            }
+            if ( !query.equals(key.query) )
+            {
+                return false;
+            }
+
+            return true;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = index.hashCode();
+            result = 31 * result + query.hashCode();
+            result = 31 * result + maxDoc;
+            result = 31 * result + totalHits;
+            return result;
+        }
+    }
+
+    public SearchResultCache()
+    {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param maxBytes approximate max size of the cached hits
+     */
+    public SearchResultCache(long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+        cache = CacheBuilder.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher
+            (
+                new Weigher<Key, int[]>()
+                {
+                    @Override
+                    public int weigh(Key key, int[] docIds)
+                    {
+                        return getWeight(docIds);
+                    }
+                }
+            )
+            .removalListener
+            (
+                new RemovalListener<Key, int[]>()
+                {
+                    @Override
+                    public void onRemoval(RemovalNotification<Key, int[]> notification)
+                    {
+                        sizeBytes.addAndGet(-getWeight(notification.getValue()));
+                    }
+                }
+            )
+            .expireAfterAccess(5, TimeUnit.MINUTES)
+            .recordStats()
+            .build();
+    }
+
+    /**
+     * @param maxHits the max number of hits that will be put in the cache
+     * @return true if the cache could hold that many hits
+     */
+    public boolean canHold(int maxHits)
+    {
+        // Guava evicts entries heavier than a segment's share of the max weight immediately - stay well below that
+        return (ENTRY_OVERHEAD_BYTES + ((long)maxHits * 4)) <= (maxBytes / 16);
+    }
+
+    /**
+     * @return hit/miss/eviction counts
+     */
+    public CacheStats getStats()
+    {
+        return cache.stats();
+    }
+
+    /**
+     * @return number of cached results
+     */
+    public long getEntryCount()
+    {
+        return cache.size();
+    }
+
+    /**
+     * @return approximate size of the cached results
+     */
+    public long getSizeBytes()
+    {
+        return sizeBytes.get();
+    }
+
+    /**
+     * Return the hits of the given search, loading them if needed. Concurrent calls for the same
+     * query wait for a single load.
+     *
+     * @param index the index
+     * @param search the search
+     * @param loader loads the hits (doc IDs in result order)
+     * @return the hits
+     * @throws Exception load errors
+     */
+    int[] get(File index, CachedSearch search, final Callable<int[]> loader) throws Exception
+    {
+        try
+        {
+            return cache.get
+            (
+                new Key(index, normalize(search.getQuery()), search.getMaxDoc(), search.getTotalHits()),
+                new Callable<int[]>()
+                {
+                    @Override
+                    public int[] call() throws Exception
+                    {
+                        int[]   docIds = loader.call();
+                        sizeBytes.addAndGet(getWeight(docIds));
+                        return docIds;
+                    }
+                }
+            );
+        }
+        catch ( ExecutionException e )
+        {
+            throw (e.getCause() instanceof Exception) ? (Exception)e.getCause() : e;
+        }
+    }
+
+    /**
+     * Remove all results for the given index
+     *
+     * @param index the index
+     */
+    void invalidate(File index)
+    {
+        for ( Key key : cache.asMap().keySet() )
+        {
+            if ( key.index.equals(index) )
+            {
+                cache.invalidate(key);
+            }
+        }
+    }
+
+    /**
+     * Queries that differ only in the order of their boolean clauses produce the same key. Other
+     * queries are keyed by their class and text - length-prefixed as paths may contain any character.
+     * Path queries state whether they're exact or prefix queries rather than relying on their text.
+     *
+     * @param query the query or null
+     * @return key
+     */
+    static String normalize(Query query)
+    {
+        if ( query == null )
+        {
+            return "*";
+        }
+
+        if ( query instanceof BooleanQuery )
+        {
+            BooleanQuery    booleanQuery = (BooleanQuery)query;
+            List<String>    clauses = Lists.newArrayList();
+            for ( BooleanClause clause : booleanQuery.getClauses() )
+            {
+                clauses.add(clause.getOccur().toString() + normalize(clause.getQuery()));
+            }
+            Collections.sort(clauses);
+            return "(" + clauses + "~" + booleanQuery.getMinimumNumberShouldMatch() + ")";
+        }
+
+        String      text;
+        if ( query instanceof PathQuery )
+        {
+            PathQuery   pathQuery = (PathQuery)query;
+            text = (pathQuery.isPrefix() ? "prefix:" : "exact:") + pathQuery.getPath();
+        }
+        else
+        {
+            text = query.toString();
+        }
+        return query.getClass().getSimpleName() + "[" + text.length() + "]" + text;
+    }
+
+    private static int getWeight(int[] docIds)
+    {
+        return getWeight(docIds.length);
+    }
+
+    private static int getWeight(int hitQty)
+    {
+        return ENTRY_OVERHEAD_BYTES + (hitQty * 4);
+    }
+}
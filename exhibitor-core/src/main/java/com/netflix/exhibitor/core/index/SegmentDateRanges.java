@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.FieldCache;
+import java.io.IOException;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The min/max entry date of each index segment. Segments are immutable and, as indexes are only
+ * ever appended to and the merge policy only merges adjacent segments, each segment covers a
+ * slice of time. The ranges let date queries skip whole segments.
+ */
+class SegmentDateRanges
+{
+    // keyed like the FieldCache so that entries go away with the segment
+    private static final Map<Object, long[]> ranges = new WeakHashMap<Object, long[]>();
+
+    /**
+     * @param segmentReader segment
+     * @return <code>{min, max}</code> (both inclusive) or null if the segment is empty
+     * @throws IOException errors
+     */
+    static long[]   get(IndexReader segmentReader) throws IOException
+    {
+        Object      key = segmentReader.getCoreCacheKey();
+        synchronized(ranges)
+        {
+            if ( ranges.containsKey(key) )
+            {
+                return ranges.get(key);
+            }
+        }
+
+        long[]      range = null;
+        long[]      dates = FieldCache.DEFAULT.getLongs(segmentReader, FieldNames.DATE);
+        for ( int i = 0; i < segmentReader.maxDoc(); ++i )
+        {
+            if ( range == null )
+            {
+                range = new long[]{dates[i], dates[i]};
+            }
+            else
+            {
+                range[0] = Math.min(range[0], dates[i]);
+                range[1] = Math.max(range[1], dates[i]);
+            }
+        }
+
+        synchronized(ranges)
+        {
+            ranges.put(key, range);
+        }
+        return range;
+    }
+
+    private SegmentDateRanges()
+    {
+    }
+}
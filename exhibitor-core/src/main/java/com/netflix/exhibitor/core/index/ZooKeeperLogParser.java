@@ -16,71 +16,122 @@
 
 package com.netflix.exhibitor.core.index;
 
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import org.apache.curator.utils.CloseableUtils;
 import org.apache.jute.BinaryInputArchive;
 import org.apache.jute.InputArchive;
 import org.apache.jute.Record;
-import org.apache.zookeeper.server.persistence.FileHeader;
 import org.apache.zookeeper.server.persistence.FileTxnLog;
 import org.apache.zookeeper.server.util.SerializeUtils;
 import org.apache.zookeeper.txn.TxnHeader;
 import java.io.ByteArrayInputStream;
 import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.zip.Adler32;
-import java.util.zip.Checksum;
 
 public class ZooKeeperLogParser
 {
-    private final BinaryInputArchive logStream;
+    private final LogInput           input;
     private final boolean            validHeader;
+    private final Adler32            crc = new Adler32();
 
-    private static final Method             deserializeTxnMethod;
-    private static final boolean            useOldDeserializeMethod;
-    static
+    private long                     position = 0;
+
+    private static final TxnDeserializer    deserializer = makeDeserializer();
+
+    private interface TxnDeserializer
+    {
+        public Record deserialize(byte[] bytes, TxnHeader header) throws Exception;
+    }
+
+    private static class DirectDeserializer implements TxnDeserializer
+    {
+        @Override
+        public Record deserialize(byte[] bytes, TxnHeader header) throws Exception
+        {
+            return SerializeUtils.deserializeTxn(bytes, header);
+        }
+    }
+
+    private static TxnDeserializer makeDeserializer()
     {
-        // The signature for SerializeUtils.deserializeTxn changed between 3.3.x and 3.4.x
-        // so, use reflection to work with both
+        // The signature for SerializeUtils.deserializeTxn changed between 3.3.x and 3.4.x. Use a direct
+        // call when the 3.4.x signature (the one compiled against) is present, otherwise fall back to reflection
 
-        Method          localSeserializeTxnMethod;
-        boolean         localUseOldDeserializeMethod = true;
         try
         {
-            localSeserializeTxnMethod = SerializeUtils.class.getMethod("deserializeTxn", InputArchive.class, TxnHeader.class);
+            SerializeUtils.class.getMethod("deserializeTxn", byte[].class, TxnHeader.class);
+            return new DirectDeserializer();
         }
-        catch ( Exception e )
+        catch ( NoSuchMethodException e )
         {
+            final Method      method;
             try
             {
-                localSeserializeTxnMethod = SerializeUtils.class.getMethod("deserializeTxn", byte[].class, TxnHeader.class);
-                localUseOldDeserializeMethod = false;
+                method = SerializeUtils.class.getMethod("deserializeTxn", InputArchive.class, TxnHeader.class);
             }
             catch ( NoSuchMethodException e1 )
             {
                 throw new RuntimeException(e);
             }
+            return new TxnDeserializer()
+            {
+                @Override
+                public Record deserialize(byte[] bytes, TxnHeader header) throws Exception
+                {
+                    InputArchive    iab = BinaryInputArchive.getArchive(new ByteArrayInputStream(bytes));
+                    return (Record)method.invoke(null, iab, header);
+                }
+            };
         }
-        deserializeTxnMethod = localSeserializeTxnMethod;
-        useOldDeserializeMethod = localUseOldDeserializeMethod;
     }
 
+    /**
+     * @param log the log as a stream (e.g. a backup)
+     */
     public ZooKeeperLogParser(InputStream log)
     {
-        logStream = BinaryInputArchive.getArchive(log);
+        this(new StreamLogInput(log));
+    }
+
+    /**
+     * Parse a log file in place by memory-mapping it. Only the pages that hold transactions are
+     * touched - the zero-filled, preallocated tail of the file is never read.
+     *
+     * @param log the log file
+     * @throws IOException errors
+     */
+    public ZooKeeperLogParser(File log) throws IOException
+    {
+        this(MappedLogInput.map(log));
+    }
+
+    private ZooKeeperLogParser(LogInput input)
+    {
+        this.input = input;
 
         boolean         localValidHeader = false;
         try
         {
-            FileHeader fhdr = new FileHeader();
-            fhdr.deserialize(logStream, "fileheader");
-            localValidHeader = (fhdr.getMagic() == FileTxnLog.TXNLOG_MAGIC);
+            // FileHeader: magic, version, dbid
+            int     magic = input.readInt();
+            input.readInt();
+            input.readLong();
+            localValidHeader = (magic == FileTxnLog.TXNLOG_MAGIC);
         }
         catch ( IOException e )
         {
             // ignore
         }
         validHeader = localValidHeader;
+        position = input.getPosition();
     }
 
     public boolean isValid()
@@ -88,6 +139,37 @@ public class ZooKeeperLogParser
         return validHeader;
     }
 
+    /**
+     * Return the offset in the log just past the last complete transaction that was read
+     *
+     * @return offset
+     */
+    public long getPosition()
+    {
+        return position;
+    }
+
+    /**
+     * Skip ahead to the given offset which must be the start of a transaction (i.e. a value
+     * previously returned by {@link #getPosition()} for the same log)
+     *
+     * @param newPosition offset to skip to
+     * @return false if the log ends before the given offset
+     * @throws IOException errors
+     */
+    public boolean skipTo(long newPosition) throws IOException
+    {
+        if ( newPosition > input.getPosition() )
+        {
+            if ( !input.skipTo(newPosition) )
+            {
+                return false;
+            }
+            position = input.getPosition();
+        }
+        return true;
+    }
+
     public void parse(LogEntryReceiver receiver) throws Exception
     {
         if ( !validHeader )
@@ -101,39 +183,211 @@ public class ZooKeeperLogParser
             byte[] bytes;
             try
             {
-                crcValue = logStream.readLong("crcvalue");
+                crcValue = input.readLong();
 
-                bytes = logStream.readBuffer("txnEntry");
+                bytes = input.readTxnBytes();
             }
             catch ( EOFException e )
             {
                 break;
             }
-            if ( bytes.length == 0 )
+            if ( (bytes == null) || (bytes.length == 0) )
             {
                 // Since we preallocate, we define EOF to be an
                 // empty transaction
                 break;
             }
 
-            Checksum crc = new Adler32();
+            crc.reset();
             crc.update(bytes, 0, bytes.length);
             if ( crcValue != crc.getValue() )
             {
                 throw new IOException("CRC doesn't match " + crcValue + " vs " + crc.getValue());
             }
 
-            InputArchive    iab = BinaryInputArchive.getArchive(new ByteArrayInputStream(bytes));
             TxnHeader       hdr = new TxnHeader();
+            Record          record = deserializer.deserialize(bytes, hdr);
 
-            Record          record = useOldDeserializeMethod ? (Record)deserializeTxnMethod.invoke(null, iab, hdr) : (Record)deserializeTxnMethod.invoke(null, bytes, hdr);
-
-            if ( logStream.readByte("EOR") != 'B' )
+            try
+            {
+                if ( input.readByte() != 'B' )
+                {
+                    break;  // partial transaction
+                }
+            }
+            catch ( EOFException e )
             {
                 break;  // partial transaction
             }
 
+            position = input.getPosition();
             receiver.receiveEntry(hdr, record);
         }
     }
+
+    private interface LogInput
+    {
+        public int      readInt() throws IOException;
+
+        public long     readLong() throws IOException;
+
+        public byte     readByte() throws IOException;
+
+        /**
+         * @return the next length-prefixed transaction or null/empty at the end of the written portion of the log
+         * @throws IOException errors
+         */
+        public byte[]   readTxnBytes() throws IOException;
+
+        public long     getPosition();
+
+        public boolean  skipTo(long newPosition) throws IOException;
+    }
+
+    private static class StreamLogInput implements LogInput
+    {
+        private final CountingInputStream countingStream;
+        private final BinaryInputArchive logStream;
+
+        StreamLogInput(InputStream log)
+        {
+            // BinaryInputArchive does no buffering of its own so the count is exact
+            countingStream = new CountingInputStream(log);
+            logStream = BinaryInputArchive.getArchive(countingStream);
+        }
+
+        @Override
+        public int readInt() throws IOException
+        {
+            return logStream.readInt("int");
+        }
+
+        @Override
+        public long readLong() throws IOException
+        {
+            return logStream.readLong("long");
+        }
+
+        @Override
+        public byte readByte() throws IOException
+        {
+            return logStream.readByte("byte");
+        }
+
+        @Override
+        public byte[] readTxnBytes() throws IOException
+        {
+            return logStream.readBuffer("txnEntry");
+        }
+
+        @Override
+        public long getPosition()
+        {
+            return countingStream.getCount();
+        }
+
+        @Override
+        public boolean skipTo(long newPosition) throws IOException
+        {
+            try
+            {
+                ByteStreams.skipFully(countingStream, newPosition - countingStream.getCount());
+            }
+            catch ( EOFException e )
+            {
+                return false;
+            }
+            return true;
+        }
+    }
+
+    private static class MappedLogInput implements LogInput
+    {
+        private final ByteBuffer buffer;
+
+        static LogInput map(File log) throws IOException
+        {
+            RandomAccessFile    file = new RandomAccessFile(log, "r");
+            try
+            {
+                FileChannel     channel = file.getChannel();
+                if ( channel.size() > Integer.MAX_VALUE )
+                {
+                    throw new IOException("Log file is too large to map: " + log);
+                }
+                // the mapping remains valid after the channel is closed
+                return new MappedLogInput(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+            finally
+            {
+                CloseableUtils.closeQuietly(file);
+            }
+        }
+
+        private MappedLogInput(ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int readInt() throws IOException
+        {
+            checkRemaining(4);
+            return buffer.getInt();
+        }
+
+        @Override
+        public long readLong() throws IOException
+        {
+            checkRemaining(8);
+            return buffer.getLong();
+        }
+
+        @Override
+        public byte readByte() throws IOException
+        {
+            checkRemaining(1);
+            return buffer.get();
+        }
+
+        @Override
+        public byte[] readTxnBytes() throws IOException
+        {
+            int     length = readInt();
+            if ( length <= 0 )
+            {
+                return null;
+            }
+            checkRemaining(length);
+
+            byte[]  bytes = new byte[length];
+            buffer.get(bytes);
+            return bytes;
+        }
+
+        @Override
+        public long getPosition()
+        {
+            return buffer.position();
+        }
+
+        @Override
+        public boolean skipTo(long newPosition) throws IOException
+        {
+            if ( newPosition > buffer.limit() )
+            {
+                return false;
+            }
+            buffer.position((int)newPosition);
+            return true;
+        }
+
+        private void checkRemaining(int qty) throws EOFException
+        {
+            if ( buffer.remaining() < qty )
+            {
+                throw new EOFException();
+            }
+        }
+    }
 }
@@ -196,6 +196,25 @@ public class ConfigResource
         return Response.ok(result).build();
     }
 
+    @Path("migrate-backups")
+    @POST
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response migrateBackups() throws Exception
+    {
+        Result  result;
+        try
+        {
+            int     movedQty = context.getExhibitor().getBackupManager().migrateBackups();
+            result = (movedQty < 0) ? new Result("The backup provider doesn't move backups", false) : new Result("Backups moved: " + movedQty, true);
+        }
+        catch ( Exception e )
+        {
+            result = new Result(e);
+        }
+
+        return Response.ok(result).build();
+    }
+
     @Path("set")
     @POST
     @Produces(MediaType.APPLICATION_JSON)
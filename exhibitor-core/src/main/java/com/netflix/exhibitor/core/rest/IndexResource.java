@@ -17,11 +17,13 @@
 package com.netflix.exhibitor.core.rest;
 
 import com.google.common.base.Function;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.Lists;
 import com.netflix.exhibitor.core.activity.ActivityLog;
 import com.netflix.exhibitor.core.activity.QueueGroups;
 import com.netflix.exhibitor.core.backup.BackupMetaData;
+import com.netflix.exhibitor.core.config.IntConfigs;
 import com.netflix.exhibitor.core.config.StringConfigs;
 import com.netflix.exhibitor.core.entities.Index;
 import com.netflix.exhibitor.core.entities.NameAndModifiedDate;
@@ -31,19 +33,24 @@ import com.netflix.exhibitor.core.entities.SearchRequest;
 import com.netflix.exhibitor.core.entities.SearchResult;
 import com.netflix.exhibitor.core.index.CachedSearch;
 import com.netflix.exhibitor.core.index.EntryTypes;
+import com.netflix.exhibitor.core.index.IndexArchive;
 import com.netflix.exhibitor.core.index.IndexCache;
 import com.netflix.exhibitor.core.index.IndexList;
 import com.netflix.exhibitor.core.index.IndexMetaData;
 import com.netflix.exhibitor.core.index.IndexProcessorActivity;
+import com.netflix.exhibitor.core.index.LiveIndexer;
+import com.netflix.exhibitor.core.index.LogAggregation;
 import com.netflix.exhibitor.core.index.LogSearch;
 import com.netflix.exhibitor.core.index.QueryBuilder;
 import com.netflix.exhibitor.core.index.SearchItem;
+import com.netflix.exhibitor.core.index.SearchResultCache;
 import org.apache.lucene.search.Query;
 import org.codehaus.jackson.node.ArrayNode;
 import org.codehaus.jackson.node.JsonNodeFactory;
 import org.codehaus.jackson.node.ObjectNode;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
@@ -54,15 +61,24 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.ext.ContextResolver;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Path("exhibitor/v1/index")
 public class IndexResource
@@ -86,16 +102,92 @@ public class IndexResource
         return Response.ok(new Result("OK", true)).build();
     }
 
+    @Path("update-index/{index-name}")
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response updateIndex(@PathParam("index-name") String indexName) throws Exception
+    {
+        File        indexFile = getLogFile(indexName);
+        if ( indexFile == null )
+        {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        if ( LiveIndexer.isLiveIndex(indexFile) )
+        {
+            return Response.ok(new Result("The live index is updated automatically", false)).build();
+        }
+        context.getExhibitor().getActivityQueue().add(QueueGroups.IO, new IndexProcessorActivity(context.getExhibitor(), indexFile));
+        return Response.ok(new Result("OK", true)).build();
+    }
+
     @Path("{index-name}")
     @DELETE
     @Produces(MediaType.APPLICATION_JSON)
     public Response deleteIndex(@PathParam("index-name") String indexName)
     {
         File        indexFile = getLogFile(indexName);
+        if ( indexFile == null )
+        {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        if ( LiveIndexer.isLiveIndex(indexFile) && (context.getExhibitor().getConfigManager().getConfig().getInt(IntConfigs.LIVE_INDEX_PERIOD_MS) != 0) )
+        {
+            // the live indexer holds the index writer open until it's turned off
+            return Response.ok(new Result("The live index can't be deleted while live indexing is on", false)).build();
+        }
         context.getExhibitor().getIndexCache().markForDeletion(indexFile);
         return Response.ok(new Result("OK", true)).build();
     }
 
+    @Path("export/{index-name}")
+    @GET
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public Response exportIndex(@PathParam("index-name") final String indexName)
+    {
+        final File        indexFile = getLogFile(indexName);
+        if ( indexFile == null )
+        {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+
+        StreamingOutput     output = new StreamingOutput()
+        {
+            @Override
+            public void write(OutputStream out) throws IOException
+            {
+                IndexArchive.write(indexFile, Channels.newChannel(out));
+            }
+        };
+        return Response.ok(output).header("Content-Disposition", "attachment; filename=\"" + indexName + ".index\"").build();
+    }
+
+    @Path("import")
+    @POST
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response importIndex(InputStream in)
+    {
+        String      path = context.getExhibitor().getConfigManager().getConfig().getString(StringConfigs.LOG_INDEX_DIRECTORY);
+        if ( path == null )
+        {
+            return Response.ok(new Result("No index directory set in config", false)).build();
+        }
+
+        File        indexDirectory = new File(path, "exhibitor-" + System.currentTimeMillis());
+        try
+        {
+            IndexArchive.read(Channels.newChannel(in), indexDirectory, context.getExhibitor().getConfigManager().getConfig().getInt(IntConfigs.INDEX_PATH_FILTER_DEPTH));
+        }
+        catch ( Exception e )
+        {
+            context.getExhibitor().getLog().add(ActivityLog.Type.ERROR, "Importing Index", e);
+            return Response.ok(new Result(e.getMessage(), false)).build();
+        }
+
+        context.getExhibitor().getLog().add(ActivityLog.Type.INFO, "Index imported: " + indexDirectory.getName());
+        return Response.ok(new Result(indexDirectory.getName(), true)).build();
+    }
+
     @Path("get-backups")
     @GET
     @Produces(MediaType.APPLICATION_JSON)
@@ -187,21 +279,16 @@ public class IndexResource
             CachedSearch        cachedSearch = logSearch.getCachedSearch(searchHandle);
             DateFormat          dateFormatter = new SimpleDateFormat(DATE_FORMAT_STR);
             ArrayNode           dataTab = JsonNodeFactory.instance.arrayNode();
-            for ( int i = iDisplayStart; i < (iDisplayStart + iDisplayLength); ++i )
+            for ( SearchItem item : logSearch.getPage(cachedSearch, iDisplayStart, iDisplayLength) )
             {
-                if ( i < cachedSearch.getTotalHits() )
-                {
-                    ObjectNode      data = JsonNodeFactory.instance.objectNode();
-                    int             docId = cachedSearch.getNthDocId(i);
-                    SearchItem      item = logSearch.toResult(docId);
-                    
-                    data.put("DT_RowId", "index-query-result-" + docId);
-                    data.put("0", getTypeName(EntryTypes.getFromId(item.getType())));
-                    data.put("1", dateFormatter.format(item.getDate()));
-                    data.put("2", trimPath(item.getPath()));
-
-                    dataTab.add(data);
-                }
+                ObjectNode      data = JsonNodeFactory.instance.objectNode();
+
+                data.put("DT_RowId", "index-query-result-" + item.getDocId());
+                data.put("0", getTypeName(EntryTypes.getFromId(item.getType())));
+                data.put("1", dateFormatter.format(item.getDate()));
+                data.put("2", trimPath(item.getPath()));
+
+                dataTab.add(data);
             }
 
             node = JsonNodeFactory.instance.objectNode();
@@ -218,6 +305,119 @@ public class IndexResource
         return node.toString();
     }
 
+    @Path("aggregate/{index-name}/{search-handle}")
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response aggregate
+        (
+            @PathParam("index-name") String indexName,
+            @PathParam("search-handle") String searchHandle,
+            @QueryParam("depth") @DefaultValue("1") int depth,
+            @QueryParam("interval") @DefaultValue("minute") String interval,
+            @QueryParam("maxPaths") @DefaultValue("100") int maxPaths
+        ) throws Exception
+    {
+        long        intervalMs;
+        if ( interval.equalsIgnoreCase("second") )
+        {
+            intervalMs = TimeUnit.SECONDS.toMillis(1);
+        }
+        else if ( interval.equalsIgnoreCase("minute") )
+        {
+            intervalMs = TimeUnit.MINUTES.toMillis(1);
+        }
+        else
+        {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        if ( depth < 1 )
+        {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+
+        LogSearch logSearch = getLogSearch(indexName);
+        if ( logSearch == null )
+        {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        ObjectNode          node;
+        try
+        {
+            LogAggregation      aggregation = logSearch.aggregate(logSearch.getCachedSearch(searchHandle), depth, intervalMs);
+
+            ObjectNode          types = JsonNodeFactory.instance.objectNode();
+            for ( EntryTypes type : EntryTypes.values() )
+            {
+                types.put(getTypeName(type), aggregation.getTypeCount(type));
+            }
+
+            List<Map.Entry<String, Integer>>    pathCounts = Lists.newArrayList(aggregation.getPathCounts().entrySet());
+            Collections.sort
+            (
+                pathCounts,
+                new Comparator<Map.Entry<String, Integer>>()
+                {
+                    @Override
+                    public int compare(Map.Entry<String, Integer> o1, Map.Entry<String, Integer> o2)
+                    {
+                        return o2.getValue().compareTo(o1.getValue());
+                    }
+                }
+            );
+            ArrayNode           paths = JsonNodeFactory.instance.arrayNode();
+            for ( Map.Entry<String, Integer> entry : pathCounts.subList(0, Math.min(Math.max(maxPaths, 0), pathCounts.size())) )
+            {
+                ObjectNode      path = JsonNodeFactory.instance.objectNode();
+                path.put("path", entry.getKey());
+                path.put("count", entry.getValue());
+                paths.add(path);
+            }
+
+            ArrayNode           counts = JsonNodeFactory.instance.arrayNode();
+            for ( int count : aggregation.getHistogramCounts() )
+            {
+                counts.add(count);
+            }
+            ObjectNode          histogram = JsonNodeFactory.instance.objectNode();
+            histogram.put("start", aggregation.getHistogramStart());
+            histogram.put("intervalMs", aggregation.getHistogramIntervalMs());
+            histogram.put("counts", counts);
+
+            node = JsonNodeFactory.instance.objectNode();
+            node.put("totalHits", aggregation.getTotalHits());
+            node.put("types", types);
+            node.put("paths", paths);
+            node.put("histogram", histogram);
+        }
+        catch ( IllegalArgumentException e )
+        {
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        }
+        finally
+        {
+            context.getExhibitor().getIndexCache().releaseLogSearch(logSearch.getFile());
+        }
+
+        return Response.ok(node.toString()).build();
+    }
+
+    @Path("result-cache-stats")
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public String getResultCacheStats()
+    {
+        SearchResultCache   resultCache = context.getExhibitor().getIndexCache().getSearchResultCache();
+        CacheStats          stats = resultCache.getStats();
+
+        ObjectNode          node = JsonNodeFactory.instance.objectNode();
+        node.put("hits", stats.hitCount());
+        node.put("misses", stats.missCount());
+        node.put("evictions", stats.evictionCount());
+        node.put("entries", resultCache.getEntryCount());
+        node.put("sizeBytes", resultCache.getSizeBytes());
+        return node.toString();
+    }
+
     @Path("indexed-logs")
     @GET
     @Produces(MediaType.APPLICATION_JSON)
@@ -281,6 +481,34 @@ public class IndexResource
         return Response.ok(new Result("OK", true)).build();
     }
 
+    @Path("matching-indexes")
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getMatchingIndexes(SearchRequest request) throws Exception
+    {
+        String          path = context.getExhibitor().getConfigManager().getConfig().getString(StringConfigs.LOG_INDEX_DIRECTORY);
+        if ( (path == null) || (path.trim().length() == 0) )
+        {
+            return Response.ok(new Result("No index directory set in config", false)).build();
+        }
+
+        // indexes are ruled out with their path filters - none of them are opened
+        Query           query = buildQuery(request);
+        IndexCache      indexCache = context.getExhibitor().getIndexCache();
+        IndexList       indexList = new IndexList(new File(path));
+        List<String>    names = Lists.newArrayList();
+        for ( File indexDirectory : indexList.getIndexes() )
+        {
+            if ( indexCache.mightMatch(indexDirectory, query) )
+            {
+                names.add(indexDirectory.getName());
+            }
+        }
+        GenericEntity<List<String>> entity = new GenericEntity<List<String>>(names){};
+        return Response.ok(entity).build();
+    }
+
     @Path("cache-search")
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
@@ -296,42 +524,7 @@ public class IndexResource
         SearchId    searchHandle;
         try
         {
-            boolean         hasTerms = false;
-            QueryBuilder    builder = QueryBuilder.builder();
-            if ( (request.getPathPrefix() != null) && (request.getPathPrefix().length() > 0) )
-            {
-                hasTerms = true;
-                builder.pathPrefix(request.getPathPrefix());
-            }
-            if ( request.getOperationType() >= 0 )
-            {
-                hasTerms = true;
-                builder.operationType(request.getOperationType());
-            }
-            if ( (request.getFirstDate() != null) && (request.getSecondDate() != null) )
-            {
-                hasTerms = true;
-                Date        startDate;
-                Date        endDate;
-                if ( request.getFirstDate().before(request.getSecondDate()) )
-                {
-                    startDate = request.getFirstDate();
-                    endDate = request.getSecondDate();
-                }
-                else
-                {
-                    startDate = request.getSecondDate();
-                    endDate = request.getFirstDate();
-                }
-                Calendar      endOfDayEndDate = Calendar.getInstance();
-                endOfDayEndDate.setTime(endDate);
-                endOfDayEndDate.set(Calendar.HOUR_OF_DAY, 23);
-                endOfDayEndDate.set(Calendar.MINUTE, 59);
-                endOfDayEndDate.set(Calendar.SECOND, 59);
-                endDate = endOfDayEndDate.getTime();
-                builder.dateRange(startDate, endDate);
-            }
-            Query       query = hasTerms ? builder.build(QueryBuilder.Type.AND) : null;
+            Query       query = buildQuery(request);
             String      id = logSearch.cacheSearch(query, request.getReuseHandle(), request.getMaxResults());
             searchHandle = new SearchId(id);
         }
@@ -342,6 +535,46 @@ public class IndexResource
         return Response.ok(searchHandle).build();
     }
 
+    private Query buildQuery(SearchRequest request)
+    {
+        boolean         hasTerms = false;
+        QueryBuilder    builder = QueryBuilder.builder();
+        if ( (request.getPathPrefix() != null) && (request.getPathPrefix().length() > 0) )
+        {
+            hasTerms = true;
+            builder.pathPrefix(request.getPathPrefix());
+        }
+        if ( request.getOperationType() >= 0 )
+        {
+            hasTerms = true;
+            builder.operationType(request.getOperationType());
+        }
+        if ( (request.getFirstDate() != null) && (request.getSecondDate() != null) )
+        {
+            hasTerms = true;
+            Date        startDate;
+            Date        endDate;
+            if ( request.getFirstDate().before(request.getSecondDate()) )
+            {
+                startDate = request.getFirstDate();
+                endDate = request.getSecondDate();
+            }
+            else
+            {
+                startDate = request.getSecondDate();
+                endDate = request.getFirstDate();
+            }
+            Calendar      endOfDayEndDate = Calendar.getInstance();
+            endOfDayEndDate.setTime(endDate);
+            endOfDayEndDate.set(Calendar.HOUR_OF_DAY, 23);
+            endOfDayEndDate.set(Calendar.MINUTE, 59);
+            endOfDayEndDate.set(Calendar.SECOND, 59);
+            endDate = endOfDayEndDate.getTime();
+            builder.dateRange(startDate, endDate);
+        }
+        return hasTerms ? builder.build(QueryBuilder.Type.AND) : null;
+    }
+
     private String trimPath(String path)
     {
         if ( path.length() > MAX_PATH )
@@ -365,12 +598,11 @@ public class IndexResource
     private File getLogFile(String indexName)
     {
         String      indexDirectory = context.getExhibitor().getConfigManager().getConfig().getString(StringConfigs.LOG_INDEX_DIRECTORY);
-        File        indexFile = new File(indexDirectory, indexName);
-        if ( !IndexMetaData.isValid(indexFile) )
+        if ( (indexDirectory == null) || (indexDirectory.trim().length() == 0) )
         {
             return null;
         }
-        return indexFile;
+        return IndexList.getIndex(new File(indexDirectory), indexName);
     }
 
     private String getTypeName(EntryTypes type)
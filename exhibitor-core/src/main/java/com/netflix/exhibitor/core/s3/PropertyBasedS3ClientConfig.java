@@ -32,15 +32,29 @@ public class PropertyBasedS3ClientConfig implements S3ClientConfig
     private final int proxyPort;
     private final String proxyUsername;
     private final String proxyPassword;
+    private final int maxConnections;
+    private final int connectionMaxIdleMs;
+    private final int socketSendBuffer;
+    private final int socketReceiveBuffer;
+    private final boolean tcpKeepAlive;
 
     public static final String PROPERTY_S3_PROXY_HOST = "com.netflix.exhibitor.s3.proxy-host";
     public static final String PROPERTY_S3_PROXY_PORT = "com.netflix.exhibitor.s3.proxy-port";
     public static final String PROPERTY_S3_PROXY_USERNAME = "com.netflix.exhibitor.s3.proxy-username";
     public static final String PROPERTY_S3_PROXY_PASSWORD = "com.netflix.exhibitor.s3.proxy-password";
+    public static final String PROPERTY_S3_MAX_CONNECTIONS = "com.netflix.exhibitor.s3.max-connections";
+    public static final String PROPERTY_S3_CONNECTION_MAX_IDLE_MS = "com.netflix.exhibitor.s3.connection-max-idle-ms";
+    public static final String PROPERTY_S3_SOCKET_SEND_BUFFER = "com.netflix.exhibitor.s3.socket-send-buffer";
+    public static final String PROPERTY_S3_SOCKET_RECEIVE_BUFFER = "com.netflix.exhibitor.s3.socket-receive-buffer";
+    public static final String PROPERTY_S3_TCP_KEEP_ALIVE = "com.netflix.exhibitor.s3.tcp-keep-alive";
 
-    public PropertyBasedS3ClientConfig(File propertiesFile) throws IOException
+    /**
+     * @param propertiesFiles files to load - when a property is in more than one file, the last file wins
+     * @throws IOException errors reading the files
+     */
+    public PropertyBasedS3ClientConfig(File... propertiesFiles) throws IOException
     {
-        this(loadProperties(propertiesFile));
+        this(loadProperties(propertiesFiles));
     }
 
     public PropertyBasedS3ClientConfig(Properties properties)
@@ -49,6 +63,11 @@ public class PropertyBasedS3ClientConfig implements S3ClientConfig
         proxyPort = DefaultProperties.asInt(properties.getProperty(PROPERTY_S3_PROXY_PORT));
         proxyUsername = properties.getProperty(PROPERTY_S3_PROXY_USERNAME);
         proxyPassword = properties.getProperty(PROPERTY_S3_PROXY_PASSWORD);
+        maxConnections = DefaultProperties.asInt(properties.getProperty(PROPERTY_S3_MAX_CONNECTIONS));
+        connectionMaxIdleMs = DefaultProperties.asInt(properties.getProperty(PROPERTY_S3_CONNECTION_MAX_IDLE_MS));
+        socketSendBuffer = DefaultProperties.asInt(properties.getProperty(PROPERTY_S3_SOCKET_SEND_BUFFER));
+        socketReceiveBuffer = DefaultProperties.asInt(properties.getProperty(PROPERTY_S3_SOCKET_RECEIVE_BUFFER));
+        tcpKeepAlive = "true".equalsIgnoreCase(properties.getProperty(PROPERTY_S3_TCP_KEEP_ALIVE));
     }
 
     @Override
@@ -67,20 +86,42 @@ public class PropertyBasedS3ClientConfig implements S3ClientConfig
         {
             awsClientConfig.setProxyPassword(proxyPassword);
         }
+
+        // transport settings left unset (0) keep the SDK defaults
+        if ( maxConnections > 0 )
+        {
+            awsClientConfig.setMaxConnections(maxConnections);
+        }
+
+        if ( connectionMaxIdleMs > 0 )
+        {
+            awsClientConfig.setConnectionMaxIdleMillis(connectionMaxIdleMs);
+            awsClientConfig.setUseReaper(true);
+        }
+
+        if ( (socketSendBuffer > 0) || (socketReceiveBuffer > 0) )
+        {
+            awsClientConfig.setSocketBufferSizeHints(socketSendBuffer, socketReceiveBuffer);
+        }
+
+        awsClientConfig.setUseTcpKeepAlive(tcpKeepAlive);
         return awsClientConfig;
     }
 
-    private static Properties loadProperties(File propertiesFile) throws IOException
+    private static Properties loadProperties(File... propertiesFiles) throws IOException
     {
         Properties      properties = new Properties();
-        InputStream     in = new BufferedInputStream(new FileInputStream(propertiesFile));
-        try
-        {
-            properties.load(in);
-        }
-        finally
+        for ( File propertiesFile : propertiesFiles )
         {
-            CloseableUtils.closeQuietly(in);
+            InputStream     in = new BufferedInputStream(new FileInputStream(propertiesFile));
+            try
+            {
+                properties.load(in);
+            }
+            finally
+            {
+                CloseableUtils.closeQuietly(in);
+            }
         }
         return properties;
     }
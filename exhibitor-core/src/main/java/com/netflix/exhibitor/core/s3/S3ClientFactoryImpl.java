@@ -16,30 +16,259 @@
 
 package com.netflix.exhibitor.core.s3;
 
+import com.amazonaws.services.s3.model.*;
+import com.google.common.base.Objects;
+import com.google.common.collect.Maps;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Clients made by the same factory instance for the same credentials, client config and region share
+ * one underlying client (and so one connection pool). The shared client is closed when the last
+ * of its users closes it.
+ */
 public class S3ClientFactoryImpl implements S3ClientFactory
 {
+    private final S3ClientMetrics metrics;
+    private final Map<ClientKey, SharedClient> clients = Maps.newHashMap();
+
+    public S3ClientFactoryImpl()
+    {
+        this(null);
+    }
+
+    /**
+     * @param metrics if not null, all clients made by this factory record their requests to it
+     */
+    public S3ClientFactoryImpl(S3ClientMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    public S3ClientMetrics getMetrics()
+    {
+        return metrics;
+    }
+
     @Override
     public S3Client makeNewClient(final S3Credential credentials, String s3Region) throws Exception
     {
-        return new S3ClientImpl(credentials, s3Region);
+        return makeNewClient(credentials, null, s3Region);
     }
 
     @Override
-    public S3Client makeNewClient(final S3Credential credentials, final S3ClientConfig clientConfig, String s3Region) throws Exception
+    public synchronized S3Client makeNewClient(final S3Credential credentials, final S3ClientConfig clientConfig, String s3Region) throws Exception
     {
-        return new S3ClientImpl(credentials, clientConfig, s3Region);
+        ClientKey       key = new ClientKey(credentials, clientConfig, s3Region);
+        SharedClient    sharedClient = clients.get(key);
+        if ( sharedClient == null )
+        {
+            sharedClient = new SharedClient(key, new S3ClientImpl(credentials, clientConfig, s3Region, metrics));
+            clients.put(key, sharedClient);
+        }
+        return sharedClient.newHandle();
     }
 
     @Override
     public S3Client makeNewClient(S3CredentialsProvider credentialsProvider, String s3Region) throws Exception
     {
-        return new S3ClientImpl(credentialsProvider, s3Region);
+        return makeNewClient(credentialsProvider, null, s3Region);
     }
 
     @Override
-    public S3Client makeNewClient(S3CredentialsProvider credentialsProvider, final S3ClientConfig clientConfig, String s3Region) throws Exception
+    public synchronized S3Client makeNewClient(S3CredentialsProvider credentialsProvider, final S3ClientConfig clientConfig, String s3Region) throws Exception
+    {
+        ClientKey       key = new ClientKey(credentialsProvider, clientConfig, s3Region);
+        SharedClient    sharedClient = clients.get(key);
+        if ( sharedClient == null )
+        {
+            sharedClient = new SharedClient(key, new S3ClientImpl(credentialsProvider, clientConfig, s3Region, metrics));
+            clients.put(key, sharedClient);
+        }
+        return sharedClient.newHandle();
+    }
+
+    private synchronized boolean release(SharedClient sharedClient)
+    {
+        if ( --sharedClient.useCount > 0 )
+        {
+            return false;
+        }
+        clients.remove(sharedClient.key);
+        return true;
+    }
+
+    // credentials and configs are compared by identity - they are usually the same instances passed to each provider
+    private static class ClientKey
+    {
+        private final Object credentials;
+        private final S3ClientConfig clientConfig;
+        private final String s3Region;
+
+        private ClientKey(Object credentials, S3ClientConfig clientConfig, String s3Region)
+        {
+            this.credentials = credentials;
+            this.clientConfig = clientConfig;
+            this.s3Region = s3Region;
+        }
+
+        @SuppressWarnings("SimplifiableIfStatement")
+        @Override
+        public boolean equals(Object o)
+        {
+            if ( this == o )
+            {
+                return true;
+            }
+            if ( o == null || getClass() != o.getClass() )
+            {
+                return false;
+            }
+
+            ClientKey clientKey = (ClientKey)o;
+            return (credentials == clientKey.credentials) && (clientConfig == clientKey.clientConfig) && Objects.equal(s3Region, clientKey.s3Region);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = System.identityHashCode(credentials);
+            result = 31 * result + System.identityHashCode(clientConfig);
+            result = 31 * result + (s3Region != null ? s3Region.hashCode() : 0);
+            return result;
+        }
+    }
+
+    private class SharedClient
     {
-        return new S3ClientImpl(credentialsProvider, clientConfig, s3Region);
+        private final ClientKey key;
+        private final S3Client client;
+        private int useCount = 0;   // guarded by the factory
+
+        private SharedClient(ClientKey key, S3Client client)
+        {
+            this.key = key;
+            this.client = client;
+        }
+
+        private S3Client newHandle()
+        {
+            ++useCount;
+            return new Handle(this);
+        }
     }
 
+    // note: changing the credentials of a handle changes them for every user of the shared client
+    private class Handle implements S3Client
+    {
+        private final SharedClient sharedClient;
+        private final S3Client client;
+        private final AtomicBoolean isOpen = new AtomicBoolean(true);
+
+        private Handle(SharedClient sharedClient)
+        {
+            this.sharedClient = sharedClient;
+            client = sharedClient.client;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if ( isOpen.compareAndSet(true, false) && release(sharedClient) )
+            {
+                client.close();
+            }
+        }
+
+        @Override
+        public void changeCredentials(S3Credential credential) throws Exception
+        {
+            client.changeCredentials(credential);
+        }
+
+        @Override
+        public void changeCredentials(S3Credential credential, S3ClientConfig clientConfig) throws Exception
+        {
+            client.changeCredentials(credential, clientConfig);
+        }
+
+        @Override
+        public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request) throws Exception
+        {
+            return client.initiateMultipartUpload(request);
+        }
+
+        @Override
+        public S3Object getObject(String bucket, String key) throws Exception
+        {
+            return client.getObject(bucket, key);
+        }
+
+        @Override
+        public S3Object getObject(GetObjectRequest request) throws Exception
+        {
+            return client.getObject(request);
+        }
+
+        @Override
+        public ObjectMetadata getObjectMetadata(String bucket, String key) throws Exception
+        {
+            return client.getObjectMetadata(bucket, key);
+        }
+
+        @Override
+        public ObjectListing listObjects(ListObjectsRequest request) throws Exception
+        {
+            return client.listObjects(request);
+        }
+
+        @Override
+        public ObjectListing listNextBatchOfObjects(ObjectListing previousObjectListing) throws Exception
+        {
+            return client.listNextBatchOfObjects(previousObjectListing);
+        }
+
+        @Override
+        public PutObjectResult putObject(PutObjectRequest request) throws Exception
+        {
+            return client.putObject(request);
+        }
+
+        @Override
+        public void deleteObject(String bucket, String key) throws Exception
+        {
+            client.deleteObject(bucket, key);
+        }
+
+        @Override
+        public DeleteObjectsResult deleteObjects(DeleteObjectsRequest request) throws Exception
+        {
+            return client.deleteObjects(request);
+        }
+
+        @Override
+        public CopyObjectResult copyObject(CopyObjectRequest request) throws Exception
+        {
+            return client.copyObject(request);
+        }
+
+        @Override
+        public UploadPartResult uploadPart(UploadPartRequest request) throws Exception
+        {
+            return client.uploadPart(request);
+        }
+
+        @Override
+        public void completeMultipartUpload(CompleteMultipartUploadRequest request) throws Exception
+        {
+            client.completeMultipartUpload(request);
+        }
+
+        @Override
+        public void abortMultipartUpload(AbortMultipartUploadRequest request) throws Exception
+        {
+            client.abortMultipartUpload(request);
+        }
+    }
 }
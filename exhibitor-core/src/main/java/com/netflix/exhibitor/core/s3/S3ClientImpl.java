@@ -16,8 +16,12 @@
 
 package com.netflix.exhibitor.core.s3;
 
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.metrics.RequestMetricCollector;
 import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.model.*;
 import org.slf4j.Logger;
@@ -31,30 +35,53 @@ public class S3ClientImpl implements S3Client
     private final Logger log = LoggerFactory.getLogger(getClass());
     private final AtomicReference<RefCountedClient> client = new AtomicReference<RefCountedClient>(null);
     private final String s3Region;
+    private final RequestMetricCollector metricCollector;
 
     private static final String         ENDPOINT_SPEC = System.getProperty("exhibitor-s3-endpoint", "https://s3$REGION$.amazonaws.com");
 
     public S3ClientImpl(S3Credential credentials, String s3Region)
     {
-        this.s3Region = s3Region;
-        changeCredentials(credentials);
+        this(credentials, null, s3Region, null);
     }
 
     public S3ClientImpl(S3Credential credentials, S3ClientConfig clientConfig, String s3Region)
+    {
+        this(credentials, clientConfig, s3Region, null);
+    }
+
+    /**
+     * @param credentials credentials
+     * @param clientConfig s3 client configuration or null
+     * @param s3Region the region to use or null
+     * @param metricCollector if not null, receives the metrics of every request
+     */
+    public S3ClientImpl(S3Credential credentials, S3ClientConfig clientConfig, String s3Region, RequestMetricCollector metricCollector)
     {
         this.s3Region = s3Region;
+        this.metricCollector = metricCollector;
         changeCredentials(credentials, clientConfig);
     }
 
     public S3ClientImpl(S3CredentialsProvider credentialsProvider, String s3Region)
     {
-        this.s3Region = s3Region;
-        client.set(new RefCountedClient(createClient(credentialsProvider.getAWSCredentialProvider(), null, null)));
+        this(credentialsProvider, null, s3Region, null);
     }
 
     public S3ClientImpl(S3CredentialsProvider credentialsProvider, S3ClientConfig clientConfig, String s3Region)
+    {
+        this(credentialsProvider, clientConfig, s3Region, null);
+    }
+
+    /**
+     * @param credentialsProvider credentials provider
+     * @param clientConfig s3 client configuration or null
+     * @param s3Region the region to use or null
+     * @param metricCollector if not null, receives the metrics of every request
+     */
+    public S3ClientImpl(S3CredentialsProvider credentialsProvider, S3ClientConfig clientConfig, String s3Region, RequestMetricCollector metricCollector)
     {
         this.s3Region = s3Region;
+        this.metricCollector = metricCollector;
         client.set(new RefCountedClient(createClient(credentialsProvider.getAWSCredentialProvider(), null, clientConfig)));
     }
 
@@ -138,6 +165,21 @@ public class S3ClientImpl implements S3Client
         }
     }
 
+    @Override
+    public S3Object getObject(GetObjectRequest request) throws Exception
+    {
+        RefCountedClient holder = client.get();
+        AmazonS3Client amazonS3Client = holder.useClient();
+        try
+        {
+            return amazonS3Client.getObject(request);
+        }
+        finally
+        {
+            holder.release();
+        }
+    }
+
     @Override
     public ObjectMetadata getObjectMetadata(String bucket, String key) throws Exception
     {
@@ -198,6 +240,36 @@ public class S3ClientImpl implements S3Client
         }
     }
 
+    @Override
+    public DeleteObjectsResult deleteObjects(DeleteObjectsRequest request) throws Exception
+    {
+        RefCountedClient holder = client.get();
+        AmazonS3Client amazonS3Client = holder.useClient();
+        try
+        {
+            return amazonS3Client.deleteObjects(request);
+        }
+        finally
+        {
+            holder.release();
+        }
+    }
+
+    @Override
+    public CopyObjectResult copyObject(CopyObjectRequest request) throws Exception
+    {
+        RefCountedClient holder = client.get();
+        AmazonS3Client amazonS3Client = holder.useClient();
+        try
+        {
+            return amazonS3Client.copyObject(request);
+        }
+        finally
+        {
+            holder.release();
+        }
+    }
+
     @Override
     public UploadPartResult uploadPart(UploadPartRequest request) throws Exception
     {
@@ -246,7 +318,17 @@ public class S3ClientImpl implements S3Client
     private AmazonS3Client createClient(AWSCredentialsProvider awsCredentialProvider, BasicAWSCredentials basicAWSCredentials, S3ClientConfig clientConfig)
     {
         AmazonS3Client localClient;
-        if ( awsCredentialProvider != null )
+        if ( metricCollector != null )
+        {
+            // the metric collector can only be set via the full constructor
+            if ( awsCredentialProvider == null )
+            {
+                awsCredentialProvider = (basicAWSCredentials != null) ? new AWSStaticCredentialsProvider(basicAWSCredentials) : new DefaultAWSCredentialsProviderChain();
+            }
+            ClientConfiguration     awsClientConfig = (clientConfig != null) ? clientConfig.getAWSClientConfig() : new ClientConfiguration();
+            localClient = new AmazonS3Client(awsCredentialProvider, awsClientConfig, metricCollector);
+        }
+        else if ( awsCredentialProvider != null )
         {
             if ( clientConfig != null )
             {
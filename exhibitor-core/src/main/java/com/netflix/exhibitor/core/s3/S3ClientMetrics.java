@@ -0,0 +1,189 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.s3;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.TimingInfo;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.netflix.servo.monitor.BasicCompositeMonitor;
+import com.netflix.servo.monitor.BasicCounter;
+import com.netflix.servo.monitor.BucketConfig;
+import com.netflix.servo.monitor.BucketTimer;
+import com.netflix.servo.monitor.CompositeMonitor;
+import com.netflix.servo.monitor.LongGauge;
+import com.netflix.servo.monitor.Monitor;
+import com.netflix.servo.monitor.MonitorConfig;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects per-operation latency histograms and connection pool gauges from the S3 clients
+ * made by {@link S3ClientFactoryImpl}. Register {@link #getMonitor()} with a Servo registry to publish them.
+ */
+public class S3ClientMetrics extends RequestMetricCollector
+{
+    private final Map<String, Operation>    operations;
+    private final Operation                 otherOperation;
+    private final LongGauge                 leasedConnections = new LongGauge(MonitorConfig.builder("s3_pool_leased").build());
+    private final LongGauge                 availableConnections = new LongGauge(MonitorConfig.builder("s3_pool_available").build());
+    private final LongGauge                 pendingConnections = new LongGauge(MonitorConfig.builder("s3_pool_pending").build());
+    private final CompositeMonitor<?>       monitor;
+
+    // the S3 operations that Exhibitor makes - anything else is recorded as "Other"
+    private static final List<String>       OPERATION_NAMES = Arrays.asList
+    (
+        "InitiateMultipartUpload",
+        "UploadPart",
+        "CompleteMultipartUpload",
+        "AbortMultipartUpload",
+        "PutObject",
+        "GetObject",
+        "GetObjectMetadata",
+        "ListObjects",
+        "DeleteObject",
+        "DeleteObjects",
+        "CopyObject"
+    );
+
+    private static final String             OTHER_OPERATION = "Other";
+
+    private static final BucketConfig       LATENCY_BUCKETS = new BucketConfig.Builder()
+        .withTimeUnit(TimeUnit.MILLISECONDS)
+        .withBuckets(new long[]{10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000})
+        .build();
+
+    private static class Operation
+    {
+        final BucketTimer       latency;
+        final BasicCounter      errors;
+
+        Operation(String name)
+        {
+            latency = new BucketTimer(MonitorConfig.builder("s3_latency").withTag("operation", name).build(), LATENCY_BUCKETS);
+            errors = new BasicCounter(MonitorConfig.builder("s3_errors").withTag("operation", name).build());
+        }
+    }
+
+    public S3ClientMetrics()
+    {
+        ImmutableMap.Builder<String, Operation>     builder = ImmutableMap.builder();
+        ImmutableList.Builder<Monitor<?>>           monitors = ImmutableList.builder();
+        for ( String name : OPERATION_NAMES )
+        {
+            Operation       operation = new Operation(name);
+            builder.put(name, operation);
+            monitors.add(operation.latency, operation.errors);
+        }
+        operations = builder.build();
+        otherOperation = new Operation(OTHER_OPERATION);
+        monitors.add(otherOperation.latency, otherOperation.errors);
+        monitors.add(leasedConnections, availableConnections, pendingConnections);
+
+        monitor = new BasicCompositeMonitor(MonitorConfig.builder("s3_client").build(), monitors.build());
+    }
+
+    /**
+     * Return the monitors for all operations and for the connection pool
+     *
+     * @return composite monitor
+     */
+    public CompositeMonitor<?> getMonitor()
+    {
+        return monitor;
+    }
+
+    @Override
+    public void collectMetrics(Request<?> request, Response<?> response)
+    {
+        Operation           operation = getOperation(request.getOriginalRequest());
+        AWSRequestMetrics   requestMetrics = request.getAWSRequestMetrics();
+        TimingInfo          timingInfo = (requestMetrics != null) ? requestMetrics.getTimingInfo() : null;
+        if ( timingInfo != null )
+        {
+            Double      timeTakenMs = timingInfo.getTimeTakenMillisIfKnown();
+            if ( timeTakenMs != null )
+            {
+                operation.latency.record(timeTakenMs.longValue());
+            }
+
+            // the pool counts are as of the last connection lease for the request
+            setGauge(leasedConnections, timingInfo.getCounter(AWSRequestMetrics.Field.HttpClientPoolLeasedCount.name()));
+            setGauge(availableConnections, timingInfo.getCounter(AWSRequestMetrics.Field.HttpClientPoolAvailableCount.name()));
+            setGauge(pendingConnections, timingInfo.getCounter(AWSRequestMetrics.Field.HttpClientPoolPendingCount.name()));
+        }
+
+        if ( response == null )
+        {
+            operation.errors.increment();
+        }
+    }
+
+    long getLatencyCount(String operationName)
+    {
+        return getOperation(operationName).latency.getCount();
+    }
+
+    long getErrorCount(String operationName)
+    {
+        return getOperation(operationName).errors.getValue().longValue();
+    }
+
+    long getLeasedConnections()
+    {
+        return leasedConnections.getValue().longValue();
+    }
+
+    long getPendingConnections()
+    {
+        return pendingConnections.getValue().longValue();
+    }
+
+    private Operation getOperation(AmazonWebServiceRequest originalRequest)
+    {
+        if ( originalRequest == null )
+        {
+            return otherOperation;
+        }
+        String      name = originalRequest.getClass().getSimpleName();
+        if ( name.endsWith("Request") )
+        {
+            name = name.substring(0, name.length() - "Request".length());
+        }
+        return getOperation(name);
+    }
+
+    private Operation getOperation(String name)
+    {
+        Operation   operation = operations.get(name);
+        return (operation != null) ? operation : otherOperation;
+    }
+
+    private static void setGauge(LongGauge gauge, Number value)
+    {
+        if ( value != null )
+        {
+            gauge.set(value.longValue());
+        }
+    }
+}
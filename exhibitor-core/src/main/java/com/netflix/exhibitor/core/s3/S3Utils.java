@@ -22,6 +22,7 @@ import com.amazonaws.services.s3.model.PutObjectResult;
 import org.apache.commons.codec.binary.Base64;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.util.Date;
 
@@ -47,6 +48,25 @@ public class S3Utils
         }
     }
 
+    /**
+     * @param buffer bytes between the buffer's position and limit are digested. The buffer's position
+     *               is not changed.
+     * @return MD5 digest
+     */
+    public static byte[] md5(ByteBuffer buffer)
+    {
+        try
+        {
+            MessageDigest mdigest = MessageDigest.getInstance("MD5");
+            mdigest.update(buffer.duplicate());
+            return mdigest.digest();
+        }
+        catch (Exception e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
     public static String toHex(byte[] digest)
     {
         StringBuilder sb = new StringBuilder(digest.length * 2);
@@ -263,8 +263,13 @@ function buildNewConfig()
     newConfig.checkMs = $('#config-check-ms').val();
     newConfig.cleanupPeriodMs = $('#config-cleanup-ms').val();
     newConfig.cleanupMaxFiles = $('#config-cleanup-max-files').val();
+    newConfig.liveIndexPeriodMs = $('#config-live-index-ms').val();
+    newConfig.indexPathFilterDepth = $('#config-index-path-filter-depth').val();
     newConfig.backupPeriodMs = $('#config-backup-ms').val();
     newConfig.backupMaxStoreMs = $('#config-backup-max-store-ms').val();
+    newConfig.backupDeltas = $('#config-backup-deltas').val();
+    newConfig.backupManifestReconcileMs = $('#config-backup-manifest-reconcile-ms').val();
+    newConfig.backupCacheMb = $('#config-backup-cache-mb').val();
     newConfig.autoManageInstances = $('#cp-auto-init-instances').prop("checked") ? "1" : "0";
 
     var zooCfgTab = $('#config-custom').val().split("\n");
@@ -374,8 +379,13 @@ function ableConfig(enable)
     $('#config-check-ms').prop('disabled', !enable);
     $('#config-cleanup-ms').prop('disabled', !enable);
     $('#config-cleanup-max-files').prop('disabled', !enable);
+    $('#config-live-index-ms').prop('disabled', !enable);
+    $('#config-index-path-filter-depth').prop('disabled', !enable);
     $('#config-backup-ms').prop('disabled', !enable);
     $('#config-backup-max-store-ms').prop('disabled', !enable);
+    $('#config-backup-deltas').prop('disabled', !enable);
+    $('#config-backup-manifest-reconcile-ms').prop('disabled', !enable);
+    $('#config-backup-cache-mb').prop('disabled', !enable);
 
     for ( var i = 0; i < configExtraTab.length; ++i )
     {
@@ -418,8 +428,13 @@ function updateConfig()
     $('#config-check-ms').val(systemConfig.checkMs);
     $('#config-cleanup-ms').val(systemConfig.cleanupPeriodMs);
     $('#config-cleanup-max-files').val(systemConfig.cleanupMaxFiles);
+    $('#config-live-index-ms').val(systemConfig.liveIndexPeriodMs);
+    $('#config-index-path-filter-depth').val(systemConfig.indexPathFilterDepth);
     $('#config-backup-ms').val(systemConfig.backupPeriodMs);
     $('#config-backup-max-store-ms').val(systemConfig.backupMaxStoreMs);
+    $('#config-backup-deltas').val(systemConfig.backupDeltas);
+    $('#config-backup-manifest-reconcile-ms').val(systemConfig.backupManifestReconcileMs);
+    $('#config-backup-cache-mb').val(systemConfig.backupCacheMb);
 
     $('#rolling-config-floater-status').html(systemConfig.rollStatus);
     if ( systemConfig.rollInProgress )
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core;
+
+import org.apache.zookeeper.ZooDefs;
+import org.apache.zookeeper.server.persistence.FileTxnLog;
+import org.apache.zookeeper.txn.CreateTxn;
+import org.apache.zookeeper.txn.TxnHeader;
+import java.io.File;
+
+/**
+ * Shared helpers for tests that write ZooKeeper transaction logs and temp directories
+ */
+public class Fixtures
+{
+    /**
+     * Append a create of <code>parentPath + zxid</code> for each zxid in the range (inclusive)
+     * stamped with the current time and commit the log
+     *
+     * @param txnLog log
+     * @param parentPath path prefix - e.g. "/test/"
+     * @param startZxid first zxid
+     * @param endZxid last zxid
+     * @throws Exception errors
+     */
+    public static void appendCreates(FileTxnLog txnLog, String parentPath, int startZxid, int endZxid) throws Exception
+    {
+        for ( int zxid = startZxid; zxid <= endZxid; ++zxid )
+        {
+            appendCreate(txnLog, zxid, System.currentTimeMillis(), parentPath + zxid);
+        }
+        txnLog.commit();
+    }
+
+    /**
+     * Append a single create without committing the log. The node's data is the low byte of the zxid.
+     *
+     * @param txnLog log
+     * @param zxid zxid
+     * @param time transaction time
+     * @param path path to create
+     * @throws Exception errors
+     */
+    public static void appendCreate(FileTxnLog txnLog, int zxid, long time, String path) throws Exception
+    {
+        TxnHeader   header = new TxnHeader(1, zxid, zxid, time, ZooDefs.OpCode.create);
+        CreateTxn   txn = new CreateTxn(path, new byte[]{(byte)zxid}, ZooDefs.Ids.OPEN_ACL_UNSAFE, false, 0);
+        txnLog.append(header, txn);
+    }
+
+    /**
+     * Delete a directory and everything in it. Anything that can't be deleted now is deleted on exit.
+     *
+     * @param directory directory to delete
+     */
+    public static void deleteDirectory(File directory)
+    {
+        File[]      files = directory.listFiles();
+        if ( files != null )
+        {
+            for ( File f : files )
+            {
+                if ( f.isDirectory() )
+                {
+                    deleteDirectory(f);
+                }
+                else if ( !f.delete() )
+                {
+                    f.deleteOnExit();
+                }
+            }
+        }
+        if ( !directory.delete() )
+        {
+            directory.deleteOnExit();
+        }
+    }
+
+    private Fixtures()
+    {
+    }
+}
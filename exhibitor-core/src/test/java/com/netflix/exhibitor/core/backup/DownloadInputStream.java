@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.backup;
+
+import java.io.ByteArrayInputStream;
+
+/**
+ * Behaves like a stream from S3 or the filesystem - reads are short and no bytes are ever reported
+ * as available
+ */
+class DownloadInputStream extends ByteArrayInputStream
+{
+    private static final int    MAX_READ = 512;
+
+    DownloadInputStream(byte[] bytes)
+    {
+        super(bytes);
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len)
+    {
+        return super.read(b, off, Math.min(len, MAX_READ));
+    }
+
+    @Override
+    public synchronized int available()
+    {
+        return 0;
+    }
+}
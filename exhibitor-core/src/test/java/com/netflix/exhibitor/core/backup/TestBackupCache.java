@@ -0,0 +1,223 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.backup;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.netflix.exhibitor.core.Fixtures;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestBackupCache
+{
+    @Test
+    public void testEviction() throws Exception
+    {
+        File        directory = Files.createTempDir();
+        try
+        {
+            BackupCache         cache = new BackupCache(directory, 250);
+            CountingLoader      loader = new CountingLoader(100);
+            BackupMetaData      log1 = new BackupMetaData("log.1", 100);
+            BackupMetaData      log2 = new BackupMetaData("log.2", 200);
+            BackupMetaData      log3 = new BackupMetaData("log.3", 300);
+
+            Assert.assertEquals(read(cache, log1, loader), 100);
+            Assert.assertEquals(read(cache, log2, loader), 100);
+            Assert.assertEquals(read(cache, log1, loader), 100);
+            Assert.assertEquals(loader.loadQty.get(), 2);
+
+            // log.2 is the least recently used
+            Assert.assertEquals(read(cache, log3, loader), 100);
+            Assert.assertEquals(cache.getTotalBytes(), 200);
+            Assert.assertEquals(read(cache, log1, loader), 100);
+            Assert.assertEquals(loader.loadQty.get(), 3);
+            Assert.assertEquals(read(cache, log2, loader), 100);
+            Assert.assertEquals(loader.loadQty.get(), 4);
+
+            // reopened with the same entries
+            cache = new BackupCache(directory, 250);
+            Assert.assertEquals(cache.getTotalBytes(), 200);
+            Assert.assertEquals(read(cache, log2, loader), 100);
+            Assert.assertEquals(loader.loadQty.get(), 4);
+
+            // too big to cache
+            Assert.assertEquals(read(cache, new BackupMetaData("log.4", 400), new CountingLoader(300)), 300);
+            Assert.assertEquals(cache.getTotalBytes(), 200);
+            Assert.assertEquals(directory.listFiles().length, 2);
+
+            cache.remove(Arrays.asList(log2));
+            Assert.assertEquals(cache.getTotalBytes(), 100);
+            Assert.assertNull(cache.open(new BackupMetaData("missing", 1), null, new CountingLoader(-1)));
+        }
+        finally
+        {
+            Fixtures.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testCorruptEntry() throws Exception
+    {
+        File        directory = Files.createTempDir();
+        try
+        {
+            BackupCache         cache = new BackupCache(directory, 1000);
+            CountingLoader      loader = new CountingLoader(100);
+            BackupMetaData      log1 = new BackupMetaData("log.1", 100);
+            Assert.assertEquals(read(cache, log1, loader), 100);
+
+            File                cached = cache.getFiles().get(0);
+            RandomAccessFile    file = new RandomAccessFile(cached, "rw");
+            try
+            {
+                file.seek(50);
+                file.write(0xff);
+            }
+            finally
+            {
+                file.close();
+            }
+
+            // files are checked when they're loaded and when they're first used after a restart. The
+            // corrupt entry is replaced by a fresh load.
+            cache = new BackupCache(directory, 1000);
+            Assert.assertEquals(read(cache, log1, loader), 100);
+            Assert.assertEquals(loader.loadQty.get(), 2);
+            Assert.assertEquals(read(cache, log1, loader), 100);
+            Assert.assertEquals(loader.loadQty.get(), 2);
+        }
+        finally
+        {
+            Fixtures.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testExpectedHash() throws Exception
+    {
+        File        directory = Files.createTempDir();
+        try
+        {
+            BackupCache             cache = new BackupCache(directory, 1000);
+            CountingLoader          loader = new CountingLoader(100);
+            BackupMetaData          log1 = new BackupMetaData("log.1", 100);
+            String                  hash = Hashing.md5().hashBytes(loader.getBytes()).toString();
+
+            // a bad download isn't cached
+            try
+            {
+                cache.open(log1, Hashing.md5().hashInt(1).toString(), loader);
+                Assert.fail();
+            }
+            catch ( IOException expected )
+            {
+                // expected
+            }
+            Assert.assertEquals(cache.getTotalBytes(), 0);
+
+            // copied while it's loaded and then copied from the cache
+            ByteArrayOutputStream   out = new ByteArrayOutputStream();
+            Assert.assertTrue(cache.copy(log1, hash, loader, out));
+            Assert.assertEquals(out.toByteArray(), loader.getBytes());
+            Assert.assertEquals(loader.loadQty.get(), 2);
+            Assert.assertEquals(cache.getTotalBytes(), 100);
+
+            out.reset();
+            Assert.assertTrue(cache.copy(log1, hash, loader, out));
+            Assert.assertEquals(out.toByteArray(), loader.getBytes());
+            Assert.assertEquals(loader.loadQty.get(), 2);
+
+            // a cached file that isn't the stored object is replaced
+            CountingLoader          otherLoader = new CountingLoader(50);
+            String                  otherHash = Hashing.md5().hashBytes(otherLoader.getBytes()).toString();
+            Assert.assertEquals(read(cache, log1, otherHash, otherLoader), 50);
+            Assert.assertEquals(otherLoader.loadQty.get(), 1);
+            Assert.assertEquals(cache.getTotalBytes(), 50);
+
+            Assert.assertFalse(cache.copy(new BackupMetaData("missing", 1), null, new CountingLoader(-1), out));
+        }
+        finally
+        {
+            Fixtures.deleteDirectory(directory);
+        }
+    }
+
+    private static int read(BackupCache cache, BackupMetaData backup, BackupCache.Loader loader) throws Exception
+    {
+        return read(cache, backup, null, loader);
+    }
+
+    private static int read(BackupCache cache, BackupMetaData backup, String expectedHash, BackupCache.Loader loader) throws Exception
+    {
+        InputStream     in = cache.open(backup, expectedHash, loader);
+        try
+        {
+            byte[]      bytes = ByteStreams.toByteArray(in);
+            for ( byte b : bytes )
+            {
+                Assert.assertEquals(b, CountingLoader.VALUE);
+            }
+            return bytes.length;
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private static class CountingLoader implements BackupCache.Loader
+    {
+        private final int               size;
+        private final AtomicInteger     loadQty = new AtomicInteger(0);
+
+        private static final byte       VALUE = 7;
+
+        private CountingLoader(int size)
+        {
+            this.size = size;
+        }
+
+        private byte[] getBytes()
+        {
+            byte[]      bytes = new byte[size];
+            Arrays.fill(bytes, VALUE);
+            return bytes;
+        }
+
+        @Override
+        public boolean load(OutputStream out) throws Exception
+        {
+            loadQty.incrementAndGet();
+            if ( size < 0 )
+            {
+                return false;
+            }
+            out.write(getBytes());
+            return true;
+        }
+    }
+}
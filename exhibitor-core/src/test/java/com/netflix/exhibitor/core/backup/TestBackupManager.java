@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.backup;
+
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+public class TestBackupManager
+{
+    private static final int    PIECE_SIZE = 1024 * 1024;
+
+    @Test
+    public void     testRestorePieces() throws Exception
+    {
+        final byte[]                        bytes = new byte[3 * PIECE_SIZE];
+        new Random(1).nextBytes(bytes);
+
+        List<BackupMetaData>                pieces = Arrays.asList(new BackupMetaData("log.1", 1), new BackupMetaData(DeltaBackups.getSegmentName("log.1", 10), 2), new BackupMetaData(DeltaBackups.getSegmentName("log.1", 20), 3));
+        final Map<BackupMetaData, byte[]>   stored = Maps.newHashMap();
+        for ( int i = 0; i < pieces.size(); ++i )
+        {
+            stored.put(pieces.get(i), compress(bytes, i * PIECE_SIZE, PIECE_SIZE));
+        }
+
+        final File          destinationFile = File.createTempFile("test", ".test");
+        ExecutorService     service = Executors.newSingleThreadExecutor();
+        try
+        {
+            BackupManager.restore
+            (
+                pieces,
+                new BackupManager.PieceDownloader()
+                {
+                    private int     downloadedQty = 0;
+
+                    @Override
+                    public void download(BackupMetaData piece, OutputStream out) throws Exception
+                    {
+                        // the decoder has read up to the member boundary and the pipe is empty
+                        long    waitUntil = System.currentTimeMillis() + 10000;
+                        while ( destinationFile.length() < ((long)downloadedQty * PIECE_SIZE) )
+                        {
+                            Assert.assertTrue(System.currentTimeMillis() < waitUntil, "Piece " + downloadedQty + " was not decompressed");
+                            Thread.sleep(10);
+                        }
+
+                        out.write(stored.get(piece));
+                        ++downloadedQty;
+                    }
+                },
+                destinationFile,
+                service
+            );
+
+            Assert.assertEquals(Files.toByteArray(destinationFile), bytes);
+        }
+        finally
+        {
+            service.shutdownNow();
+            if ( !destinationFile.delete() )
+            {
+                destinationFile.deleteOnExit();
+            }
+        }
+    }
+
+    private byte[]  compress(byte[] bytes, int offset, int length) throws Exception
+    {
+        ByteArrayOutputStream   compressed = new ByteArrayOutputStream();
+        GZIPOutputStream        out = new GZIPOutputStream(compressed);
+        out.write(bytes, offset, length);
+        out.close();
+        return compressed.toByteArray();
+    }
+}
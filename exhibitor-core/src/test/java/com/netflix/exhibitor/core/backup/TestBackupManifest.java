@@ -0,0 +1,120 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.backup;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class TestBackupManifest
+{
+    @Test
+    public void testReload() throws Exception
+    {
+        File        directory = Files.createTempDir();
+        File        file = new File(directory, "manifest");
+        try
+        {
+            BackupMetaData      log1 = new BackupMetaData("log.1", 100);
+            BackupMetaData      log1Newer = new BackupMetaData("log.1", 200);
+            BackupMetaData      log2 = new BackupMetaData("log.2", 300);
+
+            BackupManifest      manifest = new BackupManifest(file);
+            Assert.assertTrue(manifest.needsReconcile("config", Long.MAX_VALUE));
+            manifest.reconcile(Arrays.asList(log1), "config");
+            Assert.assertFalse(manifest.needsReconcile("config", Long.MAX_VALUE));
+            Assert.assertTrue(manifest.needsReconcile("other", Long.MAX_VALUE));
+            Assert.assertEquals(manifest.get(log1).getSize(), -1);
+
+            manifest.added(log1Newer, 10, "abc");
+            manifest.removed(log1);
+            manifest.added(log2, 20, null);
+
+            manifest = new BackupManifest(file);
+            Assert.assertFalse(manifest.needsReconcile("config", Long.MAX_VALUE));
+            Assert.assertEquals(manifest.getBackups(), Arrays.asList(log1Newer, log2));
+            Assert.assertEquals(manifest.getVersions("log.1"), Arrays.asList(log1Newer));
+            Assert.assertEquals(manifest.get(log1Newer).getSize(), 10);
+            Assert.assertEquals(manifest.get(log1Newer).getHash(), "abc");
+            Assert.assertEquals(manifest.get(log2).getHash(), "");
+            Assert.assertNull(manifest.get(log1));
+
+            // a reconcile keeps what's known about objects that are still stored
+            manifest.reconcile(Arrays.asList(log2), "config");
+            manifest = new BackupManifest(file);
+            Assert.assertEquals(manifest.getBackups(), Arrays.asList(log2));
+            Assert.assertEquals(manifest.get(log2).getSize(), 20);
+
+            // an interrupted write is ignored and forces a reconcile
+            Files.append("+\t400\t3", file, Charsets.UTF_8);
+            manifest = new BackupManifest(file);
+            Assert.assertEquals(manifest.getBackups(), Arrays.asList(log2));
+            Assert.assertTrue(manifest.needsReconcile("config", Long.MAX_VALUE));
+        }
+        finally
+        {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            //noinspection ResultOfMethodCallIgnored
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void testLogStates() throws Exception
+    {
+        File        directory = Files.createTempDir();
+        File        file = new File(directory, "manifest");
+        try
+        {
+            BackupManifest      manifest = new BackupManifest(file);
+            manifest.reconcile(Arrays.asList(new BackupMetaData("log.1", 100)), "config");
+            manifest.setLogState("log.1", new DeltaBackups.LogState(100, 1000, 10));
+            manifest.setLogState("log.1", new DeltaBackups.LogState(200, 2000, 20));
+            manifest.setLogState("log.2", new DeltaBackups.LogState(300, 3000, 30));
+            manifest.removeLogState("log.2");
+
+            manifest = new BackupManifest(file);
+            Assert.assertEquals(manifest.getLogStates().keySet(), Collections.singleton("log.1"));
+            DeltaBackups.LogState   state = manifest.getLogStates().get("log.1");
+            Assert.assertEquals(state.getModifiedDate(), 200);
+            Assert.assertEquals(state.getOffset(), 2000);
+            Assert.assertEquals(state.getZxid(), 20);
+
+            // kept by a reconcile of the same store
+            manifest.reconcile(Arrays.asList(new BackupMetaData("log.1", 100)), "config");
+            manifest = new BackupManifest(file);
+            Assert.assertEquals(manifest.getLogStates().get("log.1").getOffset(), 2000);
+
+            // but not by one of a different store
+            manifest.reconcile(Arrays.asList(new BackupMetaData("log.1", 100)), "other");
+            manifest = new BackupManifest(file);
+            Assert.assertTrue(manifest.getLogStates().isEmpty());
+        }
+        finally
+        {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            //noinspection ResultOfMethodCallIgnored
+            directory.delete();
+        }
+    }
+}
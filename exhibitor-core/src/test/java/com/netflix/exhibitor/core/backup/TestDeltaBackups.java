@@ -0,0 +1,188 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.backup;
+
+import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.netflix.exhibitor.core.Fixtures;
+import com.netflix.exhibitor.core.index.LogEntryReceiver;
+import com.netflix.exhibitor.core.index.LogStreamDecoder;
+import com.netflix.exhibitor.core.index.ZooKeeperLogParser;
+import org.apache.jute.Record;
+import org.apache.zookeeper.server.persistence.FileTxnLog;
+import org.apache.zookeeper.txn.TxnHeader;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class TestDeltaBackups
+{
+    @Test
+    public void testSegmentsConcatenate() throws Exception
+    {
+        File            logDirectory = Files.createTempDir();
+        ExecutorService service = Executors.newFixedThreadPool(2);
+
+        FileTxnLog.setPreallocSize(64 * 1024);
+        FileTxnLog      txnLog = new FileTxnLog(logDirectory);
+        try
+        {
+            Fixtures.appendCreates(txnLog, "/delta/", 1, 10);
+            File                    log = getLog(logDirectory);
+            DeltaBackups.LogState   base = DeltaBackups.findEnd(log, 1, 0);
+            Assert.assertNotNull(base);
+            Assert.assertEquals(base.getZxid(), 10);
+            Assert.assertTrue(base.getOffset() < log.length());    // the preallocated tail isn't included
+
+            Fixtures.appendCreates(txnLog, "/delta/", 11, 15);
+            DeltaBackups.LogState   segment = DeltaBackups.findEnd(log, 2, base.getOffset());
+            Assert.assertNotNull(segment);
+            Assert.assertEquals(segment.getZxid(), 15);
+            Assert.assertTrue(segment.getOffset() > base.getOffset());
+
+            final BackupMetaData        basePiece = new BackupMetaData(log.getName(), 1);
+            final BackupMetaData        segmentPiece = new BackupMetaData(DeltaBackups.getSegmentName(log.getName(), base.getOffset()), 2);
+            final byte[]                baseBytes = compress(log, 0, base.getOffset(), service);
+            final byte[]                segmentBytes = compress(log, base.getOffset(), segment.getOffset(), service);
+
+            // indexed the way BackupManager.getBackupStream() serves the pieces
+            InputStream                 pieces = new SequenceInputStream(new DownloadInputStream(baseBytes), new DownloadInputStream(segmentBytes));
+            InputStream                 decoded = new LogStreamDecoder(service).decode(pieces);
+            try
+            {
+                assertTransactions(new ZooKeeperLogParser(decoded), 15);
+            }
+            finally
+            {
+                decoded.close();
+            }
+
+            // and restored
+            File                        restored = new File(logDirectory, "restored");
+            BackupManager.restore
+            (
+                Arrays.asList(basePiece, segmentPiece),
+                new BackupManager.PieceDownloader()
+                {
+                    @Override
+                    public void download(BackupMetaData piece, OutputStream out) throws Exception
+                    {
+                        ByteStreams.copy(new DownloadInputStream(piece.equals(basePiece) ? baseBytes : segmentBytes), out);
+                    }
+                },
+                restored,
+                service
+            );
+            Assert.assertEquals(restored.length(), segment.getOffset());
+            assertTransactions(new ZooKeeperLogParser(restored), 15);
+        }
+        finally
+        {
+            txnLog.close();
+            service.shutdownNow();
+            Fixtures.deleteDirectory(logDirectory);
+        }
+    }
+
+    @Test
+    public void testFold() throws Exception
+    {
+        BackupMetaData          base = new BackupMetaData("log.1", 100);
+        BackupMetaData          segment1 = new BackupMetaData(DeltaBackups.getSegmentName("log.1", 500), 200);
+        BackupMetaData          segment2 = new BackupMetaData(DeltaBackups.getSegmentName("log.1", 1000), 300);
+        BackupMetaData          staleSegment = new BackupMetaData(DeltaBackups.getSegmentName("log.1", 200), 50);
+        BackupMetaData          other = new BackupMetaData("log.0", 10);
+
+        DeltaBackups            deltaBackups = new DeltaBackups();
+        List<BackupMetaData>    folded = deltaBackups.fold(Arrays.asList(other, segment2, base, staleSegment, segment1));
+        BackupMetaData          logical = new BackupMetaData("log.1", 300);
+        Assert.assertEquals(folded, Arrays.asList(other, logical));
+        Assert.assertEquals(deltaBackups.getPieces(logical), Arrays.asList(base, segment1, segment2));
+        Assert.assertNull(deltaBackups.getPieces(other));
+
+        Assert.assertTrue(DeltaBackups.isSegmentOf(segment1, "log.1"));
+        Assert.assertFalse(DeltaBackups.isSegmentOf(segment1, "log.10"));
+        Assert.assertFalse(DeltaBackups.isSegmentOf(base, "log.1"));
+    }
+
+    @Test
+    public void testExpired() throws Exception
+    {
+        BackupMetaData          oldBase = new BackupMetaData("log.1", 100);
+        BackupMetaData          newSegment = new BackupMetaData(DeltaBackups.getSegmentName("log.1", 500), 1000);
+        BackupMetaData          oldSegment = new BackupMetaData(DeltaBackups.getSegmentName("log.1", 200), 200);
+        BackupMetaData          staleSegment = new BackupMetaData(DeltaBackups.getSegmentName("log.1", 100), 50);
+        BackupMetaData          expiredBase = new BackupMetaData("log.0", 10);
+        BackupMetaData          expiredSegment = new BackupMetaData(DeltaBackups.getSegmentName("log.0", 100), 20);
+        BackupMetaData          orphanSegment = new BackupMetaData(DeltaBackups.getSegmentName("log.2", 100), 30);
+        List<BackupMetaData>    backups = Arrays.asList(oldBase, newSegment, oldSegment, staleSegment, expiredBase, expiredSegment, orphanSegment);
+
+        // log.1's base and old segment are kept while it has a newer segment
+        Assert.assertEquals(Sets.newHashSet(DeltaBackups.getExpired(backups, 500)), Sets.newHashSet(staleSegment, expiredBase, expiredSegment, orphanSegment));
+        Assert.assertEquals(Sets.newHashSet(DeltaBackups.getExpired(backups, 2000)), Sets.newHashSet(backups));
+        Assert.assertEquals(DeltaBackups.getExpired(backups, 5), Arrays.<BackupMetaData>asList());
+    }
+
+    private void assertTransactions(ZooKeeperLogParser parser, int qty) throws Exception
+    {
+        Assert.assertTrue(parser.isValid());
+
+        final int[]             count = new int[]{0};
+        parser.parse
+        (
+            new LogEntryReceiver()
+            {
+                @Override
+                public void receiveEntry(TxnHeader header, Record record) throws Exception
+                {
+                    Assert.assertEquals(header.getZxid(), ++count[0]);
+                }
+            }
+        );
+        Assert.assertEquals(count[0], qty);
+    }
+
+    private byte[] compress(File log, long start, long end, ExecutorService service) throws Exception
+    {
+        ParallelGzipChannel     channel = new ParallelGzipChannel(log, start, end, service, 2);
+        try
+        {
+            return ByteStreams.toByteArray(Channels.newInputStream(channel));
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    private File getLog(File logDirectory)
+    {
+        File[]      files = logDirectory.listFiles();
+        Assert.assertNotNull(files);
+        Assert.assertEquals(files.length, 1);
+        return files[0];
+    }
+}
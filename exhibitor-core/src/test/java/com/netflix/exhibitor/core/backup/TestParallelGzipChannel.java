@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.backup;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.netflix.exhibitor.core.index.LogStreamDecoder;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class TestParallelGzipChannel
+{
+    @Test
+    public void     testMultipleBlocks() throws Exception
+    {
+        // not a multiple of the block size so that the last block is partial
+        byte[]      bytes = new byte[(10 * 1000) + 123];
+        Random      random = new Random(1);
+        for ( int i = 0; i < bytes.length; ++i )
+        {
+            bytes[i] = (byte)('a' + random.nextInt(4));
+        }
+        Assert.assertEquals(roundTrip(bytes, 1000), bytes);
+    }
+
+    @Test
+    public void     testLargerThanReadAhead() throws Exception
+    {
+        // many members that end at arbitrary points of the decoder's read-ahead chunks
+        byte[]      bytes = new byte[(3 * 1024 * 1024) + 17];
+        new Random(3).nextBytes(bytes);
+        Assert.assertEquals(roundTrip(bytes, 100 * 1000), bytes);
+    }
+
+    @Test
+    public void     testExactBlocks() throws Exception
+    {
+        byte[]      bytes = new byte[3000];
+        new Random(2).nextBytes(bytes);
+        Assert.assertEquals(roundTrip(bytes, 1000), bytes);
+    }
+
+    @Test
+    public void     testEmpty() throws Exception
+    {
+        Assert.assertEquals(roundTrip(new byte[0], 1000), new byte[0]);
+    }
+
+    private byte[]  roundTrip(byte[] bytes, int blockSize) throws Exception
+    {
+        File                    source = File.createTempFile("test", ".test");
+        ExecutorService         service = Executors.newFixedThreadPool(3);
+        ParallelGzipChannel     channel = new ParallelGzipChannel(source, 0, Long.MAX_VALUE, service, blockSize, 3);
+        try
+        {
+            Files.write(bytes, source);
+
+            ByteArrayOutputStream   compressed = new ByteArrayOutputStream();
+            ByteBuffer              buffer = ByteBuffer.allocate(700);  // smaller than a block
+            while ( channel.read(buffer) >= 0 )
+            {
+                buffer.flip();
+                compressed.write(buffer.array(), 0, buffer.limit());
+                buffer.clear();
+            }
+
+            // decoded the way backups are indexed - from a stream that, like a download, never has bytes available
+            InputStream             decoded = new LogStreamDecoder(service).decode(new DownloadInputStream(compressed.toByteArray()));
+            try
+            {
+                return ByteStreams.toByteArray(decoded);
+            }
+            finally
+            {
+                decoded.close();
+            }
+        }
+        finally
+        {
+            channel.close();
+            service.shutdownNow();
+            //noinspection ResultOfMethodCallIgnored
+            source.delete();
+        }
+    }
+}
@@ -27,15 +27,22 @@ import com.netflix.exhibitor.core.s3.S3ClientConfig;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MockS3Client implements S3Client
 {
     private final List<byte[]>              uploadedBytes = new CopyOnWriteArrayList<byte[]>();
     private final ObjectListing             listing;
     private final Map<String, S3Object>     uploads = Maps.newConcurrentMap();
+    private final Map<Integer, byte[]>      parts = Maps.newConcurrentMap();
+    private final List<Long>                rangeStarts = new CopyOnWriteArrayList<Long>();
+    private final AtomicInteger             failingRangeQty = new AtomicInteger(0);
+    private final List<Integer>             deleteBatchSizes = new CopyOnWriteArrayList<Integer>();
 
     private static final String BYTES_HEADER = "__internal_index__";
 
@@ -128,6 +135,37 @@ public class MockS3Client implements S3Client
         return s3Object;
     }
 
+    @Override
+    public S3Object getObject(GetObjectRequest request) throws Exception
+    {
+        S3Object            s3Object = getObject(request.getBucketName(), request.getKey());
+        if ( (s3Object == null) || (request.getRange() == null) )
+        {
+            return s3Object;
+        }
+
+        byte[]              bytes = ByteStreams.toByteArray(s3Object.getObjectContent());
+        int                 start = (int)request.getRange()[0];
+        int                 end = (int)Math.min(request.getRange()[1] + 1, bytes.length);
+        rangeStarts.add((long)start);
+
+        InputStream         in = new ByteArrayInputStream(bytes, start, end - start);
+        if ( failingRangeQty.getAndDecrement() > 0 )
+        {
+            // fail half way through the range
+            in = new SequenceInputStream(ByteStreams.limit(in, (end - start) / 2), new InputStream()
+            {
+                @Override
+                public int read() throws IOException
+                {
+                    throw new IOException("Connection reset");
+                }
+            });
+        }
+        s3Object.setObjectContent(new S3ObjectInputStream(in, null));
+        return s3Object;
+    }
+
     @Override
     public ObjectMetadata getObjectMetadata(String bucket, String key) throws Exception
     {
@@ -183,13 +221,46 @@ public class MockS3Client implements S3Client
         uploads.remove(key);
     }
 
+    @Override
+    public synchronized DeleteObjectsResult deleteObjects(DeleteObjectsRequest request) throws Exception
+    {
+        deleteBatchSizes.add(request.getKeys().size());
+
+        List<DeleteObjectsResult.DeletedObject>     deleted = Lists.newArrayList();
+        for ( DeleteObjectsRequest.KeyVersion keyVersion : request.getKeys() )
+        {
+            uploads.remove(keyVersion.getKey());
+
+            DeleteObjectsResult.DeletedObject       deletedObject = new DeleteObjectsResult.DeletedObject();
+            deletedObject.setKey(keyVersion.getKey());
+            deleted.add(deletedObject);
+        }
+        return new DeleteObjectsResult(deleted);
+    }
+
+    @Override
+    public synchronized CopyObjectResult copyObject(CopyObjectRequest request) throws Exception
+    {
+        S3Object            s3Object = uploads.get(request.getSourceKey());
+        if ( s3Object == null )
+        {
+            throw new Exception("No such key: " + request.getSourceKey());
+        }
+
+        S3Object            copy = new S3Object();
+        copy.setKey(request.getDestinationKey());
+        copy.setObjectMetadata(s3Object.getObjectMetadata());
+        uploads.put(request.getDestinationKey(), copy);
+        return new CopyObjectResult();
+    }
+
     @Override
     public synchronized UploadPartResult uploadPart(UploadPartRequest request) throws Exception
     {
         ByteArrayOutputStream       out = new ByteArrayOutputStream();
         ByteStreams.copy(request.getInputStream(), out);
 
-        uploadedBytes.add(out.toByteArray());
+        parts.put(request.getPartNumber(), out.toByteArray());
 
         byte[]              md5bytes = S3Utils.md5(out.toByteArray(), out.size());
 
@@ -200,13 +271,51 @@ public class MockS3Client implements S3Client
     }
 
     @Override
-    public void completeMultipartUpload(CompleteMultipartUploadRequest request) throws Exception
+    public synchronized void completeMultipartUpload(CompleteMultipartUploadRequest request) throws Exception
     {
+        // like S3, parts can be uploaded in any order but the completed object is assembled in part number order
+        ByteArrayOutputStream       out = new ByteArrayOutputStream();
+        int                         lastPartNumber = 0;
+        for ( PartETag partETag : request.getPartETags() )
+        {
+            if ( partETag.getPartNumber() <= lastPartNumber )
+            {
+                throw new Exception("Parts must be in ascending order");
+            }
+            lastPartNumber = partETag.getPartNumber();
+
+            byte[]      bytes = parts.remove(partETag.getPartNumber());
+            if ( bytes == null )
+            {
+                throw new Exception("Part not uploaded: " + partETag.getPartNumber());
+            }
+            out.write(bytes);
+        }
+        uploadedBytes.add(out.toByteArray());
     }
 
     @Override
     public void abortMultipartUpload(AbortMultipartUploadRequest request) throws Exception
     {
+        parts.clear();
+    }
+
+    /**
+     * @param qty the number of following range requests that fail part way through
+     */
+    public void failRanges(int qty)
+    {
+        failingRangeQty.set(qty);
+    }
+
+    public List<Long> getRangeStarts()
+    {
+        return Lists.newArrayList(rangeStarts);
+    }
+
+    public List<Integer> getDeleteBatchSizes()
+    {
+        return Lists.newArrayList(deleteBatchSizes);
     }
 
     public List<byte[]> getUploadedBytes()
@@ -16,13 +16,28 @@
 
 package com.netflix.exhibitor.core.backup.s3;
 
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import com.google.common.collect.Maps;
 import com.google.common.io.Files;
+import com.netflix.exhibitor.core.backup.BackupMetaData;
+import com.netflix.exhibitor.core.s3.PropertyBasedS3ClientConfig;
+import com.netflix.exhibitor.core.s3.PropertyBasedS3Credential;
 import org.apache.curator.utils.CloseableUtils;
+import org.testng.Assert;
 import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TestS3BackupBigFile extends TestS3BackupProviderBase
 {
@@ -53,6 +68,112 @@ public class TestS3BackupBigFile extends TestS3BackupProviderBase
         return tempFile;
     }
 
+    @Test
+    public void     testRetriedPart() throws Exception
+    {
+        final AtomicInteger     failures = new AtomicInteger(0);
+        MockS3Client            s3Client = new MockS3Client()
+        {
+            @Override
+            public UploadPartResult uploadPart(UploadPartRequest request) throws Exception
+            {
+                if ( (request.getPartNumber() == 1) && (failures.getAndIncrement() == 0) )
+                {
+                    throw new Exception("Simulated failure");
+                }
+                return super.uploadPart(request);
+            }
+        };
+
+        upload(s3Client);
+        Assert.assertEquals(failures.get(), 2);
+
+        ByteArrayOutputStream   out = new ByteArrayOutputStream();
+        for ( byte[] bytes : s3Client.getUploadedBytes() )
+        {
+            out.write(bytes);
+        }
+        Assert.assertEquals(out.toByteArray(), Files.toByteArray(sourceFile));
+    }
+
+    @Test
+    public void     testFailedPart() throws Exception
+    {
+        MockS3Client            s3Client = new MockS3Client()
+        {
+            @Override
+            public UploadPartResult uploadPart(UploadPartRequest request) throws Exception
+            {
+                if ( request.getPartNumber() == 2 )
+                {
+                    throw new Exception("Simulated failure");
+                }
+                return super.uploadPart(request);
+            }
+        };
+
+        try
+        {
+            upload(s3Client);
+            Assert.fail();
+        }
+        catch ( Exception e )
+        {
+            Assert.assertEquals(e.getMessage(), "Simulated failure");
+        }
+        Assert.assertEquals(s3Client.getUploadedBytes().size(), 0);
+    }
+
+    @Test
+    public void     testResumedRange() throws Exception
+    {
+        MockS3Client            s3Client = new MockS3Client();
+        InputStream             in = new FileInputStream(sourceFile);
+        try
+        {
+            s3Client.putObject(new PutObjectRequest("bucket", "exhibitor-backup" + S3BackupProvider.SEPARATOR + "test" + S3BackupProvider.SEPARATOR + 1, in, null));
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(in);
+        }
+        s3Client.failRanges(2);
+
+        Map<String, String>     configValues = Maps.newHashMap();
+        configValues.put("max-retries", "3");
+        configValues.put("retry-sleep-ms", "1");
+        configValues.put("part-size-mb", "1");
+        configValues.put("download-concurrency", "3");
+
+        S3BackupProvider        provider = new S3BackupProvider(new MockS3ClientFactory(s3Client), new PropertyBasedS3Credential(new Properties()), new PropertyBasedS3ClientConfig(new Properties()), null);
+        ByteArrayOutputStream   out = new ByteArrayOutputStream();
+        provider.downloadBackup(null, new BackupMetaData("test", 1), out, configValues);
+        Assert.assertEquals(out.toByteArray(), Files.toByteArray(sourceFile));
+
+        // the failed ranges were resumed from where they stopped
+        int                     resumedQty = 0;
+        for ( long start : s3Client.getRangeStarts() )
+        {
+            if ( (start % (1024 * 1024)) != 0 )
+            {
+                ++resumedQty;
+            }
+        }
+        Assert.assertEquals(resumedQty, 2);
+        Assert.assertEquals(s3Client.getRangeStarts().size(), ((sourceFile.length() + (1024 * 1024) - 1) / (1024 * 1024)) + 2);
+    }
+
+    private void    upload(MockS3Client s3Client) throws Exception
+    {
+        Map<String, String>     configValues = Maps.newHashMap();
+        configValues.put("max-retries", "3");
+        configValues.put("retry-sleep-ms", "1");
+        configValues.put("upload-concurrency", "2");
+
+        S3BackupProvider        provider = new S3BackupProvider(new MockS3ClientFactory(s3Client), new PropertyBasedS3Credential(new Properties()), new PropertyBasedS3ClientConfig(new Properties()), null);
+        provider.uploadBackup(null, new BackupMetaData("test", 10), sourceFile, configValues);
+    }
+
     @AfterClass
     public void     teardown()
     {
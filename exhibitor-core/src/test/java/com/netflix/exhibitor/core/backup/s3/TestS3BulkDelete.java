@@ -0,0 +1,61 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.backup.s3;
+
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.netflix.exhibitor.core.backup.BackupMetaData;
+import com.netflix.exhibitor.core.s3.PropertyBasedS3ClientConfig;
+import com.netflix.exhibitor.core.s3.PropertyBasedS3Credential;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+public class TestS3BulkDelete
+{
+    @Test
+    public void     testBatches() throws Exception
+    {
+        MockS3Client            s3Client = new MockS3Client();
+        List<BackupMetaData>    backups = Lists.newArrayList();
+        for ( int i = 0; i < 2500; ++i )
+        {
+            BackupMetaData      backup = new BackupMetaData("log." + i, 100 + i);
+            backups.add(backup);
+            String              key = "exhibitor-backup" + S3BackupProvider.SEPARATOR + backup.getName() + S3BackupProvider.SEPARATOR + backup.getModifiedDate();
+            s3Client.putObject(new PutObjectRequest("bucket", key, new ByteArrayInputStream(new byte[0]), null));
+        }
+
+        S3BackupProvider        provider = new S3BackupProvider(new MockS3ClientFactory(s3Client), new PropertyBasedS3Credential(new Properties()), new PropertyBasedS3ClientConfig(new Properties()), null);
+        Map<String, String>     configValues = Maps.newHashMap();
+        configValues.put("bucket-name", "bucket");
+
+        List<BackupMetaData>    expired = backups.subList(0, 2400);
+        Assert.assertEquals(Sets.newHashSet(provider.deleteBackups(null, expired, configValues)), Sets.newHashSet(expired));
+
+        List<Integer>           batchSizes = s3Client.getDeleteBatchSizes();
+        Collections.sort(batchSizes);
+        Assert.assertEquals(batchSizes, Lists.newArrayList(400, 1000, 1000));
+        Assert.assertEquals(Sets.newHashSet(provider.getAvailableBackups(null, configValues)), Sets.newHashSet(backups.subList(2400, 2500)));
+    }
+}
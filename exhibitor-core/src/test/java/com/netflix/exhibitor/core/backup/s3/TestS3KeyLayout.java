@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.backup.s3;
+
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.netflix.exhibitor.core.backup.BackupMetaData;
+import com.netflix.exhibitor.core.s3.PropertyBasedS3ClientConfig;
+import com.netflix.exhibitor.core.s3.PropertyBasedS3Credential;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+public class TestS3KeyLayout
+{
+    @Test
+    public void     testMigration() throws Exception
+    {
+        MockS3Client            s3Client = new MockS3Client();
+        Set<BackupMetaData>     backups = Sets.newHashSet();
+        for ( int i = 0; i < 10; ++i )
+        {
+            BackupMetaData      backup = new BackupMetaData("log." + i, 100 + i);
+            backups.add(backup);
+            String              key = "exhibitor-backup" + S3BackupProvider.SEPARATOR + backup.getName() + S3BackupProvider.SEPARATOR + backup.getModifiedDate();
+            s3Client.putObject(new PutObjectRequest("bucket", key, new ByteArrayInputStream(new byte[]{(byte)i}), null));
+        }
+
+        S3BackupProvider        provider = new S3BackupProvider(new MockS3ClientFactory(s3Client), new PropertyBasedS3Credential(new Properties()), new PropertyBasedS3ClientConfig(new Properties()), null);
+        Map<String, String>     configValues = Maps.newHashMap();
+        configValues.put("bucket-name", "bucket");
+        Assert.assertEquals(Sets.newHashSet(provider.getAvailableBackups(null, configValues)), backups);
+
+        Assert.assertEquals(provider.migrateKeys("bucket", "exhibitor-backup", 4), 10);
+        Assert.assertEquals(provider.migrateKeys("bucket", "exhibitor-backup", 4), 0);
+        for ( S3ObjectSummary summary : s3Client.listObjects(new ListObjectsRequest("bucket", "exhibitor-backup", null, null, null)).getObjectSummaries() )
+        {
+            Assert.assertEquals(summary.getKey().split(S3BackupProvider.SEPARATOR).length, 4, summary.getKey());
+        }
+
+        configValues.put("key-shards", "4");
+        Assert.assertEquals(Sets.newHashSet(provider.getAvailableBackups(null, configValues)), backups);
+
+        // the content moved with the key
+        BackupMetaData          backup = new BackupMetaData("log.3", 103);
+        Assert.assertEquals(provider.getBackupStream(null, backup, configValues).getStream().read(), 3);
+
+        provider.deleteBackup(null, backup, configValues);
+        backups.remove(backup);
+        Assert.assertEquals(Sets.newHashSet(provider.getAvailableBackups(null, configValues)), backups);
+
+        Assert.assertEquals(provider.migrateKeys("bucket", "exhibitor-backup", 0), 9);
+        configValues.put("key-shards", "0");
+        Assert.assertEquals(Sets.newHashSet(provider.getAvailableBackups(null, configValues)), backups);
+    }
+
+    @Test
+    public void     testMigrationIsRepeatable() throws Exception
+    {
+        MockS3Client            s3Client = new MockS3Client();
+        S3BackupProvider        provider = new S3BackupProvider(new MockS3ClientFactory(s3Client), new PropertyBasedS3Credential(new Properties()), new PropertyBasedS3ClientConfig(new Properties()), null);
+        Map<String, String>     configValues = Maps.newHashMap();
+        configValues.put("bucket-name", "bucket");
+        configValues.put("key-shards", "4");
+
+        // nothing is moved implicitly
+        BackupMetaData          stray = new BackupMetaData("log.1", 100);
+        String                  key = "exhibitor-backup" + S3BackupProvider.SEPARATOR + stray.getName() + S3BackupProvider.SEPARATOR + stray.getModifiedDate();
+        s3Client.putObject(new PutObjectRequest("bucket", key, new ByteArrayInputStream(new byte[]{1}), null));
+        Assert.assertTrue(provider.getAvailableBackups(null, configValues).isEmpty());
+        Assert.assertEquals(provider.migrateBackups(null, configValues), 1);
+        Assert.assertEquals(provider.getAvailableBackups(null, configValues), Arrays.asList(stray));
+
+        // a backup stored by an instance that still had the flat layout is picked up by running it again
+        BackupMetaData          late = new BackupMetaData("log.2", 200);
+        key = "exhibitor-backup" + S3BackupProvider.SEPARATOR + late.getName() + S3BackupProvider.SEPARATOR + late.getModifiedDate();
+        s3Client.putObject(new PutObjectRequest("bucket", key, new ByteArrayInputStream(new byte[]{2}), null));
+        Assert.assertEquals(provider.migrateBackups(null, configValues), 1);
+        Assert.assertEquals(Sets.newHashSet(provider.getAvailableBackups(null, configValues)), Sets.newHashSet(stray, late));
+    }
+}
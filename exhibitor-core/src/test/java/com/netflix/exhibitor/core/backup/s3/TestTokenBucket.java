@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.backup.s3;
+
+import com.google.common.base.Ticker;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.util.concurrent.TimeUnit;
+
+public class TestTokenBucket
+{
+    private static class MockTicker extends Ticker
+    {
+        private long        nanos = 0;
+
+        @Override
+        public long read()
+        {
+            return nanos;
+        }
+
+        void advance(long time, TimeUnit unit)
+        {
+            nanos += unit.toNanos(time);
+        }
+    }
+
+    @Test
+    public void testPacing() throws Exception
+    {
+        MockTicker      ticker = new MockTicker();
+        TokenBucket     bucket = new TokenBucket(null, ticker);
+        Assert.assertEquals(bucket.reserve(Integer.MAX_VALUE), 0);  // no limit
+
+        bucket.setRate(10);
+        Assert.assertEquals(bucket.reserve(10 * TokenBucket.BURST_MS), 0);   // starts full
+        Assert.assertEquals(bucket.reserve(10), TimeUnit.MILLISECONDS.toNanos(1));
+        Assert.assertEquals(bucket.reserve(5), TimeUnit.MICROSECONDS.toNanos(1500));
+
+        ticker.advance(1500, TimeUnit.MICROSECONDS);
+        Assert.assertEquals(bucket.reserve(0), 0);
+
+        // refills no further than the burst size
+        ticker.advance(1, TimeUnit.HOURS);
+        Assert.assertEquals(bucket.reserve(10 * TokenBucket.BURST_MS), 0);
+        Assert.assertEquals(bucket.reserve(1), TimeUnit.MICROSECONDS.toNanos(100));
+    }
+
+    @Test
+    public void testParent() throws Exception
+    {
+        MockTicker      ticker = new MockTicker();
+        TokenBucket     parent = new TokenBucket(null, ticker);
+        TokenBucket     child = new TokenBucket(parent, ticker);
+        TokenBucket     sibling = new TokenBucket(parent, ticker);
+        parent.setRate(10);
+        child.setRate(1);
+
+        Assert.assertEquals(child.reserve(1 * TokenBucket.BURST_MS), 0);
+        Assert.assertEquals(child.reserve(1), TimeUnit.MILLISECONDS.toNanos(1));    // the child's limit
+
+        // the sibling has no limit of its own but shares what's left of the parent's
+        Assert.assertEquals(sibling.reserve(9 * TokenBucket.BURST_MS - 1), 0);
+        Assert.assertEquals(sibling.reserve(10), TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TestDocumentWriterStage
+{
+    private static final int    QTY = 2000;
+
+    @Test
+    public void testLanesAreWrittenInOrder() throws Exception
+    {
+        RAMDirectory        directory = new RAMDirectory();
+        IndexWriter         writer = new IndexWriter(directory, new IndexWriterConfig(Version.LUCENE_35, new KeywordAnalyzer()));
+        ExecutorService     service = Executors.newSingleThreadExecutor();
+        try
+        {
+            DocumentWriterStage                     stage = new DocumentWriterStage(writer, 3);
+            final DocumentWriterStage.Lane          first = stage.openLane();
+            final DocumentWriterStage.Lane          second = stage.openLane();
+
+            // the second log is parsed first
+            Future<Void>    future = service.submit
+            (
+                new Callable<Void>()
+                {
+                    @Override
+                    public Void call() throws Exception
+                    {
+                        addAll(second, "second");
+                        return null;
+                    }
+                }
+            );
+            addAll(first, "first");
+            future.get();
+            stage.finish();
+            writer.commit();
+
+            IndexReader     reader = IndexReader.open(directory);
+            try
+            {
+                Assert.assertEquals(reader.maxDoc(), 2 * QTY);
+                for ( int i = 0; i < reader.maxDoc(); ++i )
+                {
+                    Assert.assertEquals(reader.document(i).get(FieldNames.PATH), (i < QTY) ? "first" : "second");
+                }
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        finally
+        {
+            service.shutdownNow();
+            writer.close();
+            directory.close();
+        }
+    }
+
+    private void addAll(DocumentWriterStage.Lane lane, String path) throws Exception
+    {
+        try
+        {
+            for ( int i = 0; i < QTY; ++i )
+            {
+                Document    document = new Document();
+                document.add(new Field(FieldNames.PATH, path, Field.Store.YES, Field.Index.NOT_ANALYZED));
+                lane.add(document);
+            }
+        }
+        finally
+        {
+            lane.close();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import com.google.common.io.ByteStreams;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+public class TestGzipMembersInputStream
+{
+    @Test
+    public void testMembersWithoutAvailable() throws Exception
+    {
+        byte[]                  first = makeBytes(1024 * 1024, 1);
+        byte[]                  second = new byte[0];
+        byte[]                  third = makeBytes(123456, 3);
+        ByteArrayOutputStream   expected = new ByteArrayOutputStream();
+        expected.write(first);
+        expected.write(third);
+
+        // like a pipe or a download - a member boundary is a read boundary and nothing more is available
+        InputStream     in = new GzipMembersInputStream(new MemberInputStream(Arrays.asList(compress(first), compress(second), compress(third))));
+        try
+        {
+            Assert.assertTrue(Arrays.equals(ByteStreams.toByteArray(in), expected.toByteArray()));
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    @Test(expectedExceptions = ZipException.class)
+    public void testTrailingGarbage() throws Exception
+    {
+        decode(compress(makeBytes(1000, 1)), new byte[]{1, 2, 3});
+    }
+
+    @Test(expectedExceptions = ZipException.class)
+    public void testCorruptTrailer() throws Exception
+    {
+        byte[]      member = compress(makeBytes(1000, 1));
+        member[member.length - 8] ^= 1;   // CRC
+        decode(member);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testTruncated() throws Exception
+    {
+        byte[]      member = compress(makeBytes(1000, 1));
+        decode(Arrays.copyOf(member, member.length - 4));
+    }
+
+    private byte[] decode(byte[]... pieces) throws IOException
+    {
+        InputStream     in = new GzipMembersInputStream(new MemberInputStream(Arrays.asList(pieces)));
+        try
+        {
+            return ByteStreams.toByteArray(in);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private static class MemberInputStream extends InputStream
+    {
+        private final List<byte[]>  pieces;
+        private int                 pieceIndex = 0;
+        private int                 position = 0;
+
+        MemberInputStream(List<byte[]> pieces)
+        {
+            this.pieces = pieces;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            byte[]      b = new byte[1];
+            return (read(b, 0, 1) < 0) ? -1 : (b[0] & 0xff);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            while ( (pieceIndex < pieces.size()) && (position == pieces.get(pieceIndex).length) )
+            {
+                ++pieceIndex;
+                position = 0;
+            }
+            if ( pieceIndex == pieces.size() )
+            {
+                return -1;
+            }
+
+            byte[]      piece = pieces.get(pieceIndex);
+            int         count = Math.min(len, piece.length - position);
+            System.arraycopy(piece, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() throws IOException
+        {
+            return 0;
+        }
+    }
+
+    private byte[] compress(byte[] bytes) throws IOException
+    {
+        ByteArrayOutputStream   out = new ByteArrayOutputStream();
+        GZIPOutputStream        gzip = new GZIPOutputStream(out);
+        gzip.write(bytes);
+        gzip.close();
+        return out.toByteArray();
+    }
+
+    private byte[] makeBytes(int length, int seed)
+    {
+        byte[]      bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
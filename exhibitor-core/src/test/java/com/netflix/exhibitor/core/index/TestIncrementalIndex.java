@@ -0,0 +1,211 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import com.google.common.io.Files;
+import com.netflix.exhibitor.core.Fixtures;
+import com.netflix.exhibitor.core.activity.ActivityLog;
+import org.apache.curator.utils.CloseableUtils;
+import org.apache.lucene.index.IndexReader;
+import org.apache.zookeeper.server.persistence.FileTxnLog;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+public class TestIncrementalIndex
+{
+    @Test
+    public void testAppend() throws Exception
+    {
+        File        logDirectory = Files.createTempDir();
+        File        indexParent = Files.createTempDir();
+        File        indexDirectory = new File(indexParent, "index");
+
+        FileTxnLog.setPreallocSize(64 * 1024);
+        FileTxnLog  txnLog = new FileTxnLog(logDirectory);
+        try
+        {
+            Fixtures.appendCreates(txnLog, "/test/", 1, 3);
+            File    logFile = getLogFile(logDirectory);
+
+            Assert.assertEquals(build(indexDirectory, logFile, 1, false), 3);
+
+            Fixtures.appendCreates(txnLog, "/test/", 4, 5);
+            Assert.assertEquals(build(indexDirectory, logFile, 2, true), 5);
+
+            // nothing new
+            Assert.assertEquals(build(indexDirectory, logFile, 3, true), 5);
+
+            LogSearch   logSearch = new LogSearch(indexDirectory);
+            try
+            {
+                Assert.assertEquals(logSearch.getDocQty(), 5);
+            }
+            finally
+            {
+                logSearch.close();
+            }
+
+            LogPosition position = IndexMetaData.read(IndexMetaData.getMetaDataFile(indexDirectory)).getLogPositions().get(logFile.getName());
+            Assert.assertNotNull(position);
+            Assert.assertEquals(position.getZxid(), 5);
+        }
+        finally
+        {
+            txnLog.close();
+            Fixtures.deleteDirectory(logDirectory);
+            Fixtures.deleteDirectory(indexParent);
+        }
+    }
+
+    @Test
+    public void testCachedSearchSeesUpdates() throws Exception
+    {
+        for ( IndexDirectoryType directoryType : IndexDirectoryType.values() )
+        {
+            checkCachedSearchSeesUpdates(directoryType);
+        }
+    }
+
+    private void checkCachedSearchSeesUpdates(IndexDirectoryType directoryType) throws Exception
+    {
+        File        logDirectory = Files.createTempDir();
+        File        indexParent = Files.createTempDir();
+        File        indexDirectory = new File(indexParent, "index");
+
+        FileTxnLog.setPreallocSize(64 * 1024);
+        FileTxnLog  txnLog = new FileTxnLog(logDirectory);
+        IndexCache  indexCache = new IndexCache(new ActivityLog(100), directoryType);
+        try
+        {
+            Fixtures.appendCreates(txnLog, "/test/", 1, 3);
+            File    logFile = getLogFile(logDirectory);
+            build(indexDirectory, logFile, 1, false);
+
+            LogSearch   logSearch = indexCache.getLogSearch(indexDirectory);
+            try
+            {
+                Assert.assertSame(indexCache.getLogSearch(indexDirectory), logSearch);
+                indexCache.releaseLogSearch(indexDirectory);
+
+                Assert.assertEquals(logSearch.getDocQty(), 3);
+                String  pathOfLastDoc = logSearch.toResult(2).getPath();
+
+                Fixtures.appendCreates(txnLog, "/test/", 4, 5);
+                build(indexDirectory, logFile, 2, true);
+                indexCache.indexUpdated(indexDirectory);
+
+                Assert.assertEquals(logSearch.getDocQty(), 5, directoryType.name());
+                Assert.assertEquals(logSearch.toResult(2).getPath(), pathOfLastDoc);   // doc IDs are stable across appends
+            }
+            finally
+            {
+                indexCache.releaseLogSearch(indexDirectory);
+            }
+        }
+        finally
+        {
+            indexCache.close();
+            txnLog.close();
+            Fixtures.deleteDirectory(logDirectory);
+            Fixtures.deleteDirectory(indexParent);
+        }
+    }
+
+    @Test
+    public void testColumnsAreExtended() throws Exception
+    {
+        File        logDirectory = Files.createTempDir();
+        File        indexParent = Files.createTempDir();
+        File        indexDirectory = new File(indexParent, "index");
+        File        columnsFile = IndexColumns.getColumnsFile(indexDirectory);
+
+        FileTxnLog.setPreallocSize(64 * 1024);
+        FileTxnLog  txnLog = new FileTxnLog(logDirectory);
+        LogSearch   logSearch = null;
+        try
+        {
+            Fixtures.appendCreates(txnLog, "/test/", 1, 30);
+            File    logFile = getLogFile(logDirectory);
+            build(indexDirectory, logFile, 1, false);
+            IndexColumns.build(indexDirectory);
+            logSearch = new LogSearch(indexDirectory);
+
+            // a small append is read from the index rather than rewriting the columns
+            Fixtures.appendCreates(txnLog, "/test/", 31, 45);
+            build(indexDirectory, logFile, 2, true);
+            logSearch.refresh();
+            Assert.assertEquals(IndexColumns.open(columnsFile).getDocCount(), 30);
+            Assert.assertEquals(logSearch.getSubtreeCounts("/").get("/test").intValue(), 45);
+            Assert.assertEquals(logSearch.getSubtreeCounts("/test").size(), 45);
+            Assert.assertEquals(logSearch.toResult(40).getPath(), "/test/41");
+
+            // new paths sort between existing ones - the extended columns are the same as rewritten ones
+            IndexColumns.build(indexDirectory);
+            Assert.assertEquals(IndexColumns.open(columnsFile).getDocCount(), 45);
+            File            rewrittenFile = new File(indexParent, "rewritten");
+            IndexReader     reader = IndexReader.open(IndexDirectoryType.NIO.open(indexDirectory));
+            try
+            {
+                IndexColumns.write(reader, rewrittenFile);
+            }
+            finally
+            {
+                CloseableUtils.closeQuietly(reader);
+                CloseableUtils.closeQuietly(reader.directory());
+            }
+            Assert.assertTrue(Arrays.equals(Files.toByteArray(columnsFile), Files.toByteArray(rewrittenFile)));
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(logSearch);
+            txnLog.close();
+            Fixtures.deleteDirectory(logDirectory);
+            Fixtures.deleteDirectory(indexParent);
+        }
+    }
+
+    private int build(File indexDirectory, File logFile, long modifiedDate, boolean append) throws Exception
+    {
+        IndexBuilder    builder = new IndexBuilder(indexDirectory, append);
+        InputStream     in = new BufferedInputStream(new FileInputStream(logFile));
+        try
+        {
+            builder.open();
+            builder.add(logFile.getName(), modifiedDate, in);
+            builder.writeMetaData();
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(in);
+            builder.close();
+        }
+        return IndexMetaData.read(IndexMetaData.getMetaDataFile(indexDirectory)).getEntryCount();
+    }
+
+    private File getLogFile(File logDirectory)
+    {
+        File[]      files = logDirectory.listFiles();
+        Assert.assertNotNull(files);
+        Assert.assertEquals(files.length, 1);
+        return files[0];
+    }
+}
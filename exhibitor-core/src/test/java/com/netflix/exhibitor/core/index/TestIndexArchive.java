@@ -0,0 +1,116 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import org.apache.curator.utils.CloseableUtils;
+import org.apache.lucene.search.Query;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+public class TestIndexArchive extends TestIndexBase
+{
+    @Test
+    public void testExportImport() throws Exception
+    {
+        File            archive = new File(indexParent, "index.archive");
+        File            imported = new File(indexParent, "imported");
+        LogSearch       search = null;
+        try
+        {
+            FileChannel     out = new FileOutputStream(archive).getChannel();
+            try
+            {
+                IndexArchive.write(indexDirectory, out);
+            }
+            finally
+            {
+                CloseableUtils.closeQuietly(out);
+            }
+
+            FileChannel     in = new FileInputStream(archive).getChannel();
+            try
+            {
+                IndexArchive.read(in, imported, 1);
+            }
+            finally
+            {
+                CloseableUtils.closeQuietly(in);
+            }
+
+            Assert.assertTrue(IndexMetaData.isValid(imported));
+            Assert.assertTrue(IndexMetaData.getMetaDataFile(imported).exists());
+            Assert.assertTrue(IndexColumns.getColumnsFile(imported).exists());
+            IndexPathFilter importedPathFilter = IndexPathFilter.read(imported);   // rebuilt rather than copied
+            Assert.assertNotNull(importedPathFilter);
+            Assert.assertEquals(importedPathFilter.getDepth(), 1);
+            Assert.assertTrue(importedPathFilter.mightContainPath("/test/1/1"));
+            Assert.assertFalse(new File(indexParent, "imported.importing").exists());
+            Assert.assertEquals(IndexMetaData.read(IndexMetaData.getMetaDataFile(imported)).getEntryCount(), QTY);
+
+            search = new LogSearch(imported);
+            Assert.assertEquals(search.getDocQty(), logSearch.getDocQty());
+            Query           query = QueryBuilder.builder().pathPrefix("/test/1").build(QueryBuilder.Type.AND);
+            CachedSearch    cachedSearch = search.getCachedSearch(search.cacheSearch(query, null, 0));
+            Assert.assertEquals(getDocIds(search.getPage(cachedSearch, 0, QTY)), getExpected(query));
+
+            // an existing index is never replaced
+            in = new FileInputStream(archive).getChannel();
+            try
+            {
+                IndexArchive.read(in, imported, 1);
+                Assert.fail();
+            }
+            catch ( IOException expected )
+            {
+                // expected
+            }
+            finally
+            {
+                CloseableUtils.closeQuietly(in);
+            }
+
+            // a name length with the high bit set is rejected rather than sign-extended
+            File            bad = new File(indexParent, "bad-archive");
+            ByteBuffer      badArchive = (ByteBuffer)ByteBuffer.allocate(10).putInt(0x45584941).putInt(1).putShort((short)0xffff).flip();
+            try
+            {
+                IndexArchive.read(Channels.newChannel(new ByteArrayInputStream(badArchive.array())), bad, -1);
+                Assert.fail();
+            }
+            catch ( IOException expected )
+            {
+                Assert.assertTrue(expected.getMessage().startsWith("Not an index archive"), expected.getMessage());
+            }
+            Assert.assertFalse(bad.exists());
+            Assert.assertFalse(new File(indexParent, "bad-archive.importing").exists());
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(search);
+            //noinspection ResultOfMethodCallIgnored
+            archive.delete();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.netflix.exhibitor.core.Fixtures;
+import org.apache.curator.utils.CloseableUtils;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.zookeeper.server.persistence.FileTxnLog;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.List;
+
+public abstract class TestIndexBase
+{
+    private File        logDirectory;
+    protected File      indexParent;
+    protected File      indexDirectory;
+    protected LogSearch logSearch;
+
+    protected static final int      QTY = 257;
+
+    @BeforeClass
+    public void setup() throws Exception
+    {
+        logDirectory = Files.createTempDir();
+        indexParent = Files.createTempDir();
+        indexDirectory = new File(indexParent, "index");
+
+        FileTxnLog.setPreallocSize(64 * 1024);
+        FileTxnLog  txnLog = new FileTxnLog(logDirectory);
+        try
+        {
+            // build in two passes so that the index has more than one segment
+            appendCreates(txnLog, 1, QTY / 2);
+            build(indexDirectory, false);
+            appendCreates(txnLog, (QTY / 2) + 1, QTY);
+            build(indexDirectory, true);
+        }
+        finally
+        {
+            txnLog.close();
+        }
+
+        logSearch = new LogSearch(indexDirectory);
+    }
+
+    @AfterClass
+    public void tearDown()
+    {
+        CloseableUtils.closeQuietly(logSearch);
+        Fixtures.deleteDirectory(logDirectory);
+        Fixtures.deleteDirectory(indexParent);
+    }
+
+    protected List<Integer> getDocIds(List<SearchItem> items)
+    {
+        List<Integer>   docIds = Lists.newArrayList();
+        for ( SearchItem item : items )
+        {
+            docIds.add(item.getDocId());
+        }
+        return docIds;
+    }
+
+    protected List<Integer> getExpected(Query query) throws Exception
+    {
+        List<Integer>   expected = Lists.newArrayList();
+        for ( ScoreDoc scoreDoc : logSearch.search((query != null) ? query : new MatchAllDocsQuery(), QTY).scoreDocs )
+        {
+            expected.add(scoreDoc.doc);
+        }
+        return expected;
+    }
+
+    private void appendCreates(FileTxnLog txnLog, int startZxid, int endZxid) throws Exception
+    {
+        for ( int zxid = startZxid; zxid <= endZxid; ++zxid )
+        {
+            // several transactions share each timestamp so that ties must be handled
+            Fixtures.appendCreate(txnLog, zxid, 1000000 + (zxid / 4), "/test/" + (zxid % 3) + "/" + zxid);
+        }
+        txnLog.commit();
+    }
+
+    private void build(File indexDirectory, boolean append) throws Exception
+    {
+        File[]          files = logDirectory.listFiles();
+        Assert.assertNotNull(files);
+        Assert.assertEquals(files.length, 1);
+
+        IndexBuilder    builder = new IndexBuilder(indexDirectory, append, 2);
+        InputStream     in = new BufferedInputStream(new FileInputStream(files[0]));
+        try
+        {
+            builder.open();
+            builder.add(files[0].getName(), System.currentTimeMillis(), in);
+            builder.writeMetaData();
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(in);
+            builder.close();
+        }
+    }
+}
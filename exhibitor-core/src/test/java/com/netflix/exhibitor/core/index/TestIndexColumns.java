@@ -0,0 +1,111 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import com.google.common.collect.Lists;
+import org.apache.curator.utils.CloseableUtils;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericField;
+import org.apache.lucene.index.IndexReader;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TestIndexColumns extends TestIndexBase
+{
+    @Test
+    public void testConcurrentColumnWriters() throws Exception
+    {
+        ExecutorService         service = Executors.newFixedThreadPool(4);
+        try
+        {
+            List<Future<Void>>  futures = Lists.newArrayList();
+            for ( int i = 0; i < 8; ++i )
+            {
+                futures.add
+                (
+                    service.submit
+                    (
+                        new Callable<Void>()
+                        {
+                            @Override
+                            public Void call() throws Exception
+                            {
+                                IndexColumns.build(indexDirectory);
+                                return null;
+                            }
+                        }
+                    )
+                );
+            }
+            for ( Future<Void> future : futures )
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            service.shutdownNow();
+        }
+
+        Assert.assertEquals(IndexColumns.open(IndexColumns.getColumnsFile(indexDirectory)).getDocCount(), QTY);
+        File[]      files = indexParent.listFiles();
+        Assert.assertNotNull(files);
+        for ( File f : files )
+        {
+            Assert.assertFalse(f.getName().endsWith(".tmp"), f.getName());
+        }
+    }
+
+    @Test
+    public void testColumnsMatchStoredFields() throws Exception
+    {
+        File            columnsFile = IndexColumns.getColumnsFile(indexDirectory);
+        Assert.assertTrue(columnsFile.exists());
+
+        IndexColumns    columns = IndexColumns.open(columnsFile);
+        IndexReader     reader = IndexReader.open(IndexDirectoryType.NIO.open(indexDirectory));
+        try
+        {
+            Assert.assertEquals(columns.getDocCount(), reader.maxDoc());
+            Assert.assertEquals(columns.getPathCount(), QTY);
+            for ( int docId = 0; docId < reader.maxDoc(); ++docId )
+            {
+                Document        document = reader.document(docId);
+                NumericField    date = (NumericField)document.getFieldable(FieldNames.DATE);
+                Assert.assertEquals(columns.getPath(docId), document.get(FieldNames.PATH));
+                Assert.assertEquals(columns.getType(docId), Integer.parseInt(document.get(FieldNames.TYPE)));
+                Assert.assertEquals(columns.getDate(docId), date.getNumericValue().longValue());
+                Assert.assertEquals(columns.getVersion(docId), -1);
+            }
+            for ( int ordinal = 1; ordinal < columns.getPathCount(); ++ordinal )
+            {
+                Assert.assertTrue(columns.getPathForOrdinal(ordinal - 1).compareTo(columns.getPathForOrdinal(ordinal)) < 0);
+            }
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(reader);
+            CloseableUtils.closeQuietly(reader.directory());
+        }
+    }
+}
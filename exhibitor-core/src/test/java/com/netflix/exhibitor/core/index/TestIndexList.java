@@ -0,0 +1,56 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import com.google.common.io.Files;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.io.File;
+
+public class TestIndexList
+{
+    @Test
+    public void testGetIndex() throws Exception
+    {
+        File        parent = Files.createTempDir();
+        File        indexes = new File(parent, "indexes");
+        File        index = new File(indexes, "exhibitor-1");
+        File        outside = new File(parent, "outside");
+        try
+        {
+            Assert.assertTrue(index.mkdirs());
+            Assert.assertTrue(outside.mkdirs());
+
+            Assert.assertEquals(IndexList.getIndex(indexes, "exhibitor-1"), index);
+            Assert.assertNull(IndexList.getIndex(indexes, "missing"));
+            Assert.assertNull(IndexList.getIndex(indexes, ".."));
+            Assert.assertNull(IndexList.getIndex(indexes, "."));
+            Assert.assertNull(IndexList.getIndex(indexes, ""));
+            Assert.assertNull(IndexList.getIndex(indexes, "../outside"));
+            Assert.assertNull(IndexList.getIndex(indexes, "..\\outside"));
+            Assert.assertNull(IndexList.getIndex(indexes, "exhibitor-1/.."));
+            Assert.assertNull(IndexList.getIndex(indexes, outside.getPath()));
+        }
+        finally
+        {
+            Assert.assertTrue(index.delete());
+            Assert.assertTrue(indexes.delete());
+            Assert.assertTrue(outside.delete());
+            Assert.assertTrue(parent.delete());
+        }
+    }
+}
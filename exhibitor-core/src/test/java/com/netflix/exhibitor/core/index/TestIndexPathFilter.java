@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import com.google.common.collect.Lists;
+import org.apache.curator.utils.CloseableUtils;
+import org.apache.lucene.search.Query;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectOutputStream;
+
+public class TestIndexPathFilter extends TestIndexBase
+{
+    @Test
+    public void testPathFilter() throws Exception
+    {
+        IndexPathFilter     pathFilter = IndexPathFilter.read(indexDirectory);
+        Assert.assertNotNull(pathFilter);
+        Assert.assertEquals(pathFilter.getDepth(), 2);
+
+        // paths from both build passes are in the filter
+        for ( int zxid = 1; zxid <= QTY; ++zxid )
+        {
+            Assert.assertTrue(pathFilter.mightContainPath("/test/" + (zxid % 3) + "/" + zxid));
+        }
+        Assert.assertFalse(pathFilter.mightContainPath("/test/1/" + (QTY + 1)));
+        Assert.assertFalse(pathFilter.mightContainPath("/other"));
+
+        Assert.assertTrue(pathFilter.mightContainPrefix("/"));
+        Assert.assertTrue(pathFilter.mightContainPrefix("/te"));
+        Assert.assertTrue(pathFilter.mightContainPrefix("/test/"));
+        Assert.assertTrue(pathFilter.mightContainPrefix("/test/2/"));
+        Assert.assertTrue(pathFilter.mightContainPrefix("/test/2/1"));
+        Assert.assertFalse(pathFilter.mightContainPrefix("/other/"));
+        Assert.assertFalse(pathFilter.mightContainPrefix("/test/3/"));
+        Assert.assertFalse(pathFilter.mightContainPrefix("/test/3/1"));
+
+        Query       noMatch = QueryBuilder.builder().pathPrefix("/other/").operationType(EntryTypes.CREATE_PERSISTENT.getId()).build(QueryBuilder.Type.AND);
+        Query       someMatch = QueryBuilder.builder().pathPrefix("/other/").pathExact("/test/1/1").build(QueryBuilder.Type.OR);
+        Assert.assertFalse(pathFilter.mightMatch(noMatch));
+        Assert.assertTrue(pathFilter.mightMatch(someMatch));
+        Assert.assertEquals(logSearch.search(noMatch, QTY).totalHits, 0);
+
+        // only the classes of a filter are deserialized
+        File                badIndex = new File(indexParent, "bad");
+        File                badFile = IndexPathFilter.getPathFilterFile(badIndex);
+        ObjectOutputStream  out = new ObjectOutputStream(new FileOutputStream(badFile));
+        try
+        {
+            out.writeInt(1);
+            out.writeInt(2);
+            out.writeObject(Lists.newArrayList("/test"));
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(out);
+        }
+        try
+        {
+            IndexPathFilter.read(badIndex);
+            Assert.fail();
+        }
+        catch ( InvalidClassException expected )
+        {
+            // expected
+        }
+        finally
+        {
+            //noinspection ResultOfMethodCallIgnored
+            badFile.delete();
+        }
+    }
+}
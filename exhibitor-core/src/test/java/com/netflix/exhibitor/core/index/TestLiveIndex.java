@@ -0,0 +1,83 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import com.google.common.io.Files;
+import com.netflix.exhibitor.core.Fixtures;
+import org.apache.curator.utils.CloseableUtils;
+import org.apache.zookeeper.server.persistence.FileTxnLog;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestLiveIndex
+{
+    @Test
+    public void testTailing() throws Exception
+    {
+        File        logDirectory = Files.createTempDir();
+        File        indexParent = Files.createTempDir();
+        File        indexDirectory = new File(indexParent, LiveIndexer.LIVE_INDEX_NAME);
+
+        FileTxnLog.setPreallocSize(64 * 1024);
+        FileTxnLog  txnLog = new FileTxnLog(logDirectory);
+        LiveIndex   liveIndex = new LiveIndex(indexDirectory);
+        LogSearch   logSearch = null;
+        try
+        {
+            Fixtures.appendCreates(txnLog, "/live/", 1, 10);
+            Assert.assertEquals(liveIndex.update(getLogs(logDirectory)), 10);
+            Assert.assertEquals(liveIndex.update(getLogs(logDirectory)), 0);
+
+            logSearch = new LogSearch(indexDirectory);
+            Assert.assertEquals(logSearch.getDocQty(), 10);
+
+            Fixtures.appendCreates(txnLog, "/live/", 11, 15);
+            Assert.assertEquals(liveIndex.update(getLogs(logDirectory)), 5);
+
+            logSearch.refresh();
+            Assert.assertEquals(logSearch.getDocQty(), 15);
+            Assert.assertEquals(logSearch.search(QueryBuilder.builder().pathExact("/live/15").build(QueryBuilder.Type.AND), 10).totalHits, 1);
+            Assert.assertEquals(IndexMetaData.read(IndexMetaData.getMetaDataFile(indexDirectory)).getEntryCount(), 15);
+
+            // picks up where it left off after being re-opened
+            liveIndex.close();
+            liveIndex = new LiveIndex(indexDirectory);
+            Fixtures.appendCreates(txnLog, "/live/", 16, 17);
+            Assert.assertEquals(liveIndex.update(getLogs(logDirectory)), 2);
+            logSearch.refresh();
+            Assert.assertEquals(logSearch.getDocQty(), 17);
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(logSearch);
+            CloseableUtils.closeQuietly(liveIndex);
+            txnLog.close();
+            Fixtures.deleteDirectory(logDirectory);
+            Fixtures.deleteDirectory(indexParent);
+        }
+    }
+
+    private List<File> getLogs(File logDirectory)
+    {
+        File[]      files = logDirectory.listFiles();
+        Assert.assertNotNull(files);
+        return Arrays.asList(files);
+    }
+}
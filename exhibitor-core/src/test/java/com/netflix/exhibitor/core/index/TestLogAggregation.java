@@ -0,0 +1,56 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import com.google.common.collect.Sets;
+import org.apache.lucene.search.Query;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestLogAggregation extends TestIndexBase
+{
+    @Test
+    public void testAggregate() throws Exception
+    {
+        LogAggregation      aggregation = logSearch.aggregate(logSearch.getCachedSearch(logSearch.cacheSearch(null, null, 0)), 2, 1);
+        Assert.assertEquals(aggregation.getTotalHits(), QTY);
+        Assert.assertEquals(aggregation.getTypeCount(EntryTypes.CREATE_PERSISTENT), QTY);
+        Assert.assertEquals(aggregation.getTypeCount(EntryTypes.DELETE), 0);
+        Assert.assertEquals(aggregation.getPathCounts().keySet(), Sets.newHashSet("/test/0", "/test/1", "/test/2"));
+        Assert.assertEquals(aggregation.getPathCounts().get("/test/0").intValue(), QTY / 3);
+
+        // dates are 1000000 + (zxid / 4) for zxids 1 through QTY
+        int[]               counts = aggregation.getHistogramCounts();
+        Assert.assertEquals(aggregation.getHistogramStart(), 1000000);
+        Assert.assertEquals(counts.length, (QTY / 4) + 1);
+        Assert.assertEquals(counts[0], 3);
+        Assert.assertEquals(counts[1], 4);
+        int                 total = 0;
+        for ( int count : counts )
+        {
+            total += count;
+        }
+        Assert.assertEquals(total, QTY);
+
+        Query               query = QueryBuilder.builder().pathPrefix("/test/1").build(QueryBuilder.Type.AND);
+        aggregation = logSearch.aggregate(logSearch.getCachedSearch(logSearch.cacheSearch(query, null, 0)), 1, 1000);
+        Assert.assertEquals(aggregation.getTotalHits(), getExpected(query).size());
+        Assert.assertEquals(aggregation.getPathCounts().size(), 1);
+        Assert.assertEquals(aggregation.getPathCounts().get("/test").intValue(), aggregation.getTotalHits());
+        Assert.assertEquals(aggregation.getHistogramCounts().length, 1);
+    }
+}
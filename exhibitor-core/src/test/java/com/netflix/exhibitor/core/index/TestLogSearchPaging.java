@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.apache.curator.utils.CloseableUtils;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class TestLogSearchPaging extends TestIndexBase
+{
+    @Test
+    public void testSequentialPages() throws Exception
+    {
+        List<Integer>   expected = getExpected(null);
+        Assert.assertEquals(expected.size(), QTY);
+
+        CachedSearch    cachedSearch = logSearch.getCachedSearch(logSearch.cacheSearch(null, null, 0));
+        Assert.assertEquals(cachedSearch.getTotalHits(), QTY);
+
+        List<Integer>   actual = Lists.newArrayList();
+        for ( int start = 0; start < QTY; start += 10 )
+        {
+            for ( SearchItem item : logSearch.getPage(cachedSearch, start, 10) )
+            {
+                actual.add(item.getDocId());
+            }
+        }
+        Assert.assertEquals(actual, expected);
+    }
+
+    @Test
+    public void testRandomPages() throws Exception
+    {
+        Query           query = QueryBuilder.builder().pathPrefix("/test/1").build(QueryBuilder.Type.AND);
+        List<Integer>   expected = getExpected(query);
+
+        CachedSearch    cachedSearch = logSearch.getCachedSearch(logSearch.cacheSearch(query, null, 0));
+        Assert.assertEquals(cachedSearch.getTotalHits(), expected.size());
+
+        int[]           starts = {20, 25, 0, 40, 70, 5, 80, 80};
+        for ( int start : starts )
+        {
+            List<SearchItem>    page = logSearch.getPage(cachedSearch, start, 5);
+            Assert.assertEquals(page.size(), Math.max(0, Math.min(5, expected.size() - start)));
+            for ( int i = 0; i < page.size(); ++i )
+            {
+                Assert.assertEquals(page.get(i).getDocId(), expected.get(start + i).intValue(), "start: " + start);
+                Assert.assertTrue(page.get(i).getPath().startsWith("/test/1/"));
+            }
+        }
+    }
+
+    @Test
+    public void testMaxResults() throws Exception
+    {
+        CachedSearch    cachedSearch = logSearch.getCachedSearch(logSearch.cacheSearch(null, null, 100));
+        Assert.assertEquals(cachedSearch.getTotalHits(), 100);
+        Assert.assertEquals(logSearch.getPage(cachedSearch, 95, 10).size(), 5);
+    }
+
+    @Test
+    public void testPathQueries() throws Exception
+    {
+        IndexReader     reader = IndexReader.open(IndexDirectoryType.NIO.open(indexDirectory));
+        try
+        {
+            IndexSearcher   searcher = new IndexSearcher(reader);
+            String[][]      cases = {{"/test/1", "prefix"}, {"/test/2/", "prefix"}, {"/none", "prefix"}, {"/test/0/42", "exact"}, {"/test/0/43", "exact"}};
+            for ( String[] c : cases )
+            {
+                boolean         isPrefix = c[1].equals("prefix");
+                Query           query = isPrefix ? QueryBuilder.builder().pathPrefix(c[0]).build(QueryBuilder.Type.AND) : QueryBuilder.builder().pathExact(c[0]).build(QueryBuilder.Type.AND);
+                Term            term = new Term(FieldNames.PATH, c[0]);
+                Query           luceneQuery = isPrefix ? new PrefixQuery(term) : new TermQuery(term);
+
+                Set<Integer>    expected = Sets.newTreeSet();
+                for ( ScoreDoc scoreDoc : searcher.search(luceneQuery, QTY).scoreDocs )
+                {
+                    expected.add(scoreDoc.doc);
+                }
+                Set<Integer>    actual = Sets.newTreeSet(getExpected(query));
+                Assert.assertEquals(actual, expected, c[0]);
+            }
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(reader);
+            CloseableUtils.closeQuietly(reader.directory());
+        }
+
+        Map<String, Integer>    counts = logSearch.getSubtreeCounts("/test");
+        Assert.assertEquals(counts.keySet(), Sets.newHashSet("/test/0", "/test/1", "/test/2"));
+        Assert.assertEquals(counts.get("/test/0") + counts.get("/test/1") + counts.get("/test/2"), QTY);
+        Assert.assertEquals(counts.get("/test/0").intValue(), QTY / 3);
+        Assert.assertEquals(logSearch.getSubtreeCounts("/").get("/test").intValue(), QTY);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import com.google.common.io.ByteStreams;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+public class TestLogStreamDecoder
+{
+    private ExecutorService     service;
+
+    @BeforeMethod
+    public void setup()
+    {
+        service = Executors.newCachedThreadPool();
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        service.shutdownNow();
+    }
+
+    @Test
+    public void testGzip() throws Exception
+    {
+        byte[]                  raw = makeBytes();
+        ByteArrayOutputStream   bytes = new ByteArrayOutputStream();
+        GZIPOutputStream        out = new GZIPOutputStream(bytes);
+        out.write(raw);
+        out.close();
+
+        Assert.assertTrue(Arrays.equals(decode(bytes.toByteArray()), raw));
+    }
+
+    @Test
+    public void testMemberEndingAtChunkBoundary() throws Exception
+    {
+        // nothing of the second member has been read ahead when the first one ends
+        byte[]                  first = makeBytes(200 * 1024);
+        byte[]                  second = makeBytes();
+        ByteArrayOutputStream   stored = new ByteArrayOutputStream();
+        stored.write(paddedMember(first, ReadAheadInputStream.DEFAULT_CHUNK_SIZE));
+        GZIPOutputStream        out = new GZIPOutputStream(stored);
+        out.write(second);
+        out.close();
+
+        ByteArrayOutputStream   expected = new ByteArrayOutputStream();
+        expected.write(first);
+        expected.write(second);
+        Assert.assertTrue(Arrays.equals(decode(stored.toByteArray()), expected.toByteArray()));
+    }
+
+    @Test
+    public void testUncompressed() throws Exception
+    {
+        byte[]      raw = makeBytes();
+        Assert.assertTrue(Arrays.equals(decode(raw), raw));
+        Assert.assertEquals(decode(new byte[0]).length, 0);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testSourceError() throws Exception
+    {
+        InputStream     failing = new InputStream()
+        {
+            @Override
+            public int read() throws IOException
+            {
+                throw new IOException("test");
+            }
+        };
+
+        InputStream     in = new LogStreamDecoder(service).decode(failing);
+        try
+        {
+            ByteStreams.toByteArray(in);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private byte[] decode(byte[] stored) throws IOException
+    {
+        InputStream     in = new LogStreamDecoder(service).decode(new ByteArrayInputStream(stored));
+        try
+        {
+            return ByteStreams.toByteArray(in);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private byte[] makeBytes()
+    {
+        // several read-ahead chunks plus a partial one
+        return makeBytes((ReadAheadInputStream.DEFAULT_CHUNK_SIZE * (ReadAheadInputStream.DEFAULT_CHUNK_QTY + 3)) + 123);
+    }
+
+    private byte[] makeBytes(int length)
+    {
+        byte[]      raw = new byte[length];
+        new Random(1).nextBytes(raw);
+        return raw;
+    }
+
+    /**
+     * A gzip member padded with an extra header field to the given length
+     */
+    private byte[] paddedMember(byte[] data, int length) throws IOException
+    {
+        Deflater        deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        byte[]          deflated = new byte[data.length + 1024];
+        deflater.setInput(data);
+        deflater.finish();
+        int             deflatedLength = deflater.deflate(deflated);
+        Assert.assertTrue(deflater.finished());
+        deflater.end();
+
+        int             extraLength = length - (10 + 2 + deflatedLength + 8);
+        Assert.assertTrue((extraLength >= 0) && (extraLength <= 0xffff));
+
+        CRC32           crc = new CRC32();
+        crc.update(data);
+        ByteBuffer      member = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        member.put(new byte[]{0x1f, (byte)0x8b, 8, 4, 0, 0, 0, 0, 0, 0});    // FEXTRA
+        member.putShort((short)extraLength);
+        member.put(new byte[extraLength]);
+        member.put(deflated, 0, deflatedLength);
+        member.putInt((int)crc.getValue());
+        member.putInt(data.length);
+        return member.array();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import org.apache.curator.utils.CloseableUtils;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.util.List;
+
+public class TestSearchResultCache extends TestIndexBase
+{
+    @Test
+    public void testSharedResults() throws Exception
+    {
+        SearchResultCache   resultCache = new SearchResultCache();
+        LogSearch           search1 = new LogSearch(indexDirectory, IndexDirectoryType.NIO, null, resultCache);
+        LogSearch           search2 = new LogSearch(indexDirectory, IndexDirectoryType.NIO, null, resultCache);
+        try
+        {
+            // the same filter built in a different order from two "browsers"
+            Query           query1 = QueryBuilder.builder().pathPrefix("/test/2").operationType(EntryTypes.CREATE_PERSISTENT.getId()).build(QueryBuilder.Type.AND);
+            Query           query2 = QueryBuilder.builder().operationType(EntryTypes.CREATE_PERSISTENT.getId()).pathPrefix("/test/2").build(QueryBuilder.Type.AND);
+            Assert.assertEquals(SearchResultCache.normalize(query1), SearchResultCache.normalize(query2));
+
+            // "*" is a valid character in a path
+            Assert.assertNotEquals(SearchResultCache.normalize(new PathQuery("/a*", false)), SearchResultCache.normalize(new PathQuery("/a", true)));
+            Assert.assertNotEquals(SearchResultCache.normalize(new PathQuery("/a", false)), SearchResultCache.normalize(new TermQuery(new Term(FieldNames.PATH, "/a"))));
+
+            List<Integer>   expected = getExpected(query1);
+            CachedSearch    cachedSearch1 = search1.getCachedSearch(search1.cacheSearch(query1, null, 0));
+            CachedSearch    cachedSearch2 = search2.getCachedSearch(search2.cacheSearch(query2, null, 0));
+            Assert.assertEquals(getDocIds(search1.getPage(cachedSearch1, 10, 10)), expected.subList(10, 20));
+            Assert.assertEquals(getDocIds(search2.getPage(cachedSearch2, 30, 10)), expected.subList(30, 40));
+            Assert.assertEquals(getDocIds(search1.getPage(cachedSearch1, 0, 5)), expected.subList(0, 5));
+
+            Assert.assertEquals(resultCache.getEntryCount(), 1);
+            Assert.assertEquals(resultCache.getStats().missCount(), 1);
+            Assert.assertEquals(resultCache.getStats().hitCount(), 2);
+            Assert.assertTrue(resultCache.getSizeBytes() >= (expected.size() * 4));
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(search1);
+            CloseableUtils.closeQuietly(search2);
+        }
+    }
+
+    @Test
+    public void testUncachedResults() throws Exception
+    {
+        // too small to hold any results - pages are read with the cursor
+        SearchResultCache   resultCache = new SearchResultCache(16);
+        LogSearch           search = new LogSearch(indexDirectory, IndexDirectoryType.NIO, null, resultCache);
+        try
+        {
+            List<Integer>   expected = getExpected(null);
+            CachedSearch    cachedSearch = search.getCachedSearch(search.cacheSearch(null, null, 0));
+            int[]           starts = {0, 10, 20, 5, 100};
+            for ( int start : starts )
+            {
+                Assert.assertEquals(getDocIds(search.getPage(cachedSearch, start, 10)), expected.subList(start, start + 10));
+            }
+            Assert.assertEquals(resultCache.getEntryCount(), 0);
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(search);
+        }
+    }
+}
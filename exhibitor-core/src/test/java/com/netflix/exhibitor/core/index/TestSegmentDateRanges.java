@@ -0,0 +1,73 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import com.google.common.collect.Lists;
+import org.apache.curator.utils.CloseableUtils;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class TestSegmentDateRanges extends TestIndexBase
+{
+    @Test
+    public void testDateRanges() throws Exception
+    {
+        ExecutorService     service = Executors.newFixedThreadPool(3);
+        LogSearch           parallelSearch = new LogSearch(indexDirectory, IndexDirectoryType.NIO, service);
+        try
+        {
+            long[][]        ranges = {{1000000, 1000010}, {1000030, 1000034}, {1000000, 1000100}, {1000060, 1000100}, {0, 1000000}, {1000016, 1000017}};
+            for ( long[] range : ranges )
+            {
+                Query           query = QueryBuilder.builder().dateRange(new Date(range[0]), new Date(range[1])).build(QueryBuilder.Type.AND);
+                Query           numericQuery = NumericRangeQuery.newLongRange(FieldNames.DATE, range[0], range[1], true, false);
+                List<Integer>   expected = getExpected(numericQuery);
+                Assert.assertEquals(getExpected(query), expected);
+
+                List<Integer>   actual = Lists.newArrayList();
+                for ( ScoreDoc scoreDoc : parallelSearch.search(query, QTY).scoreDocs )
+                {
+                    actual.add(scoreDoc.doc);
+                }
+                Assert.assertEquals(actual, expected);
+            }
+
+            List<Integer>       actual = Lists.newArrayList();
+            CachedSearch        cachedSearch = parallelSearch.getCachedSearch(parallelSearch.cacheSearch(null, null, 0));
+            for ( int start = 0; start < QTY; start += 20 )
+            {
+                for ( SearchItem item : parallelSearch.getPage(cachedSearch, start, 20) )
+                {
+                    actual.add(item.getDocId());
+                }
+            }
+            Assert.assertEquals(actual, getExpected(null));
+        }
+        finally
+        {
+            CloseableUtils.closeQuietly(parallelSearch);
+            service.shutdownNow();
+        }
+    }
+}
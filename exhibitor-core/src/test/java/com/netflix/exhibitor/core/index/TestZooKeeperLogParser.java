@@ -0,0 +1,120 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.index;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.apache.curator.utils.CloseableUtils;
+import org.apache.jute.Record;
+import org.apache.zookeeper.ZooDefs;
+import org.apache.zookeeper.server.persistence.FileTxnLog;
+import org.apache.zookeeper.txn.CreateTxn;
+import org.apache.zookeeper.txn.TxnHeader;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.List;
+
+public class TestZooKeeperLogParser
+{
+    @Test
+    public void testMappedMatchesStream() throws Exception
+    {
+        File        logDirectory = Files.createTempDir();
+        FileTxnLog.setPreallocSize(64 * 1024);
+        FileTxnLog  txnLog = new FileTxnLog(logDirectory);
+        try
+        {
+            for ( int zxid = 1; zxid <= 10; ++zxid )
+            {
+                TxnHeader   header = new TxnHeader(1, zxid, zxid, System.currentTimeMillis(), ZooDefs.OpCode.create);
+                CreateTxn   txn = new CreateTxn("/test/" + zxid, new byte[]{(byte)zxid}, ZooDefs.Ids.OPEN_ACL_UNSAFE, false, 0);
+                txnLog.append(header, txn);
+            }
+            txnLog.commit();
+
+            File[]      files = logDirectory.listFiles();
+            Assert.assertNotNull(files);
+            Assert.assertEquals(files.length, 1);
+            File        logFile = files[0];
+            Assert.assertTrue(logFile.length() >= 64 * 1024);   // preallocated
+
+            ZooKeeperLogParser  mappedParser = new ZooKeeperLogParser(logFile);
+            Assert.assertTrue(mappedParser.isValid());
+            List<String>        mappedPaths = parse(mappedParser);
+
+            List<String>        streamPaths;
+            long                streamPosition;
+            InputStream         in = new BufferedInputStream(new FileInputStream(logFile));
+            try
+            {
+                ZooKeeperLogParser  streamParser = new ZooKeeperLogParser(in);
+                streamPaths = parse(streamParser);
+                streamPosition = streamParser.getPosition();
+            }
+            finally
+            {
+                CloseableUtils.closeQuietly(in);
+            }
+
+            Assert.assertEquals(mappedPaths.size(), 10);
+            Assert.assertEquals(mappedPaths, streamPaths);
+            Assert.assertEquals(mappedParser.getPosition(), streamPosition);
+            Assert.assertTrue(mappedParser.getPosition() < logFile.length());
+
+            ZooKeeperLogParser  skippingParser = new ZooKeeperLogParser(logFile);
+            Assert.assertTrue(skippingParser.skipTo(streamPosition));
+            Assert.assertEquals(parse(skippingParser).size(), 0);
+            Assert.assertFalse(new ZooKeeperLogParser(logFile).skipTo(logFile.length() + 1));
+        }
+        finally
+        {
+            txnLog.close();
+            File[]      files = logDirectory.listFiles();
+            if ( files != null )
+            {
+                for ( File f : files )
+                {
+                    //noinspection ResultOfMethodCallIgnored
+                    f.delete();
+                }
+            }
+            //noinspection ResultOfMethodCallIgnored
+            logDirectory.delete();
+        }
+    }
+
+    private List<String> parse(ZooKeeperLogParser parser) throws Exception
+    {
+        final List<String>      paths = Lists.newArrayList();
+        parser.parse
+        (
+            new LogEntryReceiver()
+            {
+                @Override
+                public void receiveEntry(TxnHeader header, Record record) throws Exception
+                {
+                    paths.add(((CreateTxn)record).getPath());
+                }
+            }
+        );
+        return paths;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012 Netflix, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.netflix.exhibitor.core.s3;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.Response;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetricsFullSupport;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import java.io.File;
+import java.util.Properties;
+
+public class TestS3ClientTransport
+{
+    @Test
+    public void     testPoolConfig()
+    {
+        Properties                  properties = new Properties();
+        properties.setProperty(PropertyBasedS3ClientConfig.PROPERTY_S3_MAX_CONNECTIONS, "100");
+        properties.setProperty(PropertyBasedS3ClientConfig.PROPERTY_S3_CONNECTION_MAX_IDLE_MS, "30000");
+        properties.setProperty(PropertyBasedS3ClientConfig.PROPERTY_S3_SOCKET_RECEIVE_BUFFER, "1048576");
+        properties.setProperty(PropertyBasedS3ClientConfig.PROPERTY_S3_TCP_KEEP_ALIVE, "true");
+
+        ClientConfiguration         defaults = new ClientConfiguration();
+        ClientConfiguration         awsClientConfig = new PropertyBasedS3ClientConfig(properties).getAWSClientConfig();
+        Assert.assertEquals(awsClientConfig.getMaxConnections(), 100);
+        Assert.assertEquals(awsClientConfig.getConnectionMaxIdleMillis(), 30000);
+        Assert.assertTrue(awsClientConfig.useReaper());
+        Assert.assertEquals(awsClientConfig.getSocketBufferSizeHints()[0], 0);
+        Assert.assertEquals(awsClientConfig.getSocketBufferSizeHints()[1], 1048576);
+        Assert.assertTrue(awsClientConfig.useTcpKeepAlive());
+
+        awsClientConfig = new PropertyBasedS3ClientConfig(new Properties()).getAWSClientConfig();
+        Assert.assertEquals(awsClientConfig.getMaxConnections(), defaults.getMaxConnections());
+        Assert.assertEquals(awsClientConfig.getConnectionMaxIdleMillis(), defaults.getConnectionMaxIdleMillis());
+        Assert.assertFalse(awsClientConfig.useTcpKeepAlive());
+    }
+
+    @Test
+    public void     testLayeredFiles() throws Exception
+    {
+        File        proxyFile = File.createTempFile("proxy", ".properties");
+        File        clientConfigFile = File.createTempFile("client", ".properties");
+        try
+        {
+            Files.write(PropertyBasedS3ClientConfig.PROPERTY_S3_PROXY_HOST + "=proxy.local\n" + PropertyBasedS3ClientConfig.PROPERTY_S3_MAX_CONNECTIONS + "=10\n", proxyFile, Charsets.UTF_8);
+            Files.write(PropertyBasedS3ClientConfig.PROPERTY_S3_MAX_CONNECTIONS + "=200\n", clientConfigFile, Charsets.UTF_8);
+
+            ClientConfiguration     awsClientConfig = new PropertyBasedS3ClientConfig(proxyFile, clientConfigFile).getAWSClientConfig();
+            Assert.assertEquals(awsClientConfig.getProxyHost(), "proxy.local");
+            Assert.assertEquals(awsClientConfig.getMaxConnections(), 200);
+        }
+        finally
+        {
+            Assert.assertTrue(proxyFile.delete());
+            Assert.assertTrue(clientConfigFile.delete());
+        }
+    }
+
+    @Test
+    public void     testMetrics()
+    {
+        S3ClientMetrics                 metrics = new S3ClientMetrics();
+
+        DefaultRequest<Object>          request = new DefaultRequest<Object>(new GetObjectRequest("bucket", "key"), "Amazon S3");
+        AWSRequestMetrics               requestMetrics = new AWSRequestMetricsFullSupport();
+        requestMetrics.setCounter(AWSRequestMetrics.Field.HttpClientPoolLeasedCount, 5);
+        requestMetrics.setCounter(AWSRequestMetrics.Field.HttpClientPoolPendingCount, 2);
+        requestMetrics.getTimingInfo().endTiming();
+        request.setAWSRequestMetrics(requestMetrics);
+        metrics.collectMetrics(request, new Response<Object>(null, null));
+
+        Assert.assertEquals(metrics.getLatencyCount("GetObject"), 1);
+        Assert.assertEquals(metrics.getErrorCount("GetObject"), 0);
+        Assert.assertEquals(metrics.getLeasedConnections(), 5);
+        Assert.assertEquals(metrics.getPendingConnections(), 2);
+
+        request = new DefaultRequest<Object>(new PutObjectRequest("bucket", "key", new File("x")), "Amazon S3");
+        requestMetrics = new AWSRequestMetricsFullSupport();
+        requestMetrics.getTimingInfo().endTiming();
+        request.setAWSRequestMetrics(requestMetrics);
+        metrics.collectMetrics(request, null);
+
+        Assert.assertEquals(metrics.getLatencyCount("PutObject"), 1);
+        Assert.assertEquals(metrics.getErrorCount("PutObject"), 1);
+        Assert.assertEquals(metrics.getLatencyCount("GetObject"), 1);
+        Assert.assertEquals(metrics.getLeasedConnections(), 5);   // not reported by the failed request
+    }
+}
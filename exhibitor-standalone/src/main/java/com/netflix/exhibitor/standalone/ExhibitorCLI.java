@@ -67,6 +67,7 @@ public class ExhibitorCLI
     public static final String FILESYSTEM_CONFIG_LOCK_PREFIX = "fsconfiglockprefix";
     public static final String S3_CREDENTIALS = "s3credentials";
     public static final String S3_PROXY = "s3proxy";
+    public static final String S3_CLIENT_CONFIG = "s3clientconfig";
     public static final String S3_BACKUP = "s3backup";
     public static final String S3_CONFIG = "s3config";
     public static final String S3_CONFIG_PREFIX = "s3configprefix";
@@ -95,6 +96,7 @@ public class ExhibitorCLI
     public static final String ACL_ID = "aclid";
     public static final String ACL_PERMISSIONS = "aclperms";
     public static final String SERVO_INTEGRATION = "servo";
+    public static final String INDEX_DIRECTORY_TYPE = "indexdirtype";
 
     public static final String SECURITY_FILE = "security";
     public static final String REALM = "realm";
@@ -157,6 +159,7 @@ public class ExhibitorCLI
         s3Options.addOption(null, S3_CREDENTIALS, true, "Optional credentials to use for s3backup or s3config. Argument is the path to an AWS credential properties file with two properties: " + PropertyBasedS3Credential.PROPERTY_S3_KEY_ID + " and " + PropertyBasedS3Credential.PROPERTY_S3_SECRET_KEY);
         s3Options.addOption(null, S3_REGION, true, "Optional region for S3 calls (e.g. \"eu-west-1\"). Will be used to set the S3 client's endpoint.");
         s3Options.addOption(null, S3_PROXY, true, "Optional configuration used when when connecting to S3 via a proxy. Argument is the path to an AWS credential properties file with four properties (only host, port and protocol are required if using a proxy): " + PropertyBasedS3ClientConfig.PROPERTY_S3_PROXY_HOST + ", " + PropertyBasedS3ClientConfig.PROPERTY_S3_PROXY_PORT + ", " + PropertyBasedS3ClientConfig.PROPERTY_S3_PROXY_USERNAME + ", " + PropertyBasedS3ClientConfig.PROPERTY_S3_PROXY_PASSWORD);
+        s3Options.addOption(null, S3_CLIENT_CONFIG, true, "Optional tuning for the S3 client's connection pool. Argument is the path to a properties file with any of these properties: " + PropertyBasedS3ClientConfig.PROPERTY_S3_MAX_CONNECTIONS + ", " + PropertyBasedS3ClientConfig.PROPERTY_S3_CONNECTION_MAX_IDLE_MS + ", " + PropertyBasedS3ClientConfig.PROPERTY_S3_SOCKET_SEND_BUFFER + ", " + PropertyBasedS3ClientConfig.PROPERTY_S3_SOCKET_RECEIVE_BUFFER + ", " + PropertyBasedS3ClientConfig.PROPERTY_S3_TCP_KEEP_ALIVE + " (true/false). Can be combined with " + S3_PROXY + ".");
 
         generalOptions = new Options();
         generalOptions.addOption(null, TIMEOUT, true, "Connection timeout (ms) for ZK connections. Default is 30000.");
@@ -171,6 +174,7 @@ public class ExhibitorCLI
         generalOptions.addOption(null, CONFIGCHECKMS, true, "Period (ms) to check for shared config updates. Default is: 30000");
         generalOptions.addOption(null, SERVO_INTEGRATION, true, "true/false (default is false). If enabled, ZooKeeper will be queried once a minute for its state via the 'mntr' four letter word (this requires ZooKeeper 3.4.x+). Servo will be used to publish this data via JMX.");
         generalOptions.addOption(null, INITIAL_CONFIG_FILE, true, "Full path to a file that contains initial/default values for Exhibitor/ZooKeeper config values. The file is a standard property file. The property names are listed below. The file can specify some or all of the properties.");
+        generalOptions.addOption(null, INDEX_DIRECTORY_TYPE, true, "How log indexes are accessed when searching: \"nio\", \"mmap\" (recommended for 64-bit JVMs) or \"ram\" (copies each index into the heap - only for small indexes). Default is nio.");
         generalOptions.addOption(null, PREFERENCES_PATH, true, "Certain values (such as Control Panel values) are stored in a preferences file. By default, Preferences.userRoot() is used. Use this option to specify a different file path.");
 
         Options aclOptions = new Options();
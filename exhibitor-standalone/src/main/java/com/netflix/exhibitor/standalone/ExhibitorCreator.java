@@ -36,9 +36,11 @@ import com.netflix.exhibitor.core.config.s3.S3ConfigArguments;
 import com.netflix.exhibitor.core.config.s3.S3ConfigAutoManageLockArguments;
 import com.netflix.exhibitor.core.config.s3.S3ConfigProvider;
 import com.netflix.exhibitor.core.config.zookeeper.ZookeeperConfigProvider;
+import com.netflix.exhibitor.core.index.IndexDirectoryType;
 import com.netflix.exhibitor.core.s3.PropertyBasedS3ClientConfig;
 import com.netflix.exhibitor.core.s3.PropertyBasedS3Credential;
 import com.netflix.exhibitor.core.s3.S3ClientFactoryImpl;
+import com.netflix.exhibitor.core.s3.S3ClientMetrics;
 import com.netflix.exhibitor.core.servo.ServoRegistration;
 import com.netflix.servo.jmx.JmxMonitorRegistry;
 import org.apache.commons.cli.CommandLine;
@@ -126,15 +128,27 @@ public class ExhibitorCreator
             awsCredentials = new PropertyBasedS3Credential(new File(commandLine.getOptionValue(S3_CREDENTIALS)));
         }
 
+        List<File>                    clientConfigFiles = Lists.newArrayList();
         if ( commandLine.hasOption(S3_PROXY) )
         {
-            awsClientConfig = new PropertyBasedS3ClientConfig(new File(commandLine.getOptionValue(S3_PROXY)));
+            clientConfigFiles.add(new File(commandLine.getOptionValue(S3_PROXY)));
+        }
+        if ( commandLine.hasOption(S3_CLIENT_CONFIG) )
+        {
+            clientConfigFiles.add(new File(commandLine.getOptionValue(S3_CLIENT_CONFIG)));
+        }
+        if ( clientConfigFiles.size() > 0 )
+        {
+            awsClientConfig = new PropertyBasedS3ClientConfig(clientConfigFiles.toArray(new File[clientConfigFiles.size()]));
         }
 
+        // one factory so that the backup and config providers share a client and its connection pool
+        S3ClientFactoryImpl s3ClientFactory = new S3ClientFactoryImpl(new S3ClientMetrics());
+
         BackupProvider backupProvider = null;
         if ( "true".equalsIgnoreCase(commandLine.getOptionValue(S3_BACKUP)) )
         {
-            backupProvider = new S3BackupProvider(new S3ClientFactoryImpl(), awsCredentials, awsClientConfig, s3Region);
+            backupProvider = new S3BackupProvider(s3ClientFactory, awsCredentials, awsClientConfig, s3Region);
         }
         else if ( "true".equalsIgnoreCase(commandLine.getOptionValue(FILESYSTEMBACKUP)) )
         {
@@ -155,7 +169,7 @@ public class ExhibitorCreator
             throw new MissingConfigurationTypeException("Configuration type (-" + SHORT_CONFIG_TYPE + " or --" + CONFIG_TYPE + ") must be specified", cli);
         }
 
-        ConfigProvider configProvider = makeConfigProvider(configType, cli, commandLine, awsCredentials, awsClientConfig, backupProvider, useHostname, s3Region);
+        ConfigProvider configProvider = makeConfigProvider(configType, cli, commandLine, s3ClientFactory, awsCredentials, awsClientConfig, backupProvider, useHostname, s3Region);
         if ( configProvider == null )
         {
             throw new ExhibitorCreatorExit(cli);
@@ -176,6 +190,16 @@ public class ExhibitorCreator
             throw new ExhibitorCreatorExit(cli);
         }
 
+        IndexDirectoryType indexDirectoryType;
+        try
+        {
+            indexDirectoryType = IndexDirectoryType.valueOf(commandLine.getOptionValue(INDEX_DIRECTORY_TYPE, "nio").toUpperCase());
+        }
+        catch ( IllegalArgumentException e )
+        {
+            throw new ExhibitorCreatorExit(cli);
+        }
+
         securityFile = commandLine.getOptionValue(SECURITY_FILE);
         realmSpec = commandLine.getOptionValue(REALM);
         remoteAuthSpec = commandLine.getOptionValue(REMOTE_CLIENT_AUTHORIZATION);
@@ -209,6 +233,7 @@ public class ExhibitorCreator
         if ( "true".equalsIgnoreCase(commandLine.getOptionValue(SERVO_INTEGRATION, "false")) )
         {
             servoRegistration = new ServoRegistration(new JmxMonitorRegistry("exhibitor"), 60000);
+            servoRegistration.getMonitorRegistry().register(s3ClientFactory.getMetrics().getMonitor());
         }
 
         String              preferencesPath = commandLine.getOptionValue(PREFERENCES_PATH);
@@ -225,6 +250,7 @@ public class ExhibitorCreator
             .aclProvider(aclProvider)
             .servoRegistration(servoRegistration)
             .preferencesPath(preferencesPath)
+            .indexDirectoryType(indexDirectoryType)
         ;
 
         this.securityHandler = handler;
@@ -278,14 +304,14 @@ public class ExhibitorCreator
         return remoteAuthSpec;
     }
 
-    private ConfigProvider makeConfigProvider(String configType, ExhibitorCLI cli, CommandLine commandLine, PropertyBasedS3Credential awsCredentials, PropertyBasedS3ClientConfig awsClientConfig, BackupProvider backupProvider, String useHostname, String s3Region) throws Exception
+    private ConfigProvider makeConfigProvider(String configType, ExhibitorCLI cli, CommandLine commandLine, S3ClientFactoryImpl s3ClientFactory, PropertyBasedS3Credential awsCredentials, PropertyBasedS3ClientConfig awsClientConfig, BackupProvider backupProvider, String useHostname, String s3Region) throws Exception
     {
         Properties          defaultProperties = makeDefaultProperties(commandLine, backupProvider);
 
         ConfigProvider      configProvider;
         if ( configType.equals("s3") )
         {
-            configProvider = getS3Provider(cli, commandLine, awsCredentials, awsClientConfig, useHostname, defaultProperties, s3Region);
+            configProvider = getS3Provider(cli, commandLine, s3ClientFactory, awsCredentials, awsClientConfig, useHostname, defaultProperties, s3Region);
         }
         else if ( configType.equals("file") )
         {
@@ -522,10 +548,10 @@ public class ExhibitorCreator
         return new FileSystemConfigProvider(directory, name, defaultProperties, new AutoManageLockArguments(lockPrefix));
     }
 
-    private ConfigProvider getS3Provider(ExhibitorCLI cli, CommandLine commandLine, PropertyBasedS3Credential awsCredentials, PropertyBasedS3ClientConfig awsClientConfig, String hostname, Properties defaultProperties, String s3Region) throws Exception
+    private ConfigProvider getS3Provider(ExhibitorCLI cli, CommandLine commandLine, S3ClientFactoryImpl s3ClientFactory, PropertyBasedS3Credential awsCredentials, PropertyBasedS3ClientConfig awsClientConfig, String hostname, Properties defaultProperties, String s3Region) throws Exception
     {
         String  prefix = cli.getOptions().hasOption(S3_CONFIG_PREFIX) ? commandLine.getOptionValue(S3_CONFIG_PREFIX) : DEFAULT_PREFIX;
-        return new S3ConfigProvider(new S3ClientFactoryImpl(), awsCredentials, awsClientConfig, getS3Arguments(cli, commandLine.getOptionValue(S3_CONFIG), prefix), hostname, defaultProperties, s3Region);
+        return new S3ConfigProvider(s3ClientFactory, awsCredentials, awsClientConfig, getS3Arguments(cli, commandLine.getOptionValue(S3_CONFIG), prefix), hostname, defaultProperties, s3Region);
     }
 
     private void checkMutuallyExclusive(ExhibitorCLI cli, CommandLine commandLine, String option1, String option2) throws ExhibitorCreatorExit